@@ -0,0 +1,110 @@
+package com.bencodez.simpleapi.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.bencodez.simpleapi.servercomm.codec.BinaryEnvelopeCodec;
+import com.bencodez.simpleapi.servercomm.codec.JsonEnvelope;
+import com.bencodez.simpleapi.servercomm.codec.JsonEnvelopeCodec;
+
+/**
+ * JSON vs binary envelope encode/decode.
+ *
+ * Run with {@code mvn -Pbenchmark test-compile exec:java}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EnvelopeCodecBenchmark {
+
+	/** Typical vote message, or a large top-voter sync. */
+	@Param({ "vote", "topvoters" })
+	public String shape;
+
+	private JsonEnvelope envelope;
+	private String json;
+	private byte[] jsonBytes;
+	private byte[] binary;
+	private byte[] sessionBinary;
+	private BinaryEnvelopeCodec.Session encodeSession;
+	private BinaryEnvelopeCodec.Session decodeSession;
+
+	@Setup
+	public void setup() throws IOException {
+		JsonEnvelope.Builder builder = JsonEnvelope.builder("vote").put("player", "Steve")
+				.put("uuid", "069a79f4-44e9-4726-a5be-fca90e38aaf5").put("service", "PlanetMinecraft")
+				.put("time", 1760000000000L).put("points", 1).put("online", true);
+		if ("topvoters".equals(shape)) {
+			StringBuilder list = new StringBuilder();
+			for (int i = 0; i < 1000; i++) {
+				list.append("Player").append(i).append(':').append(1000 - i).append(',');
+			}
+			builder.put("list", list);
+		}
+		envelope = builder.build();
+		json = JsonEnvelopeCodec.encode(envelope);
+		jsonBytes = JsonEnvelopeCodec.encodeToBytes(envelope);
+		binary = BinaryEnvelopeCodec.encode(envelope);
+
+		encodeSession = new BinaryEnvelopeCodec.Session();
+		decodeSession = new BinaryEnvelopeCodec.Session();
+		// warm the dictionaries the way a long-lived connection would be
+		decodeSession.decode(encodeSession.encode(envelope));
+		sessionBinary = encodeSession.encode(envelope);
+	}
+
+	@Benchmark
+	public String jsonEncode() {
+		return JsonEnvelopeCodec.encode(envelope);
+	}
+
+	@Benchmark
+	public JsonEnvelope jsonDecode() {
+		return JsonEnvelopeCodec.decode(json);
+	}
+
+	@Benchmark
+	public byte[] jsonEncodeToBytes() {
+		return JsonEnvelopeCodec.encodeToBytes(envelope);
+	}
+
+	@Benchmark
+	public JsonEnvelope jsonDecodeBytes() {
+		return JsonEnvelopeCodec.decode(jsonBytes);
+	}
+
+	@Benchmark
+	public byte[] binaryEncode() {
+		return BinaryEnvelopeCodec.encode(envelope);
+	}
+
+	@Benchmark
+	public JsonEnvelope binaryDecode() throws IOException {
+		return BinaryEnvelopeCodec.decode(binary);
+	}
+
+	@Benchmark
+	public byte[] binarySessionEncode() {
+		return encodeSession.encode(envelope);
+	}
+
+	@Benchmark
+	public JsonEnvelope binarySessionDecode() throws IOException {
+		return decodeSession.decode(sessionBinary);
+	}
+}
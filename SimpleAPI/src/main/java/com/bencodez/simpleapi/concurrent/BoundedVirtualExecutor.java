@@ -0,0 +1,89 @@
+package com.bencodez.simpleapi.concurrent;
+
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs each task on its own virtual thread, letting at most {@code permits}
+ * tasks run at once.
+ *
+ * Tasks waiting for a permit park their virtual thread instead of sitting in a
+ * queue behind blocked platform threads. For MySQL, sizing the permits to the
+ * Hikari pool keeps callers from piling up on getConnection().
+ */
+public class BoundedVirtualExecutor extends AbstractExecutorService {
+
+	private final ExecutorService delegate;
+	private final Semaphore permits;
+	private final int maxConcurrency;
+
+	public BoundedVirtualExecutor(String namePrefix, int maxConcurrency) {
+		this.maxConcurrency = Math.max(1, maxConcurrency);
+		this.permits = new Semaphore(this.maxConcurrency);
+		this.delegate = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(namePrefix, 0).factory());
+	}
+
+	public int getMaxConcurrency() {
+		return maxConcurrency;
+	}
+
+	/**
+	 * @return tasks currently holding a permit
+	 */
+	public int getActiveCount() {
+		return maxConcurrency - permits.availablePermits();
+	}
+
+	/**
+	 * @return tasks parked waiting for a permit (estimate)
+	 */
+	public int getQueuedCount() {
+		return permits.getQueueLength();
+	}
+
+	@Override
+	public void execute(Runnable command) {
+		delegate.execute(() -> {
+			try {
+				permits.acquire();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+			try {
+				command.run();
+			} finally {
+				permits.release();
+			}
+		});
+	}
+
+	@Override
+	public void shutdown() {
+		delegate.shutdown();
+	}
+
+	@Override
+	public List<Runnable> shutdownNow() {
+		return delegate.shutdownNow();
+	}
+
+	@Override
+	public boolean isShutdown() {
+		return delegate.isShutdown();
+	}
+
+	@Override
+	public boolean isTerminated() {
+		return delegate.isTerminated();
+	}
+
+	@Override
+	public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+		return delegate.awaitTermination(timeout, unit);
+	}
+}
@@ -0,0 +1,137 @@
+package com.bencodez.simpleapi.encryption;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+
+/**
+ * AES-GCM variant of {@link EncryptionHandler}, using the same key file.
+ *
+ * Every message gets a fresh random 96 bit nonce and a 128 bit tag, so
+ * tampered or truncated messages fail to decrypt instead of producing garbage.
+ * Output is {@code [version][nonce][ciphertext + tag]}; the version byte is
+ * never valid Base64 or JSON, so binary transports can send it without Base64
+ * and receivers can tell the two apart.
+ *
+ * Not wire compatible with {@link EncryptionHandler}: every peer sharing the
+ * key must use this class.
+ */
+public class AesGcmEncryptionHandler extends EncryptionHandler {
+
+	public static final byte VERSION = 1;
+
+	private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+	private static final int NONCE_BYTES = 12;
+	private static final int TAG_BITS = 128;
+	private static final int HEADER_BYTES = 1 + NONCE_BYTES;
+
+	private static final SecureRandom RANDOM = new SecureRandom();
+
+	public AesGcmEncryptionHandler(String pluginName, File file) {
+		super(pluginName, file);
+	}
+
+	@Override
+	public byte[] encrypt(byte[] data) {
+		try {
+			Cipher cipher = initEncrypt();
+			byte[] out = new byte[HEADER_BYTES + cipher.getOutputSize(data.length)];
+			out[0] = VERSION;
+			System.arraycopy(cipher.getIV(), 0, out, 1, NONCE_BYTES);
+			cipher.doFinal(data, 0, data.length, out, HEADER_BYTES);
+			return out;
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+		return null;
+	}
+
+	@Override
+	public byte[] decrypt(byte[] data) {
+		try {
+			checkHeader(data.length > 0 ? data[0] : -1, data.length);
+			Cipher cipher = initDecrypt(data, 1);
+			return cipher.doFinal(data, HEADER_BYTES, data.length - HEADER_BYTES);
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+		return null;
+	}
+
+	@Override
+	public ByteBuffer encrypt(ByteBuffer data) {
+		try {
+			Cipher cipher = initEncrypt();
+			ByteBuffer out = ByteBuffer.allocate(HEADER_BYTES + cipher.getOutputSize(data.remaining()));
+			out.put(VERSION).put(cipher.getIV());
+			cipher.doFinal(data, out);
+			out.flip();
+			return out;
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+		return null;
+	}
+
+	@Override
+	public ByteBuffer decrypt(ByteBuffer data) {
+		try {
+			checkHeader(data.hasRemaining() ? data.get(data.position()) : -1, data.remaining());
+			byte[] header = new byte[HEADER_BYTES];
+			data.get(header);
+			Cipher cipher = initDecrypt(header, 1);
+			ByteBuffer out = ByteBuffer.allocate(cipher.getOutputSize(data.remaining()));
+			cipher.doFinal(data, out);
+			out.flip();
+			return out;
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+		return null;
+	}
+
+	@Override
+	public boolean isBinarySafe() {
+		return true;
+	}
+
+	@Override
+	public boolean isEncryptedBinary(byte[] data) {
+		return data != null && data.length > HEADER_BYTES && data[0] == VERSION;
+	}
+
+	/**
+	 * GCM ciphers are initialised per message with a new nonce.
+	 */
+	@Override
+	protected Cipher createCipher(int mode) throws GeneralSecurityException {
+		return Cipher.getInstance(TRANSFORMATION);
+	}
+
+	private Cipher initEncrypt() throws GeneralSecurityException {
+		byte[] nonce = new byte[NONCE_BYTES];
+		RANDOM.nextBytes(nonce);
+		Cipher cipher = getCipher(Cipher.ENCRYPT_MODE);
+		cipher.init(Cipher.ENCRYPT_MODE, getKey(), new GCMParameterSpec(TAG_BITS, nonce));
+		return cipher;
+	}
+
+	private Cipher initDecrypt(byte[] nonce, int offset) throws GeneralSecurityException {
+		Cipher cipher = getCipher(Cipher.DECRYPT_MODE);
+		cipher.init(Cipher.DECRYPT_MODE, getKey(), new GCMParameterSpec(TAG_BITS, nonce, offset, NONCE_BYTES));
+		return cipher;
+	}
+
+	private static void checkHeader(int version, int length) throws GeneralSecurityException {
+		if (version != VERSION) {
+			throw new GeneralSecurityException("Unknown encrypted message version: " + version);
+		}
+		if (length < HEADER_BYTES + TAG_BITS / 8) {
+			throw new GeneralSecurityException("Encrypted message too short: " + length + " bytes");
+		}
+	}
+}
@@ -3,8 +3,11 @@ package com.bencodez.simpleapi.encryption;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.security.GeneralSecurityException;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
 import java.util.Base64;
@@ -15,11 +18,18 @@ import javax.crypto.NoSuchPaddingException;
 import javax.crypto.SecretKey;
 import javax.crypto.spec.SecretKeySpec;
 
+/**
+ * AES encryption with a key stored in a file.
+ *
+ * Uses the legacy "AES" (ECB) transformation so it can talk to older versions;
+ * use {@link AesGcmEncryptionHandler} where every peer is up to date. Ciphers
+ * are kept per thread, so one handler can be shared by all transports.
+ */
 public class EncryptionHandler {
-	private static Cipher dcipher;
-	private static Cipher ecipher;
+	private SecretKey key;
 
-	private static SecretKey key;
+	private final ThreadLocal<Cipher> ecipher = ThreadLocal.withInitial(() -> newCipher(Cipher.ENCRYPT_MODE));
+	private final ThreadLocal<Cipher> dcipher = ThreadLocal.withInitial(() -> newCipher(Cipher.DECRYPT_MODE));
 
 	public EncryptionHandler(String pluginName, File file) {
 		try {
@@ -30,12 +40,9 @@ public class EncryptionHandler {
 				save(file);
 			}
 
-			ecipher = Cipher.getInstance("AES");
-			dcipher = Cipher.getInstance("AES");
-
-			// initialize the ciphers with the given key
-			ecipher.init(Cipher.ENCRYPT_MODE, key);
-			dcipher.init(Cipher.DECRYPT_MODE, key);
+			// create this thread's ciphers now so a bad key shows up here
+			ecipher.get();
+			dcipher.get();
 
 			String msg = "This is a classified message!";
 			String encrypted = encrypt(msg);
@@ -43,14 +50,15 @@ public class EncryptionHandler {
 			if (!msg.equals(decrypted)) {
 				System.out.println(pluginName + ": Encryption/Decryption failed: " + decrypted);
 			}
-		} catch (NoSuchAlgorithmException e) {
-			System.out.println("No Such Algorithm:" + e.getMessage());
-			e.printStackTrace();
-		} catch (NoSuchPaddingException e) {
-			System.out.println("No Such Padding:" + e.getMessage());
-			e.printStackTrace();
-		} catch (InvalidKeyException e) {
-			System.out.println("Invalid Key:" + e.getMessage());
+		} catch (IllegalStateException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof NoSuchAlgorithmException) {
+				System.out.println("No Such Algorithm:" + cause.getMessage());
+			} else if (cause instanceof NoSuchPaddingException) {
+				System.out.println("No Such Padding:" + cause.getMessage());
+			} else if (cause instanceof InvalidKeyException) {
+				System.out.println("Invalid Key:" + cause.getMessage());
+			}
 			e.printStackTrace();
 		} catch (Exception e) {
 			e.printStackTrace();
@@ -60,10 +68,8 @@ public class EncryptionHandler {
 	public String decrypt(String str) {
 		try {
 			// decode with base64 to get bytes
-			byte[] dec = Base64.getDecoder().decode(str.getBytes());
-			byte[] utf8 = dcipher.doFinal(dec);
-			// create new string based on the specified charset
-			return new String(utf8, "UTF8");
+			byte[] utf8 = decrypt(Base64.getDecoder().decode(str.getBytes(StandardCharsets.US_ASCII)));
+			return utf8 == null ? null : new String(utf8, StandardCharsets.UTF_8);
 		} catch (Exception e) {
 			e.printStackTrace();
 		}
@@ -71,12 +77,107 @@ public class EncryptionHandler {
 	}
 
 	public String encrypt(String str) {
+		byte[] enc = encrypt(str.getBytes(StandardCharsets.UTF_8));
+		return enc == null ? null : Base64.getEncoder().encodeToString(enc);
+	}
+
+	/**
+	 * Encrypts raw bytes, for transports that can carry binary and don't need
+	 * the Base64 of {@link #encrypt(String)}.
+	 *
+	 * @return the ciphertext, or null on failure
+	 */
+	public byte[] encrypt(byte[] data) {
+		try {
+			return ecipher.get().doFinal(data);
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+		return null;
+	}
+
+	/**
+	 * @return the plaintext, or null on failure
+	 */
+	public byte[] decrypt(byte[] data) {
+		try {
+			return dcipher.get().doFinal(data);
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+		return null;
+	}
+
+	/**
+	 * Encrypts the remaining bytes of the buffer, advancing it to its limit.
+	 *
+	 * @return a buffer ready for reading, or null on failure
+	 */
+	public ByteBuffer encrypt(ByteBuffer data) {
+		return doFinal(ecipher.get(), data);
+	}
+
+	/**
+	 * Decrypts the remaining bytes of the buffer, advancing it to its limit.
+	 *
+	 * @return a buffer ready for reading, or null on failure
+	 */
+	public ByteBuffer decrypt(ByteBuffer data) {
+		return doFinal(dcipher.get(), data);
+	}
+
+	/**
+	 * True if {@link #encrypt(byte[])} output can be told apart from Base64 text
+	 * and JSON by its first byte, so a transport may send it raw.
+	 */
+	public boolean isBinarySafe() {
+		return false;
+	}
+
+	/**
+	 * True if this looks like raw {@link #encrypt(byte[])} output rather than
+	 * Base64 text. Always false unless {@link #isBinarySafe()}.
+	 */
+	public boolean isEncryptedBinary(byte[] data) {
+		return false;
+	}
+
+	protected SecretKey getKey() {
+		return key;
+	}
+
+	/**
+	 * Thread-confined cipher for the given mode, created by
+	 * {@link #createCipher(int)} on first use.
+	 */
+	protected Cipher getCipher(int mode) {
+		return mode == Cipher.ENCRYPT_MODE ? ecipher.get() : dcipher.get();
+	}
+
+	/**
+	 * Creates one thread's cipher. The default is initialised with the key up
+	 * front since ECB needs no per message parameters.
+	 */
+	protected Cipher createCipher(int mode) throws GeneralSecurityException {
+		Cipher cipher = Cipher.getInstance("AES");
+		cipher.init(mode, key);
+		return cipher;
+	}
+
+	private Cipher newCipher(int mode) {
+		try {
+			return createCipher(mode);
+		} catch (GeneralSecurityException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static ByteBuffer doFinal(Cipher cipher, ByteBuffer data) {
 		try {
-			// encode the string into a sequence of bytes using the named charset
-			// storing the result into a new byte array.
-			byte[] utf8 = str.getBytes("UTF8");
-			byte[] enc = ecipher.doFinal(utf8);
-			return Base64.getEncoder().encodeToString(enc);
+			ByteBuffer out = ByteBuffer.allocate(cipher.getOutputSize(data.remaining()));
+			cipher.doFinal(data, out);
+			out.flip();
+			return out;
 		} catch (Exception e) {
 			e.printStackTrace();
 		}
@@ -0,0 +1,89 @@
+package com.bencodez.simpleapi.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram with fixed millisecond buckets.
+ *
+ * Percentiles are estimated as the upper bound of the bucket they fall in,
+ * which is plenty to tell a 2ms query from a 200ms one.
+ */
+public class LatencyHistogram {
+
+	/** Bucket upper bounds in microseconds; the last bucket is unbounded. */
+	private static final long[] BOUNDS_MICROS = { 500, 1_000, 2_000, 5_000, 10_000, 25_000, 50_000, 100_000,
+			250_000, 500_000, 1_000_000, 2_500_000, 5_000_000, 10_000_000 };
+
+	private final LongAdder[] buckets = new LongAdder[BOUNDS_MICROS.length + 1];
+	private final LongAdder count = new LongAdder();
+	private final LongAdder totalMicros = new LongAdder();
+	private final AtomicLong maxMicros = new AtomicLong();
+
+	public LatencyHistogram() {
+		for (int i = 0; i < buckets.length; i++) {
+			buckets[i] = new LongAdder();
+		}
+	}
+
+	public void record(long nanos) {
+		long micros = Math.max(0, nanos / 1_000L);
+		int i = 0;
+		while (i < BOUNDS_MICROS.length && micros > BOUNDS_MICROS[i]) {
+			i++;
+		}
+		buckets[i].increment();
+		count.increment();
+		totalMicros.add(micros);
+		maxMicros.accumulateAndGet(micros, Math::max);
+	}
+
+	public long getCount() {
+		return count.sum();
+	}
+
+	public double getMeanMillis() {
+		long c = count.sum();
+		return c == 0 ? 0 : totalMicros.sum() / 1000.0 / c;
+	}
+
+	public double getMaxMillis() {
+		return maxMicros.get() / 1000.0;
+	}
+
+	/**
+	 * @param percentile 0-100
+	 * @return estimated latency in ms at the given percentile
+	 */
+	public double getPercentileMillis(double percentile) {
+		long total = count.sum();
+		if (total == 0) {
+			return 0;
+		}
+		long target = (long) Math.ceil(total * Math.min(100, Math.max(0, percentile)) / 100.0);
+		long seen = 0;
+		for (int i = 0; i < buckets.length; i++) {
+			seen += buckets[i].sum();
+			if (seen >= target) {
+				return i < BOUNDS_MICROS.length ? BOUNDS_MICROS[i] / 1000.0 : getMaxMillis();
+			}
+		}
+		return getMaxMillis();
+	}
+
+	public void reset() {
+		for (LongAdder bucket : buckets) {
+			bucket.reset();
+		}
+		count.reset();
+		totalMicros.reset();
+		maxMicros.set(0);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("count=%d mean=%.2fms p50=%.1fms p95=%.1fms p99=%.1fms max=%.2fms", getCount(),
+				getMeanMillis(), getPercentileMillis(50), getPercentileMillis(95), getPercentileMillis(99),
+				getMaxMillis());
+	}
+}
@@ -1,5 +1,6 @@
 package com.bencodez.simpleapi.scheduler;
 
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 
 import org.bukkit.Location;
@@ -19,6 +20,14 @@ public class BukkitScheduler {
 		foliaLib = new FoliaLib(plugin);
 	}
 
+	/**
+	 * Executor that runs tasks on the next server tick, for completing async
+	 * work (such as SQL futures) back on the main thread.
+	 */
+	public Executor getMainThreadExecutor(Plugin plugin) {
+		return task -> runTask(plugin, task);
+	}
+
 	public void executeOrScheduleSync(Plugin plugin, Runnable task) {
 		getFoliaLib().getImpl().runNextTick(run -> {
 			task.run();
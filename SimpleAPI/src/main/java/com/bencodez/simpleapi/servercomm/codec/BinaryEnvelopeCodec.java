@@ -0,0 +1,438 @@
+package com.bencodez.simpleapi.servercomm.codec;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compact binary alternative to {@link JsonEnvelopeCodec}.
+ *
+ * <pre>
+ * byte   magic (0xB7)
+ * byte   version
+ * byte   flags (bit 0 = deflate, bit 1 = session dictionary)
+ * [varint rawLength]  if compressed, followed by the deflated body
+ * body:  name subChannel, zigzag varint schema, varint fieldCount,
+ *        fieldCount x (name key, value)
+ * name:  varint 0 + varint length + UTF-8 (a literal), or varint id + 1
+ * value: tag byte (0 string, 1 zigzag varlong, 2 empty, 3 true, 4 false)
+ * </pre>
+ *
+ * Numeric and boolean values are only packed when they turn back into the
+ * exact same string, so decoding always yields the original envelope.
+ *
+ * A {@link Session} adds a dictionary: the first time a sub-channel or field
+ * name is sent it goes out as a literal and both sides give it the next id,
+ * after that only the id is sent. Sessions must see messages in order, so they
+ * belong to a single ordered connection and are reset when it reconnects.
+ * A message that fails to decode adds nothing to the dictionary, but the
+ * sender has already learned its names, so the connection should be dropped
+ * and both sides start over.
+ * The stateless {@link #encode(JsonEnvelope)} always sends literals.
+ *
+ * JSON starts with '{' and encrypted payloads are Base64, so receivers can
+ * pick the codec from the first byte ({@link #isBinary(byte[])}).
+ */
+public final class BinaryEnvelopeCodec {
+
+	public static final byte MAGIC = (byte) 0xB7;
+	public static final int VERSION = 1;
+
+	/** Bodies at least this large are deflated (when it helps). */
+	public static final int DEFAULT_COMPRESS_THRESHOLD = 512;
+
+	private static final int FLAG_DEFLATE = 1;
+	private static final int FLAG_SESSION = 2;
+
+	private static final int MAX_DICTIONARY = 4096;
+
+	private static final int TAG_STRING = 0;
+	private static final int TAG_LONG = 1;
+	private static final int TAG_EMPTY = 2;
+	private static final int TAG_TRUE = 3;
+	private static final int TAG_FALSE = 4;
+
+	private BinaryEnvelopeCodec() {
+	}
+
+	public static boolean isBinary(byte[] data) {
+		return data != null && data.length >= 3 && data[0] == MAGIC;
+	}
+
+	/**
+	 * Stateless encode, no dictionary.
+	 */
+	public static byte[] encode(JsonEnvelope env) {
+		return encode(env, null, DEFAULT_COMPRESS_THRESHOLD);
+	}
+
+	/**
+	 * Stateless decode; fails on session-encoded data.
+	 */
+	public static JsonEnvelope decode(byte[] data) throws IOException {
+		return decode(data, null);
+	}
+
+	/**
+	 * Decodes either format: binary if the magic byte is present, JSON
+	 * otherwise.
+	 *
+	 * @param session dictionary for session-encoded data, may be null
+	 */
+	public static JsonEnvelope decodeAny(byte[] data, Session session) throws IOException {
+		if (isBinary(data)) {
+			return decode(data, session);
+		}
+		return JsonEnvelopeCodec.decode(data);
+	}
+
+	/**
+	 * Dictionary state for one ordered stream of messages. Not thread safe; use
+	 * one for encoding and a separate one for decoding.
+	 */
+	public static final class Session {
+		private final Map<String, Integer> ids = new HashMap<>();
+		private final List<String> names = new ArrayList<>();
+		private final int compressThreshold;
+
+		public Session() {
+			this(DEFAULT_COMPRESS_THRESHOLD);
+		}
+
+		/**
+		 * @param compressThreshold body size at which deflate is tried, &lt;= 0 to
+		 *                          never compress
+		 */
+		public Session(int compressThreshold) {
+			this.compressThreshold = compressThreshold;
+		}
+
+		public byte[] encode(JsonEnvelope env) {
+			return BinaryEnvelopeCodec.encode(env, this, compressThreshold);
+		}
+
+		public JsonEnvelope decode(byte[] data) throws IOException {
+			return BinaryEnvelopeCodec.decode(data, this);
+		}
+
+		public int getDictionarySize() {
+			return names.size();
+		}
+
+		/**
+		 * Forget every name, e.g. after a reconnect.
+		 */
+		public void reset() {
+			ids.clear();
+			names.clear();
+		}
+
+		private void writeName(ByteArrayOutputStream out, String name) {
+			Integer id = ids.get(name);
+			if (id != null) {
+				FrameCodec.writeVarInt(out, id + 1);
+				return;
+			}
+			writeLiteral(out, name);
+			learn(name);
+		}
+
+		private String readName(byte[] data, int[] pos) throws IOException {
+			int ref = FrameCodec.readVarInt(data, pos);
+			if (ref == 0) {
+				String name = readString(data, pos);
+				learn(name);
+				return name;
+			}
+			if (ref - 1 >= names.size()) {
+				throw new IOException("Unknown dictionary id " + (ref - 1));
+			}
+			return names.get(ref - 1);
+		}
+
+		// drop names learned after the dictionary had this many entries
+		private void rollback(int size) {
+			while (names.size() > size) {
+				ids.remove(names.remove(names.size() - 1));
+			}
+		}
+
+		private void learn(String name) {
+			// both sides stop learning at the same point, so ids stay in step
+			if (names.size() < MAX_DICTIONARY && !ids.containsKey(name)) {
+				ids.put(name, names.size());
+				names.add(name);
+			}
+		}
+	}
+
+	/* ================= ENCODE ================= */
+
+	private static byte[] encode(JsonEnvelope env, Session session, int compressThreshold) {
+		ByteArrayOutputStream body = new ByteArrayOutputStream(64);
+		writeName(body, env.getSubChannel(), session);
+		FrameCodec.writeVarInt(body, zigzag(env.getSchema()));
+		Map<String, String> fields = env.getFields();
+		// null values are skipped, as in JsonEnvelopeCodec
+		int count = 0;
+		for (String value : fields.values()) {
+			if (value != null) {
+				count++;
+			}
+		}
+		FrameCodec.writeVarInt(body, count);
+		for (Entry<String, String> e : fields.entrySet()) {
+			if (e.getValue() == null) {
+				continue;
+			}
+			writeName(body, e.getKey(), session);
+			writeValue(body, e.getValue());
+		}
+
+		int flags = session != null ? FLAG_SESSION : 0;
+		byte[] raw = body.toByteArray();
+		byte[] compressed = compressThreshold > 0 && raw.length >= compressThreshold ? deflate(raw) : null;
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length + 8);
+		out.write(MAGIC);
+		out.write(VERSION);
+		if (compressed != null && compressed.length < raw.length) {
+			out.write(flags | FLAG_DEFLATE);
+			FrameCodec.writeVarInt(out, raw.length);
+			out.write(compressed, 0, compressed.length);
+		} else {
+			out.write(flags);
+			out.write(raw, 0, raw.length);
+		}
+		return out.toByteArray();
+	}
+
+	private static void writeName(ByteArrayOutputStream out, String name, Session session) {
+		if (session != null) {
+			session.writeName(out, name);
+		} else {
+			writeLiteral(out, name);
+		}
+	}
+
+	private static void writeLiteral(ByteArrayOutputStream out, String s) {
+		FrameCodec.writeVarInt(out, 0);
+		writeString(out, s);
+	}
+
+	private static void writeString(ByteArrayOutputStream out, String s) {
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		FrameCodec.writeVarInt(out, bytes.length);
+		out.write(bytes, 0, bytes.length);
+	}
+
+	private static void writeValue(ByteArrayOutputStream out, String value) {
+		if (value.isEmpty()) {
+			out.write(TAG_EMPTY);
+			return;
+		}
+		if ("true".equals(value)) {
+			out.write(TAG_TRUE);
+			return;
+		}
+		if ("false".equals(value)) {
+			out.write(TAG_FALSE);
+			return;
+		}
+		Long number = canonicalLong(value);
+		if (number != null) {
+			out.write(TAG_LONG);
+			FrameCodec.writeVarLong(out, (number << 1) ^ (number >> 63));
+			return;
+		}
+		out.write(TAG_STRING);
+		writeString(out, value);
+	}
+
+	/**
+	 * @return the value as a long if Long.toString gives back the same text
+	 */
+	private static Long canonicalLong(String value) {
+		int len = value.length();
+		if (len > 20) {
+			return null;
+		}
+		int start = value.charAt(0) == '-' ? 1 : 0;
+		if (start == len || (value.charAt(start) == '0' && len > start + 1)) {
+			return null;
+		}
+		for (int i = start; i < len; i++) {
+			char c = value.charAt(i);
+			if (c < '0' || c > '9') {
+				return null;
+			}
+		}
+		try {
+			long parsed = Long.parseLong(value);
+			if (parsed == 0 && start == 1) {
+				return null; // "-0"
+			}
+			return parsed;
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+	/* ================= DECODE ================= */
+
+	private static JsonEnvelope decode(byte[] data, Session session) throws IOException {
+		if (session == null) {
+			return decodeWith(data, null);
+		}
+		// names only join the dictionary once the whole envelope decoded
+		int size = session.names.size();
+		try {
+			return decodeWith(data, session);
+		} catch (IOException | RuntimeException e) {
+			session.rollback(size);
+			throw e;
+		}
+	}
+
+	private static JsonEnvelope decodeWith(byte[] data, Session session) throws IOException {
+		if (!isBinary(data)) {
+			throw new IOException("Not a binary envelope");
+		}
+		int version = data[1] & 0xFF;
+		if (version > VERSION) {
+			throw new IOException("Unsupported binary envelope version " + version);
+		}
+		int flags = data[2] & 0xFF;
+		if ((flags & FLAG_SESSION) != 0 && session == null) {
+			throw new IOException("Session-encoded envelope without a session");
+		}
+		Session names = (flags & FLAG_SESSION) != 0 ? session : null;
+
+		int[] pos = { 3 };
+		byte[] body = data;
+		if ((flags & FLAG_DEFLATE) != 0) {
+			int rawLength = FrameCodec.readVarInt(data, pos);
+			body = inflate(data, pos[0], rawLength);
+			pos[0] = 0;
+		}
+
+		String subChannel = readName(body, pos, names);
+		int schema = unzigzag(FrameCodec.readVarInt(body, pos));
+		int count = FrameCodec.readVarInt(body, pos);
+		if (count < 0 || count > body.length) {
+			throw new IOException("Invalid field count " + count);
+		}
+		Map<String, String> fields = new LinkedHashMap<>(Math.max(4, count * 2));
+		for (int i = 0; i < count; i++) {
+			String key = readName(body, pos, names);
+			fields.put(key, readValue(body, pos));
+		}
+		return new JsonEnvelope(subChannel, schema, fields);
+	}
+
+	private static String readName(byte[] data, int[] pos, Session session) throws IOException {
+		if (session != null) {
+			return session.readName(data, pos);
+		}
+		if (FrameCodec.readVarInt(data, pos) != 0) {
+			throw new IOException("Dictionary reference without a session");
+		}
+		return readString(data, pos);
+	}
+
+	private static String readString(byte[] data, int[] pos) throws IOException {
+		int len = FrameCodec.readVarInt(data, pos);
+		if (len < 0 || pos[0] + len > data.length) {
+			throw new IOException("Truncated string");
+		}
+		String s = new String(data, pos[0], len, StandardCharsets.UTF_8);
+		pos[0] += len;
+		return s;
+	}
+
+	private static String readValue(byte[] data, int[] pos) throws IOException {
+		if (pos[0] >= data.length) {
+			throw new IOException("Truncated value");
+		}
+		int tag = data[pos[0]++];
+		switch (tag) {
+		case TAG_STRING:
+			return readString(data, pos);
+		case TAG_LONG:
+			long zz = FrameCodec.readVarLong(data, pos);
+			return Long.toString((zz >>> 1) ^ -(zz & 1));
+		case TAG_EMPTY:
+			return "";
+		case TAG_TRUE:
+			return "true";
+		case TAG_FALSE:
+			return "false";
+		default:
+			throw new IOException("Unknown value tag " + tag);
+		}
+	}
+
+	/* ================= HELPERS ================= */
+
+	private static int zigzag(int n) {
+		return (n << 1) ^ (n >> 31);
+	}
+
+	private static int unzigzag(int n) {
+		return (n >>> 1) ^ -(n & 1);
+	}
+
+	private static byte[] deflate(byte[] raw) {
+		Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+		try {
+			deflater.setInput(raw);
+			deflater.finish();
+			byte[] buf = new byte[raw.length];
+			int n = deflater.deflate(buf);
+			if (!deflater.finished()) {
+				return null; // didn't shrink
+			}
+			byte[] out = new byte[n];
+			System.arraycopy(buf, 0, out, 0, n);
+			return out;
+		} finally {
+			deflater.end();
+		}
+	}
+
+	private static byte[] inflate(byte[] data, int offset, int rawLength) throws IOException {
+		if (rawLength < 0 || rawLength > 64 * 1024 * 1024) {
+			throw new IOException("Invalid raw length " + rawLength);
+		}
+		Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(data, offset, data.length - offset);
+			byte[] out = new byte[rawLength];
+			int n = 0;
+			while (n < rawLength && !inflater.finished()) {
+				int r = inflater.inflate(out, n, rawLength - n);
+				if (r == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+					break;
+				}
+				n += r;
+			}
+			if (n != rawLength) {
+				throw new IOException("Inflated " + n + " of " + rawLength + " bytes");
+			}
+			return out;
+		} catch (DataFormatException e) {
+			throw new IOException("Corrupt compressed envelope", e);
+		} finally {
+			inflater.end();
+		}
+	}
+}
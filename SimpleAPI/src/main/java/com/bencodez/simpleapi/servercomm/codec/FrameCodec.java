@@ -0,0 +1,340 @@
+package com.bencodez.simpleapi.servercomm.codec;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Versioned binary frame format shared by the socket, plugin-message and MySQL
+ * transports.
+ *
+ * <pre>
+ * byte   magic (0xFE)
+ * byte   version
+ * byte   flags (bit 0 = chunked)
+ * [varlong messageId, varint chunkIndex, varint chunkCount]  if chunked
+ * varint payloadLength
+ * bytes  payload
+ * </pre>
+ *
+ * Payloads larger than one frame are split into chunks that share a message
+ * id and are put back together by a {@link Reassembler}. 0xFE can't start a
+ * legacy writeUTF message (that would need a 65024+ byte first string), so
+ * receivers can tell the formats apart from the first byte.
+ */
+public final class FrameCodec {
+
+	public static final byte MAGIC = (byte) 0xFE;
+	public static final int VERSION = 1;
+
+	/** Worst-case header size: magic, version, flags, ids and length. */
+	public static final int MAX_HEADER_BYTES = 3 + 10 + 5 + 5 + 5;
+
+	private static final int FLAG_CHUNKED = 1;
+
+	private static final AtomicLong MESSAGE_IDS = new AtomicLong(new SecureRandom().nextLong() & Long.MAX_VALUE);
+
+	private FrameCodec() {
+	}
+
+	/**
+	 * One decoded frame.
+	 */
+	public static final class Frame {
+		private final long messageId;
+		private final int chunkIndex;
+		private final int chunkCount;
+		private final byte[] payload;
+
+		Frame(long messageId, int chunkIndex, int chunkCount, byte[] payload) {
+			this.messageId = messageId;
+			this.chunkIndex = chunkIndex;
+			this.chunkCount = chunkCount;
+			this.payload = payload;
+		}
+
+		public long getMessageId() {
+			return messageId;
+		}
+
+		public int getChunkIndex() {
+			return chunkIndex;
+		}
+
+		public int getChunkCount() {
+			return chunkCount;
+		}
+
+		public boolean isChunked() {
+			return chunkCount > 1;
+		}
+
+		public byte[] getPayload() {
+			return payload;
+		}
+	}
+
+	public static boolean isFrame(byte[] data) {
+		return data != null && data.length >= 3 && data[0] == MAGIC;
+	}
+
+	/**
+	 * Encodes a payload as a single unchunked frame.
+	 */
+	public static byte[] encode(byte[] payload) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(payload.length + 8);
+		out.write(MAGIC);
+		out.write(VERSION);
+		out.write(0);
+		writeVarInt(out, payload.length);
+		out.write(payload, 0, payload.length);
+		return out.toByteArray();
+	}
+
+	/**
+	 * Encodes a payload as one or more frames of at most maxFrameBytes each.
+	 *
+	 * @param payload       the bytes to send
+	 * @param maxFrameBytes upper bound per frame, including the header
+	 * @return frames in send order
+	 */
+	public static List<byte[]> encode(byte[] payload, int maxFrameBytes) {
+		int chunkBytes = maxFrameBytes - MAX_HEADER_BYTES;
+		if (chunkBytes <= 0) {
+			throw new IllegalArgumentException("maxFrameBytes too small: " + maxFrameBytes);
+		}
+		List<byte[]> frames = new ArrayList<>();
+		if (payload.length + 8 <= maxFrameBytes) {
+			frames.add(encode(payload));
+			return frames;
+		}
+
+		long messageId = MESSAGE_IDS.incrementAndGet() & Long.MAX_VALUE;
+		int count = (payload.length + chunkBytes - 1) / chunkBytes;
+		for (int i = 0; i < count; i++) {
+			int from = i * chunkBytes;
+			int len = Math.min(chunkBytes, payload.length - from);
+			ByteArrayOutputStream out = new ByteArrayOutputStream(len + MAX_HEADER_BYTES);
+			out.write(MAGIC);
+			out.write(VERSION);
+			out.write(FLAG_CHUNKED);
+			writeVarLong(out, messageId);
+			writeVarInt(out, i);
+			writeVarInt(out, count);
+			writeVarInt(out, len);
+			out.write(payload, from, len);
+			frames.add(out.toByteArray());
+		}
+		return frames;
+	}
+
+	public static Frame decode(byte[] data) throws IOException {
+		if (!isFrame(data)) {
+			throw new IOException("Not a frame");
+		}
+		int version = data[1] & 0xFF;
+		if (version > VERSION) {
+			throw new IOException("Unsupported frame version " + version);
+		}
+		int flags = data[2] & 0xFF;
+		int[] pos = { 3 };
+		long messageId = 0;
+		int index = 0;
+		int count = 1;
+		if ((flags & FLAG_CHUNKED) != 0) {
+			messageId = readVarLong(data, pos);
+			index = readVarInt(data, pos);
+			count = readVarInt(data, pos);
+			if (count < 1 || index < 0 || index >= count) {
+				throw new IOException("Invalid chunk " + index + "/" + count);
+			}
+		}
+		int length = readVarInt(data, pos);
+		if (length < 0 || pos[0] + length > data.length) {
+			throw new IOException("Truncated frame");
+		}
+		byte[] payload = new byte[length];
+		System.arraycopy(data, pos[0], payload, 0, length);
+		return new Frame(messageId, index, count, payload);
+	}
+
+	/* ================= VARINTS ================= */
+
+	public static void writeVarInt(ByteArrayOutputStream out, int value) {
+		while ((value & ~0x7F) != 0) {
+			out.write((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.write(value);
+	}
+
+	public static void writeVarLong(ByteArrayOutputStream out, long value) {
+		while ((value & ~0x7FL) != 0) {
+			out.write((int) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		out.write((int) value);
+	}
+
+	/**
+	 * @param pos single element array holding the read position, advanced past
+	 *            the varint
+	 */
+	public static int readVarInt(byte[] data, int[] pos) throws IOException {
+		int value = 0;
+		for (int shift = 0; shift < 35; shift += 7) {
+			if (pos[0] >= data.length) {
+				throw new IOException("Truncated varint");
+			}
+			byte b = data[pos[0]++];
+			value |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException("Varint too long");
+	}
+
+	public static long readVarLong(byte[] data, int[] pos) throws IOException {
+		long value = 0;
+		for (int shift = 0; shift < 70; shift += 7) {
+			if (pos[0] >= data.length) {
+				throw new IOException("Truncated varlong");
+			}
+			byte b = data[pos[0]++];
+			value |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException("Varlong too long");
+	}
+
+	/* ================= REASSEMBLY ================= */
+
+	/**
+	 * Collects chunks until a message is complete. Incomplete messages are
+	 * dropped after a timeout so a lost chunk can't leak memory.
+	 *
+	 * Chunk headers come from the peer, so nothing is sized from them up front:
+	 * a chunk count above {@code maxMessageBytes / MIN_CHUNK_BYTES} is rejected,
+	 * chunks are stored as they arrive, and at most {@code maxPartials} messages
+	 * may be incomplete at once.
+	 */
+	public static final class Reassembler {
+
+		/** Smallest chunk payload a sender is expected to use. */
+		public static final int MIN_CHUNK_BYTES = 512;
+
+		private static final class Partial {
+			final int count;
+			final Map<Integer, byte[]> parts = new HashMap<>();
+			final long startedAt = System.currentTimeMillis();
+			long bytes;
+
+			Partial(int count) {
+				this.count = count;
+			}
+		}
+
+		private final Map<Long, Partial> partials = new ConcurrentHashMap<>();
+		private final long timeoutMs;
+		private final long maxMessageBytes;
+		private final int maxChunks;
+		private final int maxPartials;
+
+		public Reassembler() {
+			this(30_000L, 64L * 1024 * 1024);
+		}
+
+		public Reassembler(long timeoutMs, long maxMessageBytes) {
+			this(timeoutMs, maxMessageBytes, 64);
+		}
+
+		/**
+		 * @param maxPartials incomplete messages kept at once; chunks of a new
+		 *                    message are rejected while this many are pending
+		 */
+		public Reassembler(long timeoutMs, long maxMessageBytes, int maxPartials) {
+			this.timeoutMs = timeoutMs;
+			this.maxMessageBytes = maxMessageBytes;
+			this.maxChunks = (int) Math.min(Integer.MAX_VALUE, Math.max(1, maxMessageBytes / MIN_CHUNK_BYTES));
+			this.maxPartials = Math.max(1, maxPartials);
+		}
+
+		/**
+		 * @param data one encoded frame
+		 * @return the full payload once every chunk arrived, otherwise null
+		 */
+		public byte[] accept(byte[] data) throws IOException {
+			Frame frame = decode(data);
+			if (!frame.isChunked()) {
+				return frame.getPayload();
+			}
+			if (frame.getChunkCount() > maxChunks) {
+				throw new IOException("Message " + frame.getMessageId() + " has too many chunks: "
+						+ frame.getChunkCount() + " > " + maxChunks);
+			}
+			expire();
+
+			Partial partial = partials.get(frame.getMessageId());
+			if (partial == null) {
+				if (partials.size() >= maxPartials) {
+					throw new IOException("Too many incomplete messages (" + maxPartials + "), dropping chunk of "
+							+ frame.getMessageId());
+				}
+				partial = partials.computeIfAbsent(frame.getMessageId(), id -> new Partial(frame.getChunkCount()));
+			}
+			synchronized (partial) {
+				if (partial.count != frame.getChunkCount()) {
+					partials.remove(frame.getMessageId());
+					throw new IOException("Chunk count mismatch for message " + frame.getMessageId());
+				}
+				if (!partial.parts.containsKey(frame.getChunkIndex())) {
+					partial.parts.put(frame.getChunkIndex(), frame.getPayload());
+					partial.bytes += frame.getPayload().length;
+				}
+				if (partial.bytes > maxMessageBytes) {
+					partials.remove(frame.getMessageId());
+					throw new IOException("Message " + frame.getMessageId() + " exceeds " + maxMessageBytes + " bytes");
+				}
+				if (partial.parts.size() < partial.count) {
+					return null;
+				}
+				partials.remove(frame.getMessageId());
+				byte[] out = new byte[(int) partial.bytes];
+				int pos = 0;
+				for (int i = 0; i < partial.count; i++) {
+					byte[] part = partial.parts.get(i);
+					System.arraycopy(part, 0, out, pos, part.length);
+					pos += part.length;
+				}
+				return out;
+			}
+		}
+
+		/**
+		 * @return messages still waiting for chunks
+		 */
+		public int getPendingCount() {
+			return partials.size();
+		}
+
+		private void expire() {
+			long cutoff = System.currentTimeMillis() - timeoutMs;
+			Iterator<Partial> it = partials.values().iterator();
+			while (it.hasNext()) {
+				if (it.next().startedAt < cutoff) {
+					it.remove();
+				}
+			}
+		}
+	}
+}
@@ -1,45 +1,265 @@
 package com.bencodez.simpleapi.servercomm.codec;
 
-import com.google.gson.*;
-import java.util.*;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Map.Entry;
 
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * JSON wire format for {@link JsonEnvelope}: {"t": subChannel, "v": schema,
+ * "f": {fields}}.
+ *
+ * Streams with {@link JsonReader}/{@link JsonWriter} rather than building a
+ * JsonObject tree, and encodes into a per-thread buffer that is reused between
+ * calls.
+ */
 public final class JsonEnvelopeCodec {
 
-	private static final Gson GSON = new GsonBuilder().disableHtmlEscaping().create();
+	private static final int MAX_RETAINED_BUFFER = 64 * 1024;
+
+	/**
+	 * Per-thread output buffer: the char builder for String output and the byte
+	 * stream + UTF-8 writer for byte[] output.
+	 */
+	private static final class Buffers {
+		final StringBuilderWriter chars = new StringBuilderWriter();
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(1024);
+		OutputStreamWriter utf8 = new OutputStreamWriter(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static final ThreadLocal<Buffers> BUFFERS = ThreadLocal.withInitial(Buffers::new);
+
+	private JsonEnvelopeCodec() {
+	}
 
 	/* ================= ENCODE ================= */
 
 	public static String encode(JsonEnvelope env) {
-		JsonObject root = new JsonObject();
-		root.addProperty("t", env.getSubChannel());
-		root.addProperty("v", env.getSchema());
+		StringBuilderWriter out = BUFFERS.get().chars;
+		out.reset();
+		try {
+			write(env, out);
+		} catch (IOException e) {
+			throw new IllegalStateException("Failed to encode envelope", e); // can't happen in memory
+		}
+		String json = out.toString();
+		out.trim(MAX_RETAINED_BUFFER);
+		return json;
+	}
 
-		JsonObject fields = new JsonObject();
-		for (Entry<String, String> e : env.getFields().entrySet()) {
-			fields.addProperty(e.getKey(), e.getValue());
+	/**
+	 * Encodes straight to UTF-8 bytes without an intermediate String.
+	 */
+	public static byte[] encodeToBytes(JsonEnvelope env) {
+		Buffers buffers = BUFFERS.get();
+		buffers.bytes.reset();
+		try {
+			write(env, buffers.utf8);
+			buffers.utf8.flush();
+		} catch (IOException e) {
+			throw new IllegalStateException("Failed to encode envelope", e);
 		}
-		root.add("f", fields);
+		byte[] json = buffers.bytes.toByteArray();
+		if (json.length > MAX_RETAINED_BUFFER) {
+			// don't keep one huge message's buffer around forever
+			buffers.bytes = new ByteArrayOutputStream(1024);
+			buffers.utf8 = new OutputStreamWriter(buffers.bytes, StandardCharsets.UTF_8);
+		}
+		return json;
+	}
 
-		return GSON.toJson(root);
+	private static void write(JsonEnvelope env, Writer target) throws IOException {
+		// not closed: that would close the reusable buffer
+		JsonWriter writer = new JsonWriter(target);
+		writer.setHtmlSafe(false);
+		writer.beginObject();
+		writer.name("t").value(env.getSubChannel());
+		writer.name("v").value(env.getSchema());
+		writer.name("f").beginObject();
+		for (Entry<String, String> e : env.getFields().entrySet()) {
+			// a null would be written as JSON null, which decode rejects
+			if (e.getValue() != null) {
+				writer.name(e.getKey()).value(e.getValue());
+			}
+		}
+		writer.endObject();
+		writer.endObject();
+		writer.flush();
 	}
 
 	/* ================= DECODE ================= */
 
 	public static JsonEnvelope decode(String json) {
-		JsonObject root = JsonParser.parseString(json).getAsJsonObject();
+		return decode(new StringReader(json));
+	}
+
+	/**
+	 * Decodes UTF-8 JSON without first turning it into a String.
+	 */
+	public static JsonEnvelope decode(byte[] json) {
+		return decode(json, 0, json.length);
+	}
+
+	public static JsonEnvelope decode(byte[] json, int offset, int length) {
+		return decode(new InputStreamReader(new ByteArrayInputStream(json, offset, length), StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Decodes UTF-8 JSON from the buffer's remaining bytes. The buffer's
+	 * position is advanced to its limit.
+	 */
+	public static JsonEnvelope decode(ByteBuffer json) {
+		if (json.hasArray()) {
+			int offset = json.arrayOffset() + json.position();
+			int length = json.remaining();
+			json.position(json.limit());
+			return decode(json.array(), offset, length);
+		}
+		return decode(new InputStreamReader(new ByteBufferInputStream(json), StandardCharsets.UTF_8));
+	}
+
+	@SuppressWarnings("deprecation")
+	private static JsonEnvelope decode(Reader source) {
+		try (JsonReader reader = new JsonReader(source)) {
+			// JsonParser.parseString, which this replaces, was lenient too
+			reader.setLenient(true);
+
+			String type = null;
+			int schema = 1;
+			Map<String, String> fields = new LinkedHashMap<>();
+
+			reader.beginObject();
+			while (reader.hasNext()) {
+				String name = reader.nextName();
+				switch (name) {
+				case "t":
+					type = readString(reader);
+					break;
+				case "v":
+					schema = reader.nextInt();
+					break;
+				case "f":
+					if (reader.peek() == JsonToken.NULL) {
+						reader.nextNull();
+						break;
+					}
+					reader.beginObject();
+					while (reader.hasNext()) {
+						String key = reader.nextName();
+						fields.put(key, readString(reader));
+					}
+					reader.endObject();
+					break;
+				default:
+					reader.skipValue();
+				}
+			}
+			reader.endObject();
+
+			if (type == null) {
+				throw new JsonParseException("Envelope has no subChannel (\"t\")");
+			}
+			return new JsonEnvelope(type, schema, fields);
+		} catch (IOException | IllegalStateException e) {
+			throw new JsonParseException("Invalid envelope JSON: " + e.getMessage(), e);
+		}
+	}
+
+	private static String readString(JsonReader reader) throws IOException {
+		switch (reader.peek()) {
+		case STRING:
+		case NUMBER:
+			return reader.nextString();
+		case BOOLEAN:
+			return String.valueOf(reader.nextBoolean());
+		default:
+			throw new JsonParseException("Expected a primitive value at " + reader.getPath());
+		}
+	}
+
+	/* ================= BUFFERS ================= */
+
+	/**
+	 * Unsynchronized Writer over a StringBuilder (StringWriter locks on every
+	 * write).
+	 */
+	private static final class StringBuilderWriter extends Writer {
+		private StringBuilder sb = new StringBuilder(256);
 
-		String type = root.getAsJsonPrimitive("t").getAsString();
-		int schema = root.has("v") ? root.getAsJsonPrimitive("v").getAsInt() : 1;
+		void reset() {
+			sb.setLength(0);
+		}
 
-		Map<String, String> fields = new LinkedHashMap<>();
-		JsonObject f = root.getAsJsonObject("f");
-		if (f != null) {
-			for (Entry<String, JsonElement> e : f.entrySet()) {
-				fields.put(e.getKey(), e.getValue().getAsString());
+		void trim(int maxCapacity) {
+			if (sb.capacity() > maxCapacity) {
+				sb = new StringBuilder(256);
 			}
 		}
 
-		return new JsonEnvelope(type, schema, fields);
+		@Override
+		public void write(char[] cbuf, int off, int len) {
+			sb.append(cbuf, off, len);
+		}
+
+		@Override
+		public void write(String str, int off, int len) {
+			sb.append(str, off, off + len);
+		}
+
+		@Override
+		public void write(int c) {
+			sb.append((char) c);
+		}
+
+		@Override
+		public void flush() {
+		}
+
+		@Override
+		public void close() {
+		}
+
+		@Override
+		public String toString() {
+			return sb.toString();
+		}
+	}
+
+	private static final class ByteBufferInputStream extends InputStream {
+		private final ByteBuffer buffer;
+
+		ByteBufferInputStream(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		@Override
+		public int read() {
+			return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) {
+			if (!buffer.hasRemaining()) {
+				return -1;
+			}
+			int n = Math.min(len, buffer.remaining());
+			buffer.get(b, off, n);
+			return n;
+		}
 	}
 }
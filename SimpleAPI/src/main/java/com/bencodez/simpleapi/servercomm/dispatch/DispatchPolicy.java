@@ -0,0 +1,277 @@
+package com.bencodez.simpleapi.servercomm.dispatch;
+
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.bencodez.simpleapi.concurrent.BoundedVirtualExecutor;
+
+/**
+ * Decides which thread runs a received envelope's listener.
+ *
+ * Use one policy per kind of work so slow listeners (reward processing) get
+ * their own threads and cheap ones (status updates) are never queued behind
+ * them:
+ * <ul>
+ * <li>{@link #serial(String)}: one thread, everything in arrival order (the
+ * old behaviour)</li>
+ * <li>{@link #keyedSerial(String, int)}: ordered per sub-channel, different
+ * sub-channels in parallel</li>
+ * <li>{@link #parallel(String, int)} / {@link #virtual(String, int)}: no
+ * ordering, bounded concurrency</li>
+ * <li>{@link #executor(Executor)}: hand off to an existing executor, such as
+ * {@code BukkitScheduler#getMainThreadExecutor} for the main thread</li>
+ * </ul>
+ * Every policy counts queued, running, completed and rejected tasks.
+ */
+public abstract class DispatchPolicy {
+
+	private final AtomicInteger queued = new AtomicInteger();
+	private final AtomicInteger active = new AtomicInteger();
+	private final AtomicLong completed = new AtomicLong();
+	private final AtomicLong rejected = new AtomicLong();
+	private final AtomicInteger maxQueueDepth = new AtomicInteger();
+
+	/**
+	 * Single thread, every envelope in arrival order.
+	 */
+	public static DispatchPolicy serial(String threadName) {
+		return new ExecutorPolicy(Executors.newSingleThreadExecutor(daemon(threadName)), true);
+	}
+
+	/**
+	 * Envelopes of one sub-channel run one at a time in arrival order; different
+	 * sub-channels share {@code threads} threads.
+	 */
+	public static DispatchPolicy keyedSerial(String threadName, int threads) {
+		return new KeyedSerialPolicy(Executors.newFixedThreadPool(Math.max(1, threads), daemon(threadName)), true);
+	}
+
+	/**
+	 * Like {@link #keyedSerial(String, int)} on an executor owned by the caller,
+	 * which is not shut down with this policy.
+	 */
+	public static DispatchPolicy keyedSerial(Executor executor) {
+		return new KeyedSerialPolicy(executor, false);
+	}
+
+	/**
+	 * No ordering, at most {@code threads} listeners at once.
+	 */
+	public static DispatchPolicy parallel(String threadName, int threads) {
+		return new ExecutorPolicy(Executors.newFixedThreadPool(Math.max(1, threads), daemon(threadName)), true);
+	}
+
+	/**
+	 * No ordering, one virtual thread per envelope with at most
+	 * {@code maxConcurrency} running. Suits listeners that block on IO.
+	 */
+	public static DispatchPolicy virtual(String threadName, int maxConcurrency) {
+		return new ExecutorPolicy(new BoundedVirtualExecutor(threadName, maxConcurrency), true);
+	}
+
+	/**
+	 * Runs on an executor owned by the caller, which is not shut down with this
+	 * policy.
+	 */
+	public static DispatchPolicy executor(Executor executor) {
+		return new ExecutorPolicy(executor, false);
+	}
+
+	private static ThreadFactory daemon(String threadName) {
+		AtomicInteger count = new AtomicInteger();
+		return r -> {
+			Thread thread = new Thread(r, threadName + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+	}
+
+	/**
+	 * Queue a listener call for an envelope of the given sub-channel.
+	 */
+	public final void execute(String subChannel, Runnable task) {
+		int depth = queued.incrementAndGet();
+		maxQueueDepth.accumulateAndGet(depth, Math::max);
+		try {
+			submit(subChannel == null ? "" : subChannel.toLowerCase(Locale.ROOT), () -> {
+				queued.decrementAndGet();
+				active.incrementAndGet();
+				try {
+					task.run();
+				} catch (RuntimeException e) {
+					e.printStackTrace();
+				} finally {
+					active.decrementAndGet();
+					completed.incrementAndGet();
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			// shut down
+			queued.decrementAndGet();
+			rejected.incrementAndGet();
+		}
+	}
+
+	protected abstract void submit(String key, Runnable task);
+
+	/**
+	 * Stops owned threads. Executors passed in by the caller are left running.
+	 */
+	public abstract void shutdown();
+
+	/**
+	 * @return tasks waiting to run
+	 */
+	public int getQueueDepth() {
+		return queued.get();
+	}
+
+	/**
+	 * @return tasks of one sub-channel waiting or running; only tracked by keyed
+	 *         policies, others return {@link #getQueueDepth()}
+	 */
+	public int getQueueDepth(String subChannel) {
+		return getQueueDepth();
+	}
+
+	/**
+	 * @return highest queue depth seen
+	 */
+	public int getMaxQueueDepth() {
+		return maxQueueDepth.get();
+	}
+
+	public int getActiveCount() {
+		return active.get();
+	}
+
+	public long getCompletedCount() {
+		return completed.get();
+	}
+
+	/**
+	 * @return tasks dropped because the executor was shut down
+	 */
+	public long getRejectedCount() {
+		return rejected.get();
+	}
+
+	private static final class ExecutorPolicy extends DispatchPolicy {
+		private final Executor executor;
+		private final boolean owned;
+
+		private ExecutorPolicy(Executor executor, boolean owned) {
+			this.executor = executor;
+			this.owned = owned;
+		}
+
+		@Override
+		protected void submit(String key, Runnable task) {
+			executor.execute(task);
+		}
+
+		@Override
+		public void shutdown() {
+			if (owned) {
+				((ExecutorService) executor).shutdownNow();
+			}
+		}
+	}
+
+	private static final class KeyedSerialPolicy extends DispatchPolicy {
+		// run at most this many tasks of one key before yielding the thread
+		private static final int MAX_RUN = 64;
+
+		private final Executor executor;
+		private final boolean owned;
+		private final ConcurrentHashMap<String, SerialQueue> queues = new ConcurrentHashMap<>();
+
+		private KeyedSerialPolicy(Executor executor, boolean owned) {
+			this.executor = executor;
+			this.owned = owned;
+		}
+
+		@Override
+		protected void submit(String key, Runnable task) {
+			// added under the map's lock so a queue being dropped as idle can't
+			// take a task after it's gone
+			boolean[] schedule = new boolean[1];
+			SerialQueue queue = queues.compute(key, (k, q) -> {
+				if (q == null) {
+					q = new SerialQueue(k);
+				}
+				q.tasks.add(task);
+				schedule[0] = q.size.getAndIncrement() == 0;
+				return q;
+			});
+			if (schedule[0]) {
+				try {
+					executor.execute(queue);
+				} catch (RejectedExecutionException e) {
+					queue.tasks.remove(task);
+					if (queue.size.decrementAndGet() == 0) {
+						queue.removeIfIdle();
+					}
+					throw e;
+				}
+			}
+		}
+
+		@Override
+		public int getQueueDepth(String subChannel) {
+			SerialQueue queue = queues.get(subChannel == null ? "" : subChannel.toLowerCase(Locale.ROOT));
+			return queue == null ? 0 : queue.size.get();
+		}
+
+		@Override
+		public void shutdown() {
+			if (owned) {
+				((ExecutorService) executor).shutdownNow();
+			}
+		}
+
+		private final class SerialQueue implements Runnable {
+			private final String key;
+			private final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+			// queued plus running; whoever moves it off zero schedules the drain
+			private final AtomicInteger size = new AtomicInteger();
+
+			private SerialQueue(String key) {
+				this.key = key;
+			}
+
+			/**
+			 * Drops this queue from the map once drained, so one-off sub-channels
+			 * don't leave an entry behind. A task added meanwhile keeps it.
+			 */
+			private void removeIfIdle() {
+				queues.computeIfPresent(key, (k, q) -> q == this && size.get() == 0 ? null : q);
+			}
+
+			@Override
+			public void run() {
+				int ran = 0;
+				while (true) {
+					tasks.poll().run();
+					if (size.decrementAndGet() == 0) {
+						removeIfIdle();
+						return;
+					}
+					if (++ran >= MAX_RUN) {
+						// let other sub-channels have the thread
+						executor.execute(this);
+						return;
+					}
+				}
+			}
+		}
+	}
+}
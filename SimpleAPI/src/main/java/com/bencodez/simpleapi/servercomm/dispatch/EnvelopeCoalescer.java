@@ -0,0 +1,246 @@
+package com.bencodez.simpleapi.servercomm.dispatch;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import com.bencodez.simpleapi.servercomm.codec.JsonEnvelope;
+
+/**
+ * Outbound stage that merges redundant envelopes before they reach a
+ * transport.
+ *
+ * Sub-channels are opted in with {@link #coalesce(String, long, Function)}.
+ * The first envelope for a (destination, sub-channel, key) opens a window;
+ * envelopes with the same key arriving inside it replace the held one, and
+ * only the latest is sent when the window closes. Sub-channels without a rule,
+ * and envelopes whose key is null, pass straight through.
+ *
+ * Typical use is refresh/update messages where only the newest state matters,
+ * for example {@code coalesce("refresh", 100, EnvelopeCoalescer.fields("player"))}.
+ */
+public class EnvelopeCoalescer {
+
+	/**
+	 * The transport's real send; called on the coalescer thread when a window
+	 * closes.
+	 */
+	@FunctionalInterface
+	public interface Sink {
+		void send(String destination, JsonEnvelope envelope) throws Exception;
+	}
+
+	private static final class Rule {
+		private final long windowMs;
+		private final Function<JsonEnvelope, String> key;
+
+		private Rule(long windowMs, Function<JsonEnvelope, String> key) {
+			this.windowMs = windowMs;
+			this.key = key;
+		}
+	}
+
+	private static final class Pending {
+		private final String destination;
+		private JsonEnvelope envelope;
+		private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+		private Pending(String destination, JsonEnvelope envelope) {
+			this.destination = destination;
+			this.envelope = envelope;
+		}
+	}
+
+	private final String threadName;
+	private final Sink sink;
+	private final ConcurrentHashMap<String, Rule> rules = new ConcurrentHashMap<>();
+	// guarded by this
+	private final Map<String, Pending> pending = new LinkedHashMap<>();
+	private ScheduledExecutorService scheduler;
+	private boolean closed;
+
+	private final LongAdder offered = new LongAdder();
+	private final LongAdder coalesced = new LongAdder();
+
+	public EnvelopeCoalescer(String threadName, Sink sink) {
+		this.threadName = threadName;
+		this.sink = Objects.requireNonNull(sink, "sink");
+	}
+
+	/**
+	 * Key on the values of the given fields, so envelopes that differ in any of
+	 * them are kept apart.
+	 */
+	public static Function<JsonEnvelope, String> fields(String... names) {
+		return envelope -> {
+			StringBuilder sb = new StringBuilder();
+			for (String name : names) {
+				String value = envelope.getFields().get(name);
+				sb.append(value == null ? "" : value).append('\u0000');
+			}
+			return sb.toString();
+		};
+	}
+
+	/**
+	 * One key for the whole sub-channel: only the latest envelope per window is
+	 * sent.
+	 */
+	public static Function<JsonEnvelope, String> latestOnly() {
+		return envelope -> "";
+	}
+
+	/**
+	 * @param windowMs how long the first envelope waits for newer ones
+	 * @param key      dedup key within the sub-channel; null opts an envelope out
+	 */
+	public EnvelopeCoalescer coalesce(String subChannel, long windowMs, Function<JsonEnvelope, String> key) {
+		if (windowMs <= 0) {
+			throw new IllegalArgumentException("windowMs must be positive");
+		}
+		rules.put(subChannel.toLowerCase(Locale.ROOT), new Rule(windowMs, Objects.requireNonNull(key, "key")));
+		return this;
+	}
+
+	/**
+	 * Stops coalescing a sub-channel; envelopes already held are still sent.
+	 */
+	public void remove(String subChannel) {
+		rules.remove(subChannel.toLowerCase(Locale.ROOT));
+	}
+
+	public boolean isCoalesced(String subChannel) {
+		return !rules.isEmpty() && rules.containsKey(subChannel.toLowerCase(Locale.ROOT));
+	}
+
+	/**
+	 * @return null if the caller should send the envelope itself, otherwise a
+	 *         future completed once the envelope (or a newer one replacing it)
+	 *         has been handed to the sink
+	 */
+	public CompletableFuture<Void> offer(String destination, JsonEnvelope envelope) {
+		if (rules.isEmpty()) {
+			return null;
+		}
+		Rule rule = rules.get(envelope.getSubChannel().toLowerCase(Locale.ROOT));
+		if (rule == null) {
+			return null;
+		}
+		String key = rule.key.apply(envelope);
+		if (key == null) {
+			return null;
+		}
+		String pendingKey = (destination == null ? "" : destination) + '\u0000'
+				+ envelope.getSubChannel().toLowerCase(Locale.ROOT) + '\u0000' + key;
+
+		synchronized (this) {
+			if (closed) {
+				return null;
+			}
+			offered.increment();
+			Pending held = pending.get(pendingKey);
+			if (held != null) {
+				held.envelope = envelope;
+				coalesced.increment();
+				return held.future;
+			}
+			held = new Pending(destination, envelope);
+			pending.put(pendingKey, held);
+			getScheduler().schedule(() -> flush(pendingKey), rule.windowMs, TimeUnit.MILLISECONDS);
+			return held.future;
+		}
+	}
+
+	private ScheduledExecutorService getScheduler() {
+		if (scheduler == null) {
+			scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+				Thread thread = new Thread(r, threadName);
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+		return scheduler;
+	}
+
+	private void flush(String pendingKey) {
+		Pending held;
+		synchronized (this) {
+			held = pending.remove(pendingKey);
+		}
+		if (held != null) {
+			send(held);
+		}
+	}
+
+	private void send(Pending held) {
+		JsonEnvelope envelope;
+		synchronized (this) {
+			envelope = held.envelope;
+		}
+		try {
+			sink.send(held.destination, envelope);
+			held.future.complete(null);
+		} catch (Exception e) {
+			e.printStackTrace();
+			held.future.completeExceptionally(e);
+		}
+	}
+
+	/**
+	 * Sends everything held right away, on the calling thread.
+	 */
+	public void flush() {
+		List<Pending> all;
+		synchronized (this) {
+			all = new ArrayList<>(pending.values());
+			pending.clear();
+		}
+		for (Pending held : all) {
+			send(held);
+		}
+	}
+
+	/**
+	 * Flushes and stops the coalescer thread. Later offers pass through.
+	 */
+	public void close() {
+		ScheduledExecutorService toStop;
+		synchronized (this) {
+			closed = true;
+			toStop = scheduler;
+			scheduler = null;
+		}
+		flush();
+		if (toStop != null) {
+			toStop.shutdownNow();
+		}
+	}
+
+	public synchronized int getPendingCount() {
+		return pending.size();
+	}
+
+	/**
+	 * @return envelopes that went through a coalesced sub-channel
+	 */
+	public long getOfferedCount() {
+		return offered.sum();
+	}
+
+	/**
+	 * @return envelopes replaced by a newer one and never sent
+	 */
+	public long getCoalescedCount() {
+		return coalesced.sum();
+	}
+}
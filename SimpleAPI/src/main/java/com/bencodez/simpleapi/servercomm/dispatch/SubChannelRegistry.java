@@ -0,0 +1,239 @@
+package com.bencodez.simpleapi.servercomm.dispatch;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.bencodez.simpleapi.servercomm.codec.JsonEnvelope;
+
+/**
+ * Listener registry indexed by sub-channel, shared by the global, plugin
+ * message and socket dispatchers.
+ *
+ * Sub-channels are matched case-insensitively through a lower-cased key, so a
+ * message costs one map lookup instead of an equalsIgnoreCase per listener.
+ * Each key holds a copy-on-write array: registering is slow and rare,
+ * dispatching never locks and is safe while listeners are added or removed.
+ * Which sub-channels register a listener for every message is up to the
+ * owner, see {@link #SubChannelRegistry(Predicate)}; by default null, empty
+ * and "*" do. Each listener may name an {@link Executor}; without one it runs
+ * on the dispatching thread.
+ *
+ * @param <L> listener type
+ */
+public class SubChannelRegistry<L> {
+
+	public static final String WILDCARD = "*";
+
+	/**
+	 * Delivers one envelope to one listener.
+	 */
+	@FunctionalInterface
+	public interface Invoker<L> {
+		void invoke(L listener, JsonEnvelope envelope);
+	}
+
+	private static final class Registration<L> {
+		private final L listener;
+		private final Executor executor;
+
+		private Registration(L listener, Executor executor) {
+			this.listener = listener;
+			this.executor = executor;
+		}
+	}
+
+	private static final Registration<?>[] EMPTY = new Registration<?>[0];
+
+	private final ConcurrentHashMap<String, Registration<L>[]> bySubChannel = new ConcurrentHashMap<>();
+	@SuppressWarnings("unchecked")
+	private volatile Registration<L>[] wildcards = (Registration<L>[]) EMPTY;
+	private final Predicate<String> wildcard;
+	private volatile BiConsumer<JsonEnvelope, RuntimeException> errorHandler;
+
+	public SubChannelRegistry() {
+		this(SubChannelRegistry::isWildcard);
+	}
+
+	/**
+	 * @param wildcard sub-channels that register a listener for every message;
+	 *                 {@code s -> false} matches every sub-channel exactly
+	 */
+	public SubChannelRegistry(Predicate<String> wildcard) {
+		this.wildcard = wildcard;
+	}
+
+	public static boolean isWildcard(String subChannel) {
+		return subChannel == null || subChannel.isEmpty() || WILDCARD.equals(subChannel);
+	}
+
+	private static String key(String subChannel) {
+		return subChannel == null ? "" : subChannel.toLowerCase(Locale.ROOT);
+	}
+
+	/**
+	 * Receives exceptions thrown by listeners, on the thread that ran the
+	 * listener. Without one they are logged through java.util.logging.
+	 */
+	public void setErrorHandler(BiConsumer<JsonEnvelope, RuntimeException> errorHandler) {
+		this.errorHandler = errorHandler;
+	}
+
+	public void register(String subChannel, L listener) {
+		register(subChannel, listener, null);
+	}
+
+	/**
+	 * @param executor where the listener runs, or null for the dispatching
+	 *                 thread
+	 */
+	public void register(String subChannel, L listener, Executor executor) {
+		Registration<L> registration = new Registration<>(listener, executor);
+		if (wildcard.test(subChannel)) {
+			synchronized (this) {
+				wildcards = append(wildcards, registration);
+			}
+			return;
+		}
+		bySubChannel.compute(key(subChannel), (k, current) -> current == null ? single(registration)
+				: append(current, registration));
+	}
+
+	/**
+	 * Removes every registration of the listener.
+	 *
+	 * @return true if it was registered
+	 */
+	public boolean unregister(L listener) {
+		boolean[] removed = { false };
+		synchronized (this) {
+			Registration<L>[] kept = without(wildcards, listener);
+			if (kept != wildcards) {
+				wildcards = kept;
+				removed[0] = true;
+			}
+		}
+		for (String subChannel : bySubChannel.keySet()) {
+			bySubChannel.computeIfPresent(subChannel, (k, current) -> {
+				Registration<L>[] kept = without(current, listener);
+				if (kept != current) {
+					removed[0] = true;
+				}
+				return kept.length == 0 ? null : kept;
+			});
+		}
+		return removed[0];
+	}
+
+	/**
+	 * Delivers the envelope to the listeners of its sub-channel, then to the
+	 * wildcard listeners. A listener that throws does not stop the others.
+	 *
+	 * @return number of listeners the envelope was handed to
+	 */
+	public int dispatch(JsonEnvelope envelope, Invoker<L> invoker) {
+		Registration<L>[] exact = bySubChannel.get(key(envelope.getSubChannel()));
+		Registration<L>[] any = wildcards;
+		int count = 0;
+		if (exact != null) {
+			for (Registration<L> registration : exact) {
+				deliver(registration, envelope, invoker);
+			}
+			count += exact.length;
+		}
+		for (Registration<L> registration : any) {
+			deliver(registration, envelope, invoker);
+		}
+		return count + any.length;
+	}
+
+	/**
+	 * @return true if a message on this sub-channel would reach any listener
+	 */
+	public boolean hasListeners(String subChannel) {
+		return wildcards.length > 0 || (!wildcard.test(subChannel) && bySubChannel.containsKey(key(subChannel)));
+	}
+
+	/**
+	 * Unmodifiable snapshot of all listeners, exact sub-channels first.
+	 */
+	public List<L> getListeners() {
+		List<L> listeners = new ArrayList<>();
+		for (Registration<L>[] registrations : bySubChannel.values()) {
+			for (Registration<L> registration : registrations) {
+				listeners.add(registration.listener);
+			}
+		}
+		for (Registration<L> registration : wildcards) {
+			listeners.add(registration.listener);
+		}
+		return Collections.unmodifiableList(listeners);
+	}
+
+	public int size() {
+		int size = wildcards.length;
+		for (Registration<L>[] registrations : bySubChannel.values()) {
+			size += registrations.length;
+		}
+		return size;
+	}
+
+	@SuppressWarnings("unchecked")
+	public void clear() {
+		bySubChannel.clear();
+		synchronized (this) {
+			wildcards = (Registration<L>[]) EMPTY;
+		}
+	}
+
+	private void deliver(Registration<L> registration, JsonEnvelope envelope, Invoker<L> invoker) {
+		Runnable task = () -> {
+			try {
+				invoker.invoke(registration.listener, envelope);
+			} catch (RuntimeException e) {
+				BiConsumer<JsonEnvelope, RuntimeException> handler = errorHandler;
+				if (handler != null) {
+					handler.accept(envelope, e);
+				} else {
+					Logger.getLogger(SubChannelRegistry.class.getName()).log(Level.WARNING,
+							"Listener failed on sub-channel " + envelope.getSubChannel(), e);
+				}
+			}
+		};
+		if (registration.executor == null) {
+			task.run();
+		} else {
+			registration.executor.execute(task);
+		}
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static <L> Registration<L>[] single(Registration<L> registration) {
+		return new Registration[] { registration };
+	}
+
+	private static <L> Registration<L>[] append(Registration<L>[] current, Registration<L> registration) {
+		Registration<L>[] next = Arrays.copyOf(current, current.length + 1);
+		next[current.length] = registration;
+		return next;
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static <L> Registration<L>[] without(Registration<L>[] current, L listener) {
+		List<Registration<L>> kept = new ArrayList<>(current.length);
+		for (Registration<L> registration : current) {
+			if (registration.listener != listener) {
+				kept.add(registration);
+			}
+		}
+		return kept.size() == current.length ? current : kept.toArray(new Registration[0]);
+	}
+}
@@ -1,26 +1,77 @@
 package com.bencodez.simpleapi.servercomm.global;
 
-import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 import com.bencodez.simpleapi.servercomm.codec.JsonEnvelope;
+import com.bencodez.simpleapi.servercomm.dispatch.SubChannelRegistry;
+import com.bencodez.simpleapi.servercomm.rpc.EnvelopeRpc;
 
 public abstract class GlobalMessageHandler {
 
-	private ArrayList<GlobalMessageListener> globalMessageListeners = new ArrayList<>();
+	// listeners only ever match their own sub-channel, "" and "*" included
+	private final SubChannelRegistry<GlobalMessageListener> listeners = new SubChannelRegistry<>(
+			subChannel -> false);
+
+	private final EnvelopeRpc rpc = new EnvelopeRpc();
 
 	public GlobalMessageHandler() {
 	}
 
 	public void addListener(GlobalMessageListener globalMessageListener) {
-		globalMessageListeners.add(globalMessageListener);
+		listeners.register(globalMessageListener.getSubChannel(), globalMessageListener);
+	}
+
+	/**
+	 * @param executor where the listener runs; null for the receiving thread
+	 */
+	public void addListener(GlobalMessageListener globalMessageListener, Executor executor) {
+		listeners.register(globalMessageListener.getSubChannel(), globalMessageListener, executor);
+	}
+
+	public boolean removeListener(GlobalMessageListener globalMessageListener) {
+		return listeners.unregister(globalMessageListener);
+	}
+
+	public List<GlobalMessageListener> getListeners() {
+		return listeners.getListeners();
 	}
 
 	public void onMessage(JsonEnvelope message) {
-		for (GlobalMessageListener listener : globalMessageListeners) {
-			if (listener.getSubChannel().equalsIgnoreCase(message.getSubChannel())) {
-				listener.onReceive(message);
-			}
+		if (rpc.handle(message, this::sendMessage)) {
+			return;
 		}
+		listeners.dispatch(message, GlobalMessageListener::onReceive);
+	}
+
+	/**
+	 * Sends a request with {@link #sendMessage(JsonEnvelope)} and completes with
+	 * the proxy's response, or fails with a TimeoutException.
+	 */
+	public CompletableFuture<JsonEnvelope> request(JsonEnvelope envelope, long timeoutMs) {
+		return rpc.request(envelope, timeoutMs, this::sendMessage);
+	}
+
+	/**
+	 * Answers {@link GlobalMessageProxyHandler#request(String, JsonEnvelope, long)}
+	 * calls on this sub-channel. Requests with a responder are not passed to
+	 * listeners.
+	 */
+	public void addResponder(String subChannel, EnvelopeRpc.Responder responder) {
+		rpc.addResponder(subChannel, responder);
+	}
+
+	/**
+	 * This server's name as the proxy knows it; sent with requests so the proxy
+	 * can route the response back.
+	 */
+	public void setServerName(String serverName) {
+		rpc.setLocalName(serverName);
+	}
+
+	public EnvelopeRpc getRpc() {
+		return rpc;
 	}
 
 	public abstract void sendMessage(JsonEnvelope envelope);
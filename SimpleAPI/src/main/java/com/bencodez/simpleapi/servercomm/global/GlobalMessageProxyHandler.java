@@ -1,26 +1,110 @@
 package com.bencodez.simpleapi.servercomm.global;
 
-import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 import com.bencodez.simpleapi.servercomm.codec.JsonEnvelope;
+import com.bencodez.simpleapi.servercomm.dispatch.SubChannelRegistry;
+import com.bencodez.simpleapi.servercomm.rpc.EnvelopeRpc;
 
 public abstract class GlobalMessageProxyHandler {
 
-	private ArrayList<GlobalMessageListener> globalMessageListeners = new ArrayList<>();
+	// listeners only ever match their own sub-channel, "" and "*" included
+	private final SubChannelRegistry<GlobalMessageListener> listeners = new SubChannelRegistry<>(
+			subChannel -> false);
+
+	private final EnvelopeRpc rpc = new EnvelopeRpc();
 
 	public GlobalMessageProxyHandler() {
 	}
 
 	public void addListener(GlobalMessageListener globalMessageListener) {
-		globalMessageListeners.add(globalMessageListener);
+		listeners.register(globalMessageListener.getSubChannel(), globalMessageListener);
+	}
+
+	/**
+	 * @param executor where the listener runs; null for the receiving thread
+	 */
+	public void addListener(GlobalMessageListener globalMessageListener, Executor executor) {
+		listeners.register(globalMessageListener.getSubChannel(), globalMessageListener, executor);
+	}
+
+	public boolean removeListener(GlobalMessageListener globalMessageListener) {
+		return listeners.unregister(globalMessageListener);
 	}
 
+	public List<GlobalMessageListener> getListeners() {
+		return listeners.getListeners();
+	}
+
+	/**
+	 * Responses to backend requests go to the server named in the request
+	 * ({@link GlobalMessageHandler#setServerName(String)}); use
+	 * {@link #onMessage(String, JsonEnvelope)} if the transport knows the
+	 * sender.
+	 */
 	public void onMessage(JsonEnvelope message) {
-		for (GlobalMessageListener listener : globalMessageListeners) {
-			if (listener.getSubChannel().equalsIgnoreCase(message.getSubChannel())) {
-				listener.onReceive(message);
+		onMessage(message.getFields().get(EnvelopeRpc.FIELD_FROM), message);
+	}
+
+	/**
+	 * @param fromServer server the message came from, may be null
+	 */
+	public void onMessage(String fromServer, JsonEnvelope message) {
+		if (rpc.handle(message, reply -> {
+			if (fromServer != null) {
+				sendMessage(fromServer, 0, reply);
 			}
+		})) {
+			return;
 		}
+		listeners.dispatch(message, GlobalMessageListener::onReceive);
+	}
+
+	/**
+	 * Sends a request to one backend and completes with its response, or fails
+	 * with a TimeoutException.
+	 */
+	public CompletableFuture<JsonEnvelope> request(String server, JsonEnvelope envelope, long timeoutMs) {
+		return rpc.request(envelope, timeoutMs, env -> sendMessage(server, 0, env));
+	}
+
+	/**
+	 * Sends the same request to every server and completes once all have
+	 * answered or timed out, with the responses that arrived, by server.
+	 */
+	public CompletableFuture<Map<String, JsonEnvelope>> requestAll(Collection<String> servers, JsonEnvelope envelope,
+			long timeoutMs) {
+		Map<String, CompletableFuture<JsonEnvelope>> futures = new LinkedHashMap<>();
+		for (String server : servers) {
+			futures.put(server, request(server, envelope, timeoutMs));
+		}
+		return CompletableFuture.allOf(futures.values().stream().map(f -> f.handle((r, e) -> r))
+				.toArray(CompletableFuture[]::new)).thenApply(done -> {
+					Map<String, JsonEnvelope> responses = new LinkedHashMap<>();
+					for (Map.Entry<String, CompletableFuture<JsonEnvelope>> entry : futures.entrySet()) {
+						if (!entry.getValue().isCompletedExceptionally()) {
+							responses.put(entry.getKey(), entry.getValue().join());
+						}
+					}
+					return responses;
+				});
+	}
+
+	/**
+	 * Answers {@link GlobalMessageHandler#request(JsonEnvelope, long)} calls on
+	 * this sub-channel. Requests with a responder are not passed to listeners.
+	 */
+	public void addResponder(String subChannel, EnvelopeRpc.Responder responder) {
+		rpc.addResponder(subChannel, responder);
+	}
+
+	public EnvelopeRpc getRpc() {
+		return rpc;
 	}
 
 	public abstract void sendMessage(String server, int delay, JsonEnvelope envelope);
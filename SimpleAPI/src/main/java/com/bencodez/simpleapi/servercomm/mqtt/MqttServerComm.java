@@ -76,7 +76,10 @@ public class MqttServerComm {
 	}
 
 	public void publishEnvelope(String topic, JsonEnvelope envelope, int qos, boolean retained) throws MqttException {
-		publish(topic, JsonEnvelopeCodec.encode(envelope), qos, retained);
+		MqttMessage msg = new MqttMessage(JsonEnvelopeCodec.encodeToBytes(envelope));
+		msg.setQos(qos);
+		msg.setRetained(retained);
+		client.publish(topic, msg);
 	}
 
 	public void subscribe(String topicFilter, int qos, MessageListener listener) throws MqttException {
@@ -94,8 +97,7 @@ public class MqttServerComm {
 
 	public void subscribeEnvelopes(String topicFilter, int qos, EnvelopeListener listener) throws MqttException {
 		subscribe(topicFilter, qos, (topic, msg) -> {
-			String payload = new String(msg.getPayload(), StandardCharsets.UTF_8);
-			JsonEnvelope env = JsonEnvelopeCodec.decode(payload);
+			JsonEnvelope env = JsonEnvelopeCodec.decode(msg.getPayload());
 			listener.envelopeArrived(topic, env);
 		});
 	}
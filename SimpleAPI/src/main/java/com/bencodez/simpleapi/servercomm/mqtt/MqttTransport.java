@@ -0,0 +1,50 @@
+package com.bencodez.simpleapi.servercomm.mqtt;
+
+import java.util.function.Function;
+
+import org.eclipse.paho.client.mqttv3.MqttException;
+
+import com.bencodez.simpleapi.servercomm.codec.JsonEnvelope;
+import com.bencodez.simpleapi.servercomm.transport.Transport;
+
+/**
+ * {@link Transport} over {@link MqttServerComm#publishEnvelope}. Healthy while
+ * the client is connected.
+ */
+public class MqttTransport implements Transport {
+
+	private final String name;
+	private final MqttServerComm comm;
+	private final Function<String, String> topicForTarget;
+	private final int qos;
+
+	/**
+	 * @param topicForTarget maps the target server (null for the proxy) to a
+	 *                       topic
+	 */
+	public MqttTransport(MqttServerComm comm, Function<String, String> topicForTarget, int qos) {
+		this("mqtt", comm, topicForTarget, qos);
+	}
+
+	public MqttTransport(String name, MqttServerComm comm, Function<String, String> topicForTarget, int qos) {
+		this.name = name;
+		this.comm = comm;
+		this.topicForTarget = topicForTarget;
+		this.qos = qos;
+	}
+
+	@Override
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public void send(String target, JsonEnvelope envelope) throws MqttException {
+		comm.publishEnvelope(topicForTarget.apply(target), envelope, qos, false);
+	}
+
+	@Override
+	public boolean isHealthy() {
+		return comm.isConnected();
+	}
+}
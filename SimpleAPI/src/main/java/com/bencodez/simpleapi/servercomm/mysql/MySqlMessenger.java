@@ -1,26 +1,55 @@
 package com.bencodez.simpleapi.servercomm.mysql;
 
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 import java.util.function.Consumer;
 
 import javax.sql.DataSource;
 
+import com.bencodez.simpleapi.servercomm.codec.FrameCodec;
 import com.bencodez.simpleapi.servercomm.codec.JsonEnvelope;
 import com.bencodez.simpleapi.servercomm.codec.JsonEnvelopeCodec;
+import com.bencodez.simpleapi.servercomm.dispatch.EnvelopeCoalescer;
+import com.bencodez.simpleapi.sql.mysql.DbType;
 
 /**
  * Single MySQL-backed message queue messenger.
  *
- * Option A implementation:
+ * MySQL / MariaDB:
  * - NO long-lived pooled Connections.
  * - Each loop borrows a Connection, tries GET_LOCK with a small timeout,
- *   processes a batch, RELEASE_LOCK, then closes Connection.
+ *   reads the oldest {@link #setBatchSize(int)} rows, removes exactly those ids
+ *   with one DELETE, RELEASE_LOCK, then closes the Connection before
+ *   dispatching. Concurrent senders may commit ids out of order, so every
+ *   fetch reads from the head of the queue instead of after the last id seen.
+ * - Empty polls back off from {@link #setIdleBackoff(long, long) minIdleMs} up
+ *   to maxIdleMs, and reset as soon as a message arrives.
+ *
+ * PostgreSQL:
+ * - One listener Connection runs LISTEN on the channel and waits for NOTIFY
+ *   from senders, with the same backoff as a fallback poll. It is recycled
+ *   every {@value #LISTEN_RECYCLE_MS}ms to stay under the pool's leak
+ *   detection.
+ * - Rows are claimed with DELETE ... RETURNING (FOR UPDATE SKIP LOCKED), so
+ *   no lock is needed.
  *
  * Table schema: {tableName}_message_queue
  */
@@ -32,6 +61,14 @@ public class MySqlMessenger {
 
 	private static final String PROXY_DESTINATION = "proxy";
 	private static final String PROXY_CHANNEL = "proxy-channel";
+	// JSON payloads start with '{', chunked rows with this
+	private static final String FRAME_PREFIX = "~F:";
+	private static final long LISTEN_RECYCLE_MS = 15_000L;
+	private static final int MAX_ROWS_PER_FLUSH = 1000;
+	private static final int MAX_ROWS_PER_STATEMENT = 200;
+
+	private static volatile Method pgGetNotifications;
+	private static volatile boolean pgLookupDone = false;
 
 	private final Mode mode;
 	private final String myServerId; // required for BACKEND, null for PROXY
@@ -40,12 +77,34 @@ public class MySqlMessenger {
 	private final DataSource ds;
 	private final Consumer<QueueMessage> onMessage;
 	private final String tableName;
+	private final DbType dbType;
 
 	private volatile boolean running = true;
 	private volatile Thread listenerThread;
 
-	// Tracks the last processed ID per messenger instance
-	private long lastSeenId = 0;
+	private volatile int maxPayloadChars = 1024 * 1024;
+	private final FrameCodec.Reassembler reassembler = new FrameCodec.Reassembler();
+
+	private volatile int batchSize = 500;
+	private volatile long minIdleMs = 10;
+	private volatile long maxIdleMs = 1000;
+
+	private final LinkedBlockingQueue<PendingSend> sendQueue = new LinkedBlockingQueue<>();
+	private Thread senderThread;
+	private volatile long flushIntervalMs = 2;
+
+	// coalescer destinations are "source\ndestination"
+	private final EnvelopeCoalescer coalescer = new EnvelopeCoalescer("MySqlMessengerCoalesceThread",
+			(route, envelope) -> {
+				int split = route.indexOf('\n');
+				String source = route.substring(0, split);
+				String destination = route.substring(split + 1);
+				if (destination.equals(PROXY_DESTINATION)) {
+					sendToProxy(source, envelope);
+				} else {
+					sendToBackend(destination, envelope);
+				}
+			});
 
 	/**
 	 * @param tableName  base name, table will be {tableName}_message_queue
@@ -56,7 +115,17 @@ public class MySqlMessenger {
 	 */
 	public MySqlMessenger(String tableName, DataSource dataSource, Mode mode, String serverId,
 			Consumer<QueueMessage> onMessage) throws SQLException {
+		this(tableName, dataSource, DbType.MYSQL, mode, serverId, onMessage);
+	}
+
+	/**
+	 * @param dbType MYSQL/MARIADB poll with GET_LOCK, POSTGRESQL uses
+	 *               LISTEN/NOTIFY
+	 */
+	public MySqlMessenger(String tableName, DataSource dataSource, DbType dbType, Mode mode, String serverId,
+			Consumer<QueueMessage> onMessage) throws SQLException {
 		this.ds = dataSource;
+		this.dbType = dbType == null ? DbType.MYSQL : dbType;
 		this.mode = mode;
 		this.tableName = tableName;
 		this.onMessage = onMessage;
@@ -88,7 +157,72 @@ public class MySqlMessenger {
 		return channelName;
 	}
 
+	public DbType getDbType() {
+		return dbType;
+	}
+
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	/**
+	 * Maximum rows read per fetch; a full batch is followed by another fetch
+	 * straight away.
+	 */
+	public void setBatchSize(int batchSize) {
+		this.batchSize = Math.max(1, batchSize);
+	}
+
+	public long getMinIdleMs() {
+		return minIdleMs;
+	}
+
+	public long getMaxIdleMs() {
+		return maxIdleMs;
+	}
+
+	/**
+	 * Delay after an empty fetch starts at minIdleMs and doubles up to
+	 * maxIdleMs while the queue stays empty.
+	 */
+	public void setIdleBackoff(long minIdleMs, long maxIdleMs) {
+		this.minIdleMs = Math.max(1, minIdleMs);
+		this.maxIdleMs = Math.max(this.minIdleMs, maxIdleMs);
+	}
+
+	/**
+	 * Ends the current idle wait early, e.g. when another transport signals
+	 * that a message was queued.
+	 */
+	public void wake() {
+		Thread t = listenerThread;
+		if (t != null) {
+			LockSupport.unpark(t);
+		}
+	}
+
+	private String destination() {
+		return mode == Mode.BACKEND ? myServerId : PROXY_DESTINATION;
+	}
+
+	private String queueTable() {
+		return tableName + "_message_queue";
+	}
+
 	private void ensureSchema(String tableName) throws SQLException {
+		if (dbType == DbType.POSTGRESQL) {
+			try (Connection conn = ds.getConnection(); Statement stmt = conn.createStatement()) {
+				stmt.execute("CREATE TABLE IF NOT EXISTS " + tableName + "_message_queue ("
+						+ "id BIGSERIAL PRIMARY KEY, "
+						+ "source VARCHAR(36) NOT NULL, "
+						+ "destination VARCHAR(36) NOT NULL, "
+						+ "created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP, "
+						+ "payload TEXT NOT NULL)");
+				stmt.execute("CREATE INDEX IF NOT EXISTS " + tableName + "_mq_dest_id ON " + tableName
+						+ "_message_queue (destination, id)");
+			}
+			return;
+		}
 		String ddl = "CREATE TABLE IF NOT EXISTS " + tableName + "_message_queue ("
 				+ "id BIGINT UNSIGNED NOT NULL AUTO_INCREMENT, "
 				+ "source VARCHAR(36) NOT NULL, "
@@ -104,28 +238,27 @@ public class MySqlMessenger {
 	}
 
 	private void startListener() {
-		listenerThread = new Thread(() -> {
-			// Tuning knobs:
-			final int lockTimeoutSeconds = 1; // keep <= leak detection threshold (and prevents long checkouts)
-			final long idleSleepMs = 25;      // small delay when no lock obtained
-			final long errorBackoffMs = 250;  // avoid tight loop on errors
+		listenerThread = new Thread(dbType == DbType.POSTGRESQL ? this::runPostgresListener : this::runLockListener,
+				mode == Mode.BACKEND ? "MySqlMessenger-Backend-" + myServerId : "MySqlMessenger-Proxy");
 
-			while (running) {
-				boolean gotLock = false;
-
-				try (Connection conn = ds.getConnection()) {
-					// Important: lock lifetime is tied to THIS connection
-					gotLock = acquireLock(conn, channelName, lockTimeoutSeconds);
-					if (!gotLock) {
-						sleepQuiet(idleSleepMs);
-						continue;
-					}
+		listenerThread.setDaemon(true);
+		listenerThread.start();
+	}
+
+	private void runLockListener() {
+		// Tuning knobs:
+		final int lockTimeoutSeconds = 1; // keep <= leak detection threshold (and prevents long checkouts)
+		final long errorBackoffMs = 250;  // avoid tight loop on errors
 
+		long idleMs = minIdleMs;
+		while (running) {
+			List<QueueMessage> batch = new ArrayList<>();
+
+			try (Connection conn = ds.getConnection()) {
+				// Important: lock lifetime is tied to THIS connection
+				if (acquireLock(conn, channelName, lockTimeoutSeconds)) {
 					try {
-						List<QueueMessage> batch = fetchBatchAndDelete(conn);
-						for (QueueMessage msg : batch) {
-							onMessage.accept(msg);
-						}
+						batch = fetchBatchAndDelete(conn);
 					} finally {
 						// Always release lock before returning the connection to the pool
 						try {
@@ -134,80 +267,264 @@ public class MySqlMessenger {
 							// If release fails, connection close will drop it anyway
 						}
 					}
+				}
+			} catch (SQLException e) {
+				e.printStackTrace();
+				sleepQuiet(errorBackoffMs);
+				continue;
+			}
+
+			// dispatch after the connection is back in the pool
+			dispatch(batch);
+			idleMs = nextIdle(batch.size(), idleMs);
+		}
+	}
+
+	private void runPostgresListener() {
+		final long errorBackoffMs = 250;
+
+		Connection conn = null;
+		long listeningSince = 0;
+		long idleMs = minIdleMs;
+		try {
+			while (running) {
+				try {
+					if (conn != null && System.currentTimeMillis() - listeningSince > LISTEN_RECYCLE_MS) {
+						closeQuiet(conn);
+						conn = null;
+					}
+					if (conn == null) {
+						conn = ds.getConnection();
+						conn.setAutoCommit(true);
+						try (Statement stmt = conn.createStatement()) {
+							stmt.execute("LISTEN " + quoteIdentifier(channelName));
+						}
+						listeningSince = System.currentTimeMillis();
+					}
 
+					List<QueueMessage> batch = claimBatchPostgres(conn);
+					dispatch(batch);
+					if (batch.isEmpty()) {
+						// a NOTIFY ends the wait early and resets the backoff
+						idleMs = waitForNotify(conn, idleMs) ? minIdleMs : Math.min(idleMs * 2, maxIdleMs);
+					} else {
+						idleMs = minIdleMs;
+					}
 				} catch (SQLException e) {
 					e.printStackTrace();
+					closeQuiet(conn);
+					conn = null;
 					sleepQuiet(errorBackoffMs);
 				}
 			}
-		}, mode == Mode.BACKEND ? "MySqlMessenger-Backend-" + myServerId : "MySqlMessenger-Proxy");
+		} finally {
+			closeQuiet(conn);
+		}
+	}
 
-		listenerThread.setDaemon(true);
-		listenerThread.start();
+	private void dispatch(List<QueueMessage> batch) {
+		for (QueueMessage msg : batch) {
+			try {
+				onMessage.accept(msg);
+			} catch (RuntimeException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Sleeps after an empty or partial fetch and returns the next idle delay. A
+	 * full batch means more rows are likely waiting, so it fetches again at
+	 * once.
+	 */
+	private long nextIdle(int received, long idleMs) {
+		if (received >= batchSize) {
+			return minIdleMs;
+		}
+		if (received > 0) {
+			sleepQuiet(minIdleMs);
+			return minIdleMs;
+		}
+		sleepQuiet(idleMs);
+		return Math.min(idleMs * 2, maxIdleMs);
 	}
 
 	private List<QueueMessage> fetchBatchAndDelete(Connection conn) throws SQLException {
 		List<QueueMessage> results = new ArrayList<>();
+		List<Long> ids = new ArrayList<>();
 
-		if (mode == Mode.BACKEND) {
-			String sql = "SELECT id, source, destination, payload FROM " + tableName
-					+ "_message_queue WHERE destination = ? AND id > ? ORDER BY id";
-			try (PreparedStatement ps = conn.prepareStatement(sql)) {
-				ps.setString(1, myServerId);
-				ps.setLong(2, lastSeenId);
-				try (ResultSet rs = ps.executeQuery()) {
-					while (rs.next()) {
-						long id = rs.getLong("id");
-						String source = rs.getString("source");
-						String destination = rs.getString("destination");
-						String payload = rs.getString("payload");
-
-						JsonEnvelope env = JsonEnvelopeCodec.decode(payload);
-						results.add(new QueueMessage(id, source, destination, env));
-
-						lastSeenId = id;
-						deleteMessageById(conn, id);
-					}
+		String sql = "SELECT id, source, destination, payload FROM " + queueTable()
+				+ " WHERE destination = ? ORDER BY id LIMIT ?";
+		try (PreparedStatement ps = conn.prepareStatement(sql)) {
+			ps.setString(1, destination());
+			ps.setInt(2, batchSize);
+			try (ResultSet rs = ps.executeQuery()) {
+				while (rs.next()) {
+					ids.add(readRow(rs, results));
 				}
 			}
-			return results;
 		}
 
-		// PROXY mode
-		String sql = "SELECT id, source, destination, payload FROM " + tableName + "_message_queue "
-				+ "WHERE destination='proxy' AND id > ? ORDER BY id";
+		if (!ids.isEmpty()) {
+			// only the rows read: a range delete would also take a lower id that
+			// committed after the SELECT, without it ever being delivered
+			StringBuilder delSql = new StringBuilder("DELETE FROM ").append(queueTable()).append(" WHERE id IN (");
+			for (int i = 0; i < ids.size(); i++) {
+				delSql.append(i == 0 ? "?" : ", ?");
+			}
+			delSql.append(')');
+			try (PreparedStatement del = conn.prepareStatement(delSql.toString())) {
+				for (int i = 0; i < ids.size(); i++) {
+					del.setLong(i + 1, ids.get(i));
+				}
+				del.executeUpdate();
+			}
+		}
+		return results;
+	}
+
+	private List<QueueMessage> claimBatchPostgres(Connection conn) throws SQLException {
+		List<QueueMessage> results = new ArrayList<>();
+		String sql = "DELETE FROM " + queueTable() + " WHERE id IN (SELECT id FROM " + queueTable()
+				+ " WHERE destination = ? ORDER BY id LIMIT ? FOR UPDATE SKIP LOCKED)"
+				+ " RETURNING id, source, destination, payload";
+		List<Object[]> rows = new ArrayList<>();
 		try (PreparedStatement ps = conn.prepareStatement(sql)) {
-			ps.setLong(1, lastSeenId);
+			ps.setString(1, destination());
+			ps.setInt(2, batchSize);
 			try (ResultSet rs = ps.executeQuery()) {
 				while (rs.next()) {
-					long id = rs.getLong("id");
-					String source = rs.getString("source");
-					String destination = rs.getString("destination");
-					String payload = rs.getString("payload");
+					rows.add(new Object[] { rs.getLong("id"), rs.getString("source"), rs.getString("destination"),
+							rs.getString("payload") });
+				}
+			}
+		}
+		// RETURNING has no defined order
+		rows.sort(Comparator.comparingLong(row -> (Long) row[0]));
+		for (Object[] row : rows) {
+			readRow((Long) row[0], (String) row[1], (String) row[2], (String) row[3], results);
+		}
+		return results;
+	}
 
-					JsonEnvelope env = JsonEnvelopeCodec.decode(payload);
-					results.add(new QueueMessage(id, source, destination, env));
+	/**
+	 * Waits up to idleMs for a NOTIFY on the listener connection.
+	 *
+	 * @return true if notified
+	 */
+	private boolean waitForNotify(Connection conn, long idleMs) throws SQLException {
+		Method getNotifications = pgGetNotifications();
+		if (getNotifications == null) {
+			sleepQuiet(idleMs);
+			return false;
+		}
+		try {
+			Object pg = conn.unwrap(getNotifications.getDeclaringClass());
+			Object notifications = getNotifications.invoke(pg, (int) Math.max(1, idleMs));
+			return notifications != null && Array.getLength(notifications) > 0;
+		} catch (ReflectiveOperationException e) {
+			if (e.getCause() instanceof SQLException) {
+				throw (SQLException) e.getCause();
+			}
+			sleepQuiet(idleMs);
+			return false;
+		}
+	}
 
-					lastSeenId = id;
-					deleteMessageById(conn, id);
+	/**
+	 * PGConnection.getNotifications(int), looked up by reflection since the
+	 * PostgreSQL driver is provided by the server, not shaded here.
+	 */
+	private static Method pgGetNotifications() {
+		if (!pgLookupDone) {
+			try {
+				pgGetNotifications = Class.forName("org.postgresql.PGConnection").getMethod("getNotifications",
+						int.class);
+			} catch (ReflectiveOperationException e) {
+				System.out.println("MySqlMessenger: PostgreSQL driver without LISTEN support, polling instead");
+			}
+			pgLookupDone = true;
+		}
+		return pgGetNotifications;
+	}
+
+	private static String quoteIdentifier(String name) {
+		return '"' + name.replace("\"", "\"\"") + '"';
+	}
+
+	private static void closeQuiet(Connection conn) {
+		if (conn == null) {
+			return;
+		}
+		try {
+			conn.close();
+		} catch (SQLException ignored) {
+			// already broken
+		}
+	}
+
+	private long readRow(ResultSet rs, List<QueueMessage> results) throws SQLException {
+		long id = rs.getLong("id");
+		readRow(id, rs.getString("source"), rs.getString("destination"), rs.getString("payload"), results);
+		return id;
+	}
+
+	private void readRow(long id, String source, String destination, String payload, List<QueueMessage> results) {
+
+		if (payload.startsWith(FRAME_PREFIX)) {
+			try {
+				byte[] whole = reassembler.accept(Base64.getDecoder().decode(payload.substring(FRAME_PREFIX.length())));
+				if (whole == null) {
+					return; // more chunks to come
 				}
+				results.add(new QueueMessage(id, source, destination, JsonEnvelopeCodec.decode(whole)));
+				return;
+			} catch (IOException | IllegalArgumentException e) {
+				System.out.println("MySqlMessenger: dropping bad chunk " + id + ": " + e.getMessage());
+				return;
 			}
 		}
-		return results;
+
+		JsonEnvelope env = JsonEnvelopeCodec.decode(payload);
+		results.add(new QueueMessage(id, source, destination, env));
 	}
 
-	private void deleteMessageById(Connection conn, long id) throws SQLException {
-		String delSql = "DELETE FROM " + tableName + "_message_queue WHERE id = ?";
-		try (PreparedStatement del = conn.prepareStatement(delSql)) {
-			del.setLong(1, id);
-			del.executeUpdate();
+	/**
+	 * Payload rows for one envelope: the JSON itself, or Base64
+	 * {@link FrameCodec} chunks when it is longer than
+	 * {@link #setMaxPayloadChars(int)}.
+	 */
+	private List<String> payloadRows(JsonEnvelope envelope) {
+		String payload = JsonEnvelopeCodec.encode(envelope);
+		List<String> rows = new ArrayList<>();
+		if (payload.length() <= maxPayloadChars) {
+			rows.add(payload);
+			return rows;
 		}
+		// Base64 grows by 4/3, keep each row under maxPayloadChars
+		int frameBytes = (maxPayloadChars - FRAME_PREFIX.length()) / 4 * 3;
+		for (byte[] frame : FrameCodec.encode(payload.getBytes(StandardCharsets.UTF_8), frameBytes)) {
+			rows.add(FRAME_PREFIX + Base64.getEncoder().encodeToString(frame));
+		}
+		return rows;
+	}
+
+	public int getMaxPayloadChars() {
+		return maxPayloadChars;
+	}
+
+	/**
+	 * Envelopes longer than this are split over several rows, keeping each
+	 * INSERT well under max_allowed_packet (4MB by default on MySQL 5.7).
+	 */
+	public void setMaxPayloadChars(int maxPayloadChars) {
+		this.maxPayloadChars = Math.max(1024, maxPayloadChars);
 	}
 
 	/**
 	 * BACKEND -> PROXY send (uses this backend's serverId as source).
 	 */
-	public synchronized void sendToProxy(JsonEnvelope envelope) throws SQLException {
+	public void sendToProxy(JsonEnvelope envelope) throws SQLException {
 		if (mode != Mode.BACKEND) {
 			throw new IllegalStateException("sendToProxy() is intended for BACKEND mode");
 		}
@@ -217,50 +534,248 @@ public class MySqlMessenger {
 	/**
 	 * Any sender -> PROXY send (explicit source id).
 	 */
-	public synchronized void sendToProxy(String fromServerId, JsonEnvelope envelope) throws SQLException {
-		String payload = JsonEnvelopeCodec.encode(envelope);
+	public void sendToProxy(String fromServerId, JsonEnvelope envelope) throws SQLException {
+		write(Collections.singletonList(toProxy(fromServerId, envelope)));
+	}
 
-		try (Connection conn = ds.getConnection()) {
-			String insertSql = "INSERT INTO " + tableName
-					+ "_message_queue (source, destination, payload) VALUES (?, 'proxy', ?)";
-			try (PreparedStatement ins = conn.prepareStatement(insertSql)) {
-				ins.setString(1, fromServerId);
-				ins.setString(2, payload);
-				ins.executeUpdate();
-			}
+	/**
+	 * PROXY -> BACKEND send (source is fixed to 'proxy' to match existing behavior).
+	 */
+	public void sendToBackend(String targetServerId, JsonEnvelope envelope) throws SQLException {
+		write(Collections.singletonList(toBackend(targetServerId, envelope)));
+	}
 
-			// Wake proxy listener (best-effort). If lock isn't held, nothing happens—still OK (poll will pick it up).
-			try (PreparedStatement rel = conn.prepareStatement("SELECT RELEASE_LOCK(?)")) {
-				rel.setString(1, PROXY_CHANNEL);
-				rel.executeQuery();
+	/**
+	 * Queued {@link #sendToProxy(JsonEnvelope)}. Concurrent sends are written
+	 * together; the future completes once the rows are committed. Sub-channels
+	 * set up in {@link #getCoalescer()} are merged first.
+	 */
+	public CompletableFuture<Void> sendToProxyAsync(JsonEnvelope envelope) {
+		if (mode != Mode.BACKEND) {
+			throw new IllegalStateException("sendToProxyAsync() is intended for BACKEND mode");
+		}
+		return sendToProxyAsync(myServerId, envelope);
+	}
+
+	public CompletableFuture<Void> sendToProxyAsync(String fromServerId, JsonEnvelope envelope) {
+		CompletableFuture<Void> held = coalescer.offer(fromServerId + "\n" + PROXY_DESTINATION, envelope);
+		return held != null ? held : enqueue(toProxy(fromServerId, envelope));
+	}
+
+	/**
+	 * Queued {@link #sendToBackend(String, JsonEnvelope)}. A broadcast to many
+	 * backends becomes one multi-row INSERT (plus one NOTIFY per backend on
+	 * PostgreSQL).
+	 */
+	public CompletableFuture<Void> sendToBackendAsync(String targetServerId, JsonEnvelope envelope) {
+		if (targetServerId != null && !targetServerId.isEmpty()) {
+			CompletableFuture<Void> held = coalescer.offer(PROXY_DESTINATION + "\n" + targetServerId, envelope);
+			if (held != null) {
+				return held;
 			}
 		}
+		return enqueue(toBackend(targetServerId, envelope));
 	}
 
 	/**
-	 * PROXY -> BACKEND send (source is fixed to 'proxy' to match existing behavior).
+	 * Outbound coalescing for the async sends; the sync sends are never held
+	 * back. Nothing is coalesced until a sub-channel is added. Held envelopes
+	 * are written directly when their window closes.
 	 */
-	public synchronized void sendToBackend(String targetServerId, JsonEnvelope envelope) throws SQLException {
+	public EnvelopeCoalescer getCoalescer() {
+		return coalescer;
+	}
+
+	public long getFlushIntervalMs() {
+		return flushIntervalMs;
+	}
+
+	/**
+	 * How long the sender waits for more async sends before writing a batch.
+	 * 0 writes whatever is queued as soon as the previous batch is done.
+	 */
+	public void setFlushIntervalMs(long flushIntervalMs) {
+		this.flushIntervalMs = Math.max(0, flushIntervalMs);
+	}
+
+	/**
+	 * @return true if the messenger is running and the database accepts a
+	 *         connection
+	 */
+	public boolean ping() {
+		if (!running) {
+			return false;
+		}
+		try (Connection conn = ds.getConnection()) {
+			return conn.isValid(2);
+		} catch (SQLException e) {
+			return false;
+		}
+	}
+
+	public int getPendingSendCount() {
+		return sendQueue.size();
+	}
+
+	private PendingSend toProxy(String fromServerId, JsonEnvelope envelope) {
+		return new PendingSend(fromServerId, PROXY_DESTINATION, PROXY_CHANNEL, payloadRows(envelope));
+	}
+
+	private PendingSend toBackend(String targetServerId, JsonEnvelope envelope) {
 		if (targetServerId == null || targetServerId.isEmpty()) {
 			throw new IllegalArgumentException("targetServerId required");
 		}
-		String payload = JsonEnvelopeCodec.encode(envelope);
+		return new PendingSend(PROXY_DESTINATION, targetServerId, "backend-channel-" + targetServerId,
+				payloadRows(envelope));
+	}
+
+	private CompletableFuture<Void> enqueue(PendingSend send) {
+		if (!running) {
+			send.future.completeExceptionally(new IllegalStateException("MySqlMessenger is shut down"));
+			return send.future;
+		}
+		startSender();
+		sendQueue.add(send);
+		if (!running && sendQueue.remove(send)) {
+			// raced with shutdown and the sender may already be gone
+			send.future.completeExceptionally(new IllegalStateException("MySqlMessenger is shut down"));
+		}
+		return send.future;
+	}
+
+	private synchronized void startSender() {
+		if (senderThread != null) {
+			return;
+		}
+		senderThread = new Thread(this::runSender,
+				mode == Mode.BACKEND ? "MySqlMessenger-Sender-" + myServerId : "MySqlMessenger-Proxy-Sender");
+		senderThread.setDaemon(true);
+		senderThread.start();
+	}
 
+	private void runSender() {
+		List<PendingSend> batch = new ArrayList<>();
+		while (running || !sendQueue.isEmpty()) {
+			try {
+				PendingSend first = sendQueue.poll(250, TimeUnit.MILLISECONDS);
+				if (first == null) {
+					continue;
+				}
+				batch.add(first);
+				collect(batch);
+			} catch (InterruptedException e) {
+				// shutdown: write what is left, then stop
+				sendQueue.drainTo(batch);
+			}
+			if (batch.isEmpty()) {
+				continue;
+			}
+			try {
+				write(batch);
+				for (PendingSend send : batch) {
+					send.future.complete(null);
+				}
+			} catch (SQLException | RuntimeException e) {
+				for (PendingSend send : batch) {
+					send.future.completeExceptionally(e);
+				}
+			}
+			batch.clear();
+		}
+	}
+
+	/**
+	 * Adds sends arriving within the flush interval, up to MAX_ROWS_PER_FLUSH.
+	 */
+	private void collect(List<PendingSend> batch) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+		int rows = batch.get(0).rows.size();
+		while (rows < MAX_ROWS_PER_FLUSH) {
+			long remaining = deadline - System.nanoTime();
+			PendingSend next = remaining > 0 ? sendQueue.poll(remaining, TimeUnit.NANOSECONDS) : sendQueue.poll();
+			if (next == null) {
+				return;
+			}
+			batch.add(next);
+			rows += next.rows.size();
+		}
+	}
+
+	/**
+	 * Inserts every row of the sends in one transaction, as multi-row INSERTs
+	 * kept under maxPayloadChars each. On PostgreSQL each destination then gets
+	 * one NOTIFY; MySQL has no equivalent, its listeners find the rows on their
+	 * next poll.
+	 */
+	private void write(List<PendingSend> sends) throws SQLException {
 		try (Connection conn = ds.getConnection()) {
-			String insertSql = "INSERT INTO " + tableName
-					+ "_message_queue (source, destination, payload) VALUES ('proxy', ?, ?)";
-			try (PreparedStatement ins = conn.prepareStatement(insertSql)) {
-				ins.setString(1, targetServerId);
-				ins.setString(2, payload);
-				ins.executeUpdate();
+			boolean autoCommit = conn.getAutoCommit();
+			conn.setAutoCommit(false);
+			try {
+				List<String[]> statementRows = new ArrayList<>();
+				long statementChars = 0;
+				for (PendingSend send : sends) {
+					for (String row : send.rows) {
+						if (!statementRows.isEmpty() && (statementRows.size() >= MAX_ROWS_PER_STATEMENT
+								|| statementChars + row.length() > maxPayloadChars)) {
+							insertRows(conn, statementRows);
+							statementRows.clear();
+							statementChars = 0;
+						}
+						statementRows.add(new String[] { send.source, send.destination, row });
+						statementChars += row.length();
+					}
+				}
+				if (!statementRows.isEmpty()) {
+					insertRows(conn, statementRows);
+				}
+				conn.commit();
+			} catch (SQLException e) {
+				try {
+					conn.rollback();
+				} catch (SQLException ignored) {
+					// connection is broken anyway
+				}
+				throw e;
+			} finally {
+				conn.setAutoCommit(autoCommit);
+			}
+
+			if (dbType != DbType.POSTGRESQL) {
+				return;
+			}
+			// Wake listeners (best-effort), once per destination
+			Set<String> channels = new LinkedHashSet<>();
+			for (PendingSend send : sends) {
+				channels.add(send.wakeChannel);
 			}
+			for (String channel : channels) {
+				notifyChannel(conn, channel);
+			}
+		}
+	}
 
-			// Wake backend listener (best-effort)
-			String backendChannel = "backend-channel-" + targetServerId;
-			try (PreparedStatement rel = conn.prepareStatement("SELECT RELEASE_LOCK(?)")) {
-				rel.setString(1, backendChannel);
-				rel.executeQuery();
+	private void insertRows(Connection conn, List<String[]> rows) throws SQLException {
+		StringBuilder sql = new StringBuilder("INSERT INTO ").append(queueTable())
+				.append(" (source, destination, payload) VALUES ");
+		for (int i = 0; i < rows.size(); i++) {
+			sql.append(i == 0 ? "(?, ?, ?)" : ", (?, ?, ?)");
+		}
+		try (PreparedStatement ins = conn.prepareStatement(sql.toString())) {
+			int index = 1;
+			for (String[] row : rows) {
+				ins.setString(index++, row[0]);
+				ins.setString(index++, row[1]);
+				ins.setString(index++, row[2]);
 			}
+			ins.executeUpdate();
+		}
+	}
+
+	private void notifyChannel(Connection conn, String channel) throws SQLException {
+		try (PreparedStatement ps = conn.prepareStatement("SELECT pg_notify(?, '')")) {
+			ps.setString(1, channel);
+			ps.executeQuery();
 		}
 	}
 
@@ -281,22 +796,51 @@ public class MySqlMessenger {
 		}
 	}
 
+	/**
+	 * Stops the listener. Queued async sends are still written before the
+	 * sender thread exits.
+	 */
 	public void shutdown() {
+		coalescer.close();
 		running = false;
 		Thread t = listenerThread;
 		if (t != null) {
 			t.interrupt();
 		}
+		Thread sender;
+		synchronized (this) {
+			sender = senderThread;
+		}
+		if (sender != null) {
+			sender.interrupt();
+		}
 	}
 
 	private void sleepQuiet(long ms) {
 		if (ms <= 0) {
 			return;
 		}
-		try {
-			Thread.sleep(ms);
-		} catch (InterruptedException ignored) {
-			// allow shutdown to break sleeps
+		// parkNanos returns at once while the interrupt flag is set, so clear it
+		// or the loop spins; shutdown() also clears running, which ends the loop
+		if (Thread.interrupted() && !running) {
+			return;
+		}
+		// park rather than sleep so wake() and shutdown() can end it early
+		LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(ms));
+	}
+
+	private static final class PendingSend {
+		private final String source;
+		private final String destination;
+		private final String wakeChannel;
+		private final List<String> rows;
+		private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+		private PendingSend(String source, String destination, String wakeChannel, List<String> rows) {
+			this.source = source;
+			this.destination = destination;
+			this.wakeChannel = wakeChannel;
+			this.rows = rows;
 		}
 	}
 
@@ -0,0 +1,45 @@
+package com.bencodez.simpleapi.servercomm.mysql;
+
+import java.sql.SQLException;
+
+import com.bencodez.simpleapi.servercomm.codec.JsonEnvelope;
+import com.bencodez.simpleapi.servercomm.transport.Transport;
+
+/**
+ * {@link Transport} over {@link MySqlMessenger}. A null target sends to the
+ * proxy (backend mode only), anything else to that backend. Sends write the
+ * row directly, so a failure is reported straight away.
+ */
+public class MySqlTransport implements Transport {
+
+	private final String name;
+	private final MySqlMessenger messenger;
+
+	public MySqlTransport(MySqlMessenger messenger) {
+		this("mysql", messenger);
+	}
+
+	public MySqlTransport(String name, MySqlMessenger messenger) {
+		this.name = name;
+		this.messenger = messenger;
+	}
+
+	@Override
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public void send(String target, JsonEnvelope envelope) throws SQLException {
+		if (target == null) {
+			messenger.sendToProxy(envelope);
+		} else {
+			messenger.sendToBackend(target, envelope);
+		}
+	}
+
+	@Override
+	public boolean isHealthy() {
+		return messenger.ping();
+	}
+}
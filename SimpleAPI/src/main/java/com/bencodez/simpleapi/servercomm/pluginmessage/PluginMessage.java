@@ -2,19 +2,34 @@ package com.bencodez.simpleapi.servercomm.pluginmessage;
 
 import java.io.ByteArrayOutputStream;
 import java.io.DataOutputStream;
+import java.io.File;
 import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
 
 import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
 import org.bukkit.plugin.java.JavaPlugin;
 import org.bukkit.plugin.messaging.PluginMessageListener;
 
 import com.bencodez.simpleapi.encryption.EncryptionHandler;
+import com.bencodez.simpleapi.servercomm.codec.FrameCodec;
 import com.bencodez.simpleapi.servercomm.codec.JsonEnvelope;
 import com.bencodez.simpleapi.servercomm.codec.JsonEnvelopeCodec;
+import com.bencodez.simpleapi.servercomm.dispatch.EnvelopeCoalescer;
+import com.bencodez.simpleapi.servercomm.dispatch.SubChannelRegistry;
 import com.google.common.io.ByteArrayDataInput;
 import com.google.common.io.ByteStreams;
 
@@ -26,9 +41,16 @@ public class PluginMessage implements PluginMessageListener {
 	// Plugin messaging hard limit is Short.MAX_VALUE (~32767)
 	private static final int PLUGIN_MESSAGE_HARD_LIMIT = 32767;
 
-	// Safety margin to account for channel + UTF overhead
+	// Safety margin for channel + UTF overhead. With chunked frames enabled,
+	// larger envelopes are sent as several FrameCodec chunks of at most this size.
 	private static final int PLUGIN_MESSAGE_SOFT_LIMIT = 30000;
 
+	public static final int DEFAULT_QUEUE_CAPACITY = 1000;
+	public static final long DEFAULT_QUEUE_TTL_MS = TimeUnit.HOURS.toMillis(6);
+	// joining players can't carry plugin messages straight away
+	private static final long JOIN_FLUSH_DELAY_TICKS = 20;
+	private static final long QUEUE_SAVE_INTERVAL_SECONDS = 5;
+
 	@Getter
 	@Setter
 	private boolean debug = false;
@@ -40,35 +62,224 @@ public class PluginMessage implements PluginMessageListener {
 	private final JavaPlugin plugin;
 	private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
 
-	private final ArrayList<PluginMessageHandler> pluginMessages = new ArrayList<>();
+	// a handler without a sub-channel receives everything
+	private final SubChannelRegistry<PluginMessageHandler> pluginMessages = new SubChannelRegistry<>(
+			Objects::isNull);
+
+	private final FrameCodec.Reassembler reassembler = new FrameCodec.Reassembler();
+
+	/**
+	 * Envelopes sent while no player was online
+	 */
+	@Getter
+	private final PluginMessageQueue outboundQueue;
+
+	// sends waiting for the server thread, in order
+	private final Queue<JsonEnvelope> pendingSends = new ConcurrentLinkedQueue<>();
+	private final AtomicBoolean drainScheduled = new AtomicBoolean();
+
+	private final EnvelopeCoalescer coalescer = new EnvelopeCoalescer("PluginMessageCoalesceThread",
+			(destination, envelope) -> sendNow(envelope));
 
 	@Getter
 	@Setter
 	private String bungeeChannel;
 
+	/**
+	 * Send envelopes over the plugin message size limit as {@link FrameCodec}
+	 * chunks instead of dropping them. Only enable this when the receiving side
+	 * (normally the proxy) decodes frames; incoming frames are always accepted.
+	 */
+	@Getter
+	@Setter
+	private boolean chunkedFrames = false;
+
+	/**
+	 * Pack queued envelopes into {@link PluginMessageQueue#BATCH_SUB_CHANNEL}
+	 * messages when flushing. Only enable this when the receiving side unpacks
+	 * batches; otherwise queued envelopes are sent one by one as usual.
+	 */
+	@Getter
+	@Setter
+	private boolean batchQueue = false;
+
+	private boolean started;
+
+	/**
+	 * Nothing is loaded or registered until {@link #start()}.
+	 */
 	public PluginMessage(JavaPlugin plugin, String bungeeChannel) {
 		this.plugin = plugin;
 		this.bungeeChannel = bungeeChannel;
+
+		this.outboundQueue = new PluginMessageQueue(new File(plugin.getDataFolder(),
+				"pluginmessage-queue-" + bungeeChannel.replaceAll("[^A-Za-z0-9_-]", "_") + ".txt"),
+				DEFAULT_QUEUE_CAPACITY, DEFAULT_QUEUE_TTL_MS);
+		pluginMessages.setErrorHandler((envelope, e) -> plugin.getLogger().log(Level.WARNING,
+				"Error handling plugin message " + envelope.getSubChannel(), e));
+	}
+
+	/**
+	 * Loads the saved outbound queue, saves it every few seconds and flushes it
+	 * when a player joins. Call from onEnable; calling again does nothing.
+	 */
+	public synchronized void start() {
+		if (started) {
+			return;
+		}
+		started = true;
+		int loaded = outboundQueue.load();
+		if (loaded > 0) {
+			plugin.getLogger().info("Loaded " + loaded + " queued plugin messages for " + bungeeChannel);
+		}
+		timer.scheduleWithFixedDelay(() -> {
+			if (outboundQueue.isDirty()) {
+				outboundQueue.save();
+			}
+		}, QUEUE_SAVE_INTERVAL_SECONDS, QUEUE_SAVE_INTERVAL_SECONDS, TimeUnit.SECONDS);
+		Bukkit.getPluginManager().registerEvents(new JoinListener(), plugin);
+	}
+
+	private class JoinListener implements Listener {
+		@EventHandler
+		public void onJoin(PlayerJoinEvent event) {
+			if (outboundQueue.size() > 0) {
+				Bukkit.getScheduler().runTaskLater(plugin, PluginMessage.this::flushQueue, JOIN_FLUSH_DELAY_TICKS);
+			}
+		}
 	}
 
 	public void add(PluginMessageHandler handle) {
-		pluginMessages.add(handle);
+		pluginMessages.register(handle.getSubChannel(), handle);
+	}
+
+	/**
+	 * @param executor where the handler runs; null for the receiving thread
+	 */
+	public void add(PluginMessageHandler handle, Executor executor) {
+		pluginMessages.register(handle.getSubChannel(), handle, executor);
+	}
+
+	public boolean remove(PluginMessageHandler handle) {
+		return pluginMessages.unregister(handle);
 	}
 
-	public ArrayList<PluginMessageHandler> getPluginMessages() {
-		return pluginMessages;
+	/**
+	 * @return unmodifiable snapshot of the registered handlers; use
+	 *         {@link #add} and {@link #remove} to change them
+	 */
+	public List<PluginMessageHandler> getPluginMessages() {
+		return pluginMessages.getListeners();
+	}
+
+	/**
+	 * Outbound coalescing for {@link #sendEnvelope(JsonEnvelope)}. Nothing is
+	 * coalesced until a sub-channel is added.
+	 */
+	public EnvelopeCoalescer getCoalescer() {
+		return coalescer;
 	}
 
 	public void shutdown() {
+		coalescer.close();
+		queuePendingSends();
+		synchronized (this) {
+			// never loaded, so saving would overwrite the file
+			if (started) {
+				outboundQueue.save();
+			}
+		}
 		timer.shutdown();
 	}
 
+	/**
+	 * Sends the queued envelopes in their original order, one plugin message
+	 * each unless {@link #setBatchQueue(boolean)} is on. Runs on the server
+	 * thread, now if called from it; does nothing while the server is empty.
+	 */
+	public void flushQueue() {
+		drainOnMainThread();
+	}
+
+	/**
+	 * Runs {@link #drainSends()} now on the server thread, otherwise schedules
+	 * it there once.
+	 */
+	private void drainOnMainThread() {
+		if (Bukkit.isPrimaryThread()) {
+			drainSends();
+		} else if (drainScheduled.compareAndSet(false, true)) {
+			try {
+				Bukkit.getScheduler().runTask(plugin, this::drainSends);
+			} catch (RuntimeException e) {
+				// plugin disabled, keep them for the next start
+				drainScheduled.set(false);
+				queuePendingSends();
+			}
+		}
+	}
+
+	/**
+	 * Server thread only, so the player check, the queue flush and the sends
+	 * can't interleave with another send.
+	 */
+	private void drainSends() {
+		drainScheduled.set(false);
+		if (Bukkit.getOnlinePlayers().isEmpty()) {
+			// nobody to carry them, keep them for the next join
+			queuePendingSends();
+			return;
+		}
+		// queued envelopes are older than anything pending
+		sendQueued();
+		JsonEnvelope envelope;
+		while ((envelope = pendingSends.poll()) != null) {
+			send(envelope);
+		}
+	}
+
+	private void queuePendingSends() {
+		JsonEnvelope envelope;
+		while ((envelope = pendingSends.poll()) != null) {
+			outboundQueue.add(envelope);
+			if (debug) {
+				plugin.getLogger().info("BungeeDebug: No players online, queued envelope: " + envelope.getSubChannel());
+			}
+		}
+	}
+
+	private void sendQueued() {
+		if (outboundQueue.size() == 0) {
+			return;
+		}
+		List<JsonEnvelope> queued = outboundQueue.drain();
+		List<JsonEnvelope> messages = queued;
+		if (batchQueue) {
+			// room for the subChannel, and for Base64 when encrypted
+			int maxBytes = encryptionHandler != null ? PLUGIN_MESSAGE_SOFT_LIMIT * 3 / 4 - 256
+					: PLUGIN_MESSAGE_SOFT_LIMIT - 256;
+			messages = PluginMessageQueue.batch(queued, maxBytes);
+		}
+		if (debug) {
+			plugin.getLogger().info(
+					"BungeeDebug: Sending " + queued.size() + " queued envelopes in " + messages.size() + " messages");
+		}
+		for (JsonEnvelope envelope : messages) {
+			send(envelope);
+		}
+	}
+
 	@Override
 	public void onPluginMessageReceived(String channel, Player player, byte[] message) {
 		if (!channel.equals(bungeeChannel)) {
 			return;
 		}
 
+		if (FrameCodec.isFrame(message)) {
+			onFrameReceived(message);
+			return;
+		}
+
 		ByteArrayDataInput in = ByteStreams.newDataInput(message);
 
 		final String subChannel;
@@ -122,29 +333,106 @@ public class PluginMessage implements PluginMessageListener {
 		});
 	}
 
+	/**
+	 * Binary frames carry the (possibly encrypted) envelope JSON, split over
+	 * several plugin messages when it doesn't fit in one.
+	 */
+	private void onFrameReceived(byte[] message) {
+		final byte[] body;
+		try {
+			body = reassembler.accept(message);
+		} catch (Exception e) {
+			if (debug) {
+				e.printStackTrace();
+			}
+			plugin.getLogger().warning("Error reading plugin message frame: " + e.getMessage());
+			return;
+		}
+		if (body == null) {
+			return; // waiting for more chunks
+		}
+
+		timer.submit(() -> {
+			try {
+				if (encryptionHandler != null && encryptionHandler.isEncryptedBinary(body)) {
+					byte[] decrypted = encryptionHandler.decrypt(body);
+					if (decrypted == null) {
+						plugin.getLogger().warning("Failed to decrypt plugin message payload");
+						return;
+					}
+					onReceive(JsonEnvelopeCodec.decode(decrypted));
+					return;
+				}
+				String raw = new String(body, StandardCharsets.UTF_8);
+				String payload = (encryptionHandler != null) ? encryptionHandler.decrypt(raw) : raw;
+				onReceive(JsonEnvelopeCodec.decode(payload));
+			} catch (Exception e) {
+				if (debug) {
+					e.printStackTrace();
+				}
+				plugin.getLogger().warning("Error decoding plugin message payload: " + e.getMessage());
+			}
+		});
+	}
+
 	public void onReceive(JsonEnvelope envelope) {
+		if (PluginMessageQueue.isBatch(envelope)) {
+			for (JsonEnvelope queued : PluginMessageQueue.unbatch(envelope)) {
+				onReceive(queued);
+			}
+			return;
+		}
 		if (debug) {
 			plugin.getLogger()
 					.info("BungeeDebug: Received envelope: " + envelope.getSubChannel() + " " + envelope.getFields());
 		}
-		for (PluginMessageHandler handle : pluginMessages) {
-			if (handle.getSubChannel() == null || handle.getSubChannel().equalsIgnoreCase(envelope.getSubChannel())) {
-				handle.onReceive(envelope);
-			}
-		}
+		pluginMessages.dispatch(envelope, PluginMessageHandler::onReceive);
 	}
 
 	public void sendEnvelope(JsonEnvelope envelope) {
+		if (coalescer.offer(null, envelope) != null) {
+			return;
+		}
+		sendNow(envelope);
+	}
+
+	private void sendNow(JsonEnvelope envelope) {
+		pendingSends.add(envelope);
+		drainOnMainThread();
+	}
+
+	private void send(JsonEnvelope envelope) {
 		final String subChannel = envelope.getSubChannel();
 		final String payload = JsonEnvelopeCodec.encode(envelope);
 
 		byte[] payloadBytes = payload.getBytes(StandardCharsets.UTF_8);
+		final String wireSubChannel = encryptionHandler != null ? encryptionHandler.encrypt(subChannel) : subChannel;
+		// encrypt once; the text path sends the Base64 of the same ciphertext
+		final byte[] encryptedPayload = encryptionHandler != null ? encryptionHandler.encrypt(payloadBytes) : null;
+		if (encryptionHandler != null && (wireSubChannel == null || encryptedPayload == null)) {
+			plugin.getLogger().warning("Failed to encrypt plugin message, not sent: " + subChannel);
+			return;
+		}
+		final String wirePayload = encryptedPayload != null ? Base64.getEncoder().encodeToString(encryptedPayload)
+				: payload;
 
 		// Estimate total message size on the wire
 		// writeUTF adds 2 bytes length prefix per UTF string
-		int estimatedSize = 2 + subChannel.getBytes(StandardCharsets.UTF_8).length + // subChannel UTF
+		int estimatedSize = 2 + wireSubChannel.getBytes(StandardCharsets.UTF_8).length + // subChannel UTF
 				4 + // int payload length
-				2 + payloadBytes.length; // payload UTF
+				2 + wirePayload.getBytes(StandardCharsets.UTF_8).length; // payload UTF
+
+		if (estimatedSize > PLUGIN_MESSAGE_SOFT_LIMIT && chunkedFrames) {
+			// too big for one plugin message (writeUTF also caps at 64KB): send
+			// chunked binary frames, each under the soft limit
+			if (encryptionHandler != null && encryptionHandler.isBinarySafe()) {
+				// frames are binary anyway: skip the Base64 of the payload
+				sendChunked(envelope, encryptedPayload);
+			} else {
+				sendChunked(envelope, wirePayload.getBytes(StandardCharsets.UTF_8));
+			}
+			return;
+		}
 
 		if (estimatedSize > PLUGIN_MESSAGE_SOFT_LIMIT) {
 			plugin.getLogger().warning("[PluginMessage] Payload nearing plugin messaging limit (" + estimatedSize
@@ -154,7 +442,8 @@ public class PluginMessage implements PluginMessageListener {
 		if (estimatedSize > PLUGIN_MESSAGE_HARD_LIMIT) {
 			plugin.getLogger()
 					.severe("[PluginMessage] Payload TOO LARGE for plugin messaging (" + estimatedSize + " bytes, max="
-							+ PLUGIN_MESSAGE_HARD_LIMIT + ") subChannel=" + subChannel + " — message NOT sent");
+							+ PLUGIN_MESSAGE_HARD_LIMIT + ") subChannel=" + subChannel
+							+ " — message NOT sent, see setChunkedFrames");
 			return; // hard stop
 		}
 
@@ -162,20 +451,12 @@ public class PluginMessage implements PluginMessageListener {
 		DataOutputStream out = new DataOutputStream(byteOutStream);
 
 		try {
-			if (encryptionHandler != null) {
-				out.writeUTF(encryptionHandler.encrypt(subChannel));
-			} else {
-				out.writeUTF(subChannel);
-			}
+			out.writeUTF(wireSubChannel);
 
 			// Keep an int for sanity checks (UTF-8 byte length of payload)
 			out.writeInt(payloadBytes.length);
 
-			if (encryptionHandler != null) {
-				out.writeUTF(encryptionHandler.encrypt(payload));
-			} else {
-				out.writeUTF(payload);
-			}
+			out.writeUTF(wirePayload);
 
 			if (debug) {
 				plugin.getLogger().info("BungeeDebug: Sending envelope (" + estimatedSize + " bytes): " + subChannel
@@ -189,4 +470,17 @@ public class PluginMessage implements PluginMessageListener {
 		}
 	}
 
+	private void sendChunked(JsonEnvelope envelope, byte[] wirePayload) {
+		List<byte[]> frames = FrameCodec.encode(wirePayload, PLUGIN_MESSAGE_SOFT_LIMIT);
+
+		if (debug) {
+			plugin.getLogger().info("BungeeDebug: Sending envelope in " + frames.size() + " chunks: "
+					+ envelope.getSubChannel() + " " + envelope.getFields());
+		}
+
+		for (byte[] frame : frames) {
+			Bukkit.getServer().sendPluginMessage(plugin, bungeeChannel, frame);
+		}
+	}
+
 }
@@ -0,0 +1,302 @@
+package com.bencodez.simpleapi.servercomm.pluginmessage;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import com.bencodez.simpleapi.servercomm.codec.JsonEnvelope;
+import com.bencodez.simpleapi.servercomm.codec.JsonEnvelopeCodec;
+
+/**
+ * Envelopes waiting for a player to carry them. Plugin messages need a
+ * connected player, so {@link PluginMessage} parks envelopes here while the
+ * server is empty and sends them when someone joins.
+ *
+ * The queue is bounded (the oldest envelope is dropped when full), entries
+ * expire after a TTL, and it can be saved to a file so a restart doesn't lose
+ * it. Queued envelopes are sent one by one, or packed into batch envelopes
+ * (see {@link #batch(List, int)}) when {@link PluginMessage#setBatchQueue} is
+ * enabled.
+ */
+public class PluginMessageQueue {
+
+	/**
+	 * Sub-channel of a batch envelope. Its fields "0".."n-1" each hold one
+	 * encoded envelope.
+	 */
+	public static final String BATCH_SUB_CHANNEL = "SimpleAPI-Batch";
+
+	private static final class Entry {
+		private final long queuedAt;
+		private final JsonEnvelope envelope;
+
+		private Entry(long queuedAt, JsonEnvelope envelope) {
+			this.queuedAt = queuedAt;
+			this.envelope = envelope;
+		}
+	}
+
+	private final ArrayDeque<Entry> queue = new ArrayDeque<>();
+	private final File file;
+	private volatile int capacity;
+	private volatile long ttlMs;
+	private long dropped;
+	private long expired;
+	private boolean dirty;
+
+	/**
+	 * @param file where {@link #save()} and {@link #load()} keep the queue, null
+	 *             for memory only
+	 */
+	public PluginMessageQueue(File file, int capacity, long ttlMs) {
+		this.file = file;
+		this.capacity = Math.max(1, capacity);
+		this.ttlMs = ttlMs;
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	public void setCapacity(int capacity) {
+		this.capacity = Math.max(1, capacity);
+	}
+
+	public long getTtlMs() {
+		return ttlMs;
+	}
+
+	/**
+	 * @param ttlMs how long an envelope may wait, 0 or less to keep it until sent
+	 */
+	public void setTtlMs(long ttlMs) {
+		this.ttlMs = ttlMs;
+	}
+
+	public void add(JsonEnvelope envelope) {
+		add(envelope, System.currentTimeMillis());
+	}
+
+	private synchronized void add(JsonEnvelope envelope, long queuedAt) {
+		while (queue.size() >= capacity) {
+			queue.pollFirst();
+			dropped++;
+		}
+		queue.addLast(new Entry(queuedAt, envelope));
+		dirty = true;
+	}
+
+	/**
+	 * Removes and returns everything still within its TTL, oldest first.
+	 */
+	public synchronized List<JsonEnvelope> drain() {
+		removeExpired(System.currentTimeMillis());
+		List<JsonEnvelope> out = new ArrayList<>(queue.size());
+		for (Entry entry : queue) {
+			out.add(entry.envelope);
+		}
+		if (!queue.isEmpty()) {
+			dirty = true;
+		}
+		queue.clear();
+		return out;
+	}
+
+	private void removeExpired(long now) {
+		if (ttlMs <= 0) {
+			return;
+		}
+		Iterator<Entry> it = queue.iterator();
+		while (it.hasNext()) {
+			if (now - it.next().queuedAt > ttlMs) {
+				it.remove();
+				expired++;
+				dirty = true;
+			}
+		}
+	}
+
+	public synchronized int size() {
+		return queue.size();
+	}
+
+	/**
+	 * @return envelopes dropped because the queue was full
+	 */
+	public synchronized long getDroppedCount() {
+		return dropped;
+	}
+
+	/**
+	 * @return envelopes dropped because they outlived the TTL
+	 */
+	public synchronized long getExpiredCount() {
+		return expired;
+	}
+
+	public synchronized boolean isDirty() {
+		return dirty;
+	}
+
+	/**
+	 * Writes the queue to the file, one "queuedAt TAB json" line per envelope.
+	 * The file is replaced atomically and deleted when the queue is empty.
+	 */
+	public void save() {
+		if (file == null) {
+			return;
+		}
+		List<Entry> entries;
+		synchronized (this) {
+			removeExpired(System.currentTimeMillis());
+			entries = new ArrayList<>(queue);
+			dirty = false;
+		}
+		try {
+			if (entries.isEmpty()) {
+				Files.deleteIfExists(file.toPath());
+				return;
+			}
+			File parent = file.getAbsoluteFile().getParentFile();
+			if (parent != null) {
+				parent.mkdirs();
+			}
+			File tmp = new File(file.getPath() + ".tmp");
+			try (BufferedWriter writer = Files.newBufferedWriter(tmp.toPath(), StandardCharsets.UTF_8)) {
+				for (Entry entry : entries) {
+					writer.write(Long.toString(entry.queuedAt));
+					writer.write('\t');
+					writer.write(JsonEnvelopeCodec.encode(entry.envelope));
+					writer.newLine();
+				}
+			}
+			Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Adds the envelopes saved in the file to the queue. Expired and unreadable
+	 * lines are skipped.
+	 *
+	 * @return envelopes loaded
+	 */
+	public int load() {
+		if (file == null || !file.isFile()) {
+			return 0;
+		}
+		int loaded = 0;
+		long now = System.currentTimeMillis();
+		try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				int tab = line.indexOf('\t');
+				if (tab <= 0) {
+					continue;
+				}
+				try {
+					long queuedAt = Long.parseLong(line.substring(0, tab));
+					if (ttlMs > 0 && now - queuedAt > ttlMs) {
+						synchronized (this) {
+							expired++;
+						}
+						continue;
+					}
+					add(JsonEnvelopeCodec.decode(line.substring(tab + 1)), queuedAt);
+					loaded++;
+				} catch (RuntimeException e) {
+					// skip the bad line, keep the rest
+				}
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		return loaded;
+	}
+
+	/**
+	 * Packs envelopes into batch envelopes whose encoded size stays under
+	 * {@code maxBytes}. An envelope too big to share is returned on its own,
+	 * as is a batch of one.
+	 */
+	public static List<JsonEnvelope> batch(List<JsonEnvelope> envelopes, int maxBytes) {
+		List<JsonEnvelope> out = new ArrayList<>();
+		List<String> current = new ArrayList<>();
+		JsonEnvelope single = null;
+		// {"t":"SimpleAPI-Batch","v":1,"f":{}} plus slack
+		int overhead = 64;
+		int size = overhead;
+		for (JsonEnvelope envelope : envelopes) {
+			String encoded = JsonEnvelopeCodec.encode(envelope);
+			int cost = escapedSize(encoded) + 16;
+			if (!current.isEmpty() && size + cost > maxBytes) {
+				out.add(current.size() == 1 ? single : toBatch(current));
+				current.clear();
+				size = overhead;
+			}
+			current.add(encoded);
+			single = envelope;
+			size += cost;
+		}
+		if (!current.isEmpty()) {
+			out.add(current.size() == 1 ? single : toBatch(current));
+		}
+		return out;
+	}
+
+	private static JsonEnvelope toBatch(List<String> encoded) {
+		JsonEnvelope.Builder builder = JsonEnvelope.builder(BATCH_SUB_CHANNEL);
+		for (int i = 0; i < encoded.size(); i++) {
+			builder.put(Integer.toString(i), encoded.get(i));
+		}
+		return builder.build();
+	}
+
+	// UTF-8 bytes once written as a JSON string value
+	private static int escapedSize(String s) {
+		int size = 2;
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (c == '"' || c == '\\') {
+				size += 2;
+			} else if (c < 0x20) {
+				size += 6;
+			} else if (c < 0x80) {
+				size++;
+			} else if (c < 0x800 || Character.isSurrogate(c)) {
+				// a surrogate pair is 4 bytes in total
+				size += 2;
+			} else {
+				size += 3;
+			}
+		}
+		return size;
+	}
+
+	public static boolean isBatch(JsonEnvelope envelope) {
+		return BATCH_SUB_CHANNEL.equals(envelope.getSubChannel());
+	}
+
+	/**
+	 * @return the envelopes packed into a batch envelope, in order
+	 */
+	public static List<JsonEnvelope> unbatch(JsonEnvelope batch) {
+		Map<String, String> fields = batch.getFields();
+		List<JsonEnvelope> out = new ArrayList<>(fields.size());
+		for (int i = 0; fields.containsKey(Integer.toString(i)); i++) {
+			out.add(JsonEnvelopeCodec.decode(fields.get(Integer.toString(i))));
+		}
+		return out;
+	}
+}
@@ -0,0 +1,28 @@
+package com.bencodez.simpleapi.servercomm.pluginmessage;
+
+import com.bencodez.simpleapi.servercomm.codec.JsonEnvelope;
+import com.bencodez.simpleapi.servercomm.transport.Transport;
+
+/**
+ * {@link Transport} over {@link PluginMessage}. The proxy does the routing, so
+ * the target is ignored; envelopes sent while the server is empty wait in
+ * {@link PluginMessage#getOutboundQueue()}.
+ */
+public class PluginMessageTransport implements Transport {
+
+	private final PluginMessage pluginMessage;
+
+	public PluginMessageTransport(PluginMessage pluginMessage) {
+		this.pluginMessage = pluginMessage;
+	}
+
+	@Override
+	public String getName() {
+		return "pluginmessage";
+	}
+
+	@Override
+	public void send(String target, JsonEnvelope envelope) {
+		pluginMessage.sendEnvelope(envelope);
+	}
+}
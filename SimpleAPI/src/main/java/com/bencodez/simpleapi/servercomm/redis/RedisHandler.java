@@ -1,16 +1,21 @@
 package com.bencodez.simpleapi.servercomm.redis;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.RejectedExecutionException;
-import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.BiConsumer;
 
+import com.bencodez.simpleapi.metrics.LatencyHistogram;
 import com.bencodez.simpleapi.servercomm.codec.JsonEnvelope;
 import com.bencodez.simpleapi.servercomm.codec.JsonEnvelopeCodec;
+import com.bencodez.simpleapi.servercomm.dispatch.EnvelopeCoalescer;
 
 import redis.clients.jedis.DefaultJedisClientConfig;
 import redis.clients.jedis.HostAndPort;
@@ -18,18 +23,44 @@ import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisClientConfig;
 import redis.clients.jedis.JedisPool;
 import redis.clients.jedis.JedisPoolConfig;
+import redis.clients.jedis.Pipeline;
 
 public abstract class RedisHandler {
 
-	private static final int PUBLISH_QUEUE_CAPACITY = 1024;
+	/**
+	 * What {@link RedisHandler#publishEnvelope(String, JsonEnvelope)} does when
+	 * the publish queue is full.
+	 */
+	public enum QueueFullPolicy {
+		/** Drop the message straight away (never blocks the caller). */
+		REJECT,
+		/** Wait up to the block timeout for space, then drop. */
+		BLOCK
+	}
+
+	public static final int DEFAULT_PUBLISH_QUEUE_CAPACITY = 1024;
 	private static final long PUBLISHER_SHUTDOWN_TIMEOUT_SECONDS = 3L;
 
 	private final HostAndPort endpoint;
 	private final JedisClientConfig clientConfig;
 	private final JedisPool publisherPool;
-	private final ThreadPoolExecutor publisherExecutor;
+
+	private final BlockingQueue<QueuedPublish> publishQueue;
+	private final int publishQueueCapacity;
+	private final QueueFullPolicy queueFullPolicy;
+	private volatile long blockTimeoutMs = 50;
+	private volatile int maxPublishBatch = 128;
+	private Thread publisherThread;
+
+	private final LongAdder published = new LongAdder();
+	private final LongAdder dropped = new LongAdder();
+	private final LongAdder publishErrors = new LongAdder();
+	private final LatencyHistogram publishLatency = new LatencyHistogram();
+
+	private final EnvelopeCoalescer coalescer;
 
 	private final Map<RedisListener, Thread> listenerThreads = new ConcurrentHashMap<>();
+	private final Map<String, RedisStreams> streams = new ConcurrentHashMap<>();
 	private volatile boolean shuttingDown = false;
 
 	// Reconnect backoff (ms)
@@ -37,6 +68,16 @@ public abstract class RedisHandler {
 	private static final long RECONNECT_MAX_MS = 30000L;
 
 	public RedisHandler(String host, int port, String username, String password, int dbIndex) {
+		this(host, port, username, password, dbIndex, DEFAULT_PUBLISH_QUEUE_CAPACITY, QueueFullPolicy.REJECT);
+	}
+
+	/**
+	 * @param publishQueueCapacity envelopes waiting to be published before the
+	 *                             policy applies
+	 * @param queueFullPolicy      drop at once, or briefly block the caller
+	 */
+	public RedisHandler(String host, int port, String username, String password, int dbIndex,
+			int publishQueueCapacity, QueueFullPolicy queueFullPolicy) {
 		Objects.requireNonNull(host, "host");
 		this.endpoint = new HostAndPort(host, port);
 
@@ -56,16 +97,27 @@ public abstract class RedisHandler {
 		JedisPoolConfig publisherPoolConfig = new JedisPoolConfig();
 		publisherPoolConfig.setTestOnBorrow(true);
 		this.publisherPool = new JedisPool(publisherPoolConfig, endpoint, clientConfig);
-		this.publisherExecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
-				new ArrayBlockingQueue<>(PUBLISH_QUEUE_CAPACITY), runnable -> {
-					Thread thread = new Thread(runnable, "RedisPublishThread-" + endpoint);
-					thread.setDaemon(true);
-					return thread;
-				}, new ThreadPoolExecutor.AbortPolicy());
+		this.publishQueueCapacity = Math.max(1, publishQueueCapacity);
+		this.publishQueue = new ArrayBlockingQueue<>(this.publishQueueCapacity);
+		this.queueFullPolicy = queueFullPolicy == null ? QueueFullPolicy.REJECT : queueFullPolicy;
+		this.coalescer = new EnvelopeCoalescer("RedisCoalesceThread-" + endpoint, (channel, envelope) -> {
+			// a refused hand-off fails the coalesced future
+			CompletableFuture<Void> queued = enqueuePublish(channel, envelope);
+			if (queued.isCompletedExceptionally()) {
+				queued.join();
+			}
+		});
 	}
 
 	public void close() {
-		shuttingDown = true;
+		// hand anything held back to the queue while it still accepts messages
+		coalescer.close();
+		// same lock as startPublisher, so no publisher can start after this
+		Thread publisher;
+		synchronized (this) {
+			shuttingDown = true;
+			publisher = publisherThread;
+		}
 
 		for (Map.Entry<RedisListener, Thread> entry : listenerThreads.entrySet()) {
 			try {
@@ -79,16 +131,29 @@ public abstract class RedisHandler {
 		}
 		listenerThreads.clear();
 
-		publisherExecutor.shutdown();
+		for (RedisStreams stream : streams.values()) {
+			stream.close();
+		}
+		streams.clear();
+
+		// the publisher sends what is already queued, then exits
 		boolean interrupted = false;
 		try {
-			if (!publisherExecutor.awaitTermination(PUBLISHER_SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
-				publisherExecutor.shutdownNow();
+			if (publisher != null) {
+				publisher.join(TimeUnit.SECONDS.toMillis(PUBLISHER_SHUTDOWN_TIMEOUT_SECONDS));
+				if (publisher.isAlive()) {
+					publisher.interrupt();
+				}
 			}
 		} catch (InterruptedException e) {
-			publisherExecutor.shutdownNow();
+			publisher.interrupt();
 			interrupted = true;
 		} finally {
+			// left behind by a publisher that didn't finish in time
+			QueuedPublish left;
+			while ((left = publishQueue.poll()) != null) {
+				left.future.completeExceptionally(new IllegalStateException("Redis handler closed before publishing"));
+			}
 			publisherPool.close();
 			if (interrupted) {
 				Thread.currentThread().interrupt();
@@ -156,33 +221,275 @@ public abstract class RedisHandler {
 	/**
 	 * Queues an envelope for ordered asynchronous publishing. Network connection,
 	 * authentication and publish I/O are never performed on the caller thread.
+	 * With {@link QueueFullPolicy#BLOCK} the caller may wait up to the block
+	 * timeout for queue space. Envelopes on sub-channels set up in
+	 * {@link #getCoalescer()} are held briefly and merged first.
 	 */
 	public void publishEnvelope(String channel, JsonEnvelope envelope) {
+		publishEnvelopeFuture(channel, envelope);
+	}
+
+	/**
+	 * Like {@link #publishEnvelope(String, JsonEnvelope)}, but reports the
+	 * outcome. The future completes once Redis accepted the publish (or its
+	 * pipeline), and fails when the queue is full, the handler is closed or the
+	 * publish throws. A coalesced envelope's future completes when its window
+	 * closes and it is handed to the queue.
+	 */
+	public CompletableFuture<Void> publishEnvelopeFuture(String channel, JsonEnvelope envelope) {
 		if (shuttingDown) {
-			return;
+			return CompletableFuture.failedFuture(new IllegalStateException("Redis handler is closed"));
 		}
+		CompletableFuture<Void> held = coalescer.offer(channel, envelope);
+		if (held != null) {
+			return held;
+		}
+		return enqueuePublish(channel, envelope);
+	}
 
-		String payload = JsonEnvelopeCodec.encode(envelope);
-		try {
-			publisherExecutor.execute(() -> publishNow(channel, payload));
-		} catch (RejectedExecutionException e) {
+	/**
+	 * Outbound coalescing for {@link #publishEnvelope(String, JsonEnvelope)},
+	 * keyed per channel. Nothing is coalesced until a sub-channel is added.
+	 */
+	public EnvelopeCoalescer getCoalescer() {
+		return coalescer;
+	}
+
+	private CompletableFuture<Void> enqueuePublish(String channel, JsonEnvelope envelope) {
+		if (shuttingDown) {
+			return CompletableFuture.failedFuture(new IllegalStateException("Redis handler is closed"));
+		}
+
+		QueuedPublish publish = new QueuedPublish(channel, JsonEnvelopeCodec.encode(envelope));
+		if (!startPublisher()) {
+			// closed since the check above
+			dropped.increment();
+			return CompletableFuture.failedFuture(new IllegalStateException("Redis handler is closed"));
+		}
+		boolean queued;
+		if (queueFullPolicy == QueueFullPolicy.BLOCK) {
+			try {
+				queued = publishQueue.offer(publish, blockTimeoutMs, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				queued = false;
+			}
+		} else {
+			queued = publishQueue.offer(publish);
+		}
+		if (!queued) {
+			dropped.increment();
 			if (!shuttingDown) {
 				debug("Redis publish queue is full; dropping message for channel " + channel);
 			}
+			return CompletableFuture.failedFuture(new IllegalStateException("Redis publish queue is full"));
+		}
+		return publish.future;
+	}
+
+	/**
+	 * @return false once {@link #close()} has started; checked under the same
+	 *         lock close() takes, so a late publish can't restart the thread
+	 */
+	private synchronized boolean startPublisher() {
+		if (shuttingDown) {
+			return false;
+		}
+		if (publisherThread == null) {
+			publisherThread = new Thread(this::runPublisher, "RedisPublishThread-" + endpoint);
+			publisherThread.setDaemon(true);
+			publisherThread.start();
+		}
+		return true;
+	}
+
+	private void runPublisher() {
+		List<QueuedPublish> batch = new ArrayList<>();
+		while (!shuttingDown || !publishQueue.isEmpty()) {
+			try {
+				QueuedPublish first = publishQueue.poll(250, TimeUnit.MILLISECONDS);
+				if (first == null) {
+					continue;
+				}
+				batch.add(first);
+			} catch (InterruptedException e) {
+				// close() timed out waiting for us
+				return;
+			}
+			publishQueue.drainTo(batch, maxPublishBatch - 1);
+			Exception error = null;
+			try {
+				publishBatch(batch);
+			} catch (Exception e) {
+				error = e;
+				publishErrors.add(batch.size());
+				debug("Redis publish of " + batch.size() + " message(s) failed: " + e.getMessage());
+			}
+			long now = System.nanoTime();
+			for (QueuedPublish publish : batch) {
+				publishLatency.record(now - publish.queuedNanos);
+				if (error == null) {
+					publish.future.complete(null);
+				} else {
+					publish.future.completeExceptionally(error);
+				}
+			}
+			published.add(batch.size());
+			batch.clear();
+		}
+	}
+
+	/**
+	 * Sends everything drained from the queue: a single message through
+	 * {@link #publishNow(String, String)}, several as one pipeline on one
+	 * connection so the batch costs one round trip. A failure fails the whole
+	 * batch.
+	 */
+	private void publishBatch(List<QueuedPublish> batch) throws Exception {
+		if (batch.size() == 1) {
+			publishNow(batch.get(0).channel, batch.get(0).payload);
+			return;
+		}
+		try (Jedis jedis = publisherPool.getResource(); Pipeline pipeline = jedis.pipelined()) {
+			for (QueuedPublish publish : batch) {
+				debug("Redis Send: " + publish.channel + ", " + publish.payload);
+				pipeline.publish(publish.channel, publish.payload);
+			}
+			pipeline.sync();
 		}
 	}
 
 	/**
 	 * Performs one publish using the pooled publisher connection. Kept protected so
 	 * transport scheduling can be regression-tested without a live Redis server.
+	 *
+	 * @throws Exception if Redis could not be reached; fails the publish's future
 	 */
-	protected void publishNow(String channel, String payload) {
+	protected void publishNow(String channel, String payload) throws Exception {
 		try (Jedis jedis = publisherPool.getResource()) {
 			debug("Redis Send: " + channel + ", " + payload);
 			jedis.publish(channel, payload);
+		}
+	}
+
+	/**
+	 * @return true if Redis answers a PING on a publisher connection
+	 */
+	public boolean ping() {
+		try (Jedis jedis = publisherPool.getResource()) {
+			return "PONG".equalsIgnoreCase(jedis.ping());
 		} catch (Exception e) {
-			debug("Redis publish error on channel " + channel + ": " + e.getMessage());
+			debug("Redis ping failed: " + e.getMessage());
+			return false;
+		}
+	}
+
+	public int getPublishQueueDepth() {
+		return publishQueue.size();
+	}
+
+	public int getPublishQueueCapacity() {
+		return publishQueueCapacity;
+	}
+
+	public QueueFullPolicy getQueueFullPolicy() {
+		return queueFullPolicy;
+	}
+
+	/**
+	 * @return messages dropped because the publish queue was full
+	 */
+	public long getDroppedCount() {
+		return dropped.sum();
+	}
+
+	/**
+	 * @return messages taken off the queue and sent (including failed sends)
+	 */
+	public long getPublishedCount() {
+		return published.sum();
+	}
+
+	public long getPublishErrorCount() {
+		return publishErrors.sum();
+	}
+
+	/**
+	 * Time from {@link #publishEnvelope(String, JsonEnvelope)} until the message
+	 * (or its pipeline) was written.
+	 */
+	public LatencyHistogram getPublishLatency() {
+		return publishLatency;
+	}
+
+	public long getBlockTimeoutMs() {
+		return blockTimeoutMs;
+	}
+
+	/**
+	 * How long {@link QueueFullPolicy#BLOCK} waits for queue space.
+	 */
+	public void setBlockTimeoutMs(long blockTimeoutMs) {
+		this.blockTimeoutMs = Math.max(0, blockTimeoutMs);
+	}
+
+	public int getMaxPublishBatch() {
+		return maxPublishBatch;
+	}
+
+	/**
+	 * Most messages sent in one pipeline.
+	 */
+	public void setMaxPublishBatch(int maxPublishBatch) {
+		this.maxPublishBatch = Math.max(1, maxPublishBatch);
+	}
+
+	private static final class QueuedPublish {
+		private final String channel;
+		private final String payload;
+		private final long queuedNanos = System.nanoTime();
+		private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+		private QueuedPublish(String channel, String payload) {
+			this.channel = channel;
+			this.payload = payload;
+		}
+	}
+
+	/**
+	 * Redis Streams transport sharing this handler's connection settings and
+	 * publisher pool, created on first use and closed with this handler. Use it
+	 * instead of pub/sub where messages must survive a server restart.
+	 *
+	 * @param group    this server's consumer group (normally its server id)
+	 * @param consumer consumer name within the group
+	 * @throws IllegalStateException once this handler is closed
+	 */
+	public RedisStreams streams(String group, String consumer) {
+		if (shuttingDown) {
+			throw new IllegalStateException("Redis handler is closed");
 		}
+		String key = group + "\u0000" + consumer;
+		RedisStreams stream = streams.computeIfAbsent(key, k -> new RedisStreams(this, group, consumer));
+		if (shuttingDown) {
+			// close() may have cleared the map before this was added
+			streams.remove(key, stream);
+			stream.close();
+			throw new IllegalStateException("Redis handler is closed");
+		}
+		return stream;
+	}
+
+	HostAndPort getEndpoint() {
+		return endpoint;
+	}
+
+	JedisClientConfig getClientConfig() {
+		return clientConfig;
+	}
+
+	JedisPool getPublisherPool() {
+		return publisherPool;
 	}
 
 	/** Subscribe and decode envelopes, forwarding to your callback (external wiring). */
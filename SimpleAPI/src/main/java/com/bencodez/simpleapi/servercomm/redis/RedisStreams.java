@@ -0,0 +1,388 @@
+package com.bencodez.simpleapi.servercomm.redis;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+import com.bencodez.simpleapi.servercomm.codec.JsonEnvelope;
+import com.bencodez.simpleapi.servercomm.codec.JsonEnvelopeCodec;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.StreamEntryID;
+import redis.clients.jedis.exceptions.JedisDataException;
+import redis.clients.jedis.params.XAddParams;
+import redis.clients.jedis.params.XReadGroupParams;
+import redis.clients.jedis.resps.StreamEntry;
+
+/**
+ * Redis Streams transport for {@link RedisHandler}: reliable alternative to
+ * pub/sub using XADD / XREADGROUP / XACK.
+ *
+ * Every receiving server reads each stream in its own consumer group, so like
+ * pub/sub all servers see every message, but Redis remembers how far each group
+ * got. A server that was down resumes where it stopped, and entries it read but
+ * never acknowledged are handed to it again on start. Streams are capped at
+ * {@link #setMaxLen(long)} entries (approximate trimming).
+ *
+ * One reader thread serves all subscribed streams with a single blocking
+ * XREADGROUP, and one publisher thread pipelines queued XADDs. Listeners are
+ * called on the reader thread; an entry is acknowledged once its listener
+ * returns.
+ */
+public class RedisStreams {
+
+	/** Stream entry field holding the JSON envelope. */
+	public static final String FIELD_ENVELOPE = "e";
+
+	private static final long RECONNECT_INITIAL_MS = 1000L;
+	private static final long RECONNECT_MAX_MS = 30000L;
+	private static final int BLOCK_MS = 1000; // under the 2s socket timeout
+
+	private final RedisHandler handler;
+	private final String group;
+	private final String consumer;
+
+	private final Map<String, BiConsumer<String, JsonEnvelope>> listeners = new ConcurrentHashMap<>();
+	// streams whose own pending entries still need to be read again
+	private final Set<String> replaying = ConcurrentHashMap.newKeySet();
+	private final LinkedBlockingQueue<StreamMessage> publishQueue;
+
+	private volatile boolean closed = false;
+	private volatile long maxLen = 10000;
+	private volatile int batchSize = 100;
+	private volatile boolean readFromStart = false;
+	private Thread readerThread;
+	private Thread publisherThread;
+
+	/**
+	 * One queued XADD.
+	 */
+	public static final class StreamMessage {
+		private final String stream;
+		private final String payload;
+
+		public StreamMessage(String stream, String payload) {
+			this.stream = stream;
+			this.payload = payload;
+		}
+
+		public String getStream() {
+			return stream;
+		}
+
+		public String getPayload() {
+			return payload;
+		}
+	}
+
+	/**
+	 * @param group    consumer group of this server, normally its server id;
+	 *                 every server needs its own to receive every message
+	 * @param consumer consumer name within the group
+	 */
+	public RedisStreams(RedisHandler handler, String group, String consumer) {
+		this(handler, group, consumer, 10000);
+	}
+
+	public RedisStreams(RedisHandler handler, String group, String consumer, int publishQueueCapacity) {
+		this.handler = Objects.requireNonNull(handler, "handler");
+		this.group = Objects.requireNonNull(group, "group");
+		this.consumer = Objects.requireNonNull(consumer, "consumer");
+		this.publishQueue = new LinkedBlockingQueue<>(Math.max(1, publishQueueCapacity));
+	}
+
+	public String getGroup() {
+		return group;
+	}
+
+	public String getConsumer() {
+		return consumer;
+	}
+
+	public long getMaxLen() {
+		return maxLen;
+	}
+
+	/**
+	 * Approximate number of entries kept per stream, i.e. how much history a
+	 * restarting server can catch up on.
+	 */
+	public void setMaxLen(long maxLen) {
+		this.maxLen = Math.max(1, maxLen);
+	}
+
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	/**
+	 * Entries read per XREADGROUP and XADDs per pipeline.
+	 */
+	public void setBatchSize(int batchSize) {
+		this.batchSize = Math.max(1, batchSize);
+	}
+
+	public boolean isReadFromStart() {
+		return readFromStart;
+	}
+
+	/**
+	 * If true, a group created for the first time starts at the oldest retained
+	 * entry instead of only new ones.
+	 */
+	public void setReadFromStart(boolean readFromStart) {
+		this.readFromStart = readFromStart;
+	}
+
+	public int getPublishQueueSize() {
+		return publishQueue.size();
+	}
+
+	/**
+	 * Queues an envelope for pipelined XADD.
+	 *
+	 * @return false if the publish queue is full or closed
+	 */
+	public boolean publish(String stream, JsonEnvelope envelope) {
+		if (closed) {
+			return false;
+		}
+		startPublisher();
+		if (!publishQueue.offer(new StreamMessage(stream, JsonEnvelopeCodec.encode(envelope)))) {
+			handler.debug("Redis stream publish queue is full; dropping message for stream " + stream);
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Starts reading a stream. Unacknowledged entries from a previous run are
+	 * delivered first.
+	 */
+	public void subscribe(String stream, BiConsumer<String, JsonEnvelope> onEnvelope) {
+		Objects.requireNonNull(stream, "stream");
+		Objects.requireNonNull(onEnvelope, "onEnvelope");
+		if (listeners.putIfAbsent(stream, onEnvelope) == null) {
+			replaying.add(stream);
+		}
+		startReader();
+	}
+
+	public void unsubscribe(String stream) {
+		listeners.remove(stream);
+		replaying.remove(stream);
+	}
+
+	public void close() {
+		closed = true;
+		Thread reader;
+		Thread publisher;
+		synchronized (this) {
+			reader = readerThread;
+			publisher = publisherThread;
+		}
+		if (reader != null) {
+			reader.interrupt();
+		}
+		if (publisher != null) {
+			publisher.interrupt();
+			try {
+				publisher.join(TimeUnit.SECONDS.toMillis(3));
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/* ================= PUBLISH ================= */
+
+	private synchronized void startPublisher() {
+		if (publisherThread != null) {
+			return;
+		}
+		publisherThread = new Thread(this::runPublisher, "RedisStreamPublishThread-" + handler.getEndpoint());
+		publisherThread.setDaemon(true);
+		publisherThread.start();
+	}
+
+	private void runPublisher() {
+		List<StreamMessage> batch = new ArrayList<>();
+		long backoff = RECONNECT_INITIAL_MS;
+		while (!closed || !publishQueue.isEmpty() || !batch.isEmpty()) {
+			if (batch.isEmpty()) {
+				try {
+					StreamMessage first = publishQueue.poll(250, TimeUnit.MILLISECONDS);
+					if (first == null) {
+						continue;
+					}
+					batch.add(first);
+				} catch (InterruptedException e) {
+					// closing: send what's left
+				}
+				publishQueue.drainTo(batch, batchSize - batch.size());
+				if (batch.isEmpty()) {
+					continue;
+				}
+			}
+			try {
+				xaddBatch(batch);
+				batch.clear();
+				backoff = RECONNECT_INITIAL_MS;
+			} catch (Exception e) {
+				handler.debug("Redis stream publish error: " + e.getMessage());
+				if (closed) {
+					handler.debug("Redis stream dropping " + batch.size() + " unsent messages on close");
+					batch.clear();
+					continue;
+				}
+				// keep the batch and retry, a stream is supposed to be reliable
+				sleep(backoff);
+				backoff = Math.min(RECONNECT_MAX_MS, backoff * 2);
+			}
+		}
+	}
+
+	/**
+	 * Sends a batch of XADDs in one pipeline. Protected so batching can be
+	 * tested without a live Redis server.
+	 */
+	protected void xaddBatch(List<StreamMessage> batch) throws Exception {
+		XAddParams params = XAddParams.xAddParams().maxLen(maxLen).approximateTrimming();
+		try (Jedis jedis = handler.getPublisherPool().getResource(); Pipeline pipeline = jedis.pipelined()) {
+			for (StreamMessage message : batch) {
+				pipeline.xadd(message.stream, params, Collections.singletonMap(FIELD_ENVELOPE, message.payload));
+			}
+			pipeline.sync();
+		}
+	}
+
+	/* ================= READ ================= */
+
+	private synchronized void startReader() {
+		if (readerThread != null || closed) {
+			return;
+		}
+		readerThread = new Thread(this::runReader, "RedisStreamReadThread-" + handler.getEndpoint());
+		readerThread.setDaemon(true);
+		readerThread.start();
+	}
+
+	private void runReader() {
+		long backoff = RECONNECT_INITIAL_MS;
+		Set<String> grouped = new HashSet<>();
+		while (!closed) {
+			try (Jedis jedis = new Jedis(handler.getEndpoint(), handler.getClientConfig())) {
+				grouped.clear();
+				// groups may have been lost with the server, re-read own pending entries
+				replaying.addAll(listeners.keySet());
+				while (!closed) {
+					if (listeners.isEmpty()) {
+						sleep(BLOCK_MS);
+						continue;
+					}
+					readOnce(jedis, grouped);
+					backoff = RECONNECT_INITIAL_MS;
+				}
+			} catch (Exception e) {
+				if (closed) {
+					break;
+				}
+				handler.debug("Redis stream read error: " + e.getMessage() + " (reconnect in " + backoff + "ms)");
+				sleep(backoff);
+				backoff = Math.min(RECONNECT_MAX_MS, backoff * 2);
+			}
+		}
+		handler.debug("Redis stream reader stopped");
+	}
+
+	private void readOnce(Jedis jedis, Set<String> grouped) {
+		Map<String, StreamEntryID> streams = new LinkedHashMap<>();
+		Set<String> replayed = new HashSet<>();
+		for (String stream : listeners.keySet()) {
+			if (grouped.add(stream)) {
+				createGroup(jedis, stream);
+			}
+			if (replaying.contains(stream)) {
+				// "0": entries delivered to this consumer but never acked
+				streams.put(stream, new StreamEntryID(0));
+				replayed.add(stream);
+			} else {
+				streams.put(stream, StreamEntryID.XREADGROUP_UNDELIVERED_ENTRY);
+			}
+		}
+
+		XReadGroupParams params = XReadGroupParams.xReadGroupParams().count(batchSize);
+		if (replayed.isEmpty()) {
+			params.block(BLOCK_MS);
+		}
+		List<Map.Entry<String, List<StreamEntry>>> result = jedis.xreadGroup(group, consumer, params, streams);
+
+		Set<String> stillReplaying = new HashSet<>();
+		if (result != null) {
+			for (Map.Entry<String, List<StreamEntry>> perStream : result) {
+				String stream = perStream.getKey();
+				List<StreamEntry> entries = perStream.getValue();
+				if (entries == null || entries.isEmpty()) {
+					continue;
+				}
+				if (replayed.contains(stream) && entries.size() >= batchSize) {
+					stillReplaying.add(stream);
+				}
+				deliver(jedis, stream, entries);
+			}
+		}
+		// a short (or empty) read means this stream's backlog is done
+		replayed.removeAll(stillReplaying);
+		replaying.removeAll(replayed);
+	}
+
+	private void deliver(Jedis jedis, String stream, List<StreamEntry> entries) {
+		BiConsumer<String, JsonEnvelope> listener = listeners.get(stream);
+		List<StreamEntryID> ids = new ArrayList<>(entries.size());
+		for (StreamEntry entry : entries) {
+			ids.add(entry.getID());
+			Map<String, String> fields = entry.getFields();
+			String payload = fields == null ? null : fields.get(FIELD_ENVELOPE);
+			if (payload == null || listener == null) {
+				continue; // trimmed away or unsubscribed meanwhile
+			}
+			try {
+				listener.accept(stream, JsonEnvelopeCodec.decode(payload));
+			} catch (Exception e) {
+				handler.debug("Redis stream message failed on " + stream + " " + entry.getID() + ": " + e.getMessage());
+			}
+		}
+		jedis.xack(stream, group, ids.toArray(new StreamEntryID[0]));
+	}
+
+	private void createGroup(Jedis jedis, String stream) {
+		try {
+			jedis.xgroupCreate(stream, group,
+					readFromStart ? new StreamEntryID(0) : StreamEntryID.XGROUP_LAST_ENTRY, true);
+			handler.debug("Redis stream group " + group + " created on " + stream);
+		} catch (JedisDataException e) {
+			if (e.getMessage() == null || !e.getMessage().startsWith("BUSYGROUP")) {
+				throw e;
+			}
+			// already exists: resume from its last delivered id
+		}
+	}
+
+	private static void sleep(long ms) {
+		try {
+			Thread.sleep(ms);
+		} catch (InterruptedException ignored) {
+			// close() interrupts
+		}
+	}
+}
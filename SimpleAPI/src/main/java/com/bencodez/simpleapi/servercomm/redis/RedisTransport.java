@@ -0,0 +1,60 @@
+package com.bencodez.simpleapi.servercomm.redis;
+
+import java.util.function.Function;
+
+import com.bencodez.simpleapi.servercomm.codec.JsonEnvelope;
+import com.bencodez.simpleapi.servercomm.transport.Transport;
+
+/**
+ * {@link Transport} over {@link RedisHandler#publishEnvelopeFuture(String, JsonEnvelope)}.
+ * A send waits until Redis accepted the publish, so a full queue, a closed
+ * handler or a failed publish all count as failures and the router can fail
+ * over. A send that times out may still be published later.
+ */
+public class RedisTransport implements Transport {
+
+	private final String name;
+	private final RedisHandler handler;
+	private final Function<String, String> channelForTarget;
+	private volatile long sendTimeoutMs = 5_000;
+
+	/**
+	 * @param channelForTarget maps the target server (null for the proxy) to a
+	 *                         Redis channel
+	 */
+	public RedisTransport(RedisHandler handler, Function<String, String> channelForTarget) {
+		this("redis", handler, channelForTarget);
+	}
+
+	public RedisTransport(String name, RedisHandler handler, Function<String, String> channelForTarget) {
+		this.name = name;
+		this.handler = handler;
+		this.channelForTarget = channelForTarget;
+	}
+
+	@Override
+	public String getName() {
+		return name;
+	}
+
+	public long getSendTimeoutMs() {
+		return sendTimeoutMs;
+	}
+
+	/**
+	 * How long a send waits for the publish before failing.
+	 */
+	public void setSendTimeoutMs(long sendTimeoutMs) {
+		this.sendTimeoutMs = Math.max(1, sendTimeoutMs);
+	}
+
+	@Override
+	public void send(String target, JsonEnvelope envelope) throws Exception {
+		Transport.await(handler.publishEnvelopeFuture(channelForTarget.apply(target), envelope), sendTimeoutMs);
+	}
+
+	@Override
+	public boolean isHealthy() {
+		return handler.ping();
+	}
+}
@@ -0,0 +1,221 @@
+package com.bencodez.simpleapi.servercomm.rpc;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+import com.bencodez.simpleapi.servercomm.codec.JsonEnvelope;
+
+/**
+ * Request/response over any one-way envelope transport.
+ *
+ * A request is an ordinary envelope carrying a correlation id in
+ * {@link #FIELD_ID}; the receiving side's {@link Responder} for that
+ * sub-channel answers with an envelope carrying the same id and
+ * {@link #FIELD_REPLY}. Since everything lives in the envelope fields it works
+ * over sockets, Redis, MySQL and plugin messages alike. Deadlines share one
+ * {@link HashedWheelTimer}.
+ */
+public class EnvelopeRpc {
+
+	public static final String FIELD_ID = "rpcId";
+	public static final String FIELD_REPLY = "rpcReply";
+	public static final String FIELD_FROM = "rpcFrom";
+	public static final String FIELD_ERROR = "rpcError";
+
+	/**
+	 * Answers requests on one sub-channel. Runs on the thread that received the
+	 * request.
+	 */
+	@FunctionalInterface
+	public interface Responder {
+		/**
+		 * @return the response, or null for an empty one
+		 */
+		JsonEnvelope respond(JsonEnvelope request) throws Exception;
+	}
+
+	/**
+	 * The remote responder threw; the message is its exception's.
+	 */
+	public static class RemoteException extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+
+		public RemoteException(String message) {
+			super(message);
+		}
+	}
+
+	private static volatile HashedWheelTimer sharedTimer;
+
+	private final HashedWheelTimer timer;
+	private final Map<String, CompletableFuture<JsonEnvelope>> pending = new ConcurrentHashMap<>();
+	private final Map<String, Responder> responders = new ConcurrentHashMap<>();
+	private volatile String localName;
+
+	/**
+	 * Uses {@link #sharedTimer()}, started by the first request rather than
+	 * here, so handlers that never send one don't run a timer thread.
+	 */
+	public EnvelopeRpc() {
+		this.timer = null;
+	}
+
+	public EnvelopeRpc(HashedWheelTimer timer) {
+		this.timer = timer;
+	}
+
+	/**
+	 * One timer thread for every RPC user in the JVM.
+	 */
+	public static HashedWheelTimer sharedTimer() {
+		HashedWheelTimer timer = sharedTimer;
+		if (timer == null) {
+			synchronized (EnvelopeRpc.class) {
+				timer = sharedTimer;
+				if (timer == null) {
+					timer = new HashedWheelTimer("SimpleAPI-RpcTimer");
+					sharedTimer = timer;
+				}
+			}
+		}
+		return timer;
+	}
+
+	public String getLocalName() {
+		return localName;
+	}
+
+	/**
+	 * Name stamped into requests as {@link #FIELD_FROM}, so a proxy knows which
+	 * server to answer.
+	 */
+	public void setLocalName(String localName) {
+		this.localName = localName;
+	}
+
+	public void addResponder(String subChannel, Responder responder) {
+		responders.put(subChannel.toLowerCase(Locale.ROOT), responder);
+	}
+
+	public void removeResponder(String subChannel) {
+		responders.remove(subChannel.toLowerCase(Locale.ROOT));
+	}
+
+	public int getPendingCount() {
+		return pending.size();
+	}
+
+	/**
+	 * Sends a request and returns its response. The future fails with a
+	 * {@link TimeoutException} after timeoutMs, or with a
+	 * {@link RemoteException} if the responder threw.
+	 *
+	 * @param sender transport send for the request
+	 */
+	public CompletableFuture<JsonEnvelope> request(JsonEnvelope request, long timeoutMs,
+			Consumer<JsonEnvelope> sender) {
+		String id = UUID.randomUUID().toString();
+		JsonEnvelope.Builder builder = request.toBuilder().put(FIELD_ID, id);
+		if (localName != null) {
+			builder.put(FIELD_FROM, localName);
+		}
+
+		CompletableFuture<JsonEnvelope> future = new CompletableFuture<>();
+		pending.put(id, future);
+		HashedWheelTimer.Timeout timeout = (timer != null ? timer : sharedTimer()).newTimeout(() -> {
+			if (pending.remove(id, future)) {
+				future.completeExceptionally(new TimeoutException(
+						"No response to " + request.getSubChannel() + " within " + timeoutMs + "ms"));
+			}
+		}, timeoutMs, TimeUnit.MILLISECONDS);
+		// also covers the caller cancelling
+		future.whenComplete((response, error) -> {
+			timeout.cancel();
+			pending.remove(id, future);
+		});
+
+		try {
+			sender.accept(builder.build());
+		} catch (RuntimeException e) {
+			future.completeExceptionally(e);
+		}
+		return future;
+	}
+
+	/**
+	 * Feeds a received envelope through the RPC layer: completes the matching
+	 * request for a response, or runs the responder for a request.
+	 *
+	 * @param replySender transport send back to the requester
+	 * @return true if the envelope was an RPC message and has been handled;
+	 *         false for ordinary messages and requests without a responder
+	 */
+	public boolean handle(JsonEnvelope message, Consumer<JsonEnvelope> replySender) {
+		String id = message.getFields().get(FIELD_ID);
+		if (id == null) {
+			return false;
+		}
+
+		if (message.getFields().containsKey(FIELD_REPLY)) {
+			CompletableFuture<JsonEnvelope> future = pending.remove(id);
+			if (future != null) {
+				String error = message.getFields().get(FIELD_ERROR);
+				if (error != null) {
+					future.completeExceptionally(new RemoteException(error));
+				} else {
+					future.complete(stripRpcFields(message));
+				}
+			}
+			return true; // late or foreign replies are not ordinary messages either
+		}
+
+		Responder responder = responders.get(message.getSubChannel().toLowerCase(Locale.ROOT));
+		if (responder == null) {
+			return false;
+		}
+		JsonEnvelope response;
+		try {
+			response = responder.respond(message);
+		} catch (Exception e) {
+			replySender.accept(JsonEnvelope.builder(message.getSubChannel()).put(FIELD_ID, id).put(FIELD_REPLY, true)
+					.put(FIELD_ERROR, e.getMessage() == null ? e.getClass().getName() : e.getMessage()).build());
+			return true;
+		}
+		reply(message, response, replySender);
+		return true;
+	}
+
+	/**
+	 * Answers a request, for responders that finish later.
+	 */
+	public void reply(JsonEnvelope request, JsonEnvelope response, Consumer<JsonEnvelope> replySender) {
+		JsonEnvelope.Builder builder = response != null ? response.toBuilder()
+				: JsonEnvelope.builder(request.getSubChannel());
+		replySender.accept(builder.put(FIELD_ID, request.getFields().get(FIELD_ID)).put(FIELD_REPLY, true).build());
+	}
+
+	/**
+	 * Fails every outstanding request, e.g. on shutdown.
+	 */
+	public void cancelAll() {
+		for (CompletableFuture<JsonEnvelope> future : pending.values()) {
+			future.cancel(false);
+		}
+		pending.clear();
+	}
+
+	private static JsonEnvelope stripRpcFields(JsonEnvelope message) {
+		Map<String, String> fields = new LinkedHashMap<>(message.getFields());
+		fields.remove(FIELD_ID);
+		fields.remove(FIELD_REPLY);
+		fields.remove(FIELD_FROM);
+		return new JsonEnvelope(message.getSubChannel(), message.getSchema(), fields);
+	}
+}
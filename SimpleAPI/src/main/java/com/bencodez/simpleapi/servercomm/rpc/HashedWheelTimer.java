@@ -0,0 +1,194 @@
+package com.bencodez.simpleapi.servercomm.rpc;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Approximate timer for many short timeouts that are usually cancelled, such as
+ * RPC deadlines.
+ *
+ * Timeouts are dropped into a ring of buckets by deadline and one thread
+ * advances the ring every tick, so scheduling and cancelling are O(1) with no
+ * per-timeout task object in a scheduler queue. Expiry is accurate to one tick.
+ * Tasks run on the timer thread and should be quick.
+ */
+public class HashedWheelTimer {
+
+	private static final int ST_PENDING = 0;
+	private static final int ST_CANCELLED = 1;
+	private static final int ST_EXPIRED = 2;
+
+	/**
+	 * Handle for a scheduled task.
+	 */
+	public final class Timeout {
+		private final Runnable task;
+		private final long deadlineNanos;
+		private final AtomicInteger state = new AtomicInteger(ST_PENDING);
+		private long remainingRounds;
+
+		private Timeout(Runnable task, long deadlineNanos) {
+			this.task = task;
+			this.deadlineNanos = deadlineNanos;
+		}
+
+		/**
+		 * @return true if this call stopped the task from running
+		 */
+		public boolean cancel() {
+			if (state.compareAndSet(ST_PENDING, ST_CANCELLED)) {
+				pendingCount.decrementAndGet();
+				return true;
+			}
+			return false;
+		}
+
+		public boolean isCancelled() {
+			return state.get() == ST_CANCELLED;
+		}
+
+		public boolean isExpired() {
+			return state.get() == ST_EXPIRED;
+		}
+
+		private void expire() {
+			if (!state.compareAndSet(ST_PENDING, ST_EXPIRED)) {
+				return;
+			}
+			pendingCount.decrementAndGet();
+			try {
+				task.run();
+			} catch (Throwable t) {
+				Consumer<Throwable> handler = errorHandler;
+				if (handler != null) {
+					handler.accept(t);
+				} else {
+					Logger.getLogger(HashedWheelTimer.class.getName()).log(Level.WARNING,
+							"Timeout task failed on " + worker.getName(), t);
+				}
+			}
+		}
+	}
+
+	private final long tickNanos;
+	private final List<Timeout>[] wheel;
+	private final int mask;
+	private final Queue<Timeout> added = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger pendingCount = new AtomicInteger();
+	private final Thread worker;
+	private final long startNanos;
+	private volatile boolean stopped = false;
+	private volatile Consumer<Throwable> errorHandler;
+	private long tick = 0; // worker thread only
+
+	public HashedWheelTimer(String name) {
+		this(name, 50, TimeUnit.MILLISECONDS, 512);
+	}
+
+	/**
+	 * @param tickDuration resolution of the timer
+	 * @param ticksPerWheel number of buckets, rounded up to a power of two
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public HashedWheelTimer(String name, long tickDuration, TimeUnit unit, int ticksPerWheel) {
+		this.tickNanos = Math.max(TimeUnit.MILLISECONDS.toNanos(1), unit.toNanos(tickDuration));
+		int size = Integer.highestOneBit(Math.max(1, ticksPerWheel - 1)) << 1;
+		this.wheel = new List[size];
+		for (int i = 0; i < size; i++) {
+			wheel[i] = new ArrayList<>();
+		}
+		this.mask = size - 1;
+		this.startNanos = System.nanoTime();
+		this.worker = new Thread(this::run, name);
+		worker.setDaemon(true);
+		worker.start();
+	}
+
+	public Timeout newTimeout(Runnable task, long delay, TimeUnit unit) {
+		if (stopped) {
+			throw new IllegalStateException("Timer is stopped");
+		}
+		Timeout timeout = new Timeout(task, System.nanoTime() + unit.toNanos(Math.max(0, delay)));
+		pendingCount.incrementAndGet();
+		added.add(timeout);
+		return timeout;
+	}
+
+	/**
+	 * @return timeouts neither expired nor cancelled
+	 */
+	public int getPendingCount() {
+		return pendingCount.get();
+	}
+
+	/**
+	 * Receives exceptions thrown by timeout tasks, on the timer thread. Without
+	 * one they are logged through java.util.logging.
+	 */
+	public void setErrorHandler(Consumer<Throwable> errorHandler) {
+		this.errorHandler = errorHandler;
+	}
+
+	/**
+	 * Stops the worker; pending timeouts never run.
+	 */
+	public void stop() {
+		stopped = true;
+		worker.interrupt();
+	}
+
+	private void run() {
+		while (!stopped) {
+			long deadline = startNanos + (tick + 1) * tickNanos;
+			long sleepNanos = deadline - System.nanoTime();
+			if (sleepNanos > 0) {
+				try {
+					TimeUnit.NANOSECONDS.sleep(sleepNanos);
+				} catch (InterruptedException e) {
+					if (stopped) {
+						return;
+					}
+				}
+				continue;
+			}
+			transferAdded();
+			expireBucket(wheel[(int) (tick & mask)]);
+			tick++;
+		}
+	}
+
+	private void transferAdded() {
+		Timeout timeout;
+		while ((timeout = added.poll()) != null) {
+			if (timeout.isCancelled()) {
+				continue;
+			}
+			long ticks = Math.max(tick, (timeout.deadlineNanos - startNanos + tickNanos - 1) / tickNanos);
+			timeout.remainingRounds = (ticks - tick) / wheel.length;
+			wheel[(int) (ticks & mask)].add(timeout);
+		}
+	}
+
+	private void expireBucket(List<Timeout> bucket) {
+		Iterator<Timeout> it = bucket.iterator();
+		while (it.hasNext()) {
+			Timeout timeout = it.next();
+			if (timeout.isCancelled()) {
+				it.remove();
+			} else if (timeout.remainingRounds <= 0) {
+				it.remove();
+				timeout.expire();
+			} else {
+				timeout.remainingRounds--;
+			}
+		}
+	}
+}
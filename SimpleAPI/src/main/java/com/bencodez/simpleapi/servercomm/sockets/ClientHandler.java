@@ -1,12 +1,16 @@
 package com.bencodez.simpleapi.servercomm.sockets;
 
 import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UTFDataFormatException;
 import java.net.Socket;
 import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
 
 import com.bencodez.simpleapi.encryption.EncryptionHandler;
 import com.bencodez.simpleapi.servercomm.codec.JsonEnvelope;
 import com.bencodez.simpleapi.servercomm.codec.JsonEnvelopeCodec;
+import com.bencodez.simpleapi.servercomm.dispatch.EnvelopeCoalescer;
 
 public class ClientHandler {
 	private Socket clientSocket;
@@ -14,11 +18,15 @@ public class ClientHandler {
 	private final EncryptionHandler encryptionHandler;
 	private final String host;
 	private final int port;
+	private final boolean persistent;
+	private boolean binaryCodec = false;
+	private volatile EnvelopeCoalescer coalescer;
 
 	public ClientHandler(String host, int port, EncryptionHandler handle) {
 		this.host = host;
 		this.port = port;
 		this.encryptionHandler = handle;
+		this.persistent = false;
 	}
 
 	public ClientHandler(String host, int port, EncryptionHandler handle, boolean debug) {
@@ -26,6 +34,56 @@ public class ClientHandler {
 		this.port = port;
 		this.encryptionHandler = handle;
 		this.debug = debug;
+		this.persistent = false;
+	}
+
+	/**
+	 * @param persistent true to send over one shared, long-lived connection to
+	 *                   this peer instead of a new socket per message; the peer
+	 *                   must run a {@link SocketServer} from this version or later
+	 */
+	public ClientHandler(String host, int port, EncryptionHandler handle, boolean debug, boolean persistent) {
+		this.host = host;
+		this.port = port;
+		this.encryptionHandler = handle;
+		this.debug = debug;
+		this.persistent = persistent;
+	}
+
+	public boolean isPersistent() {
+		return persistent;
+	}
+
+	public boolean isBinaryCodec() {
+		return binaryCodec;
+	}
+
+	/**
+	 * Send with {@link com.bencodez.simpleapi.servercomm.codec.BinaryEnvelopeCodec}
+	 * instead of JSON. Only used for persistent connections without encryption;
+	 * the receiving {@link SocketServer} detects the format per message.
+	 */
+	public void setBinaryCodec(boolean binaryCodec) {
+		this.binaryCodec = binaryCodec;
+	}
+
+	/**
+	 * Outbound coalescing for {@link #sendEnvelope(JsonEnvelope)}, created on
+	 * first use. Nothing is coalesced until a sub-channel is added.
+	 * {@link #stopConnection()} flushes and closes it; envelopes sent after
+	 * that go out directly.
+	 */
+	public synchronized EnvelopeCoalescer getCoalescer() {
+		if (coalescer == null) {
+			coalescer = new EnvelopeCoalescer("SocketCoalesceThread-" + host + ":" + port, (destination, envelope) -> {
+				// a refused hand-off fails the coalesced future
+				CompletableFuture<Void> sent = write(debug, envelope, false);
+				if (sent.isCompletedExceptionally()) {
+					sent.join();
+				}
+			});
+		}
+		return coalescer;
 	}
 
 	private void connect() {
@@ -40,6 +98,40 @@ public class ClientHandler {
 	}
 
 	public void sendEnvelope(boolean debug, JsonEnvelope envelope) {
+		EnvelopeCoalescer coalescer = this.coalescer;
+		if (coalescer != null && coalescer.offer(null, envelope) != null) {
+			return;
+		}
+		write(debug, envelope, false);
+	}
+
+	/**
+	 * Like {@link #sendEnvelope(JsonEnvelope)}, but reports the outcome. The
+	 * future completes once the envelope was written to the peer (flushed, for a
+	 * persistent connection) and fails with the IO error otherwise. A
+	 * non-persistent send writes on the calling thread, so its future is already
+	 * done. A coalesced envelope's future completes when it is handed over.
+	 */
+	public CompletableFuture<Void> sendEnvelopeFuture(JsonEnvelope envelope) {
+		EnvelopeCoalescer coalescer = this.coalescer;
+		CompletableFuture<Void> held = coalescer != null ? coalescer.offer(null, envelope) : null;
+		return held != null ? held : write(debug, envelope, true);
+	}
+
+	/**
+	 * @param report wait for the persistent connection's write; otherwise the
+	 *               envelope is only queued, and kept through a reconnect
+	 */
+	private CompletableFuture<Void> write(boolean debug, JsonEnvelope envelope, boolean report) {
+		if (persistent && binaryCodec && encryptionHandler == null) {
+			if (debug) {
+				System.out.println("Socket Sending Binary Envelope: " + envelope.getSubChannel() + " "
+						+ envelope.getFields());
+			}
+			PersistentConnection connection = PersistentConnection.get(host, port);
+			return report ? connection.sendFuture(envelope) : queued(connection.send(envelope));
+		}
+
 		String payload = JsonEnvelopeCodec.encode(envelope);
 
 		if (debug) {
@@ -47,28 +139,84 @@ public class ClientHandler {
 			System.out.println("Socket Sending Payload Bytes: " + payload.getBytes(StandardCharsets.UTF_8).length);
 		}
 
-		connect();
-		if (clientSocket == null || clientSocket.isClosed()) {
-			System.out.println("Failed to connect to " + host + ":" + port + " to send envelope: "
-					+ envelope.getSubChannel());
-			return;
+		if (persistent && encryptionHandler != null && encryptionHandler.isBinarySafe()) {
+			// frames carry raw bytes, no need for Base64
+			byte[] encrypted = encryptionHandler.encrypt(payload.getBytes(StandardCharsets.UTF_8));
+			if (encrypted == null) {
+				return CompletableFuture
+						.failedFuture(new IOException("Failed to encrypt envelope: " + envelope.getSubChannel()));
+			}
+			PersistentConnection connection = PersistentConnection.get(host, port);
+			return report ? connection.sendFuture(encrypted) : queued(connection.send(encrypted));
 		}
 
 		String encrypted = encryptionHandler != null ? encryptionHandler.encrypt(payload) : payload;
-		try (DataOutputStream ds = new DataOutputStream(clientSocket.getOutputStream())) {
-			ds.writeUTF(encrypted);
-		} catch (Exception e1) {
-			e1.printStackTrace();
-		} finally {
-			stopConnection();
+		if (encrypted == null) {
+			return CompletableFuture
+					.failedFuture(new IOException("Failed to encrypt envelope: " + envelope.getSubChannel()));
+		}
+
+		if (persistent) {
+			PersistentConnection connection = PersistentConnection.get(host, port);
+			byte[] bytes = encrypted.getBytes(StandardCharsets.UTF_8);
+			return report ? connection.sendFuture(bytes) : queued(connection.send(bytes));
 		}
+
+		// one socket per message shared through clientSocket, so only the
+		// connect, write and close are locked; encoding and encryption above
+		// run in parallel
+		synchronized (this) {
+			connect();
+			if (clientSocket == null || clientSocket.isClosed()) {
+				System.out.println("Failed to connect to " + host + ":" + port + " to send envelope: "
+						+ envelope.getSubChannel());
+				return CompletableFuture.failedFuture(new IOException("Failed to connect to " + host + ":" + port));
+			}
+
+			try (DataOutputStream ds = new DataOutputStream(clientSocket.getOutputStream())) {
+				try {
+					ds.writeUTF(encrypted);
+				} catch (UTFDataFormatException tooLong) {
+					// over the 64KB writeUTF limit (nothing was written yet): send
+					// chunked binary frames instead, which needs an up to date peer
+					SocketFrames.writePreface(ds);
+					SocketFrames.writeChunked(ds, encrypted.getBytes(StandardCharsets.UTF_8));
+				}
+			} catch (Exception e1) {
+				e1.printStackTrace();
+				return CompletableFuture.failedFuture(e1);
+			} finally {
+				closeSocket();
+			}
+		}
+		return CompletableFuture.completedFuture(null);
+	}
+
+	private CompletableFuture<Void> queued(boolean queued) {
+		if (queued) {
+			return CompletableFuture.completedFuture(null);
+		}
+		return CompletableFuture
+				.failedFuture(new IOException("Socket queue to " + host + ":" + port + " is closed or full"));
 	}
 
 	public void sendEnvelope(JsonEnvelope envelope) {
 		sendEnvelope(debug, envelope);
 	}
 
+	/**
+	 * Sends anything the coalescer is holding back, stops its thread and closes
+	 * the socket.
+	 */
 	public void stopConnection() {
+		EnvelopeCoalescer coalescer = this.coalescer;
+		if (coalescer != null) {
+			coalescer.close();
+		}
+		closeSocket();
+	}
+
+	private synchronized void closeSocket() {
 		try {
 			if (clientSocket != null) {
 				clientSocket.close();
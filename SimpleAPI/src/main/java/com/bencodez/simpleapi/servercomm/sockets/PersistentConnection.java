@@ -0,0 +1,263 @@
+package com.bencodez.simpleapi.servercomm.sockets;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import com.bencodez.simpleapi.servercomm.codec.BinaryEnvelopeCodec;
+import com.bencodez.simpleapi.servercomm.codec.JsonEnvelope;
+
+/**
+ * One long-lived, length-prefixed connection to a peer, shared by every
+ * {@link ClientHandler} pointing at the same host and port.
+ *
+ * Senders only enqueue; a single writer thread drains the queue and writes
+ * many frames per flush, so any number of envelopes can be in flight without
+ * a TCP handshake each. The connection is opened on demand, re-opened with
+ * backoff after errors, and closed again after a quiet period.
+ */
+public class PersistentConnection {
+
+	private static final Map<String, PersistentConnection> PEERS = new ConcurrentHashMap<>();
+
+	private static final int QUEUE_CAPACITY = 10_000;
+	private static final int MAX_MESSAGES_PER_FLUSH = 256;
+	private static final long IDLE_CLOSE_MS = 60_000L;
+	private static final long MAX_BACKOFF_MS = 10_000L;
+	private static final int CONNECT_TIMEOUT_MS = 5_000;
+
+	/**
+	 * Shared connection for a peer, created on first use.
+	 */
+	public static PersistentConnection get(String host, int port) {
+		return PEERS.compute(host + ":" + port, (k, existing) -> existing != null && !existing.closed ? existing
+				: new PersistentConnection(host, port));
+	}
+
+	/**
+	 * Closes every shared connection, e.g. on plugin disable.
+	 */
+	public static void closeAll() {
+		for (PersistentConnection connection : PEERS.values()) {
+			connection.close();
+		}
+		PEERS.clear();
+	}
+
+	private final String host;
+	private final int port;
+	// byte[] payloads, or JsonEnvelopes to binary-encode on the writer thread,
+	// wrapped in a Tracked when the sender waits for the write.
+	// Whole messages only: chunking happens while writing, so a full queue
+	// rejects a message as a whole and never strands some of its chunks
+	private final BlockingQueue<Object> queue = new LinkedBlockingQueue<>(QUEUE_CAPACITY);
+	private final Thread writer;
+
+	private volatile boolean closed = false;
+	// the last write failed and the writer is backing off
+	private volatile boolean failing = false;
+	private Socket socket;
+	private DataOutputStream out;
+	private final BinaryEnvelopeCodec.Session session = new BinaryEnvelopeCodec.Session();
+
+	private PersistentConnection(String host, int port) {
+		this.host = host;
+		this.port = port;
+		this.writer = Thread.ofVirtual().name("SimpleAPI-Socket-" + host + ":" + port).start(this::writeLoop);
+	}
+
+	public String getHost() {
+		return host;
+	}
+
+	public int getPort() {
+		return port;
+	}
+
+	/**
+	 * Queue a payload for sending.
+	 *
+	 * @return false if the connection is closed or the queue is full
+	 */
+	public boolean send(byte[] payload) {
+		return enqueue(payload);
+	}
+
+	/**
+	 * Queue an envelope for sending with {@link BinaryEnvelopeCodec}. It is
+	 * encoded on the writer thread with this connection's dictionary session.
+	 *
+	 * @return false if the connection is closed or the queue is full
+	 */
+	public boolean send(JsonEnvelope envelope) {
+		return enqueue(envelope);
+	}
+
+	/**
+	 * Like {@link #send(byte[])}, but reports the outcome: the future completes
+	 * once the payload was written and flushed. It fails straight away while the
+	 * connection is down, so callers can pick another route instead of waiting
+	 * out the reconnect backoff.
+	 */
+	public CompletableFuture<Void> sendFuture(byte[] payload) {
+		return enqueueTracked(payload);
+	}
+
+	/**
+	 * Like {@link #send(JsonEnvelope)}, reporting the outcome as
+	 * {@link #sendFuture(byte[])} does.
+	 */
+	public CompletableFuture<Void> sendFuture(JsonEnvelope envelope) {
+		return enqueueTracked(envelope);
+	}
+
+	private CompletableFuture<Void> enqueueTracked(Object item) {
+		if (failing) {
+			return CompletableFuture
+					.failedFuture(new IOException("Socket connection to " + host + ":" + port + " is down"));
+		}
+		Tracked tracked = new Tracked(item);
+		if (!enqueue(tracked)) {
+			return CompletableFuture
+					.failedFuture(new IOException("Socket queue to " + host + ":" + port + " is closed or full"));
+		}
+		return tracked.future;
+	}
+
+	private boolean enqueue(Object item) {
+		if (closed) {
+			return false;
+		}
+		if (!queue.offer(item)) {
+			System.out.println("Socket queue to " + host + ":" + port + " is full, dropping message");
+			return false;
+		}
+		return true;
+	}
+
+	public int getQueuedCount() {
+		return queue.size();
+	}
+
+	public boolean isConnected() {
+		Socket s = socket;
+		return s != null && s.isConnected() && !s.isClosed();
+	}
+
+	public boolean isClosed() {
+		return closed;
+	}
+
+	public void close() {
+		closed = true;
+		writer.interrupt();
+		PEERS.remove(host + ":" + port, this);
+	}
+
+	private void writeLoop() {
+		List<Object> batch = new ArrayList<>();
+		long backoff = 250;
+		try {
+			while (!closed) {
+				if (batch.isEmpty()) {
+					Object first = queue.poll(IDLE_CLOSE_MS, TimeUnit.MILLISECONDS);
+					if (first == null) {
+						disconnect();
+						continue;
+					}
+					batch.add(first);
+					queue.drainTo(batch, MAX_MESSAGES_PER_FLUSH - 1);
+				}
+
+				try {
+					if (out == null) {
+						connect();
+					}
+					for (Object queued : batch) {
+						Object item = queued instanceof Tracked ? ((Tracked) queued).item : queued;
+						byte[] payload = item instanceof JsonEnvelope ? session.encode((JsonEnvelope) item)
+								: (byte[]) item;
+						SocketFrames.writeChunked(out, payload);
+					}
+					out.flush();
+					failing = false;
+					for (Object queued : batch) {
+						if (queued instanceof Tracked) {
+							((Tracked) queued).future.complete(null);
+						}
+					}
+					batch.clear();
+					backoff = 250;
+				} catch (IOException e) {
+					// keep the batch and retry once reconnected
+					failing = true;
+					System.out.println("Socket connection to " + host + ":" + port + " failed, retrying in "
+							+ backoff + "ms: " + e.getMessage());
+					disconnect();
+					Thread.sleep(backoff);
+					backoff = Math.min(MAX_BACKOFF_MS, backoff * 2);
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			disconnect();
+			queue.drainTo(batch);
+			for (Object queued : batch) {
+				if (queued instanceof Tracked) {
+					((Tracked) queued).future.completeExceptionally(
+							new IOException("Socket connection to " + host + ":" + port + " closed"));
+				}
+			}
+		}
+	}
+
+	private void connect() throws IOException {
+		Socket s = new Socket();
+		try {
+			s.setTcpNoDelay(true);
+			s.setKeepAlive(true);
+			s.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT_MS);
+			DataOutputStream stream = new DataOutputStream(new BufferedOutputStream(s.getOutputStream(), 64 * 1024));
+			SocketFrames.writePreface(stream);
+			// the peer starts a fresh dictionary for every connection
+			session.reset();
+			socket = s;
+			out = stream;
+		} catch (IOException e) {
+			s.close();
+			throw e;
+		}
+	}
+
+	private void disconnect() {
+		out = null;
+		if (socket != null) {
+			try {
+				socket.close();
+			} catch (IOException e) {
+				// already gone
+			}
+			socket = null;
+		}
+	}
+
+	private static final class Tracked {
+		private final Object item;
+		private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+		private Tracked(Object item) {
+			this.item = item;
+		}
+	}
+}
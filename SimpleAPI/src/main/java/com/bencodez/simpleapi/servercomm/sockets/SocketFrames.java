@@ -0,0 +1,91 @@
+package com.bencodez.simpleapi.servercomm.sockets;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import com.bencodez.simpleapi.servercomm.codec.FrameCodec;
+
+/**
+ * Wire format for persistent socket connections.
+ *
+ * A persistent connection starts with a 4 byte preface, then carries any
+ * number of frames: a 4 byte big-endian length followed by the frame bytes.
+ * Version 1 frames hold the (possibly encrypted) payload directly; from
+ * version 2 each frame is a {@link FrameCodec} frame, so large envelopes are
+ * chunked and can interleave with small ones. The preface starts with 0xFF 0xFF 0xFF, which can never
+ * begin a legacy {@code writeUTF} frame (0xFF is not valid in modified UTF-8),
+ * so one server port accepts both.
+ */
+public final class SocketFrames {
+
+	public static final int PREFACE_VERSION = 2;
+
+	/** Largest {@link FrameCodec} frame written to a socket; bigger payloads are chunked. */
+	public static final int CHUNK_BYTES = 1024 * 1024;
+
+	/** Upper bound on a single frame, protects the reader from garbage lengths. */
+	public static final int MAX_FRAME_BYTES = 16 * 1024 * 1024;
+
+	private SocketFrames() {
+	}
+
+	public static void writePreface(OutputStream out) throws IOException {
+		out.write(new byte[] { (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) PREFACE_VERSION });
+	}
+
+	/**
+	 * Reads the preface if present. The stream must support mark/reset; when no
+	 * preface is found it is reset so the caller can read a legacy frame.
+	 *
+	 * @return preface version, or -1 for a legacy connection
+	 */
+	public static int readPreface(InputStream in) throws IOException {
+		in.mark(4);
+		byte[] head = new byte[4];
+		int read = 0;
+		while (read < 4) {
+			int n = in.read(head, read, 4 - read);
+			if (n < 0) {
+				break;
+			}
+			read += n;
+		}
+		if (read == 4 && (head[0] & 0xFF) == 0xFF && (head[1] & 0xFF) == 0xFF && (head[2] & 0xFF) == 0xFF) {
+			return head[3] & 0xFF;
+		}
+		in.reset();
+		return -1;
+	}
+
+	/**
+	 * Writes a payload as length-prefixed {@link FrameCodec} frames, chunked at
+	 * {@link #CHUNK_BYTES}.
+	 */
+	public static void writeChunked(DataOutputStream out, byte[] payload) throws IOException {
+		for (byte[] frame : FrameCodec.encode(payload, CHUNK_BYTES)) {
+			writeFrame(out, frame);
+		}
+	}
+
+	public static void writeFrame(DataOutputStream out, byte[] payload) throws IOException {
+		out.writeInt(payload.length);
+		out.write(payload);
+	}
+
+	/**
+	 * @return the next frame payload
+	 * @throws java.io.EOFException when the peer closed the connection
+	 */
+	public static byte[] readFrame(DataInputStream in) throws IOException {
+		int length = in.readInt();
+		if (length < 0 || length > MAX_FRAME_BYTES) {
+			throw new IOException("Invalid frame length " + length);
+		}
+		byte[] payload = new byte[length];
+		in.readFully(payload);
+		return payload;
+	}
+}
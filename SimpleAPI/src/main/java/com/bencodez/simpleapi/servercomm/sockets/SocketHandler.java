@@ -1,23 +1,35 @@
 package com.bencodez.simpleapi.servercomm.sockets;
 
-import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 import com.bencodez.simpleapi.encryption.EncryptionHandler;
 import com.bencodez.simpleapi.servercomm.codec.JsonEnvelope;
+import com.bencodez.simpleapi.servercomm.dispatch.DispatchPolicy;
+import com.bencodez.simpleapi.servercomm.dispatch.SubChannelRegistry;
 
 import lombok.Getter;
 
 public abstract class SocketHandler {
-	@Getter
-	private ArrayList<SocketReceiver> receiving;
+	private SubChannelRegistry<SocketReceiver> receiving;
 	@Getter
 	private SocketServer server;
 
 	private ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
 
+	// receivers without their own policy; the timer thread keeps the old
+	// single threaded, in order behaviour
+	private volatile DispatchPolicy dispatchPolicy = DispatchPolicy.executor(timer);
+
+	// policies given at registration, ahead of the receiver's own
+	private final Map<SocketReceiver, DispatchPolicy> registrationPolicies = new ConcurrentHashMap<>();
+
 	public SocketHandler(String threadName, String host, int port, EncryptionHandler handle) {
 		start(threadName, host, port, handle, false);
 	}
@@ -27,7 +39,83 @@ public abstract class SocketHandler {
 	}
 
 	public void add(SocketReceiver receive) {
-		receiving.add(receive);
+		receiving.register(receive.getIdent(), receive);
+	}
+
+	/**
+	 * @param executor where the receiver runs instead of the shared socket
+	 *                 timer thread; kept with this registration, the receiver
+	 *                 itself is not changed
+	 */
+	public void add(SocketReceiver receive, Executor executor) {
+		registrationPolicies.put(receive, DispatchPolicy.executor(executor));
+		add(receive);
+	}
+
+	public DispatchPolicy getDispatchPolicy() {
+		return dispatchPolicy;
+	}
+
+	/**
+	 * Default policy for receivers that don't set one, see
+	 * {@link SocketReceiver#setDispatchPolicy(DispatchPolicy)}. The previous
+	 * policy is shut down.
+	 */
+	public void setDispatchPolicy(DispatchPolicy dispatchPolicy) {
+		DispatchPolicy old = this.dispatchPolicy;
+		this.dispatchPolicy = dispatchPolicy;
+		if (old != null && old != dispatchPolicy) {
+			old.shutdown();
+		}
+	}
+
+	/**
+	 * @return envelopes waiting to run across the default and per receiver
+	 *         policies
+	 */
+	public int getDispatchQueueDepth() {
+		int depth = 0;
+		for (DispatchPolicy policy : getDispatchPolicies()) {
+			depth += policy.getQueueDepth();
+		}
+		return depth;
+	}
+
+	private Iterable<DispatchPolicy> getDispatchPolicies() {
+		Map<DispatchPolicy, Boolean> policies = new IdentityHashMap<>();
+		policies.put(dispatchPolicy, Boolean.TRUE);
+		if (receiving != null) {
+			for (SocketReceiver receiver : receiving.getListeners()) {
+				if (receiver.getDispatchPolicy() != null) {
+					policies.put(receiver.getDispatchPolicy(), Boolean.TRUE);
+				}
+			}
+		}
+		for (DispatchPolicy policy : registrationPolicies.values()) {
+			policies.put(policy, Boolean.TRUE);
+		}
+		return policies.keySet();
+	}
+
+	private DispatchPolicy getDispatchPolicy(SocketReceiver receiver) {
+		DispatchPolicy policy = registrationPolicies.get(receiver);
+		if (policy == null) {
+			policy = receiver.getDispatchPolicy();
+		}
+		return policy != null ? policy : dispatchPolicy;
+	}
+
+	public boolean remove(SocketReceiver receive) {
+		registrationPolicies.remove(receive);
+		return receiving.unregister(receive);
+	}
+
+	/**
+	 * @return unmodifiable snapshot of the registered receivers; use
+	 *         {@link #add} and {@link #remove} to change them
+	 */
+	public List<SocketReceiver> getReceiving() {
+		return receiving.getListeners();
 	}
 
 	public void closeConnection() {
@@ -35,6 +123,9 @@ public abstract class SocketHandler {
 			server.close();
 			server = null;
 		}
+		for (DispatchPolicy policy : getDispatchPolicies()) {
+			policy.shutdown();
+		}
 		if (timer != null) {
 			timer.shutdownNow();
 			timer = null;
@@ -44,7 +135,14 @@ public abstract class SocketHandler {
 	public abstract void log(String str);
 
 	public void start(String threadName, String host, int port, EncryptionHandler handle, boolean debug) {
-		receiving = new ArrayList<>();
+		// an empty ident receives everything
+		receiving = new SubChannelRegistry<>(ident -> ident == null || ident.isEmpty());
+		receiving.setErrorHandler((envelope, e) -> {
+			log("Error handling socket envelope " + envelope.getSubChannel() + ": " + e.getMessage());
+			if (debug) {
+				e.printStackTrace();
+			}
+		});
 
 		server = new SocketServer(threadName, host, port, handle, debug) {
 
@@ -56,13 +154,15 @@ public abstract class SocketHandler {
 			@Override
 			public void onReceive(JsonEnvelope envelope) {
 				if (envelope != null) {
-					for (SocketReceiver r : receiving) {
+					receiving.dispatch(envelope, (r, env) -> {
+						DispatchPolicy policy = getDispatchPolicy(r);
 						if (r.getSocketDelay() > 0) {
-							timer.schedule(() -> r.onReceive(envelope), r.getSocketDelay(), TimeUnit.MILLISECONDS);
+							timer.schedule(() -> policy.execute(env.getSubChannel(), () -> r.onReceive(env)),
+									r.getSocketDelay(), TimeUnit.MILLISECONDS);
 						} else {
-							timer.submit(() -> r.onReceive(envelope));
+							policy.execute(env.getSubChannel(), () -> r.onReceive(env));
 						}
-					}
+					});
 				} else {
 					log("Socket envelope invalid");
 				}
@@ -1,6 +1,7 @@
 package com.bencodez.simpleapi.servercomm.sockets;
 
 import com.bencodez.simpleapi.servercomm.codec.JsonEnvelope;
+import com.bencodez.simpleapi.servercomm.dispatch.DispatchPolicy;
 
 import lombok.Getter;
 
@@ -10,6 +11,9 @@ public abstract class SocketReceiver {
 	@Getter
 	private int socketDelay = 0;
 
+	@Getter
+	private DispatchPolicy dispatchPolicy;
+
 	public SocketReceiver() {
 		this.ident = "";
 	}
@@ -18,6 +22,13 @@ public abstract class SocketReceiver {
 		this.ident = ident == null ? "" : ident;
 	}
 
+	/**
+	 * Sub-channel this receiver handles; empty for all of them.
+	 */
+	public String getIdent() {
+		return ident;
+	}
+
 	public final void onReceive(JsonEnvelope envelope) {
 		if (envelope == null) {
 			return;
@@ -33,4 +44,13 @@ public abstract class SocketReceiver {
 		this.socketDelay = delay;
 		return this;
 	}
+
+	/**
+	 * Run this receiver with its own policy instead of the handler's, so slow
+	 * work here doesn't hold up other receivers.
+	 */
+	public SocketReceiver setDispatchPolicy(DispatchPolicy dispatchPolicy) {
+		this.dispatchPolicy = dispatchPolicy;
+		return this;
+	}
 }
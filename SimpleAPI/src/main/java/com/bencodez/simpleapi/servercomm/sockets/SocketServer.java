@@ -1,5 +1,6 @@
 package com.bencodez.simpleapi.servercomm.sockets;
 
+import java.io.BufferedInputStream;
 import java.io.DataInputStream;
 import java.io.EOFException;
 import java.io.IOException;
@@ -7,8 +8,12 @@ import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.bencodez.simpleapi.encryption.EncryptionHandler;
+import com.bencodez.simpleapi.servercomm.codec.BinaryEnvelopeCodec;
+import com.bencodez.simpleapi.servercomm.codec.FrameCodec;
 import com.bencodez.simpleapi.servercomm.codec.JsonEnvelope;
 import com.bencodez.simpleapi.servercomm.codec.JsonEnvelopeCodec;
 
@@ -31,6 +36,8 @@ public abstract class SocketServer extends Thread {
 
 	private ServerSocket server;
 
+	private final Set<Socket> connections = ConcurrentHashMap.newKeySet();
+
 	public SocketServer(String threadName, String host, int port, EncryptionHandler handle, boolean debug) {
 		super(threadName);
 		this.host = host;
@@ -72,6 +79,10 @@ public abstract class SocketServer extends Thread {
 			if (server != null) {
 				server.close();
 			}
+			for (Socket socket : connections) {
+				socket.close();
+			}
+			connections.clear();
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
@@ -88,32 +99,129 @@ public abstract class SocketServer extends Thread {
 		while (running) {
 			try {
 				Socket socket = server.accept();
-				socket.setSoTimeout(5000);
-				DataInputStream dis = new DataInputStream(socket.getInputStream());
-
-				String raw = dis.readUTF();
-				String decrypted = encryptionHandler != null ? encryptionHandler.decrypt(raw) : raw;
-
-				if (debug) {
-					logger("Debug: Socket Receiving Raw Bytes: " + decrypted.getBytes(StandardCharsets.UTF_8).length);
-					logger("Debug: Socket Receiving: " + decrypted);
+				// each connection gets its own virtual thread, so a slow or
+				// long-lived peer never blocks the accept loop
+				Thread.ofVirtual().name(getName() + "-" + socket.getRemoteSocketAddress())
+						.start(() -> handleConnection(socket));
+			} catch (Exception ex) {
+				if (!running) {
+					break;
 				}
+				logger("Error occurred while accepting socket connection");
+				ex.printStackTrace();
+				restartServer();
+			}
+		}
+	}
 
-				JsonEnvelope env = JsonEnvelopeCodec.decode(decrypted);
-				onReceive(env);
+	private void handleConnection(Socket socket) {
+		connections.add(socket);
+		try (Socket s = socket;
+				DataInputStream dis = new DataInputStream(new BufferedInputStream(s.getInputStream()))) {
+			s.setSoTimeout(5000);
+			int version = SocketFrames.readPreface(dis);
+			if (version < 0) {
+				// legacy: one writeUTF frame per connection
+				receive(dis.readUTF());
+				return;
+			}
 
-				dis.close();
-				socket.close();
-			} catch (EOFException e) {
-				logger("Error occurred while receiving socket message, enable debug to see more: " + e.getMessage());
+			// persistent: frames until the peer disconnects
+			FrameCodec.Reassembler reassembler = version >= 2 ? new FrameCodec.Reassembler() : null;
+			BinaryEnvelopeCodec.Session session = new BinaryEnvelopeCodec.Session();
+			s.setSoTimeout(0);
+			s.setKeepAlive(true);
+			if (debug) {
+				logger("Debug: Persistent socket connection from " + s.getRemoteSocketAddress() + " (v" + version
+						+ ")");
+			}
+			while (running && !s.isClosed()) {
+				byte[] frame;
+				try {
+					frame = SocketFrames.readFrame(dis);
+				} catch (EOFException e) {
+					break;
+				}
+				try {
+					byte[] payload = reassembler != null ? reassembler.accept(frame) : frame;
+					if (payload != null && encryptionHandler != null && encryptionHandler.isEncryptedBinary(payload)) {
+						receiveEncrypted(payload);
+					} else if (payload != null && encryptionHandler != null && BinaryEnvelopeCodec.isBinary(payload)) {
+						// plaintext binary must never bypass encryption
+						logger("Closing socket connection from " + s.getRemoteSocketAddress()
+								+ " after an unencrypted binary envelope");
+						break;
+					} else if (payload != null && BinaryEnvelopeCodec.isBinary(payload)) {
+						JsonEnvelope env;
+						try {
+							env = session.decode(payload);
+						} catch (IOException | RuntimeException e) {
+							// the sender already counts this message's names as known; close so it
+							// reconnects and both dictionaries start empty
+							logger("Closing socket connection from " + s.getRemoteSocketAddress()
+									+ " after a bad binary envelope: " + e.getMessage());
+							break;
+						}
+						receive(env);
+					} else if (payload != null && encryptionHandler == null && !debug) {
+						receive(JsonEnvelopeCodec.decode(payload));
+					} else if (payload != null) {
+						receive(new String(payload, StandardCharsets.UTF_8));
+					}
+				} catch (Exception e) {
+					logger("Error occurred while handling socket message: " + e.getMessage());
+					if (debug) {
+						e.printStackTrace();
+					}
+				}
+			}
+		} catch (EOFException e) {
+			logger("Error occurred while receiving socket message, enable debug to see more: " + e.getMessage());
+			if (debug) {
+				e.printStackTrace();
+			}
+		} catch (Exception ex) {
+			if (running) {
+				logger("Error occurred while receiving socket message: " + ex.getMessage());
 				if (debug) {
-					e.printStackTrace();
+					ex.printStackTrace();
 				}
-			} catch (Exception ex) {
-				logger("Error occurred while receiving socket message");
-				ex.printStackTrace();
-				restartServer();
 			}
+		} finally {
+			connections.remove(socket);
+		}
+	}
+
+	private void receive(String raw) {
+		String decrypted = encryptionHandler != null ? encryptionHandler.decrypt(raw) : raw;
+
+		if (debug) {
+			logger("Debug: Socket Receiving Raw Bytes: " + decrypted.getBytes(StandardCharsets.UTF_8).length);
+			logger("Debug: Socket Receiving: " + decrypted);
+		}
+
+		JsonEnvelope env = JsonEnvelopeCodec.decode(decrypted);
+		onReceive(env);
+	}
+
+	private void receiveEncrypted(byte[] payload) {
+		byte[] decrypted = encryptionHandler.decrypt(payload);
+		if (decrypted == null) {
+			logger("Failed to decrypt socket message (" + payload.length + " bytes)");
+			return;
+		}
+		JsonEnvelope env = JsonEnvelopeCodec.decode(decrypted);
+		if (debug) {
+			logger("Debug: Socket Receiving Encrypted Bytes: " + payload.length);
+			logger("Debug: Socket Receiving: " + env.getSubChannel() + " " + env.getFields());
+		}
+		onReceive(env);
+	}
+
+	private void receive(JsonEnvelope env) {
+		if (debug) {
+			logger("Debug: Socket Receiving Binary: " + env.getSubChannel() + " " + env.getFields());
 		}
+		onReceive(env);
 	}
 }
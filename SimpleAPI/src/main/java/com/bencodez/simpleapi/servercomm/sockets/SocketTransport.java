@@ -0,0 +1,57 @@
+package com.bencodez.simpleapi.servercomm.sockets;
+
+import java.util.function.Function;
+
+import com.bencodez.simpleapi.servercomm.codec.JsonEnvelope;
+import com.bencodez.simpleapi.servercomm.transport.Transport;
+
+/**
+ * {@link Transport} over {@link ClientHandler#sendEnvelopeFuture(JsonEnvelope)},
+ * one client per target server. A send waits until the envelope was written
+ * to the peer, so connect and write errors, or a persistent connection that
+ * is down, fail it and the router can fail over.
+ */
+public class SocketTransport implements Transport {
+
+	private final String name;
+	private final Function<String, ClientHandler> clientForTarget;
+	private volatile long sendTimeoutMs = 5_000;
+
+	/**
+	 * @param clientForTarget client for the target server (null for the proxy),
+	 *                        or null if there is none
+	 */
+	public SocketTransport(Function<String, ClientHandler> clientForTarget) {
+		this("socket", clientForTarget);
+	}
+
+	public SocketTransport(String name, Function<String, ClientHandler> clientForTarget) {
+		this.name = name;
+		this.clientForTarget = clientForTarget;
+	}
+
+	@Override
+	public String getName() {
+		return name;
+	}
+
+	public long getSendTimeoutMs() {
+		return sendTimeoutMs;
+	}
+
+	/**
+	 * How long a send waits for the write before failing.
+	 */
+	public void setSendTimeoutMs(long sendTimeoutMs) {
+		this.sendTimeoutMs = Math.max(1, sendTimeoutMs);
+	}
+
+	@Override
+	public void send(String target, JsonEnvelope envelope) throws Exception {
+		ClientHandler client = clientForTarget.apply(target);
+		if (client == null) {
+			throw new IllegalArgumentException("No socket client for " + target);
+		}
+		Transport.await(client.sendEnvelopeFuture(envelope), sendTimeoutMs);
+	}
+}
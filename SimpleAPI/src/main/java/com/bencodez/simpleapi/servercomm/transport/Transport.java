@@ -0,0 +1,54 @@
+package com.bencodez.simpleapi.servercomm.transport;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import com.bencodez.simpleapi.servercomm.codec.JsonEnvelope;
+
+/**
+ * One way of getting an envelope to another server (socket, Redis, MQTT, MySQL
+ * or plugin message), so a {@link TransportRouter} can pick between them.
+ */
+public interface Transport {
+
+	/**
+	 * Unique name used in metrics and logs, for example "redis".
+	 */
+	String getName();
+
+	/**
+	 * Sends the envelope, returning once it reached the broker, database or
+	 * peer rather than just a local queue. The router times this call, so
+	 * {@link TransportRouter.Selection#FASTEST} compares like with like.
+	 *
+	 * @param target destination server, or null for the proxy / everyone,
+	 *               depending on the transport
+	 * @throws Exception if the envelope could not be handed over; the router
+	 *                   then tries the next transport
+	 */
+	void send(String target, JsonEnvelope envelope) throws Exception;
+
+	/**
+	 * Active health check, run periodically by the router off the send path.
+	 * May block briefly (a ping or connection check).
+	 */
+	default boolean isHealthy() {
+		return true;
+	}
+
+	/**
+	 * Waits for an asynchronous send, for transports built on one.
+	 *
+	 * @throws Exception the send's own failure, or a
+	 *                   {@link java.util.concurrent.TimeoutException}
+	 */
+	static void await(CompletableFuture<?> future, long timeoutMs) throws Exception {
+		try {
+			future.get(timeoutMs, TimeUnit.MILLISECONDS);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			throw cause instanceof Exception ? (Exception) cause : e;
+		}
+	}
+}
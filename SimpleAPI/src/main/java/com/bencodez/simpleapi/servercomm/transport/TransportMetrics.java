@@ -0,0 +1,131 @@
+package com.bencodez.simpleapi.servercomm.transport;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import com.bencodez.simpleapi.metrics.LatencyHistogram;
+
+/**
+ * Send statistics and health of one transport in a {@link TransportRouter}.
+ */
+public class TransportMetrics {
+
+	// weight of the newest sample in the moving average
+	private static final double EWMA_ALPHA = 0.2;
+
+	private final String name;
+	private final LatencyHistogram latency = new LatencyHistogram();
+	private final LongAdder successes = new LongAdder();
+	private final LongAdder failures = new LongAdder();
+	private volatile double averageNanos = -1;
+	private volatile int consecutiveFailures;
+	private volatile boolean healthy = true;
+	private volatile String lastError;
+	private volatile long lastHealthCheck;
+	// when it went unhealthy, or its last trial send since (nanoTime)
+	private long lastRetryNanos;
+
+	TransportMetrics(String name) {
+		this.name = name;
+	}
+
+	synchronized void recordSuccess(long nanos) {
+		latency.record(nanos);
+		successes.increment();
+		averageNanos = averageNanos < 0 ? nanos : averageNanos + EWMA_ALPHA * (nanos - averageNanos);
+		consecutiveFailures = 0;
+	}
+
+	synchronized void recordFailure(Exception e) {
+		failures.increment();
+		consecutiveFailures++;
+		lastError = e == null ? null : e.getClass().getSimpleName() + ": " + e.getMessage();
+	}
+
+	synchronized void setHealthy(boolean healthy) {
+		if (this.healthy && !healthy) {
+			lastRetryNanos = System.nanoTime();
+		}
+		this.healthy = healthy;
+	}
+
+	/**
+	 * Claims a trial send for an unhealthy transport, at most one per interval.
+	 */
+	synchronized boolean tryRetry(long intervalNanos) {
+		if (healthy) {
+			return false;
+		}
+		long now = System.nanoTime();
+		if (now - lastRetryNanos < intervalNanos) {
+			return false;
+		}
+		lastRetryNanos = now;
+		return true;
+	}
+
+	void setLastHealthCheck(long lastHealthCheck) {
+		this.lastHealthCheck = lastHealthCheck;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return latency of successful sends
+	 */
+	public LatencyHistogram getLatency() {
+		return latency;
+	}
+
+	/**
+	 * @return recent send latency in millis (moving average), -1 before the
+	 *         first success
+	 */
+	public double getAverageMillis() {
+		double avg = averageNanos;
+		return avg < 0 ? -1 : avg / 1_000_000.0;
+	}
+
+	public long getSuccessCount() {
+		return successes.sum();
+	}
+
+	public long getFailureCount() {
+		return failures.sum();
+	}
+
+	/**
+	 * @return share of sends that succeeded, 1 when nothing was sent yet
+	 */
+	public double getSuccessRate() {
+		long ok = successes.sum();
+		long total = ok + failures.sum();
+		return total == 0 ? 1 : (double) ok / total;
+	}
+
+	public int getConsecutiveFailures() {
+		return consecutiveFailures;
+	}
+
+	public boolean isHealthy() {
+		return healthy;
+	}
+
+	public String getLastError() {
+		return lastError;
+	}
+
+	/**
+	 * @return time of the last health check (epoch millis), 0 if none yet
+	 */
+	public long getLastHealthCheck() {
+		return lastHealthCheck;
+	}
+
+	@Override
+	public String toString() {
+		return name + "{healthy=" + healthy + ", ok=" + getSuccessCount() + ", failed=" + getFailureCount()
+				+ ", avgMs=" + String.format("%.2f", getAverageMillis()) + ", latency=" + latency + "}";
+	}
+}
@@ -0,0 +1,223 @@
+package com.bencodez.simpleapi.servercomm.transport;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.bencodez.simpleapi.servercomm.codec.JsonEnvelope;
+
+/**
+ * Sends envelopes over the best available {@link Transport}, failing over to
+ * the next one when a send throws.
+ *
+ * Transports are tried in the order they were added ({@link Selection#PRIORITY})
+ * or fastest first by recent send latency ({@link Selection#FASTEST}).
+ * Unhealthy transports are skipped: a transport becomes unhealthy when its
+ * health check fails or after {@link #setFailureThreshold(int)} failed sends
+ * in a row, and healthy again when a later health check passes or a send over
+ * it works. Every {@link #setRetryIntervalMs(long)} one send tries an unhealthy
+ * transport again, so it recovers without {@link #startHealthChecks(long)}. If
+ * every transport is unhealthy they are all tried anyway, in priority order.
+ *
+ * Latency is the time {@link Transport#send} takes, which lasts until the
+ * envelope reached its broker or peer.
+ *
+ * <pre>
+ * TransportRouter router = new TransportRouter(new RedisTransport(redis, t -&gt; "votes:" + t),
+ * 		new MySqlTransport(messenger));
+ * router.startHealthChecks(5000);
+ * router.send("lobby", envelope);
+ * </pre>
+ */
+public class TransportRouter {
+
+	public enum Selection {
+		/** First healthy transport in the order added. */
+		PRIORITY,
+		/**
+		 * Healthy transport with the lowest recent latency. Transports that have
+		 * not sent anything yet go first so they get measured.
+		 */
+		FASTEST
+	}
+
+	private final List<Transport> transports = new CopyOnWriteArrayList<>();
+	private final Map<String, TransportMetrics> metrics = new ConcurrentHashMap<>();
+	private volatile Selection selection = Selection.PRIORITY;
+	private volatile int failureThreshold = 3;
+	private volatile long retryIntervalMs = 30_000;
+	private ScheduledExecutorService healthChecker;
+
+	public TransportRouter(Transport... transports) {
+		for (Transport transport : transports) {
+			add(transport);
+		}
+	}
+
+	/**
+	 * Adds a transport after the existing ones.
+	 */
+	public TransportRouter add(Transport transport) {
+		if (metrics.putIfAbsent(transport.getName(), new TransportMetrics(transport.getName())) != null) {
+			throw new IllegalArgumentException("Transport already added: " + transport.getName());
+		}
+		transports.add(transport);
+		return this;
+	}
+
+	public boolean remove(String name) {
+		metrics.remove(name);
+		return transports.removeIf(t -> t.getName().equals(name));
+	}
+
+	public Selection getSelection() {
+		return selection;
+	}
+
+	public void setSelection(Selection selection) {
+		this.selection = selection == null ? Selection.PRIORITY : selection;
+	}
+
+	public int getFailureThreshold() {
+		return failureThreshold;
+	}
+
+	/**
+	 * @param failureThreshold failed sends in a row before a transport is
+	 *                         skipped until its next passing health check
+	 */
+	public void setFailureThreshold(int failureThreshold) {
+		this.failureThreshold = Math.max(1, failureThreshold);
+	}
+
+	public long getRetryIntervalMs() {
+		return retryIntervalMs;
+	}
+
+	/**
+	 * @param retryIntervalMs how often a send tries an unhealthy transport again
+	 */
+	public void setRetryIntervalMs(long retryIntervalMs) {
+		this.retryIntervalMs = Math.max(0, retryIntervalMs);
+	}
+
+	/**
+	 * @return transports in the order the next send would try them, leaving out
+	 *         retries of unhealthy ones
+	 */
+	public List<Transport> getRoute() {
+		return route(false);
+	}
+
+	private List<Transport> route(boolean retries) {
+		long retryNanos = TimeUnit.MILLISECONDS.toNanos(retryIntervalMs);
+		List<Transport> healthy = new ArrayList<>();
+		for (Transport transport : transports) {
+			TransportMetrics m = metrics(transport);
+			if (m.isHealthy() || (retries && m.tryRetry(retryNanos))) {
+				healthy.add(transport);
+			}
+		}
+		if (healthy.isEmpty()) {
+			return new ArrayList<>(transports);
+		}
+		if (selection == Selection.FASTEST) {
+			// stable sort, so equal latency keeps priority order
+			healthy.sort(Comparator.comparingDouble(t -> metrics(t).getAverageMillis()));
+		}
+		return healthy;
+	}
+
+	/**
+	 * Sends over the first transport on the route that accepts the envelope.
+	 *
+	 * @return the transport used, or null if every transport failed
+	 */
+	public Transport send(String target, JsonEnvelope envelope) {
+		for (Transport transport : route(true)) {
+			TransportMetrics m = metrics(transport);
+			long start = System.nanoTime();
+			try {
+				transport.send(target, envelope);
+				m.recordSuccess(System.nanoTime() - start);
+				if (!m.isHealthy()) {
+					m.setHealthy(true);
+				}
+				return transport;
+			} catch (Exception e) {
+				m.recordFailure(e);
+				if (m.getConsecutiveFailures() >= failureThreshold) {
+					m.setHealthy(false);
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Runs every transport's health check now.
+	 */
+	public void checkHealth() {
+		for (Transport transport : transports) {
+			TransportMetrics m = metrics(transport);
+			boolean healthy;
+			try {
+				healthy = transport.isHealthy();
+			} catch (Exception e) {
+				healthy = false;
+			}
+			m.setHealthy(healthy);
+			m.setLastHealthCheck(System.currentTimeMillis());
+		}
+	}
+
+	/**
+	 * Checks health every {@code intervalMs} on a background thread.
+	 */
+	public synchronized void startHealthChecks(long intervalMs) {
+		if (healthChecker != null) {
+			healthChecker.shutdownNow();
+		}
+		healthChecker = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread thread = new Thread(r, "TransportHealthCheck");
+			thread.setDaemon(true);
+			return thread;
+		});
+		healthChecker.scheduleWithFixedDelay(this::checkHealth, 0, Math.max(100, intervalMs), TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Stops the health checks. Transports are not closed.
+	 */
+	public synchronized void close() {
+		if (healthChecker != null) {
+			healthChecker.shutdownNow();
+			healthChecker = null;
+		}
+	}
+
+	public TransportMetrics getMetrics(String name) {
+		return metrics.get(name);
+	}
+
+	/**
+	 * @return metrics of every transport, in priority order
+	 */
+	public List<TransportMetrics> getMetrics() {
+		List<TransportMetrics> out = new ArrayList<>();
+		for (Transport transport : transports) {
+			out.add(metrics(transport));
+		}
+		return out;
+	}
+
+	private TransportMetrics metrics(Transport transport) {
+		return metrics.computeIfAbsent(transport.getName(), TransportMetrics::new);
+	}
+}
@@ -4,15 +4,33 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.ResultSetMetaData;
+import java.util.AbstractSet;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import com.bencodez.simpleapi.sql.DataType;
 import com.bencodez.simpleapi.sql.mysql.config.MysqlConfig;
 import com.bencodez.simpleapi.sql.mysql.queries.Query;
+import com.bencodez.simpleapi.sql.mysql.queries.RowMapper;
+import com.bencodez.simpleapi.sql.mysql.queries.SqlSupplier;
 
 public abstract class AbstractSqlTable {
 
@@ -48,13 +66,40 @@ public abstract class AbstractSqlTable {
 	public final Object checkColumnLock = new Object();
 
 	public final List<String> columns = Collections.synchronizedList(new ArrayList<>());
-	public final Set<String> primaryKeys = ConcurrentHashMap.newKeySet();
+	/**
+	 * Known keys. Adding a key also clears it from the negative lookup cache, so
+	 * subclasses that track their inserts here stay consistent.
+	 */
+	public final Set<String> primaryKeys = new PrimaryKeySet();
 
 	/**
 	 * If you want int-vs-string decoding in getExact-like methods, subclasses can use this.
 	 */
 	public final List<String> intColumns = Collections.synchronizedList(new ArrayList<>());
 
+	/**
+	 * Optional write-behind row cache, see {@link #enableRowCache(int, long)}.
+	 */
+	private volatile RowCache rowCache;
+
+	/**
+	 * Optional cache of keys confirmed missing, see
+	 * {@link #enableNegativeKeyCache(int, long)}.
+	 */
+	private volatile NegativeKeyCache negativeKeyCache;
+	private ScheduledExecutorService rowCacheFlusher;
+	private final Object flushLock = new Object();
+
+	/**
+	 * Max rows per multi-row upsert statement, see {@link #upsertRows(Map)}.
+	 */
+	private volatile int upsertChunkSize = 500;
+
+	/**
+	 * Rows fetched per round trip by the streaming read API.
+	 */
+	private volatile int streamFetchSize = 1000;
+
 	// ---- Constructors ----
 
 	/**
@@ -195,6 +240,7 @@ public abstract class AbstractSqlTable {
 	}
 
 	public void close() {
+		disableRowCache();
 		mysql.disconnect();
 	}
 
@@ -202,20 +248,78 @@ public abstract class AbstractSqlTable {
 		if (key == null || key.isEmpty()) {
 			return false;
 		}
-		return primaryKeys.contains(key) || containsKeyQuery(key);
+		if (primaryKeys.contains(key)) {
+			return true;
+		}
+		NegativeKeyCache negative = negativeKeyCache;
+		if (negative == null) {
+			return containsKeyQuery(key);
+		}
+		if (negative.isKnownMissing(key)) {
+			return false;
+		}
+		boolean found;
+		try {
+			found = queryContainsKey(key);
+		} catch (SQLException e) {
+			// a failed lookup says nothing about the key, so don't cache it
+			debug(e);
+			return false;
+		}
+		if (found) {
+			primaryKeys.add(key);
+			return true;
+		}
+		negative.markMissing(key);
+		return false;
+	}
+
+	/**
+	 * Remember keys that {@link #containsKey(String)} found missing, so repeated
+	 * checks for unknown players skip the database.
+	 *
+	 * Adding to {@link #primaryKeys} (or any insert through this class) clears the
+	 * entry. Rows inserted by other servers on a shared database may be reported
+	 * missing for up to ttlMs.
+	 *
+	 * @param maxEntries max remembered keys
+	 * @param ttlMs      how long a miss is trusted
+	 */
+	public void enableNegativeKeyCache(int maxEntries, long ttlMs) {
+		negativeKeyCache = new NegativeKeyCache(maxEntries, ttlMs);
+	}
+
+	public void disableNegativeKeyCache() {
+		negativeKeyCache = null;
+	}
+
+	public NegativeKeyCache getNegativeKeyCache() {
+		return negativeKeyCache;
 	}
 
 	public boolean containsKeyQuery(String key) {
+		try {
+			return queryContainsKey(key);
+		} catch (SQLException e) {
+			debug(e);
+			return false;
+		}
+	}
+
+	private boolean queryContainsKey(String key) throws SQLException {
 		String sql = "SELECT 1 FROM " + qi(tableName) + " WHERE " + qi(getPrimaryKeyColumn()) + " = ? LIMIT 1;";
-		try (Connection conn = mysql.getConnectionManager().getConnection();
-				PreparedStatement ps = conn.prepareStatement(sql)) {
+		Connection read = mysql.getConnectionManager().getReadConnection();
+		if (read == null) {
+			throw new SQLException("No database connection available");
+		}
+		try (Connection conn = read; PreparedStatement ps = conn.prepareStatement(sql)) {
 			ps.setString(1, key);
+			long start = System.nanoTime();
 			try (ResultSet rs = ps.executeQuery()) {
 				return rs.next();
+			} finally {
+				mysql.recordReadQuery(conn, sql, System.nanoTime() - start);
 			}
-		} catch (SQLException e) {
-			debug(e);
-			return false;
 		}
 	}
 
@@ -236,9 +340,624 @@ public abstract class AbstractSqlTable {
 	public void clearCaches() {
 		columns.clear();
 		primaryKeys.clear();
+		NegativeKeyCache negative = negativeKeyCache;
+		if (negative != null) {
+			negative.clear();
+		}
+		RowCache cache = rowCache;
+		if (cache != null) {
+			cache.clearClean();
+		}
 		loadBasicCaches();
 	}
 
+	// ---- Row cache (write-behind) ----
+
+	/**
+	 * Enables the per-row cache keyed by {@link #getPrimaryKeyColumn()}.
+	 *
+	 * Reads through {@link #getCachedValue(String, String)} are served from
+	 * memory once a row is loaded. Writes through
+	 * {@link #setCachedValue(String, String, Object)} are only marked dirty and
+	 * written back every flushIntervalMs, with all changed columns of a row
+	 * coalesced into one upserted row.
+	 *
+	 * @param maxRows         max rows kept in memory (dirty rows are never evicted)
+	 * @param flushIntervalMs write-back interval, &lt;= 0 means only on
+	 *                        {@link #flushRowCache()} / {@link #close()}
+	 */
+	public synchronized void enableRowCache(int maxRows, long flushIntervalMs) {
+		if (rowCache != null) {
+			return;
+		}
+		rowCache = new RowCache(maxRows);
+		if (flushIntervalMs > 0) {
+			rowCacheFlusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "SimpleAPI-RowCacheFlush-" + tableName);
+				thread.setDaemon(true);
+				return thread;
+			});
+			rowCacheFlusher.scheduleWithFixedDelay(() -> {
+				try {
+					flushRowCache();
+				} catch (Exception e) {
+					debug(e);
+				}
+			}, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * Flushes pending writes and turns the row cache off.
+	 */
+	public synchronized void disableRowCache() {
+		if (rowCache == null) {
+			return;
+		}
+		if (rowCacheFlusher != null) {
+			rowCacheFlusher.shutdown();
+			rowCacheFlusher = null;
+		}
+		flushRowCache();
+		rowCache = null;
+	}
+
+	public boolean isRowCacheEnabled() {
+		return rowCache != null;
+	}
+
+	public RowCache getRowCache() {
+		return rowCache;
+	}
+
+	/**
+	 * Returns all columns of a row, loading it into the row cache if needed.
+	 * Without the row cache this always queries the database.
+	 *
+	 * @return the row values, empty if the key does not exist
+	 */
+	public Map<String, Object> getRow(String key) {
+		if (key == null || key.isEmpty()) {
+			return new LinkedHashMap<>();
+		}
+		RowCache cache = rowCache;
+		if (cache != null && cache.isLoaded(key)) {
+			return cache.getRow(key);
+		}
+
+		long stamp = cache != null ? cache.loadStamp() : 0;
+		Map<String, Object> loaded = selectRowQuery(key);
+		if (cache == null) {
+			return loaded;
+		}
+		if (cache.putLoaded(key, loaded, stamp)) {
+			requestRowCacheFlush();
+		}
+		Map<String, Object> row = cache.getRow(key);
+		return row != null ? row : loaded;
+	}
+
+	public Object getCachedValue(String key, String column) {
+		RowCache cache = rowCache;
+		if (cache != null && (cache.isLoaded(key) || cache.hasColumn(key, column))) {
+			return cache.get(key, column);
+		}
+		return getRow(key).get(column);
+	}
+
+	/**
+	 * Sets a column value. With the row cache enabled the write is deferred to
+	 * the next flush; otherwise it is written immediately.
+	 */
+	public void setCachedValue(String key, String column, Object value) {
+		if (key == null || key.isEmpty() || column == null || column.isEmpty()) {
+			return;
+		}
+		if (!containsIgnoreCase(getColumns(), column)) {
+			checkColumn(column, value instanceof Number ? DataType.INTEGER : DataType.STRING);
+		}
+
+		RowCache cache = rowCache;
+		if (cache == null) {
+			Map<String, Object> single = new LinkedHashMap<>();
+			single.put(column, value);
+			Map<String, Map<String, Object>> rows = new LinkedHashMap<>();
+			rows.put(key, single);
+			upsertRows(rows);
+			return;
+		}
+
+		if (cache.set(key, column, value)) {
+			requestRowCacheFlush();
+		}
+	}
+
+	/**
+	 * Writes all dirty rows back with batched upserts in a single transaction.
+	 * Failed rows stay dirty for the next flush.
+	 *
+	 * @return number of rows written
+	 */
+	public int flushRowCache() {
+		RowCache cache = rowCache;
+		if (cache == null) {
+			return 0;
+		}
+		synchronized (flushLock) {
+			Map<String, Map<String, Object>> dirty = cache.drainDirty();
+			if (dirty.isEmpty()) {
+				return 0;
+			}
+
+			try (Connection conn = mysql.getConnectionManager().getConnection()) {
+				boolean autoCommit = conn.getAutoCommit();
+				conn.setAutoCommit(false);
+				try {
+					upsertRows(conn, dirty, upsertChunkSize);
+					conn.commit();
+					cache.completeFlush(dirty);
+					mysql.getConnectionManager().markWrite();
+				} catch (SQLException e) {
+					conn.rollback();
+					throw e;
+				} finally {
+					conn.setAutoCommit(autoCommit);
+				}
+				return dirty.size();
+			} catch (SQLException | RuntimeException e) {
+				cache.restoreDirty(dirty);
+				logSevere("Failed to flush row cache for " + tableName + ": " + e.getMessage());
+				debug(e);
+				return 0;
+			}
+		}
+	}
+
+	private void requestRowCacheFlush() {
+		ScheduledExecutorService flusher = rowCacheFlusher;
+		if (flusher != null && !flusher.isShutdown()) {
+			flusher.execute(this::flushRowCache);
+		} else {
+			flushRowCache();
+		}
+	}
+
+	// ---- Bulk upsert ----
+
+	public int getUpsertChunkSize() {
+		return upsertChunkSize;
+	}
+
+	public void setUpsertChunkSize(int upsertChunkSize) {
+		this.upsertChunkSize = Math.max(1, upsertChunkSize);
+	}
+
+	/**
+	 * Inserts or updates many rows using multi-row
+	 * {@code INSERT ... ON DUPLICATE KEY UPDATE} (MySQL/MariaDB) or
+	 * {@code INSERT ... ON CONFLICT DO UPDATE} (PostgreSQL), chunked to
+	 * {@link #getUpsertChunkSize()} rows per statement.
+	 *
+	 * Only the given columns are touched on existing rows. Rows with different
+	 * column sets are grouped into separate statements.
+	 *
+	 * @param rows primary key -&gt; (column -&gt; value)
+	 * @return total affected row count as reported by the driver
+	 */
+	public int upsertRows(Map<String, Map<String, Object>> rows) {
+		return upsertRows(rows, upsertChunkSize);
+	}
+
+	public int upsertRows(Map<String, Map<String, Object>> rows, int chunkSize) {
+		if (rows == null || rows.isEmpty()) {
+			return 0;
+		}
+		try (Connection conn = mysql.getConnectionManager().getConnection()) {
+			boolean autoCommit = conn.getAutoCommit();
+			conn.setAutoCommit(false);
+			try {
+				int changed = upsertRows(conn, rows, chunkSize);
+				conn.commit();
+				mysql.getConnectionManager().markWrite();
+				return changed;
+			} catch (SQLException e) {
+				conn.rollback();
+				throw e;
+			} finally {
+				conn.setAutoCommit(autoCommit);
+			}
+		} catch (SQLException e) {
+			logSevere("Failed to upsert " + rows.size() + " rows into " + tableName + ": " + e.getMessage());
+			debug(e);
+			return 0;
+		}
+	}
+
+	/**
+	 * Upserts on the given connection without touching its transaction state.
+	 */
+	protected int upsertRows(Connection conn, Map<String, Map<String, Object>> rows, int chunkSize)
+			throws SQLException {
+		String pk = getPrimaryKeyColumn();
+
+		// group rows by column set so each statement has a fixed shape
+		Map<List<String>, List<Entry<String, Map<String, Object>>>> groups = new LinkedHashMap<>();
+		for (Entry<String, Map<String, Object>> row : rows.entrySet()) {
+			if (row.getKey() == null || row.getKey().isEmpty()) {
+				continue;
+			}
+			List<String> cols = new ArrayList<>();
+			for (String column : row.getValue().keySet()) {
+				if (!column.equalsIgnoreCase(pk)) {
+					cols.add(column);
+				}
+			}
+			groups.computeIfAbsent(cols, k -> new ArrayList<>()).add(row);
+		}
+
+		int changed = 0;
+		for (Entry<List<String>, List<Entry<String, Map<String, Object>>>> group : groups.entrySet()) {
+			List<String> cols = group.getKey();
+			List<Entry<String, Map<String, Object>>> groupRows = group.getValue();
+
+			// both MySQL and PostgreSQL cap a statement at 65535 bind parameters
+			int perRow = cols.size() + 1;
+			int chunk = Math.max(1, Math.min(Math.max(1, chunkSize), 65535 / perRow));
+
+			for (int from = 0; from < groupRows.size(); from += chunk) {
+				int to = Math.min(groupRows.size(), from + chunk);
+				String sql = buildUpsertSql(cols, to - from);
+				try (PreparedStatement ps = conn.prepareStatement(sql)) {
+					int i = 1;
+					for (Entry<String, Map<String, Object>> row : groupRows.subList(from, to)) {
+						ps.setString(i++, row.getKey());
+						for (String column : cols) {
+							ps.setObject(i++, row.getValue().get(column));
+						}
+					}
+					long start = System.nanoTime();
+					changed += ps.executeUpdate();
+					mysql.recordQuery(sql, System.nanoTime() - start);
+				}
+				for (Entry<String, Map<String, Object>> row : groupRows.subList(from, to)) {
+					primaryKeys.add(row.getKey());
+				}
+			}
+		}
+		return changed;
+	}
+
+	/**
+	 * Builds a dialect-specific multi-row upsert for the primary key plus the
+	 * given columns.
+	 */
+	public String buildUpsertSql(List<String> cols, int rowCount) {
+		String pk = qi(getPrimaryKeyColumn());
+
+		StringBuilder sb = new StringBuilder("INSERT INTO ").append(qi(tableName)).append(" (").append(pk);
+		for (String column : cols) {
+			sb.append(", ").append(qi(column));
+		}
+		sb.append(") VALUES ");
+
+		StringBuilder tuple = new StringBuilder("(?");
+		for (int i = 0; i < cols.size(); i++) {
+			tuple.append(", ?");
+		}
+		tuple.append(")");
+		for (int r = 0; r < rowCount; r++) {
+			if (r > 0) {
+				sb.append(", ");
+			}
+			sb.append(tuple);
+		}
+
+		if (dbType == DbType.POSTGRESQL) {
+			sb.append(" ON CONFLICT (").append(pk).append(")");
+			if (cols.isEmpty()) {
+				sb.append(" DO NOTHING");
+			} else {
+				sb.append(" DO UPDATE SET ");
+				String sep = "";
+				for (String column : cols) {
+					sb.append(sep).append(qi(column)).append(" = EXCLUDED.").append(qi(column));
+					sep = ", ";
+				}
+			}
+		} else {
+			// VALUES() is deprecated in MySQL 8.0.20+ but still the only form MariaDB accepts
+			sb.append(" ON DUPLICATE KEY UPDATE ");
+			if (cols.isEmpty()) {
+				sb.append(pk).append(" = ").append(pk);
+			} else {
+				String sep = "";
+				for (String column : cols) {
+					sb.append(sep).append(qi(column)).append(" = VALUES(").append(qi(column)).append(")");
+					sep = ", ";
+				}
+			}
+		}
+		return sb.append(";").toString();
+	}
+
+	// ---- Async ----
+
+	/**
+	 * Run database work on the MySQL thread pool.
+	 *
+	 * @param completionExecutor where dependent stages run (for example
+	 *                           {@code BukkitScheduler#getMainThreadExecutor}),
+	 *                           null for the query thread
+	 */
+	public <T> CompletableFuture<T> supplyAsync(SqlSupplier<T> task, Executor completionExecutor) {
+		return mysql.supplyAsync(task, completionExecutor);
+	}
+
+	/**
+	 * Run a SELECT and map every row. Served by the read replica when one is
+	 * configured, see {@link ConnectionManager#getReadConnection()}.
+	 *
+	 * @param sql    the query, use {@link #qi(String)} for identifiers
+	 * @param mapper maps the current row
+	 * @param params bound to ? in order
+	 */
+	public <T> List<T> query(String sql, RowMapper<T> mapper, Object... params) throws SQLException {
+		List<T> out = new ArrayList<>();
+		try (Connection conn = mysql.getConnectionManager().getReadConnection();
+				PreparedStatement ps = conn.prepareStatement(sql)) {
+			for (int i = 0; i < params.length; i++) {
+				ps.setObject(i + 1, params[i]);
+			}
+			long start = System.nanoTime();
+			try (ResultSet rs = ps.executeQuery()) {
+				while (rs.next()) {
+					out.add(mapper.map(rs));
+				}
+			}
+			mysql.recordReadQuery(conn, sql, System.nanoTime() - start);
+		}
+		return out;
+	}
+
+	public <T> CompletableFuture<List<T>> queryAsync(String sql, RowMapper<T> mapper, Object... params) {
+		return queryAsync(null, sql, mapper, params);
+	}
+
+	public <T> CompletableFuture<List<T>> queryAsync(Executor completionExecutor, String sql, RowMapper<T> mapper,
+			Object... params) {
+		return mysql.supplyAsync(() -> query(sql, mapper, params), completionExecutor);
+	}
+
+	public CompletableFuture<Boolean> containsKeyAsync(String key) {
+		return containsKeyAsync(key, null);
+	}
+
+	public CompletableFuture<Boolean> containsKeyAsync(String key, Executor completionExecutor) {
+		return mysql.supplyAsync(() -> containsKey(key), completionExecutor);
+	}
+
+	public CompletableFuture<Map<String, Object>> getRowAsync(String key) {
+		return getRowAsync(key, null);
+	}
+
+	public CompletableFuture<Map<String, Object>> getRowAsync(String key, Executor completionExecutor) {
+		return mysql.supplyAsync(() -> getRow(key), completionExecutor);
+	}
+
+	public CompletableFuture<Integer> upsertRowsAsync(Map<String, Map<String, Object>> rows) {
+		return upsertRowsAsync(rows, null);
+	}
+
+	public CompletableFuture<Integer> upsertRowsAsync(Map<String, Map<String, Object>> rows,
+			Executor completionExecutor) {
+		return mysql.supplyAsync(() -> upsertRows(rows), completionExecutor);
+	}
+
+	public CompletableFuture<Integer> flushRowCacheAsync() {
+		return mysql.supplyAsync(this::flushRowCache, null);
+	}
+
+	// ---- Streaming reads ----
+
+	public int getStreamFetchSize() {
+		return streamFetchSize;
+	}
+
+	public void setStreamFetchSize(int streamFetchSize) {
+		this.streamFetchSize = Math.max(1, streamFetchSize);
+	}
+
+	/**
+	 * Scans the whole table, handing each row to the consumer as it is fetched.
+	 * Only {@link #getStreamFetchSize()} rows are held in memory at a time, and
+	 * the next batch is not fetched until the consumer returns.
+	 *
+	 * @return number of rows visited
+	 */
+	public <T> long streamTable(RowMapper<T> mapper, Consumer<? super T> consumer) throws SQLException {
+		return streamRows("SELECT * FROM " + qi(tableName) + ";", mapper, consumer);
+	}
+
+	/**
+	 * Runs a query with a server-side cursor (MySQL useCursorFetch, MariaDB
+	 * fetch size streaming, PostgreSQL non-autocommit cursor) and pushes each
+	 * mapped row to the consumer.
+	 *
+	 * @return number of rows visited
+	 */
+	public <T> long streamRows(String sql, RowMapper<T> mapper, Consumer<? super T> consumer, Object... params)
+			throws SQLException {
+		long count = 0;
+		try (RowCursor cursor = openCursor(sql, params)) {
+			while (cursor.rs.next()) {
+				consumer.accept(mapper.map(cursor.rs));
+				count++;
+			}
+		}
+		return count;
+	}
+
+	public <T> CompletableFuture<Long> streamRowsAsync(String sql, RowMapper<T> mapper, Consumer<? super T> consumer,
+			Object... params) {
+		return mysql.supplyAsync(() -> streamRows(sql, mapper, consumer, params), null);
+	}
+
+	/**
+	 * Lazy {@link Stream} over a cursor query. Rows are fetched as the stream is
+	 * consumed. The stream holds a pooled connection until closed, so always
+	 * use try-with-resources. Rows the mapper maps to null are passed through.
+	 */
+	public <T> Stream<T> streamQuery(String sql, RowMapper<T> mapper, Object... params) throws SQLException {
+		RowCursor cursor = openCursor(sql, params);
+		Spliterator<T> spliterator = new Spliterators.AbstractSpliterator<T>(Long.MAX_VALUE,
+				Spliterator.ORDERED) {
+			@Override
+			public boolean tryAdvance(Consumer<? super T> action) {
+				try {
+					if (!cursor.rs.next()) {
+						return false;
+					}
+					action.accept(mapper.map(cursor.rs));
+					return true;
+				} catch (SQLException e) {
+					throw new IllegalStateException("Streaming read failed on " + tableName, e);
+				}
+			}
+		};
+		return StreamSupport.stream(spliterator, false).onClose(cursor::close);
+	}
+
+	private RowCursor openCursor(String sql, Object... params) throws SQLException {
+		Connection conn = mysql.getConnectionManager().getReadConnection();
+		if (conn == null) {
+			throw new SQLException("No connection available for " + tableName);
+		}
+		RowCursor cursor = new RowCursor(conn);
+		try {
+			if (dbType == DbType.POSTGRESQL) {
+				// PgJDBC only uses a cursor outside autocommit
+				conn.setAutoCommit(false);
+			}
+			cursor.ps = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+			cursor.ps.setFetchSize(streamFetchSize);
+			for (int i = 0; i < params.length; i++) {
+				cursor.ps.setObject(i + 1, params[i]);
+			}
+			// time to first batch; the rest depends on the consumer
+			long start = System.nanoTime();
+			cursor.rs = cursor.ps.executeQuery();
+			mysql.recordReadQuery(conn, sql, System.nanoTime() - start);
+			return cursor;
+		} catch (SQLException | RuntimeException e) {
+			cursor.close();
+			throw e;
+		}
+	}
+
+	private final class RowCursor implements AutoCloseable {
+		private final Connection conn;
+		private final boolean autoCommit;
+		private PreparedStatement ps;
+		private ResultSet rs;
+
+		private RowCursor(Connection conn) throws SQLException {
+			this.conn = conn;
+			this.autoCommit = conn.getAutoCommit();
+		}
+
+		@Override
+		public void close() {
+			try {
+				if (rs != null) {
+					rs.close();
+				}
+				if (ps != null) {
+					ps.close();
+				}
+				if (!conn.getAutoCommit()) {
+					conn.rollback();
+					conn.setAutoCommit(autoCommit);
+				}
+			} catch (SQLException e) {
+				debug(e);
+			} finally {
+				try {
+					conn.close();
+				} catch (SQLException e) {
+					debug(e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Concurrent key set that keeps the negative lookup cache in sync.
+	 */
+	private final class PrimaryKeySet extends AbstractSet<String> {
+		private final Set<String> keys = ConcurrentHashMap.newKeySet();
+
+		@Override
+		public boolean add(String key) {
+			NegativeKeyCache negative = negativeKeyCache;
+			if (negative != null && key != null) {
+				negative.invalidate(key);
+			}
+			return keys.add(key);
+		}
+
+		@Override
+		public boolean contains(Object o) {
+			return keys.contains(o);
+		}
+
+		@Override
+		public boolean remove(Object o) {
+			return keys.remove(o);
+		}
+
+		@Override
+		public void clear() {
+			keys.clear();
+		}
+
+		@Override
+		public Iterator<String> iterator() {
+			return keys.iterator();
+		}
+
+		@Override
+		public int size() {
+			return keys.size();
+		}
+
+		@Override
+		public boolean isEmpty() {
+			return keys.isEmpty();
+		}
+	}
+
+	private Map<String, Object> selectRowQuery(String key) {
+		Map<String, Object> out = new LinkedHashMap<>();
+		String sql = "SELECT * FROM " + qi(tableName) + " WHERE " + qi(getPrimaryKeyColumn()) + " = ? LIMIT 1;";
+		try (Connection conn = mysql.getConnectionManager().getReadConnection();
+				PreparedStatement ps = conn.prepareStatement(sql)) {
+			ps.setString(1, key);
+			long start = System.nanoTime();
+			try (ResultSet rs = ps.executeQuery()) {
+				if (rs.next()) {
+					ResultSetMetaData meta = rs.getMetaData();
+					for (int i = 1; i <= meta.getColumnCount(); i++) {
+						out.put(meta.getColumnLabel(i), rs.getObject(i));
+					}
+				}
+			}
+			mysql.recordReadQuery(conn, sql, System.nanoTime() - start);
+		} catch (SQLException e) {
+			debug(e);
+		}
+		return out;
+	}
+
 	// ---- Column management ----
 
 	public void checkColumn(String column, DataType dataType) {
@@ -545,6 +1264,8 @@ public abstract class AbstractSqlTable {
 		return keys;
 	}
 
+	// stays on the primary: a lagging replica may miss a column checkColumn just
+	// added and add it twice
 	public List<String> getColumnsQuery() {
 		List<String> out = new ArrayList<>();
 		if (dbType == DbType.POSTGRESQL) {
@@ -2,9 +2,16 @@ package com.bencodez.simpleapi.sql.mysql;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.function.Consumer;
 
+import com.bencodez.simpleapi.sql.mysql.metrics.PoolMetrics;
+import com.bencodez.simpleapi.sql.mysql.metrics.SqlMetrics;
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
 
 import lombok.Getter;
 import lombok.Setter;
@@ -29,6 +36,28 @@ public class ConnectionManager {
 	@Setter
 	private HikariDataSource dataSource;
 
+	/**
+	 * Receives pool wait/usage/timeout events when set before {@link #open()}.
+	 */
+	@Getter
+	@Setter
+	private SqlMetrics metrics;
+
+	/**
+	 * Receives the read replica pool's events when set before {@link #open()},
+	 * kept apart from {@link #getMetrics()} so replica waits and timeouts don't
+	 * blur the primary's numbers.
+	 */
+	@Getter
+	@Setter
+	private SqlMetrics readMetrics;
+
+	/**
+	 * Debug sink, normally the owning MySQL wrapper's debug(String).
+	 */
+	@Setter
+	private Consumer<String> debugLogger;
+
 	@Getter
 	@Setter
 	private String host;
@@ -108,6 +137,64 @@ public class ConnectionManager {
 	@Setter
 	private boolean mariadbFallbackToMysqlDriver = true;
 
+	/**
+	 * Optional read replica host. When set, {@link #getReadConnection()} serves
+	 * reads from a second, read-only pool.
+	 */
+	@Getter
+	@Setter
+	private String readReplicaHost = "";
+
+	/**
+	 * Read replica port; empty uses the primary port.
+	 */
+	@Getter
+	@Setter
+	private String readReplicaPort = "";
+
+	/**
+	 * Read replica pool size; &lt;= 0 uses the primary pool size.
+	 */
+	@Getter
+	@Setter
+	private int readReplicaPoolSize = 0;
+
+	/**
+	 * After a write, reads stay on the primary for this long so callers see
+	 * their own writes despite replication lag.
+	 */
+	@Getter
+	@Setter
+	private long readYourWritesMs = 2_000L;
+
+	/**
+	 * How long to wait for a replica connection before falling back to the
+	 * primary. Kept short so a dead replica doesn't stall reads.
+	 */
+	@Getter
+	@Setter
+	private int readReplicaConnectionTimeout = 2_000;
+
+	/**
+	 * After the replica fails, reads go to the primary for this long before the
+	 * replica is tried again.
+	 */
+	@Getter
+	@Setter
+	private long readReplicaRetryMs = 30_000L;
+
+	@Getter
+	private HikariDataSource readDataSource;
+
+	private volatile long lastWriteNanos = 0L;
+	private volatile boolean wroteOnce = false;
+	private volatile long replicaDownUntilNanos = 0L;
+	private volatile boolean replicaDown = false;
+	// replica connections handed out, so their statements can be timed apart
+	// from the primary's; entries go once the connection is collected
+	private final Set<Connection> replicaConnections = Collections
+			.newSetFromMap(Collections.synchronizedMap(new WeakHashMap<>()));
+
 	public ConnectionManager(String host, String port, String username, String password, String database) {
 		this.host = host;
 		this.port = port;
@@ -138,6 +225,123 @@ public class ConnectionManager {
 		if (!isClosed()) {
 			dataSource.close();
 		}
+		if (readDataSource != null && !readDataSource.isClosed()) {
+			readDataSource.close();
+		}
+	}
+
+	public boolean hasReadReplica() {
+		return readReplicaHost != null && !readReplicaHost.isEmpty();
+	}
+
+	/**
+	 * Record that a write just went to the primary, pinning reads to it for
+	 * {@link #getReadYourWritesMs()}.
+	 */
+	public void markWrite() {
+		lastWriteNanos = System.nanoTime();
+		wroteOnce = true;
+	}
+
+	/**
+	 * @return true while reads must stay on the primary after a recent write
+	 */
+	public boolean isReadPinned() {
+		return wroteOnce && readYourWritesMs > 0
+				&& System.nanoTime() - lastWriteNanos < readYourWritesMs * 1_000_000L;
+	}
+
+	/**
+	 * @return true while reads skip a replica that recently failed
+	 */
+	public boolean isReadReplicaDown() {
+		return replicaDown && System.nanoTime() - replicaDownUntilNanos < 0;
+	}
+
+	/**
+	 * Route reads to the primary for {@link #getReadReplicaRetryMs()}.
+	 */
+	public void markReadReplicaDown() {
+		replicaDownUntilNanos = System.nanoTime() + Math.max(0L, readReplicaRetryMs) * 1_000_000L;
+		replicaDown = true;
+	}
+
+	/**
+	 * Connection for read-only work. Uses the read replica when one is configured
+	 * and no write happened within the read-your-writes window, otherwise (or if
+	 * the replica is unavailable) the primary. A replica that fails to hand out a
+	 * connection is skipped for {@link #getReadReplicaRetryMs()}.
+	 *
+	 * @return a connection, or null if none is available
+	 */
+	public Connection getReadConnection() {
+		if (!hasReadReplica() || isReadPinned() || isReadReplicaDown()) {
+			return getConnection();
+		}
+		HikariDataSource replica = readDataSource;
+		if (replica == null || replica.isClosed()) {
+			return getConnection();
+		}
+		try {
+			Connection conn = replica.getConnection();
+			replicaDown = false;
+			replicaConnections.add(conn);
+			return conn;
+		} catch (SQLException e) {
+			markReadReplicaDown();
+			debug("Read replica unavailable, using primary for " + readReplicaRetryMs + "ms: " + e.getMessage());
+			return getConnection();
+		}
+	}
+
+	/**
+	 * @return true if the connection came from the read replica pool
+	 */
+	public boolean isReadReplicaConnection(Connection conn) {
+		return conn != null && replicaConnections.contains(conn);
+	}
+
+	private void debug(String msg) {
+		Consumer<String> logger = debugLogger;
+		if (logger != null) {
+			logger.accept(msg);
+		}
+	}
+
+	/**
+	 * Snapshot of the read replica pool.
+	 *
+	 * @return pool metrics, or null if no replica pool is open
+	 */
+	public PoolMetrics getReadPoolMetrics() {
+		if (readDataSource == null || readDataSource.isClosed()) {
+			return null;
+		}
+		HikariPoolMXBean pool = readDataSource.getHikariPoolMXBean();
+		if (pool == null) {
+			return null;
+		}
+		SqlMetrics m = readMetrics != null ? readMetrics : new SqlMetrics();
+		return new PoolMetrics(pool.getActiveConnections(), pool.getIdleConnections(), pool.getTotalConnections(),
+				pool.getThreadsAwaitingConnection(), m.getConnectionTimeouts(), m.getConnectionWait());
+	}
+
+	/**
+	 * Snapshot of pool state from Hikari's MXBean.
+	 *
+	 * @return pool metrics, or null if the pool is not open
+	 */
+	public PoolMetrics getPoolMetrics() {
+		if (isClosed()) {
+			return null;
+		}
+		HikariPoolMXBean pool = dataSource.getHikariPoolMXBean();
+		if (pool == null) {
+			return null;
+		}
+		SqlMetrics m = metrics != null ? metrics : new SqlMetrics();
+		return new PoolMetrics(pool.getActiveConnections(), pool.getIdleConnections(), pool.getTotalConnections(),
+				pool.getThreadsAwaitingConnection(), m.getConnectionTimeouts(), m.getConnectionWait());
 	}
 
 	public Connection getConnection() {
@@ -207,7 +411,7 @@ public class ConnectionManager {
 		}
 	}
 
-	private String buildJdbcUrl(String driverClassName) {
+	private String buildJdbcUrl(String driverClassName, String host, String port) {
 		String extra = (str == null ? "" : str);
 
 		// Postgres
@@ -244,7 +448,11 @@ public class ConnectionManager {
 		String base = maria ? String.format("jdbc:mariadb://%s:%s/%s", host, port, database)
 				: String.format("jdbc:mysql://%s:%s/%s", host, port, database);
 
-		return base + "?useSSL=" + useSSL + "&allowMultiQueries=true" + "&rewriteBatchedStatements=true"
+		// useCursorFetch only kicks in for statements with a positive fetch size
+		// (the streaming read API); everything else still buffers as before
+		String cursorFetch = maria ? "" : "&useCursorFetch=true";
+
+		return base + "?useSSL=" + useSSL + "&allowMultiQueries=true" + "&rewriteBatchedStatements=true" + cursorFetch
 				+ "&useDynamicCharsetInfo=false" + "&allowPublicKeyRetrieval=" + publicKeyRetrieval
 				+ "&tcpKeepAlive=true" + "&connectTimeout=10000" + "&socketTimeout=30000" + "&serverTimezone=UTC"
 				+ extra;
@@ -261,53 +469,93 @@ public class ConnectionManager {
 
 			String driverClassName = resolveDriver();
 
-			HikariConfig cfg = new HikariConfig();
-			cfg.setDriverClassName(driverClassName);
-			cfg.setUsername(username);
-			cfg.setPassword(password);
+			HikariConfig cfg = buildPoolConfig(driverClassName, host, port, maximumPoolsize,
+					poolName != null && !poolName.isEmpty() ? poolName : "SimpleAPI-Hikari", metrics);
+
+			dataSource = new HikariDataSource(cfg);
+		} catch (Exception e) {
+			e.printStackTrace();
+			return false;
+		}
+
+		if (hasReadReplica() && (readDataSource == null || readDataSource.isClosed())) {
+			openReadReplica();
+		}
+		return true;
+	}
+
+	/**
+	 * Opens the read replica pool. Failure is not fatal: reads fall back to the
+	 * primary.
+	 */
+	private void openReadReplica() {
+		try {
+			String driverClassName = resolveDriver();
+			String replicaPort = readReplicaPort != null && !readReplicaPort.isEmpty() ? readReplicaPort : port;
+			int replicaPool = readReplicaPoolSize > 0 ? readReplicaPoolSize : maximumPoolsize;
+			String name = (poolName != null && !poolName.isEmpty() ? poolName : "SimpleAPI-Hikari") + "-read";
+
+			HikariConfig cfg = buildPoolConfig(driverClassName, readReplicaHost, replicaPort, replicaPool, name,
+					readMetrics);
+			cfg.setReadOnly(true);
+			cfg.setConnectionTimeout(Math.max(250L, readReplicaConnectionTimeout));
+			// don't block startup on a replica that is down
+			cfg.setInitializationFailTimeout(-1);
+
+			readDataSource = new HikariDataSource(cfg);
+			replicaDown = false;
+		} catch (Exception e) {
+			debug("Failed to open read replica pool, reads use the primary: " + e.getMessage());
+			readDataSource = null;
+		}
+	}
 
-			cfg.setJdbcUrl(buildJdbcUrl(driverClassName));
+	private HikariConfig buildPoolConfig(String driverClassName, String host, String port, int poolSize,
+			String name, SqlMetrics poolMetrics) {
+		HikariConfig cfg = new HikariConfig();
+		cfg.setDriverClassName(driverClassName);
+		cfg.setUsername(username);
+		cfg.setPassword(password);
 
-			// Pool sizing
-			int maxPool = Math.max(1, maximumPoolsize);
-			cfg.setMaximumPoolSize(maxPool);
-			int minIdle = (minimumIdle >= 0) ? Math.min(minimumIdle, maxPool) : Math.min(2, maxPool);
-			cfg.setMinimumIdle(Math.max(0, minIdle));
+		cfg.setJdbcUrl(buildJdbcUrl(driverClassName, host, port));
 
-			// Lifecycle
-			cfg.setConnectionTimeout(Math.max(1000L, connectionTimeout));
-			long effectiveMaxLife = (maxLifetimeMs > 0) ? maxLifetimeMs : 25 * 60_000L;
-			cfg.setMaxLifetime(effectiveMaxLife);
+		// Pool sizing
+		int maxPool = Math.max(1, poolSize);
+		cfg.setMaximumPoolSize(maxPool);
+		int minIdle = (minimumIdle >= 0) ? Math.min(minimumIdle, maxPool) : Math.min(2, maxPool);
+		cfg.setMinimumIdle(Math.max(0, minIdle));
 
-			long effectiveIdle = Math.min(idleTimeoutMs, Math.max(1000L, effectiveMaxLife - 60_000L));
-			cfg.setIdleTimeout(effectiveIdle);
+		// Lifecycle
+		cfg.setConnectionTimeout(Math.max(1000L, connectionTimeout));
+		long effectiveMaxLife = (maxLifetimeMs > 0) ? maxLifetimeMs : 25 * 60_000L;
+		cfg.setMaxLifetime(effectiveMaxLife);
 
-			if (keepaliveMs > 0) {
-				cfg.setKeepaliveTime(keepaliveMs);
-			}
-			if (validationMs > 0) {
-				cfg.setValidationTimeout(validationMs);
-			}
-			if (leakDetectMs > 0) {
-				cfg.setLeakDetectionThreshold(leakDetectMs);
-			}
+		long effectiveIdle = Math.min(idleTimeoutMs, Math.max(1000L, effectiveMaxLife - 60_000L));
+		cfg.setIdleTimeout(effectiveIdle);
 
-			cfg.setConnectionTestQuery("SELECT 1");
+		if (keepaliveMs > 0) {
+			cfg.setKeepaliveTime(keepaliveMs);
+		}
+		if (validationMs > 0) {
+			cfg.setValidationTimeout(validationMs);
+		}
+		if (leakDetectMs > 0) {
+			cfg.setLeakDetectionThreshold(leakDetectMs);
+		}
 
-			// Safe common settings; ignored by some drivers (fine)
-			cfg.addDataSourceProperty("cachePrepStmts", true);
-			cfg.addDataSourceProperty("prepStmtCacheSize", 500);
-			cfg.addDataSourceProperty("prepStmtCacheSqlLimit", 2048);
-			cfg.addDataSourceProperty("useServerPrepStmts", true);
+		cfg.setConnectionTestQuery("SELECT 1");
 
-			cfg.setAutoCommit(true);
-			cfg.setPoolName(poolName != null && !poolName.isEmpty() ? poolName : "SimpleAPI-Hikari");
+		// Safe common settings; ignored by some drivers (fine)
+		cfg.addDataSourceProperty("cachePrepStmts", true);
+		cfg.addDataSourceProperty("prepStmtCacheSize", 500);
+		cfg.addDataSourceProperty("prepStmtCacheSqlLimit", 2048);
+		cfg.addDataSourceProperty("useServerPrepStmts", true);
 
-			dataSource = new HikariDataSource(cfg);
-			return true;
-		} catch (Exception e) {
-			e.printStackTrace();
-			return false;
+		cfg.setAutoCommit(true);
+		cfg.setPoolName(name);
+		if (poolMetrics != null) {
+			cfg.setMetricsTrackerFactory(poolMetrics.createTrackerFactory());
 		}
+		return cfg;
 	}
 }
@@ -0,0 +1,39 @@
+package com.bencodez.simpleapi.sql.mysql;
+
+import java.util.Locale;
+
+/**
+ * How {@link MySQL} runs async queries.
+ */
+public enum ExecutionMode {
+	/**
+	 * Fixed pool of platform threads sized to the connection pool (default).
+	 */
+	PLATFORM,
+	/**
+	 * One virtual thread per task, with concurrency bounded by a semaphore sized
+	 * to the connection pool. Falls back to {@link #PLATFORM} if virtual threads
+	 * are unavailable.
+	 */
+	VIRTUAL;
+
+	public static ExecutionMode fromString(String value) {
+		if (value == null || value.trim().isEmpty()) {
+			return PLATFORM;
+		}
+
+		String v = value.trim().toLowerCase(Locale.ROOT);
+
+		switch (v) {
+		case "platform":
+		case "fixed":
+			return PLATFORM;
+		case "virtual":
+		case "virtualthreads":
+		case "loom":
+			return VIRTUAL;
+		default:
+			throw new IllegalArgumentException("Unknown ExecutionMode: " + value);
+		}
+	}
+}
@@ -1,23 +1,41 @@
 package com.bencodez.simpleapi.sql.mysql;
 
+import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 
+import com.bencodez.simpleapi.concurrent.BoundedVirtualExecutor;
+import com.bencodez.simpleapi.debug.DebugLevel;
 import com.bencodez.simpleapi.sql.mysql.config.MysqlConfig;
+import com.bencodez.simpleapi.sql.mysql.metrics.PoolMetrics;
+import com.bencodez.simpleapi.sql.mysql.metrics.SqlMetrics;
+import com.bencodez.simpleapi.sql.mysql.queries.SqlSupplier;
 
 public abstract class MySQL {
 
 	private ConnectionManager connectionManager;
 	private int maxConnections;
+	private int threadPoolSize;
+	private ExecutionMode executionMode = ExecutionMode.PLATFORM;
 	private ExecutorService threadPool;
+	// set by disconnect(), so late async work fails instead of starting a pool
+	private boolean closed;
+	private final SqlMetrics metrics = new SqlMetrics();
+	private final SqlMetrics readMetrics = new SqlMetrics();
 
 	/**
 	 * Create a new MySQL object with a default of 10 maximum threads.
 	 */
 	public MySQL() {
-		this.threadPool = Executors.newFixedThreadPool(10);
+		this.threadPoolSize = 10;
 		this.maxConnections = 1;
+		metrics.setDebugLogger(this::debug);
+		readMetrics.setDebugLogger(this::debug);
 	}
 
 	/**
@@ -27,16 +45,25 @@ public abstract class MySQL {
 	 */
 	public MySQL(int maxConnections) {
 		this.maxConnections = maxConnections;
-		this.threadPool = Executors.newFixedThreadPool(Math.max(1, maxConnections));
+		this.threadPoolSize = Math.max(1, maxConnections);
+		metrics.setDebugLogger(this::debug);
+		readMetrics.setDebugLogger(this::debug);
 	}
 
 	public boolean connect(MysqlConfig config) {
-		// (Re)size thread pool to match MaxConnections from config
+		// Size the executor to MaxConnections from config; it is created lazily so
+		// the constructor's pool is never built just to be thrown away
 		this.maxConnections = Math.max(1, config.getMaxThreads());
-		if (threadPool != null) {
-			threadPool.shutdown();
+		ExecutionMode mode = config.getExecutionMode() == null ? ExecutionMode.PLATFORM : config.getExecutionMode();
+		synchronized (this) {
+			if (threadPool != null && (threadPoolSize != maxConnections || executionMode != mode)) {
+				threadPool.shutdown();
+				threadPool = null;
+			}
+			threadPoolSize = maxConnections;
+			executionMode = mode;
+			closed = false;
 		}
-		threadPool = Executors.newFixedThreadPool(maxConnections);
 
 		// Create manager with core options
 		connectionManager = new ConnectionManager(config.getHostName(), String.valueOf(config.getPort()),
@@ -87,13 +114,40 @@ public abstract class MySQL {
 			connectionManager.setPoolName(config.getPoolName());
 		}
 
+		// Optional read replica; reads stay on the primary for a while after writes
+		if (config.getReadReplicaHost() != null && !config.getReadReplicaHost().isEmpty()) {
+			connectionManager.setReadReplicaHost(config.getReadReplicaHost());
+			if (config.getReadReplicaPort() > 0) {
+				connectionManager.setReadReplicaPort(String.valueOf(config.getReadReplicaPort()));
+			}
+			connectionManager.setReadReplicaPoolSize(config.getReadReplicaMaxThreads());
+		}
+		if (config.getReadYourWritesMs() >= 0) {
+			connectionManager.setReadYourWritesMs(config.getReadYourWritesMs());
+		}
+
+		for (SqlMetrics m : new SqlMetrics[] { metrics, readMetrics }) {
+			if (config.getSlowQueryThresholdMs() != 0) {
+				m.setSlowQueryThresholdMs(config.getSlowQueryThresholdMs());
+			}
+			if (config.getQueryDebugLevel() != null) {
+				m.setDebugLevel(config.getQueryDebugLevel());
+			} else if (config.isDebug()) {
+				m.setDebugLevel(DebugLevel.INFO);
+			}
+		}
+		connectionManager.setMetrics(metrics);
+		connectionManager.setReadMetrics(readMetrics);
+		connectionManager.setDebugLogger(this::debug);
+
 		boolean ok = connectionManager.open();
 
 		// Optional debug output
 		if (config.isDebug()) {
 			if (ok) {
 				debug("DB connected. type=" + connectionManager.getDbType() + " host=" + config.getHostName() + " db="
-						+ config.getDatabase() + " maxPool=" + maxConnections);
+						+ config.getDatabase() + " maxPool=" + maxConnections + " executionMode=" + executionMode
+						+ (connectionManager.hasReadReplica() ? " readReplica=" + config.getReadReplicaHost() : ""));
 			} else {
 				debug("DB connection failed. type=" + connectionManager.getDbType()
 						+ " Check host/port/credentials and timeouts.");
@@ -108,14 +162,22 @@ public abstract class MySQL {
 	public abstract void debug(String msg);
 
 	/**
-	 * Close all connections and the data source.
+	 * Close all connections and the data source. Async work submitted afterwards
+	 * fails with a {@link RejectedExecutionException} until the next
+	 * {@link #connect(MysqlConfig)}.
 	 */
 	public void disconnect() {
+		synchronized (this) {
+			closed = true;
+		}
 		if (connectionManager != null) {
 			connectionManager.close();
 		}
-		if (threadPool != null) {
-			threadPool.shutdown();
+		synchronized (this) {
+			if (threadPool != null) {
+				threadPool.shutdown();
+				threadPool = null;
+			}
 		}
 	}
 
@@ -129,13 +191,157 @@ public abstract class MySQL {
 	}
 
 	/**
-	 * Get the thread pool.
+	 * Get the thread pool used for async queries, creating it on first use.
 	 *
 	 * @return the thread pool
+	 * @throws RejectedExecutionException after {@link #disconnect()}
 	 */
-	public ExecutorService getThreadPool() {
+	public synchronized ExecutorService getThreadPool() {
+		if (closed) {
+			throw new RejectedExecutionException("MySQL is disconnected");
+		}
+		if (threadPool == null || threadPool.isShutdown()) {
+			threadPool = createThreadPool();
+		}
 		return threadPool;
 	}
 
+	/**
+	 * Run database work on the thread pool.
+	 *
+	 * @param task               the work; a thrown SQLException completes the
+	 *                           future exceptionally
+	 * @param completionExecutor where dependent stages run, e.g. the server main
+	 *                           thread; null to complete on the pool thread
+	 * @return future of the task result
+	 */
+	public <T> CompletableFuture<T> supplyAsync(SqlSupplier<T> task, Executor completionExecutor) {
+		CompletableFuture<T> future;
+		try {
+			future = CompletableFuture.supplyAsync(() -> {
+				try {
+					return task.get();
+				} catch (SQLException e) {
+					debug(e);
+					throw new CompletionException(e);
+				}
+			}, getThreadPool());
+		} catch (RuntimeException e) {
+			// pool shut down or saturated
+			future = new CompletableFuture<>();
+			future.completeExceptionally(e);
+		}
+		if (completionExecutor == null) {
+			return future;
+		}
+		CompletableFuture<T> handoff = new CompletableFuture<>();
+		future.whenComplete((result, error) -> {
+			try {
+				completionExecutor.execute(() -> {
+					if (error != null) {
+						handoff.completeExceptionally(error);
+					} else {
+						handoff.complete(result);
+					}
+				});
+			} catch (RuntimeException e) {
+				// e.g. the main thread executor is gone during shutdown
+				handoff.completeExceptionally(error != null ? error : e);
+			}
+		});
+		return handoff;
+	}
+
+	public <T> CompletableFuture<T> supplyAsync(SqlSupplier<T> task) {
+		return supplyAsync(task, null);
+	}
+
+	public ExecutionMode getExecutionMode() {
+		return executionMode;
+	}
+
+	/**
+	 * Switch execution mode; takes effect for tasks submitted after the call.
+	 */
+	public synchronized void setExecutionMode(ExecutionMode executionMode) {
+		ExecutionMode mode = executionMode == null ? ExecutionMode.PLATFORM : executionMode;
+		if (mode == this.executionMode) {
+			return;
+		}
+		this.executionMode = mode;
+		if (threadPool != null) {
+			threadPool.shutdown();
+			threadPool = null;
+		}
+	}
+
+	private ExecutorService createThreadPool() {
+		if (executionMode == ExecutionMode.VIRTUAL) {
+			try {
+				return new BoundedVirtualExecutor("SimpleAPI-MySQL-", threadPoolSize);
+			} catch (UnsupportedOperationException | LinkageError e) {
+				severe("Virtual threads unavailable, falling back to platform threads: " + e.getMessage());
+				executionMode = ExecutionMode.PLATFORM;
+			}
+		}
+		return Executors.newFixedThreadPool(threadPoolSize);
+	}
+
+	/**
+	 * Statement latencies, pool wait times and the slow-query log.
+	 *
+	 * @return the metrics for this connection
+	 */
+	public SqlMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Statement latencies, pool wait times and timeouts of the read replica,
+	 * tracked apart from {@link #getMetrics()} so replica reads don't skew the
+	 * primary's percentiles.
+	 *
+	 * @return the read replica metrics
+	 */
+	public SqlMetrics getReadMetrics() {
+		return readMetrics;
+	}
+
+	/**
+	 * Live pool counts plus acquire-wait and timeout stats.
+	 *
+	 * @return snapshot, or null if not connected
+	 */
+	public PoolMetrics getPoolMetrics() {
+		return connectionManager == null ? null : connectionManager.getPoolMetrics();
+	}
+
+	/**
+	 * Record a statement execution time against its SQL template.
+	 *
+	 * @param sql   statement text
+	 * @param nanos elapsed time
+	 */
+	public void recordQuery(String sql, long nanos) {
+		metrics.recordQuery(sql, nanos);
+	}
+
+	/**
+	 * Record a read against the metrics of the pool its connection came from,
+	 * see {@link ConnectionManager#getReadConnection()}.
+	 *
+	 * @param conn  connection the statement ran on
+	 * @param sql   statement text
+	 * @param nanos elapsed time
+	 */
+	public void recordReadQuery(Connection conn, String sql, long nanos) {
+		ConnectionManager manager = connectionManager;
+		if (manager != null && manager.isReadReplicaConnection(conn)) {
+			readMetrics.recordQuery(sql, nanos);
+		} else {
+			metrics.recordQuery(sql, nanos);
+		}
+	}
+
 	public abstract void severe(String string);
 }
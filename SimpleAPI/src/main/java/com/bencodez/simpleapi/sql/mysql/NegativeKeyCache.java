@@ -0,0 +1,84 @@
+package com.bencodez.simpleapi.sql.mysql;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded, time-limited memory of keys that were recently looked up and not
+ * found.
+ *
+ * The TTL bounds how long a key inserted by another server (sharing the same
+ * database) can be reported missing. Local inserts clear the entry right away.
+ */
+public class NegativeKeyCache {
+
+	private final int maxEntries;
+	private final long ttlMs;
+	private final LinkedHashMap<String, Long> expiries = new LinkedHashMap<>(16, 0.75f, true);
+
+	private long hits = 0;
+	private long misses = 0;
+
+	public NegativeKeyCache(int maxEntries, long ttlMs) {
+		this.maxEntries = Math.max(1, maxEntries);
+		this.ttlMs = Math.max(1, ttlMs);
+	}
+
+	public int getMaxEntries() {
+		return maxEntries;
+	}
+
+	public long getTtlMs() {
+		return ttlMs;
+	}
+
+	/**
+	 * @return true if the key was recently confirmed missing
+	 */
+	public synchronized boolean isKnownMissing(String key) {
+		Long expiry = expiries.get(key);
+		if (expiry == null) {
+			misses++;
+			return false;
+		}
+		if (expiry < System.currentTimeMillis()) {
+			expiries.remove(key);
+			misses++;
+			return false;
+		}
+		hits++;
+		return true;
+	}
+
+	public synchronized void markMissing(String key) {
+		expiries.put(key, System.currentTimeMillis() + ttlMs);
+		if (expiries.size() > maxEntries) {
+			Iterator<Map.Entry<String, Long>> it = expiries.entrySet().iterator();
+			while (expiries.size() > maxEntries && it.hasNext()) {
+				it.next();
+				it.remove();
+			}
+		}
+	}
+
+	public synchronized void invalidate(String key) {
+		expiries.remove(key);
+	}
+
+	public synchronized void clear() {
+		expiries.clear();
+	}
+
+	public synchronized int size() {
+		return expiries.size();
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+}
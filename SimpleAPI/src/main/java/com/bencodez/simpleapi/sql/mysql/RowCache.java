@@ -0,0 +1,266 @@
+package com.bencodez.simpleapi.sql.mysql;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+/**
+ * Bounded, access-ordered row cache with per-column dirty tracking.
+ *
+ * Holds no SQL itself; {@link AbstractSqlTable} loads rows into it and flushes
+ * the dirty columns back. Dirty rows are never evicted, so a row that is
+ * written many times between flushes only costs one statement.
+ */
+public class RowCache {
+
+	/**
+	 * Snapshot of one cached row.
+	 */
+	public static final class CachedRow {
+		private final Map<String, Object> values = new LinkedHashMap<>();
+		private final Set<String> dirty = new LinkedHashSet<>();
+		// drained for a flush that has not committed yet
+		private final Set<String> inFlight = new LinkedHashSet<>();
+		private long flushedSeq = 0;
+		private boolean loaded = false;
+
+		public boolean isLoaded() {
+			return loaded;
+		}
+
+		public boolean isDirty() {
+			return !dirty.isEmpty();
+		}
+
+		/**
+		 * Dirty or being written: must stay cached so a reload can't replace the
+		 * new values with what the database held before the write.
+		 */
+		private boolean isPinned() {
+			return !dirty.isEmpty() || !inFlight.isEmpty();
+		}
+	}
+
+	private final int maxRows;
+	private final LinkedHashMap<String, CachedRow> rows = new LinkedHashMap<>(16, 0.75f, true);
+	// bumped by every committed flush
+	private long flushSeq = 0;
+
+	public RowCache(int maxRows) {
+		this.maxRows = Math.max(1, maxRows);
+	}
+
+	public int getMaxRows() {
+		return maxRows;
+	}
+
+	public synchronized int size() {
+		return rows.size();
+	}
+
+	public synchronized int dirtyCount() {
+		int count = 0;
+		for (CachedRow row : rows.values()) {
+			if (row.isDirty()) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * @return true if the row was loaded from the database (or has been fully
+	 *         populated) and can be served from memory
+	 */
+	public synchronized boolean isLoaded(String key) {
+		CachedRow row = rows.get(key);
+		return row != null && row.loaded;
+	}
+
+	public synchronized boolean contains(String key) {
+		return rows.containsKey(key);
+	}
+
+	/**
+	 * Returns a cached column value. Values are only authoritative if
+	 * {@link #isLoaded(String)} is true or the column was written locally.
+	 */
+	public synchronized Object get(String key, String column) {
+		CachedRow row = rows.get(key);
+		if (row == null) {
+			return null;
+		}
+		return row.values.get(column);
+	}
+
+	public synchronized boolean hasColumn(String key, String column) {
+		CachedRow row = rows.get(key);
+		return row != null && row.values.containsKey(column);
+	}
+
+	/**
+	 * Copy of the cached values for a row, or null if not cached.
+	 */
+	public synchronized Map<String, Object> getRow(String key) {
+		CachedRow row = rows.get(key);
+		if (row == null) {
+			return null;
+		}
+		return new LinkedHashMap<>(row.values);
+	}
+
+	/**
+	 * Take before reading a row from the database and pass to
+	 * {@link #putLoaded(String, Map, long)}, so a flush that commits while the
+	 * read is running is detected.
+	 */
+	public synchronized long loadStamp() {
+		return flushSeq;
+	}
+
+	/**
+	 * Stores values read from the database, assuming no flush ran since the
+	 * read started. Prefer {@link #putLoaded(String, Map, long)}.
+	 *
+	 * @return true if the cache is over capacity with only dirty rows left
+	 */
+	public synchronized boolean putLoaded(String key, Map<String, Object> values) {
+		return putLoaded(key, values, flushSeq);
+	}
+
+	/**
+	 * Stores values read from the database. Dirty and in-flight columns win
+	 * over the loaded values, since the database doesn't have them yet. If
+	 * this row was flushed after {@code stamp} the read may predate that write,
+	 * so only columns missing from the cache are filled in.
+	 *
+	 * @param stamp {@link #loadStamp()} taken before the read
+	 * @return true if the cache is over capacity with only dirty rows left
+	 */
+	public synchronized boolean putLoaded(String key, Map<String, Object> values, long stamp) {
+		CachedRow row = rows.get(key);
+		if (row == null) {
+			if (flushSeq != stamp) {
+				// a flush committed during the read and this row may have been
+				// in it and evicted since; don't cache what could be stale
+				return false;
+			}
+			row = new CachedRow();
+			rows.put(key, row);
+		}
+		boolean stale = row.flushedSeq > stamp;
+		for (Entry<String, Object> entry : values.entrySet()) {
+			String column = entry.getKey();
+			if (row.dirty.contains(column) || row.inFlight.contains(column)) {
+				continue;
+			}
+			if (stale && row.values.containsKey(column)) {
+				continue;
+			}
+			row.values.put(column, entry.getValue());
+		}
+		row.loaded = true;
+		return evict();
+	}
+
+	/**
+	 * Writes a value into the cache and marks the column dirty.
+	 *
+	 * @return true if the cache is over capacity with only dirty rows left
+	 */
+	public synchronized boolean set(String key, String column, Object value) {
+		CachedRow row = rows.computeIfAbsent(key, k -> new CachedRow());
+		row.values.put(column, value);
+		row.dirty.add(column);
+		return evict();
+	}
+
+	/**
+	 * Removes and returns the dirty columns of every row. They stay in flight,
+	 * protected from {@link #putLoaded}, until the write is reported with
+	 * {@link #completeFlush(Map)} or {@link #restoreDirty(Map)}.
+	 */
+	public synchronized Map<String, Map<String, Object>> drainDirty() {
+		Map<String, Map<String, Object>> out = new LinkedHashMap<>();
+		for (Entry<String, CachedRow> entry : rows.entrySet()) {
+			CachedRow row = entry.getValue();
+			if (!row.isDirty()) {
+				continue;
+			}
+			Map<String, Object> changed = new LinkedHashMap<>();
+			for (String column : row.dirty) {
+				changed.put(column, row.values.get(column));
+			}
+			row.inFlight.addAll(row.dirty);
+			row.dirty.clear();
+			out.put(entry.getKey(), changed);
+		}
+		return out;
+	}
+
+	/**
+	 * Reports that the drained columns were committed.
+	 */
+	public synchronized void completeFlush(Map<String, Map<String, Object>> drained) {
+		flushSeq++;
+		for (Entry<String, Map<String, Object>> entry : drained.entrySet()) {
+			CachedRow row = rows.get(entry.getKey());
+			if (row != null) {
+				row.inFlight.removeAll(entry.getValue().keySet());
+				row.flushedSeq = flushSeq;
+			}
+		}
+	}
+
+	/**
+	 * Marks drained columns dirty again after a failed flush, unless they were
+	 * overwritten in the meantime.
+	 */
+	public synchronized void restoreDirty(Map<String, Map<String, Object>> drained) {
+		for (Entry<String, Map<String, Object>> entry : drained.entrySet()) {
+			CachedRow row = rows.computeIfAbsent(entry.getKey(), k -> new CachedRow());
+			row.inFlight.removeAll(entry.getValue().keySet());
+			for (Entry<String, Object> col : entry.getValue().entrySet()) {
+				if (!row.dirty.contains(col.getKey())) {
+					row.values.put(col.getKey(), col.getValue());
+					row.dirty.add(col.getKey());
+				}
+			}
+		}
+	}
+
+	public synchronized void invalidate(String key) {
+		CachedRow row = rows.get(key);
+		if (row != null && !row.isPinned()) {
+			rows.remove(key);
+		}
+	}
+
+	/**
+	 * Drops every clean row. Dirty rows are kept until flushed.
+	 */
+	public synchronized void clearClean() {
+		rows.values().removeIf(row -> !row.isPinned());
+	}
+
+	/**
+	 * Evicts least recently used clean rows until the cache fits.
+	 *
+	 * @return true if still over capacity (only dirty rows remain)
+	 */
+	private boolean evict() {
+		if (rows.size() <= maxRows) {
+			return false;
+		}
+		Iterator<CachedRow> it = rows.values().iterator();
+		while (rows.size() > maxRows && it.hasNext()) {
+			if (!it.next().isPinned()) {
+				it.remove();
+			}
+		}
+		return rows.size() > maxRows;
+	}
+}
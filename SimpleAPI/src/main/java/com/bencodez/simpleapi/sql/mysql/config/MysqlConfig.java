@@ -1,6 +1,8 @@
 package com.bencodez.simpleapi.sql.mysql.config;
 
+import com.bencodez.simpleapi.debug.DebugLevel;
 import com.bencodez.simpleapi.sql.mysql.DbType;
+import com.bencodez.simpleapi.sql.mysql.ExecutionMode;
 
 import lombok.Getter;
 import lombok.Setter;
@@ -102,6 +104,58 @@ public class MysqlConfig {
 	@Setter
 	private String poolName;
 
+	/**
+	 * PLATFORM (fixed thread pool) or VIRTUAL (virtual threads bounded by the
+	 * connection pool size).
+	 */
+	@Getter
+	@Setter
+	private ExecutionMode executionMode = ExecutionMode.PLATFORM;
+
+	// --- Read Replica ---
+	/**
+	 * Host of a read replica; empty disables read routing.
+	 */
+	@Getter
+	@Setter
+	private String readReplicaHost = "";
+
+	/**
+	 * Read replica port; &lt;= 0 uses {@link #getPort()}.
+	 */
+	@Getter
+	@Setter
+	private int readReplicaPort;
+
+	/**
+	 * Read replica pool size; &lt;= 0 uses {@link #getMaxThreads()}.
+	 */
+	@Getter
+	@Setter
+	private int readReplicaMaxThreads;
+
+	/**
+	 * How long reads stay on the primary after a write.
+	 */
+	@Getter
+	@Setter
+	private long readYourWritesMs = 2_000L;
+
+	/**
+	 * Statements slower than this are logged; 0 keeps the default, negative
+	 * disables the slow-query log.
+	 */
+	@Getter
+	@Setter
+	private long slowQueryThresholdMs;
+
+	/**
+	 * Debug level for query timing output; null follows {@link #isDebug()}.
+	 */
+	@Getter
+	@Setter
+	private DebugLevel queryDebugLevel;
+
 	// --- Utility ---
 	public boolean hasTableNameSet() {
 		return tableName != null && !tableName.isEmpty();
@@ -1,6 +1,8 @@
 package com.bencodez.simpleapi.sql.mysql.config;
 
+import com.bencodez.simpleapi.debug.DebugLevel;
 import com.bencodez.simpleapi.sql.mysql.DbType;
+import com.bencodez.simpleapi.sql.mysql.ExecutionMode;
 
 import net.md_5.bungee.config.Configuration;
 
@@ -57,5 +59,19 @@ public class MysqlConfigBungee extends MysqlConfig {
 		setLine(section.getString("Line", ""));
 		setDebug(section.getBoolean("Debug", false));
 		setPoolName(section.getString("PoolName", ""));
+
+		// Async query threads: PLATFORM | VIRTUAL
+		setExecutionMode(ExecutionMode.fromString(section.getString("ExecutionMode", "")));
+
+		// Optional read replica for lookups/leaderboards
+		setReadReplicaHost(section.getString("ReadReplica.Host", ""));
+		setReadReplicaPort(section.getInt("ReadReplica.Port", 0));
+		setReadReplicaMaxThreads(section.getInt("ReadReplica.MaxConnections", 0));
+		setReadYourWritesMs(section.getLong("ReadReplica.ReadYourWritesMs", 2_000L));
+
+		// Slow-query log; QueryDebugLevel empty = follow Debug
+		setSlowQueryThresholdMs(section.getLong("SlowQueryThresholdMs", 0));
+		String queryDebug = section.getString("QueryDebugLevel", "");
+		setQueryDebugLevel(queryDebug.isEmpty() ? null : DebugLevel.getDebug(queryDebug));
 	}
 }
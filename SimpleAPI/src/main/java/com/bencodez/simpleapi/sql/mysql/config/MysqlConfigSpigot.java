@@ -2,7 +2,9 @@ package com.bencodez.simpleapi.sql.mysql.config;
 
 import org.bukkit.configuration.ConfigurationSection;
 
+import com.bencodez.simpleapi.debug.DebugLevel;
 import com.bencodez.simpleapi.sql.mysql.DbType;
+import com.bencodez.simpleapi.sql.mysql.ExecutionMode;
 
 public class MysqlConfigSpigot extends MysqlConfig {
 
@@ -56,5 +58,19 @@ public class MysqlConfigSpigot extends MysqlConfig {
 		setLine(section.getString("Line", ""));
 		setDebug(section.getBoolean("Debug", false));
 		setPoolName(section.getString("PoolName", ""));
+
+		// Async query threads: PLATFORM | VIRTUAL
+		setExecutionMode(ExecutionMode.fromString(section.getString("ExecutionMode", "")));
+
+		// Optional read replica for lookups/leaderboards
+		setReadReplicaHost(section.getString("ReadReplica.Host", ""));
+		setReadReplicaPort(section.getInt("ReadReplica.Port", 0));
+		setReadReplicaMaxThreads(section.getInt("ReadReplica.MaxConnections", 0));
+		setReadYourWritesMs(section.getLong("ReadReplica.ReadYourWritesMs", 2_000L));
+
+		// Slow-query log; QueryDebugLevel empty = follow Debug
+		setSlowQueryThresholdMs(section.getLong("SlowQueryThresholdMs", 0));
+		String queryDebug = section.getString("QueryDebugLevel", "");
+		setQueryDebugLevel(queryDebug.isEmpty() ? null : DebugLevel.getDebug(queryDebug));
 	}
 }
@@ -2,8 +2,10 @@ package com.bencodez.simpleapi.sql.mysql.config;
 
 import org.spongepowered.configurate.ConfigurationNode;
 
+import com.bencodez.simpleapi.debug.DebugLevel;
 import com.bencodez.simpleapi.file.velocity.VelocityYMLFile;
 import com.bencodez.simpleapi.sql.mysql.DbType;
+import com.bencodez.simpleapi.sql.mysql.ExecutionMode;
 
 public class MysqlConfigVelocity extends MysqlConfig {
 
@@ -66,6 +68,21 @@ public class MysqlConfigVelocity extends MysqlConfig {
 		setLine(config.getString(node(config, prePath, "Line"), ""));
 		setDebug(config.getBoolean(node(config, prePath, "Debug"), false));
 		setPoolName(config.getString(node(config, prePath, "PoolName"), ""));
+
+		// Async query threads: PLATFORM | VIRTUAL
+		setExecutionMode(ExecutionMode.fromString(config.getString(node(config, prePath, "ExecutionMode"), "")));
+
+		// Optional read replica for lookups/leaderboards
+		ConfigurationNode replica = node(config, prePath, "ReadReplica");
+		setReadReplicaHost(config.getString(replica.node("Host"), ""));
+		setReadReplicaPort(config.getInt(replica.node("Port"), 0));
+		setReadReplicaMaxThreads(config.getInt(replica.node("MaxConnections"), 0));
+		setReadYourWritesMs(config.getLong(replica.node("ReadYourWritesMs"), 2_000L));
+
+		// Slow-query log; QueryDebugLevel empty = follow Debug
+		setSlowQueryThresholdMs(config.getLong(node(config, prePath, "SlowQueryThresholdMs"), 0));
+		String queryDebug = config.getString(node(config, prePath, "QueryDebugLevel"), "");
+		setQueryDebugLevel(queryDebug.isEmpty() ? null : DebugLevel.getDebug(queryDebug));
 	}
 
 	/**
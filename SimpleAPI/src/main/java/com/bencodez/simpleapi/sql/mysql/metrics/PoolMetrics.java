@@ -0,0 +1,60 @@
+package com.bencodez.simpleapi.sql.mysql.metrics;
+
+import com.bencodez.simpleapi.metrics.LatencyHistogram;
+
+/**
+ * Point-in-time view of the connection pool.
+ */
+public class PoolMetrics {
+
+	private final int activeConnections;
+	private final int idleConnections;
+	private final int totalConnections;
+	private final int threadsAwaitingConnection;
+	private final long connectionTimeouts;
+	private final LatencyHistogram connectionWait;
+
+	public PoolMetrics(int activeConnections, int idleConnections, int totalConnections,
+			int threadsAwaitingConnection, long connectionTimeouts, LatencyHistogram connectionWait) {
+		this.activeConnections = activeConnections;
+		this.idleConnections = idleConnections;
+		this.totalConnections = totalConnections;
+		this.threadsAwaitingConnection = threadsAwaitingConnection;
+		this.connectionTimeouts = connectionTimeouts;
+		this.connectionWait = connectionWait;
+	}
+
+	public int getActiveConnections() {
+		return activeConnections;
+	}
+
+	public int getIdleConnections() {
+		return idleConnections;
+	}
+
+	public int getTotalConnections() {
+		return totalConnections;
+	}
+
+	public int getThreadsAwaitingConnection() {
+		return threadsAwaitingConnection;
+	}
+
+	public long getConnectionTimeouts() {
+		return connectionTimeouts;
+	}
+
+	/**
+	 * Time spent waiting in getConnection(); live, not a copy.
+	 */
+	public LatencyHistogram getConnectionWait() {
+		return connectionWait;
+	}
+
+	@Override
+	public String toString() {
+		return "active=" + activeConnections + " idle=" + idleConnections + " total=" + totalConnections
+				+ " waiting=" + threadsAwaitingConnection + " timeouts=" + connectionTimeouts + " wait["
+				+ connectionWait + "]";
+	}
+}
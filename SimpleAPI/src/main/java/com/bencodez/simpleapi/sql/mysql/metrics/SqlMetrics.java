@@ -0,0 +1,191 @@
+package com.bencodez.simpleapi.sql.mysql.metrics;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import com.bencodez.simpleapi.debug.DebugLevel;
+import com.bencodez.simpleapi.metrics.LatencyHistogram;
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+
+/**
+ * Statement latency, pool wait and slow-query tracking for one MySQL wrapper.
+ *
+ * Latencies are keyed by SQL text, which is the template when values are bound
+ * as parameters. Slow queries go to the slow-query logger (if set) and to debug
+ * output at {@link DebugLevel#INFO} and above; {@link DebugLevel#DEV} also logs
+ * every statement.
+ */
+public class SqlMetrics {
+
+	/** Key used once the template map is full, so literal SQL can't grow it forever. */
+	public static final String OTHER_TEMPLATE = "<other>";
+
+	private static final int MAX_TEMPLATES = 512;
+	private static final int RECENT_SLOW_QUERIES = 50;
+
+	private final Map<String, LatencyHistogram> statements = new ConcurrentHashMap<>();
+	private final LatencyHistogram connectionWait = new LatencyHistogram();
+	private final LatencyHistogram connectionUsage = new LatencyHistogram();
+	private final LongAdder connectionTimeouts = new LongAdder();
+	private final Deque<String> recentSlowQueries = new ArrayDeque<>();
+
+	private volatile long slowQueryThresholdMs = 250;
+	private volatile DebugLevel debugLevel = DebugLevel.NONE;
+	private volatile Consumer<String> slowQueryLogger;
+	private volatile Consumer<String> debugLogger;
+
+	public long getSlowQueryThresholdMs() {
+		return slowQueryThresholdMs;
+	}
+
+	/**
+	 * @param slowQueryThresholdMs statements slower than this are logged, &lt;= 0
+	 *                             disables the slow-query log
+	 */
+	public void setSlowQueryThresholdMs(long slowQueryThresholdMs) {
+		this.slowQueryThresholdMs = slowQueryThresholdMs;
+	}
+
+	public DebugLevel getDebugLevel() {
+		return debugLevel;
+	}
+
+	public void setDebugLevel(DebugLevel debugLevel) {
+		this.debugLevel = debugLevel == null ? DebugLevel.NONE : debugLevel;
+	}
+
+	/**
+	 * Receives one line per slow query regardless of debug level.
+	 */
+	public void setSlowQueryLogger(Consumer<String> slowQueryLogger) {
+		this.slowQueryLogger = slowQueryLogger;
+	}
+
+	/**
+	 * Debug sink, normally the owning MySQL wrapper's debug(String).
+	 */
+	public void setDebugLogger(Consumer<String> debugLogger) {
+		this.debugLogger = debugLogger;
+	}
+
+	/**
+	 * Record one statement execution.
+	 *
+	 * @param sql   the statement text
+	 * @param nanos elapsed time
+	 */
+	public void recordQuery(String sql, long nanos) {
+		String key = sql == null ? OTHER_TEMPLATE : sql;
+		LatencyHistogram histogram = statements.get(key);
+		if (histogram == null) {
+			if (statements.size() >= MAX_TEMPLATES) {
+				key = OTHER_TEMPLATE;
+			}
+			histogram = statements.computeIfAbsent(key, k -> new LatencyHistogram());
+		}
+		histogram.record(nanos);
+
+		long millis = nanos / 1_000_000L;
+		long threshold = slowQueryThresholdMs;
+		if (threshold > 0 && millis >= threshold) {
+			String line = "Slow query (" + millis + "ms): " + sql;
+			synchronized (recentSlowQueries) {
+				recentSlowQueries.addFirst(line);
+				while (recentSlowQueries.size() > RECENT_SLOW_QUERIES) {
+					recentSlowQueries.removeLast();
+				}
+			}
+			Consumer<String> logger = slowQueryLogger;
+			if (logger != null) {
+				logger.accept(line);
+			}
+			if (debugLevel.isDebug()) {
+				debug(line);
+			}
+		} else if (debugLevel == DebugLevel.DEV) {
+			debug("Query (" + (nanos / 1000) / 1000.0 + "ms): " + sql);
+		}
+	}
+
+	private void debug(String line) {
+		Consumer<String> logger = debugLogger;
+		if (logger != null) {
+			logger.accept(line);
+		}
+	}
+
+	/**
+	 * @return live histograms keyed by SQL template
+	 */
+	public Map<String, LatencyHistogram> getStatementLatencies() {
+		return Collections.unmodifiableMap(statements);
+	}
+
+	public LatencyHistogram getStatementLatency(String sql) {
+		return statements.get(sql);
+	}
+
+	public LatencyHistogram getConnectionWait() {
+		return connectionWait;
+	}
+
+	public LatencyHistogram getConnectionUsage() {
+		return connectionUsage;
+	}
+
+	public long getConnectionTimeouts() {
+		return connectionTimeouts.sum();
+	}
+
+	/**
+	 * @return most recent slow-query lines, newest first
+	 */
+	public List<String> getRecentSlowQueries() {
+		synchronized (recentSlowQueries) {
+			return new ArrayList<>(recentSlowQueries);
+		}
+	}
+
+	public void reset() {
+		statements.clear();
+		connectionWait.reset();
+		connectionUsage.reset();
+		connectionTimeouts.reset();
+		synchronized (recentSlowQueries) {
+			recentSlowQueries.clear();
+		}
+	}
+
+	/**
+	 * Hikari hook feeding pool wait time, usage time and timeouts into this
+	 * instance.
+	 */
+	public MetricsTrackerFactory createTrackerFactory() {
+		return (String poolName, PoolStats poolStats) -> new IMetricsTracker() {
+			@Override
+			public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+				connectionWait.record(elapsedAcquiredNanos);
+			}
+
+			@Override
+			public void recordConnectionUsageMillis(long elapsedBorrowedMillis) {
+				connectionUsage.record(elapsedBorrowedMillis * 1_000_000L);
+			}
+
+			@Override
+			public void recordConnectionTimeout() {
+				connectionTimeouts.increment();
+				debug("Connection timeout on pool " + poolName);
+			}
+		};
+	}
+}
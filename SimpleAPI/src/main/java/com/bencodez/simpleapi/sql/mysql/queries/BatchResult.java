@@ -0,0 +1,94 @@
+package com.bencodez.simpleapi.sql.mysql.queries;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Per-row outcome of {@link Query#executeBatchDetailed()}.
+ *
+ * Update counts follow JDBC: a row may report {@link Statement#SUCCESS_NO_INFO}
+ * when the driver rewrote the batch into a multi-row statement
+ * (rewriteBatchedStatements / reWriteBatchedInserts), and
+ * {@link Statement#EXECUTE_FAILED} when it failed or was never run.
+ */
+public class BatchResult {
+
+	private final int[] updateCounts;
+	private final Map<Integer, SQLException> failures;
+	private final boolean committed;
+
+	public BatchResult(int[] updateCounts, Map<Integer, SQLException> failures, boolean committed) {
+		this.updateCounts = updateCounts;
+		this.failures = Collections.unmodifiableMap(failures);
+		this.committed = committed;
+	}
+
+	/**
+	 * @return true if every row ran and the transaction was committed
+	 */
+	public boolean isSuccess() {
+		return committed && failures.isEmpty();
+	}
+
+	/**
+	 * @return true if the transaction was committed; if false nothing was
+	 *         written
+	 */
+	public boolean isCommitted() {
+		return committed;
+	}
+
+	public int getRowCount() {
+		return updateCounts.length;
+	}
+
+	public int[] getUpdateCounts() {
+		return updateCounts.clone();
+	}
+
+	public int getUpdateCount(int row) {
+		return updateCounts[row];
+	}
+
+	public boolean isFailed(int row) {
+		return updateCounts[row] == Statement.EXECUTE_FAILED;
+	}
+
+	/**
+	 * @return row index (0 based, in {@link Query#addBatch()} order) -&gt; cause
+	 */
+	public Map<Integer, SQLException> getFailures() {
+		return failures;
+	}
+
+	/**
+	 * @return the first failure, or null if none
+	 */
+	public SQLException getFirstFailure() {
+		SQLException first = null;
+		int firstRow = Integer.MAX_VALUE;
+		for (Map.Entry<Integer, SQLException> entry : failures.entrySet()) {
+			if (entry.getKey() < firstRow) {
+				firstRow = entry.getKey();
+				first = entry.getValue();
+			}
+		}
+		return first;
+	}
+
+	/**
+	 * Sum of known update counts. Rows reporting SUCCESS_NO_INFO are not
+	 * counted.
+	 */
+	public int getTotalUpdated() {
+		int total = 0;
+		for (int count : updateCounts) {
+			if (count > 0) {
+				total += count;
+			}
+		}
+		return total;
+	}
+}
@@ -5,6 +5,7 @@ import java.util.List;
 
 public class DeleteQuery {
 
+	private String built;
 	private String table;
 	private List<String> wheres = new ArrayList<>();
 
@@ -34,6 +35,18 @@ public class DeleteQuery {
 	 * @return the query as a String
 	 */
 	public String build() {
+		if (built != null) {
+			return built;
+		}
+		List<Object> shape = new ArrayList<>(3 + wheres.size());
+		shape.add("DELETE");
+		shape.add(table);
+		shape.addAll(wheres);
+		built = QueryTemplateCache.get(shape, this::render);
+		return built;
+	}
+
+	private String render() {
 		StringBuilder builder = new StringBuilder();
 		builder.append("DELETE FROM ").append(table);
 
@@ -51,6 +64,7 @@ public class DeleteQuery {
 	 * @return the DeleteQuery object
 	 */
 	public DeleteQuery where(String expression) {
+		built = null;
 		wheres.add(expression);
 		return this;
 	}
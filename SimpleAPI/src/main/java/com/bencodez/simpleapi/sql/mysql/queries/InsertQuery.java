@@ -1,10 +1,13 @@
 package com.bencodez.simpleapi.sql.mysql.queries;
 
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 public class InsertQuery {
 
+	private String built;
 	private LinkedHashMap<String, String> duplicateValues = new LinkedHashMap<>();
 	private boolean onDuplicateKey = false;
 	private String table;
@@ -25,6 +28,29 @@ public class InsertQuery {
 	 * @return the query as a String
 	 */
 	public String build() {
+		if (built != null) {
+			return built;
+		}
+		List<Object> shape = new ArrayList<>(5 + (values.size() + duplicateValues.size()) * 2);
+		shape.add("INSERT");
+		shape.add(table);
+		shape.add(values.size());
+		for (Map.Entry<String, String> entry : values.entrySet()) {
+			shape.add(entry.getKey());
+			shape.add(entry.getValue());
+		}
+		shape.add(onDuplicateKey);
+		if (onDuplicateKey) {
+			for (Map.Entry<String, String> entry : duplicateValues.entrySet()) {
+				shape.add(entry.getKey());
+				shape.add(entry.getValue());
+			}
+		}
+		built = QueryTemplateCache.get(shape, this::render);
+		return built;
+	}
+
+	private String render() {
 		StringBuilder builder = new StringBuilder();
 		builder.append("INSERT INTO ").append(table).append(" (").append(QueryUtils.separate(values.keySet(), ","))
 				.append(")").append(" VALUES (").append(QueryUtils.separate(values.values(), ",")).append(")");
@@ -49,6 +75,7 @@ public class InsertQuery {
 	 * @return the InsertQuery object
 	 */
 	public InsertQuery onDuplicateKeyUpdate() {
+		built = null;
 		onDuplicateKey = true;
 		return this;
 	}
@@ -74,6 +101,7 @@ public class InsertQuery {
 	 * @return the InsertQuery object
 	 */
 	public InsertQuery set(String column, String value) {
+		built = null;
 		duplicateValues.put(column, value);
 		return this;
 	}
@@ -98,6 +126,7 @@ public class InsertQuery {
 	 * @return the InsertQuery object
 	 */
 	public InsertQuery value(String column, String value) {
+		built = null;
 		values.put(column, value);
 		return this;
 	}
@@ -1,17 +1,28 @@
 package com.bencodez.simpleapi.sql.mysql.queries;
 
+import java.sql.BatchUpdateException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
+import com.bencodez.simpleapi.sql.mysql.ConnectionManager;
 import com.bencodez.simpleapi.sql.mysql.MySQL;
 
 public class Query {
 
-	private boolean addBatch = false;
-	private Connection connection;
+	private final List<HashMap<Integer, Object>> batches = new ArrayList<>();
+	private int batchChunkSize = 0;
 	private MySQL mysql;
 	private HashMap<Integer, Object> paramters = new HashMap<>();
 
@@ -23,39 +34,163 @@ public class Query {
 	}
 
 	/**
-	 * Add the current statement to the batch.
+	 * Add the current parameters to the batch and start a fresh parameter set.
 	 *
 	 * @throws SQLException SQLException
 	 */
 	public void addBatch() throws SQLException {
-		if (connection.getAutoCommit()) {
-			connection.setAutoCommit(false);
-		}
-		addBatch = true;
+		batches.add(paramters);
+		paramters = new HashMap<>();
+	}
+
+	/**
+	 * Drop all queued parameter sets.
+	 */
+	public void clearBatch() {
+		batches.clear();
+	}
+
+	/**
+	 * @return number of parameter sets queued with {@link #addBatch()}
+	 */
+	public int getBatchSize() {
+		return batches.size();
+	}
+
+	/**
+	 * Send at most this many rows per executeBatch() call, still inside one
+	 * transaction. 0 (default) sends everything at once, which lets drivers with
+	 * rewriteBatchedStatements / reWriteBatchedInserts collapse the whole batch
+	 * into multi-row statements.
+	 *
+	 * @param batchChunkSize rows per round trip, 0 for unlimited
+	 */
+	public void setBatchChunkSize(int batchChunkSize) {
+		this.batchChunkSize = Math.max(0, batchChunkSize);
 	}
 
 	/**
 	 * Execute a batch that does not return a ResultSet.
+	 * <p>
+	 * All parameter sets run on one connection in one transaction. If any row
+	 * fails the transaction is rolled back and the first failure is thrown; use
+	 * {@link #executeBatchDetailed()} for per-row results.
 	 *
 	 * @return an array with updates rows
 	 *
 	 * @throws SQLException SQLException
 	 */
 	public int[] executeBatch() throws SQLException {
-		try (Connection conn = mysql.getConnectionManager().getConnection();
-				PreparedStatement sql = conn.prepareStatement(this.sql);) {
+		BatchResult result = executeBatchDetailed();
+		if (!result.isSuccess()) {
+			SQLException e = result.getFirstFailure();
+			throw e != null ? e : new SQLException("Batch was not committed: " + this.sql);
+		}
+		return result.getUpdateCounts();
+	}
 
-			for (Entry<Integer, Object> entry : paramters.entrySet()) {
-				sql.setObject(entry.getKey(), entry.getValue());
+	/**
+	 * Execute a batch that does not return a ResultSet, reporting per-row
+	 * results instead of throwing.
+	 * <p>
+	 * All parameter sets run on one connection in one transaction, which is
+	 * rolled back if any row fails. If nothing was added with
+	 * {@link #addBatch()}, the current parameters run as a single row.
+	 *
+	 * @return per-row update counts and failures
+	 */
+	public BatchResult executeBatchDetailed() {
+		List<HashMap<Integer, Object>> rows = new ArrayList<>(batches);
+		if (rows.isEmpty()) {
+			rows.add(paramters);
+		}
+		batches.clear();
+
+		int[] counts = new int[rows.size()];
+		Arrays.fill(counts, Statement.EXECUTE_FAILED);
+		Map<Integer, SQLException> failures = new LinkedHashMap<>();
+
+		Connection conn = mysql.getConnectionManager().getConnection();
+		if (conn == null) {
+			failures.put(0, new SQLException("No connection available for batch: " + this.sql));
+			return new BatchResult(counts, failures, false);
+		}
+
+		int offset = 0;
+		try (Connection c = conn; PreparedStatement ps = c.prepareStatement(this.sql)) {
+			boolean autoCommit = c.getAutoCommit();
+			c.setAutoCommit(false);
+			try {
+				int chunk = batchChunkSize > 0 ? batchChunkSize : rows.size();
+				while (offset < rows.size()) {
+					int end = Math.min(rows.size(), offset + chunk);
+					for (int i = offset; i < end; i++) {
+						for (Entry<Integer, Object> entry : rows.get(i).entrySet()) {
+							ps.setObject(entry.getKey(), entry.getValue());
+						}
+						ps.addBatch();
+					}
+					long start = System.nanoTime();
+					int[] chunkCounts = ps.executeBatch();
+					mysql.recordQuery(this.sql, System.nanoTime() - start);
+					System.arraycopy(chunkCounts, 0, counts, offset, Math.min(chunkCounts.length, end - offset));
+					offset = end;
+				}
+				c.commit();
+				markWrite();
+				return new BatchResult(counts, failures, true);
+			} catch (BatchUpdateException e) {
+				recordBatchFailure(e, counts, failures, offset);
+				rollbackQuiet(c);
+			} catch (SQLException e) {
+				failures.put(offset, e);
+				rollbackQuiet(c);
+			} finally {
+				c.setAutoCommit(autoCommit);
 			}
-			if (addBatch) {
-				sql.addBatch();
+		} catch (SQLException e) {
+			if (failures.isEmpty()) {
+				failures.put(offset, e);
+			}
+		}
+
+		mysql.debug("Batch failed (" + failures.size() + " failed rows of " + rows.size() + "): " + this.sql);
+		return new BatchResult(counts, failures, false);
+	}
+
+	private void recordBatchFailure(BatchUpdateException e, int[] counts, Map<Integer, SQLException> failures,
+			int offset) {
+		int[] partial = e.getUpdateCounts();
+		int n = partial == null ? 0 : Math.min(partial.length, counts.length - offset);
+		for (int i = 0; i < n; i++) {
+			counts[offset + i] = partial[i];
+			if (partial[i] == Statement.EXECUTE_FAILED) {
+				failures.put(offset + i, e);
 			}
-			return sql.executeBatch();
+		}
+		if (failures.isEmpty()) {
+			// driver stopped at the first failing row
+			failures.put(Math.min(offset + n, counts.length - 1), e);
+		}
+	}
+
+	/**
+	 * Pins reads to the primary so a read replica can't serve stale data right
+	 * after this write.
+	 */
+	private void markWrite() {
+		ConnectionManager manager = mysql.getConnectionManager();
+		if (manager != null) {
+			manager.markWrite();
+		}
+	}
 
+	private void rollbackQuiet(Connection c) {
+		try {
+			c.rollback();
 		} catch (SQLException e) {
+			mysql.debug(e);
 		}
-		return new int[0];
 	}
 
 	/**
@@ -67,31 +202,101 @@ public class Query {
 		executeBatchAsync(null);
 	}
 
+	/**
+	 * Execute a batch that does not return a ResultSet asynchronously.
+	 *
+	 * @return future of the update counts, failing with the first row error
+	 */
+	public CompletableFuture<int[]> executeBatchFuture() {
+		return executeBatchFuture(null);
+	}
+
+	/**
+	 * Execute a batch that does not return a ResultSet asynchronously.
+	 *
+	 * @param completionExecutor where dependent stages run (for example the
+	 *                           server main thread), null for the query thread
+	 * @return future of the update counts, failing with the first row error
+	 */
+	public CompletableFuture<int[]> executeBatchFuture(Executor completionExecutor) {
+		return mysql.supplyAsync(this::executeBatch, completionExecutor);
+	}
+
+	/**
+	 * Execute a batch asynchronously, reporting per-row results.
+	 *
+	 * @param completionExecutor where dependent stages run, null for the query
+	 *                           thread
+	 * @return future of the batch result; never completes exceptionally for row
+	 *         failures
+	 */
+	public CompletableFuture<BatchResult> executeBatchDetailedAsync(Executor completionExecutor) {
+		return mysql.supplyAsync(this::executeBatchDetailed, completionExecutor);
+	}
+
 	/**
 	 * Execute a batch that does not return a ResultSet asynchronously.
 	 * <p>
 	 * The query will be run in a separate thread.
 	 *
 	 * @param callback the callback to be executed once the query is done
+	 * @deprecated use {@link #executeBatchFuture(Executor)}
 	 */
+	@Deprecated
 	public void executeBatchAsync(final Callback<int[], SQLException> callback) {
-		mysql.getThreadPool().submit(new Runnable() {
-
-			@Override
-			public void run() {
-				try {
-					int[] rowsChanged = executeBatch();
-					if (callback != null) {
-						callback.call(rowsChanged, null);
-					}
-				} catch (SQLException e) {
-					if (callback != null) {
-						callback.call(null, e);
-					}
+		executeBatchFuture(null).whenComplete((rowsChanged, error) -> {
+			if (callback != null) {
+				callback.call(rowsChanged, error == null ? null : unwrap(error));
+			}
+		});
+	}
+
+	/**
+	 * Execute a SQL query and map every row.
+	 *
+	 * @param mapper maps the current row
+	 * @return mapped rows in result order
+	 *
+	 * @throws SQLException SQLException
+	 */
+	public <T> List<T> executeQuery(RowMapper<T> mapper) throws SQLException {
+		List<T> out = new ArrayList<>();
+		try (Connection conn = mysql.getConnectionManager().getConnection();
+				PreparedStatement sql = conn.prepareStatement(this.sql)) {
+			for (Entry<Integer, Object> entry : paramters.entrySet()) {
+				sql.setObject(entry.getKey(), entry.getValue());
+			}
+			long start = System.nanoTime();
+			try (ResultSet rs = sql.executeQuery()) {
+				while (rs.next()) {
+					out.add(mapper.map(rs));
 				}
 			}
+			mysql.recordQuery(this.sql, System.nanoTime() - start);
+		}
+		return out;
+	}
 
-		});
+	/**
+	 * Execute a SQL query asynchronously and map every row.
+	 *
+	 * @param mapper maps the current row
+	 * @return future of the mapped rows
+	 */
+	public <T> CompletableFuture<List<T>> executeQueryAsync(RowMapper<T> mapper) {
+		return executeQueryAsync(mapper, null);
+	}
+
+	/**
+	 * Execute a SQL query asynchronously and map every row.
+	 *
+	 * @param mapper             maps the current row (runs on the query thread)
+	 * @param completionExecutor where dependent stages run, null for the query
+	 *                           thread
+	 * @return future of the mapped rows
+	 */
+	public <T> CompletableFuture<List<T>> executeQueryAsync(RowMapper<T> mapper, Executor completionExecutor) {
+		return mysql.supplyAsync(() -> executeQuery(mapper), completionExecutor);
 	}
 
 	/**
@@ -139,31 +344,39 @@ public class Query {
 	 * @throws SQLException SQLException
 	 */
 	public int executeUpdate() throws SQLException {
+		try {
+			return runUpdate();
+		} catch (SQLException e) {
+			logUpdateFailure(e);
+		}
+
+		return 0;
+
+	}
+
+	private int runUpdate() throws SQLException {
 		try (Connection conn = mysql.getConnectionManager().getConnection();
 				PreparedStatement sql = conn.prepareStatement(this.sql);) {
 			for (Entry<Integer, Object> entry : paramters.entrySet()) {
 				sql.setObject(entry.getKey(), entry.getValue());
 			}
-			if (addBatch) {
-				sql.addBatch();
-			}
+			long start = System.nanoTime();
 			int num = sql.executeUpdate();
+			mysql.recordQuery(this.sql, System.nanoTime() - start);
+			markWrite();
 			sql.close();
 			return num;
-
-		} catch (SQLException e) {
-			if (!e.getMessage().contains("Duplicate entry")) {
-				mysql.severe("Failed to send query: " + this.sql);
-				e.printStackTrace();
-			} else {
-				mysql.debug("Failed to send query: " + this.sql);
-				mysql.debug(e);
-			}
-
 		}
+	}
 
-		return 0;
-
+	private void logUpdateFailure(SQLException e) {
+		if (e.getMessage() == null || !e.getMessage().contains("Duplicate entry")) {
+			mysql.severe("Failed to send query: " + this.sql);
+			e.printStackTrace();
+		} else {
+			mysql.debug("Failed to send query: " + this.sql);
+			mysql.debug(e);
+		}
 	}
 
 	/**
@@ -175,44 +388,70 @@ public class Query {
 		executeUpdateAsync(null);
 	}
 
+	/**
+	 * Execute a SQL query that does not return a ResultSet asynchronously.
+	 * <p>
+	 * Unlike {@link #executeUpdate()}, a failed statement completes the future
+	 * exceptionally with its SQLException instead of returning 0.
+	 *
+	 * @return future of the number of rows changed
+	 */
+	public CompletableFuture<Integer> executeUpdateFuture() {
+		return executeUpdateFuture(null);
+	}
+
+	/**
+	 * Execute a SQL query that does not return a ResultSet asynchronously.
+	 *
+	 * @param completionExecutor where dependent stages run (for example the
+	 *                           server main thread), null for the query thread
+	 * @return future of the number of rows changed, failing with the
+	 *         SQLException if the statement fails
+	 */
+	public CompletableFuture<Integer> executeUpdateFuture(Executor completionExecutor) {
+		return mysql.supplyAsync(this::runUpdate, completionExecutor);
+	}
+
 	/**
 	 * Execute a SQL query that does not return a ResultSet asynchronously.
 	 * <p>
 	 * The query will be run in a seperate thread.
 	 *
 	 * @param callback the callback to be executed once the query is done
+	 * @deprecated use {@link #executeUpdateFuture(Executor)}
 	 */
+	@Deprecated
 	public void executeUpdateAsync(final Callback<Integer, SQLException> callback) {
-		mysql.getThreadPool().submit(new Runnable() {
-
-			@Override
-			public void run() {
-				try {
-					int rowsChanged = executeUpdate();
-					if (callback != null) {
-						callback.call(rowsChanged, null);
-					}
-				} catch (SQLException e) {
-					if (callback != null) {
-						callback.call(0, e);
-					} else {
-						e.printStackTrace();
-					}
-				}
+		executeUpdateFuture(null).whenComplete((rowsChanged, error) -> {
+			SQLException e = error == null ? null : unwrap(error);
+			if (e != null) {
+				logUpdateFailure(e);
+			}
+			if (callback != null) {
+				callback.call(e == null ? rowsChanged : 0, e);
 			}
-
 		});
 	}
 
+	private static SQLException unwrap(Throwable error) {
+		Throwable cause = error;
+		while (cause.getCause() != null && !(cause instanceof SQLException)) {
+			cause = cause.getCause();
+		}
+		return cause instanceof SQLException ? (SQLException) cause : new SQLException(error);
+	}
+
 	/**
 	 * Rollback the transaction.
+	 * <p>
+	 * Batches now run and roll back inside {@link #executeBatch()}, so there is
+	 * no open transaction to roll back here.
 	 *
 	 * @throws SQLException SQLException
+	 * @deprecated failed batches are rolled back automatically
 	 */
+	@Deprecated
 	public void rollback() throws SQLException {
-		if (connection != null) {
-			connection.rollback();
-		}
 	}
 
 	/**
@@ -0,0 +1,55 @@
+package com.bencodez.simpleapi.sql.mysql.queries;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Shared cache of interned SQL text keyed by query builder shape.
+ * <p>
+ * Builders with the same table, columns, where expressions, ordering and limits
+ * resolve to the exact same String instance, so the hot path skips string
+ * building and the driver/Hikari statement cache (cachePrepStmts,
+ * prepStmtCacheSize) sees identical SQL every time. Values belong in
+ * parameters (?), not in the shape.
+ */
+public final class QueryTemplateCache {
+
+	private static final int MAX_SIZE = 2048;
+
+	private static final ConcurrentHashMap<List<Object>, String> CACHE = new ConcurrentHashMap<>();
+
+	private QueryTemplateCache() {
+	}
+
+	/**
+	 * Look up the SQL for a builder shape, building and interning it on a miss.
+	 *
+	 * @param shape  flattened builder components; stored as the key on a miss,
+	 *               so it must not be modified afterwards
+	 * @param render builds the SQL text on a miss
+	 * @return the cached SQL text
+	 */
+	public static String get(List<Object> shape, Supplier<String> render) {
+		String sql = CACHE.get(shape);
+		if (sql != null) {
+			return sql;
+		}
+		sql = render.get().intern();
+		if (CACHE.size() < MAX_SIZE) {
+			String existing = CACHE.putIfAbsent(shape, sql);
+			if (existing != null) {
+				return existing;
+			}
+		}
+		return sql;
+	}
+
+	public static int size() {
+		return CACHE.size();
+	}
+
+	public static void clear() {
+		CACHE.clear();
+	}
+}
@@ -0,0 +1,15 @@
+package com.bencodez.simpleapi.sql.mysql.queries;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Maps the current row of a ResultSet. Do not call next() or keep the
+ * ResultSet; it is closed once the query finishes.
+ */
+@FunctionalInterface
+public interface RowMapper<T> {
+
+	T map(ResultSet rs) throws SQLException;
+
+}
@@ -5,6 +5,7 @@ import java.util.List;
 
 public class SelectQuery {
 
+	private String built;
 	private List<String> columns = new ArrayList<>();
 	private int limitOffset = 0;
 	private int limitRowCount = 0;
@@ -39,6 +40,25 @@ public class SelectQuery {
 	 * @return the query as a String
 	 */
 	public String build() {
+		if (built != null) {
+			return built;
+		}
+		List<Object> shape = new ArrayList<>(8 + columns.size() + wheres.size());
+		shape.add("SELECT");
+		shape.add(table);
+		shape.add(columns.size());
+		shape.addAll(columns);
+		shape.add(wheres.size());
+		shape.addAll(wheres);
+		shape.add(orderBy);
+		shape.add(orderByAscending);
+		shape.add(limitOffset);
+		shape.add(limitRowCount);
+		built = QueryTemplateCache.get(shape, this::render);
+		return built;
+	}
+
+	private String render() {
 		StringBuilder builder = new StringBuilder();
 		builder.append("SELECT ").append(QueryUtils.separate(columns, ",")).append(" FROM ").append(table);
 
@@ -64,6 +84,7 @@ public class SelectQuery {
 	 * @return the SelectQuery object
 	 */
 	public SelectQuery column(String column) {
+		built = null;
 		columns.add(column);
 		return this;
 	}
@@ -75,6 +96,7 @@ public class SelectQuery {
 	 * @return the SelectQuery object
 	 */
 	public SelectQuery limit(int rowCount) {
+		built = null;
 		limitOffset = 0;
 		limitRowCount = rowCount;
 		return this;
@@ -88,6 +110,7 @@ public class SelectQuery {
 	 * @return the SelectQuery object
 	 */
 	public SelectQuery limit(int offset, int rowCount) {
+		built = null;
 		limitOffset = offset;
 		limitRowCount = rowCount;
 		return this;
@@ -101,6 +124,7 @@ public class SelectQuery {
 	 * @return the SelectQuery object
 	 */
 	public SelectQuery orderBy(String column, boolean ascending) {
+		built = null;
 		orderBy = column;
 		orderByAscending = ascending;
 		return this;
@@ -113,6 +137,7 @@ public class SelectQuery {
 	 * @return the SelectQuery object
 	 */
 	public SelectQuery where(String expression) {
+		built = null;
 		wheres.add(expression);
 		return this;
 	}
@@ -0,0 +1,13 @@
+package com.bencodez.simpleapi.sql.mysql.queries;
+
+import java.sql.SQLException;
+
+/**
+ * Database work to run on the MySQL thread pool.
+ */
+@FunctionalInterface
+public interface SqlSupplier<T> {
+
+	T get() throws SQLException;
+
+}
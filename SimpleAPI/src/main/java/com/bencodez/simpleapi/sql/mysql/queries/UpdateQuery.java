@@ -7,6 +7,7 @@ import java.util.Map;
 
 public class UpdateQuery {
 
+	private String built;
 	private String table;
 	private LinkedHashMap<String, String> values = new LinkedHashMap<>();
 	private List<String> wheres = new ArrayList<>();
@@ -37,6 +38,23 @@ public class UpdateQuery {
 	 * @return the query as a String
 	 */
 	public String build() {
+		if (built != null) {
+			return built;
+		}
+		List<Object> shape = new ArrayList<>(4 + values.size() * 2 + wheres.size());
+		shape.add("UPDATE");
+		shape.add(table);
+		shape.add(values.size());
+		for (Map.Entry<String, String> entry : values.entrySet()) {
+			shape.add(entry.getKey());
+			shape.add(entry.getValue());
+		}
+		shape.addAll(wheres);
+		built = QueryTemplateCache.get(shape, this::render);
+		return built;
+	}
+
+	private String render() {
 		StringBuilder builder = new StringBuilder();
 		builder.append("UPDATE ").append(table).append(" SET ");
 
@@ -81,6 +99,7 @@ public class UpdateQuery {
 	 * @return the UpdateQuery object
 	 */
 	public UpdateQuery set(String column, String value) {
+		built = null;
 		values.put(column, value);
 		return this;
 	}
@@ -92,6 +111,7 @@ public class UpdateQuery {
 	 * @return the UpdateQuery object
 	 */
 	public UpdateQuery where(String expression) {
+		built = null;
 		wheres.add(expression);
 		return this;
 	}
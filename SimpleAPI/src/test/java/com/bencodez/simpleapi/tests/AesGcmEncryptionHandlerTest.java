@@ -0,0 +1,132 @@
+package com.bencodez.simpleapi.tests;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.bencodez.simpleapi.encryption.AesGcmEncryptionHandler;
+import com.bencodez.simpleapi.encryption.EncryptionHandler;
+
+public class AesGcmEncryptionHandlerTest {
+
+	private File tempKeyFile;
+	private AesGcmEncryptionHandler handler;
+
+	@BeforeEach
+	public void setUp() {
+		tempKeyFile = new File(System.getProperty("java.io.tmpdir"), "encryption_gcm_test_key");
+		tempKeyFile.delete();
+		handler = new AesGcmEncryptionHandler("Test", tempKeyFile);
+	}
+
+	@AfterEach
+	public void tearDown() {
+		if (tempKeyFile.exists()) {
+			tempKeyFile.delete();
+		}
+	}
+
+	@Test
+	public void stringRoundTrip_usesFreshNonce() {
+		String a = handler.encrypt("hello");
+		String b = handler.encrypt("hello");
+
+		assertFalse(a.equals(b), "Same plaintext should not give the same ciphertext");
+		assertEquals("hello", handler.decrypt(a));
+		assertEquals("hello", handler.decrypt(b));
+	}
+
+	@Test
+	public void byteRoundTrip_isBinarySafe() {
+		byte[] plain = "{\"t\":\"vote\"}".getBytes(StandardCharsets.UTF_8);
+
+		byte[] enc = handler.encrypt(plain);
+
+		assertTrue(handler.isBinarySafe());
+		assertTrue(handler.isEncryptedBinary(enc));
+		assertFalse(handler.isEncryptedBinary(plain));
+		assertFalse(handler.isEncryptedBinary(handler.encrypt("x").getBytes(StandardCharsets.US_ASCII)));
+		assertArrayEquals(plain, handler.decrypt(enc));
+	}
+
+	@Test
+	public void byteBufferRoundTrip() {
+		byte[] plain = "buffer payload".getBytes(StandardCharsets.UTF_8);
+		ByteBuffer direct = ByteBuffer.allocateDirect(plain.length);
+		direct.put(plain).flip();
+
+		ByteBuffer enc = handler.encrypt(direct);
+		assertFalse(direct.hasRemaining());
+
+		ByteBuffer dec = handler.decrypt(enc);
+		byte[] out = new byte[dec.remaining()];
+		dec.get(out);
+		assertArrayEquals(plain, out);
+	}
+
+	@Test
+	public void tamperedMessage_failsToDecrypt() {
+		byte[] enc = handler.encrypt("pay 5 coins".getBytes(StandardCharsets.UTF_8));
+		enc[enc.length - 1] ^= 1;
+
+		assertNull(handler.decrypt(enc));
+	}
+
+	@Test
+	public void sharedKeyFile_decryptsAcrossInstances() {
+		AesGcmEncryptionHandler other = new AesGcmEncryptionHandler("Test", tempKeyFile);
+
+		assertEquals("shared", other.decrypt(handler.encrypt("shared")));
+	}
+
+	@Test
+	public void legacyHandler_keepsEcbFormat() {
+		EncryptionHandler legacy = new EncryptionHandler("Test", tempKeyFile);
+
+		assertFalse(legacy.isBinarySafe());
+		assertEquals(legacy.encrypt("same"), legacy.encrypt("same"));
+		assertArrayEquals(new byte[] { 1, 2, 3 }, legacy.decrypt(legacy.encrypt(new byte[] { 1, 2, 3 })));
+	}
+
+	@Test
+	public void concurrentUse_isCorrect() throws Exception {
+		ExecutorService pool = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<Boolean>> results = new ArrayList<>();
+			for (int t = 0; t < 8; t++) {
+				final int thread = t;
+				results.add(pool.submit(() -> {
+					for (int i = 0; i < 500; i++) {
+						String msg = "thread " + thread + " message " + i;
+						if (!msg.equals(handler.decrypt(handler.encrypt(msg)))) {
+							return false;
+						}
+					}
+					return true;
+				}));
+			}
+			for (Future<Boolean> result : results) {
+				assertNotNull(result.get());
+				assertTrue(result.get());
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+}
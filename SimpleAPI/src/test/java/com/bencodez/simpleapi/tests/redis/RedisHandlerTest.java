@@ -1,10 +1,13 @@
 package com.bencodez.simpleapi.tests.redis;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
@@ -13,6 +16,7 @@ import org.junit.jupiter.api.Test;
 
 import com.bencodez.simpleapi.servercomm.codec.JsonEnvelope;
 import com.bencodez.simpleapi.servercomm.redis.RedisHandler;
+import com.bencodez.simpleapi.servercomm.redis.RedisTransport;
 
 public class RedisHandlerTest {
 
@@ -69,4 +73,131 @@ public class RedisHandlerTest {
 			handler.close();
 		}
 	}
+
+	@Test
+	public void publishFuture_completesAfterPublish_andTransportSeesErrors() throws Exception {
+		CountDownLatch releaseFirst = new CountDownLatch(1);
+
+		RedisHandler handler = new RedisHandler("127.0.0.1", 6379, "", "", 0) {
+			@Override
+			public void debug(String message) {
+				// no-op
+			}
+
+			@Override
+			protected void publishNow(String channel, String payload) throws Exception {
+				if (channel.equals("down")) {
+					throw new IllegalStateException("connection refused");
+				}
+				releaseFirst.await(2, TimeUnit.SECONDS);
+			}
+		};
+
+		try {
+			JsonEnvelope envelope = JsonEnvelope.builder("Presence").build();
+			CompletableFuture<Void> first = handler.publishEnvelopeFuture("up", envelope);
+			Thread.sleep(50);
+			// queued is not published
+			assertFalse(first.isDone());
+			releaseFirst.countDown();
+			first.get(2, TimeUnit.SECONDS);
+
+			RedisTransport transport = new RedisTransport(handler, target -> target);
+			transport.send("up", envelope);
+			Exception e = assertThrows(IllegalStateException.class, () -> transport.send("down", envelope));
+			assertEquals("connection refused", e.getMessage());
+			assertEquals(1, handler.getPublishErrorCount());
+		} finally {
+			releaseFirst.countDown();
+			handler.close();
+		}
+	}
+
+	@Test
+	public void fullQueue_rejectPolicy_dropsAndCounts() throws Exception {
+		CountDownLatch firstStarted = new CountDownLatch(1);
+		CountDownLatch releaseFirst = new CountDownLatch(1);
+
+		RedisHandler handler = new RedisHandler("127.0.0.1", 6379, "", "", 0, 2, RedisHandler.QueueFullPolicy.REJECT) {
+			@Override
+			public void debug(String message) {
+				// no-op
+			}
+
+			@Override
+			protected void publishNow(String channel, String payload) {
+				firstStarted.countDown();
+				try {
+					releaseFirst.await(2, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		};
+
+		try {
+			JsonEnvelope envelope = JsonEnvelope.builder("Presence").build();
+			handler.publishEnvelope("first", envelope);
+			assertTrue(firstStarted.await(1, TimeUnit.SECONDS));
+
+			handler.publishEnvelope("a", envelope);
+			handler.publishEnvelope("b", envelope);
+			assertEquals(2, handler.getPublishQueueDepth());
+
+			long start = System.nanoTime();
+			handler.publishEnvelope("c", envelope);
+			assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 250);
+			assertEquals(1, handler.getDroppedCount());
+		} finally {
+			releaseFirst.countDown();
+			handler.close();
+		}
+	}
+
+	@Test
+	public void fullQueue_blockPolicy_waitsThenDrops() throws Exception {
+		CountDownLatch firstStarted = new CountDownLatch(1);
+		CountDownLatch releaseFirst = new CountDownLatch(1);
+
+		RedisHandler handler = new RedisHandler("127.0.0.1", 6379, "", "", 0, 1, RedisHandler.QueueFullPolicy.BLOCK) {
+			@Override
+			public void debug(String message) {
+				// no-op
+			}
+
+			@Override
+			protected void publishNow(String channel, String payload) {
+				firstStarted.countDown();
+				try {
+					releaseFirst.await(2, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		};
+
+		try {
+			handler.setBlockTimeoutMs(100);
+			JsonEnvelope envelope = JsonEnvelope.builder("Presence").build();
+			handler.publishEnvelope("first", envelope);
+			assertTrue(firstStarted.await(1, TimeUnit.SECONDS));
+			handler.publishEnvelope("queued", envelope);
+
+			long start = System.nanoTime();
+			handler.publishEnvelope("blocked", envelope);
+			assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 90);
+			assertEquals(1, handler.getDroppedCount());
+
+			releaseFirst.countDown();
+			long deadline = System.currentTimeMillis() + 2000;
+			while (handler.getPublishedCount() < 2 && System.currentTimeMillis() < deadline) {
+				Thread.sleep(10);
+			}
+			assertEquals(2, handler.getPublishedCount());
+			assertEquals(2, handler.getPublishLatency().getCount());
+		} finally {
+			releaseFirst.countDown();
+			handler.close();
+		}
+	}
 }
@@ -0,0 +1,116 @@
+package com.bencodez.simpleapi.tests.redis;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.Test;
+
+import com.bencodez.simpleapi.servercomm.codec.JsonEnvelope;
+import com.bencodez.simpleapi.servercomm.redis.RedisHandler;
+import com.bencodez.simpleapi.servercomm.redis.RedisStreams;
+
+public class RedisStreamsTest {
+
+	private static RedisHandler handler() {
+		return new RedisHandler("127.0.0.1", 6379, "", "", 0) {
+			@Override
+			public void debug(String message) {
+				// no-op
+			}
+		};
+	}
+
+	@Test
+	public void publish_pipelinesQueuedMessagesInOrder() throws Exception {
+		RedisHandler handler = handler();
+		CountDownLatch firstStarted = new CountDownLatch(1);
+		CountDownLatch releaseFirst = new CountDownLatch(1);
+		CountDownLatch allSent = new CountDownLatch(51);
+		List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+		List<String> sent = new CopyOnWriteArrayList<>();
+
+		RedisStreams streams = new RedisStreams(handler, "lobby", "lobby") {
+			@Override
+			protected void xaddBatch(List<StreamMessage> batch) throws Exception {
+				batchSizes.add(batch.size());
+				for (StreamMessage message : batch) {
+					sent.add(message.getStream());
+					allSent.countDown();
+				}
+				firstStarted.countDown();
+				releaseFirst.await(2, TimeUnit.SECONDS);
+			}
+		};
+		try {
+			streams.setBatchSize(100);
+			assertTrue(streams.publish("votes-0", JsonEnvelope.builder("vote").build()));
+			assertTrue(firstStarted.await(2, TimeUnit.SECONDS));
+			for (int i = 1; i <= 50; i++) {
+				streams.publish("votes-" + i, JsonEnvelope.builder("vote").build());
+			}
+			releaseFirst.countDown();
+
+			assertTrue(allSent.await(2, TimeUnit.SECONDS));
+			assertEquals(List.of(1, 50), batchSizes);
+			List<String> expected = new ArrayList<>();
+			for (int i = 0; i <= 50; i++) {
+				expected.add("votes-" + i);
+			}
+			assertEquals(expected, sent);
+		} finally {
+			releaseFirst.countDown();
+			streams.close();
+			handler.close();
+		}
+	}
+
+	@Test
+	public void publish_retriesFailedBatch() throws Exception {
+		RedisHandler handler = handler();
+		AtomicBoolean failedOnce = new AtomicBoolean(false);
+		CountDownLatch delivered = new CountDownLatch(1);
+
+		RedisStreams streams = new RedisStreams(handler, "lobby", "lobby") {
+			@Override
+			protected void xaddBatch(List<StreamMessage> batch) throws Exception {
+				if (!failedOnce.getAndSet(true)) {
+					throw new IllegalStateException("connection refused");
+				}
+				delivered.countDown();
+			}
+		};
+		try {
+			streams.publish("votes", JsonEnvelope.builder("vote").build());
+			assertTrue(delivered.await(5, TimeUnit.SECONDS));
+		} finally {
+			streams.close();
+			handler.close();
+		}
+	}
+
+	@Test
+	public void publish_afterClose_isRejected() {
+		RedisHandler handler = handler();
+		RedisStreams streams = handler.streams("lobby", "lobby");
+		handler.close();
+
+		assertFalse(streams.publish("votes", JsonEnvelope.builder("vote").build()));
+	}
+
+	@Test
+	public void streams_afterHandlerClose_isRejected() {
+		RedisHandler handler = handler();
+		handler.close();
+
+		assertThrows(IllegalStateException.class, () -> handler.streams("lobby", "lobby"));
+	}
+}
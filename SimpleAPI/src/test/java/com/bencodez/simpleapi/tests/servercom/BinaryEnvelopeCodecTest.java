@@ -0,0 +1,119 @@
+package com.bencodez.simpleapi.tests.servercom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import com.bencodez.simpleapi.servercomm.codec.BinaryEnvelopeCodec;
+import com.bencodez.simpleapi.servercomm.codec.JsonEnvelope;
+import com.bencodez.simpleapi.servercomm.codec.JsonEnvelopeCodec;
+
+public class BinaryEnvelopeCodecTest {
+
+	private static JsonEnvelope sample() {
+		return JsonEnvelope.builder("vote").schema(3).put("player", "Steve")
+				.put("uuid", "069a79f4-44e9-4726-a5be-fca90e38aaf5").put("points", 12).put("negative", -42).put("max", Long.MAX_VALUE).put("padded", "007")
+				.put("minusZero", "-0").put("online", true).put("offline", "false").put("empty", "")
+				.put("unicode", "héllo ✓").build();
+	}
+
+	private static void assertSame(JsonEnvelope expected, JsonEnvelope actual) {
+		assertEquals(expected.getSubChannel(), actual.getSubChannel());
+		assertEquals(expected.getSchema(), actual.getSchema());
+		assertEquals(expected.getFields(), actual.getFields());
+	}
+
+	@Test
+	public void stateless_roundTripPreservesExactStrings() throws IOException {
+		JsonEnvelope env = sample();
+		byte[] bytes = BinaryEnvelopeCodec.encode(env);
+		assertTrue(BinaryEnvelopeCodec.isBinary(bytes));
+		assertSame(env, BinaryEnvelopeCodec.decode(bytes));
+	}
+
+	@Test
+	public void binary_smallerThanJson() {
+		JsonEnvelope env = sample();
+		int json = JsonEnvelopeCodec.encode(env).getBytes(StandardCharsets.UTF_8).length;
+		assertTrue(BinaryEnvelopeCodec.encode(env).length < json);
+	}
+
+	@Test
+	public void session_internsNamesAfterFirstMessage() throws IOException {
+		BinaryEnvelopeCodec.Session encoder = new BinaryEnvelopeCodec.Session();
+		BinaryEnvelopeCodec.Session decoder = new BinaryEnvelopeCodec.Session();
+		JsonEnvelope env = sample();
+
+		byte[] first = encoder.encode(env);
+		byte[] second = encoder.encode(env);
+		assertTrue(second.length < first.length);
+
+		assertSame(env, decoder.decode(first));
+		assertSame(env, decoder.decode(second));
+		assertEquals(encoder.getDictionarySize(), decoder.getDictionarySize());
+	}
+
+	@Test
+	public void nullFields_skippedInRoundTrip() throws IOException {
+		Map<String, String> fields = new LinkedHashMap<>();
+		fields.put("player", "Steve");
+		fields.put("missing", null);
+		JsonEnvelope env = new JsonEnvelope("vote", 1, fields);
+
+		JsonEnvelope stateless = BinaryEnvelopeCodec.decode(BinaryEnvelopeCodec.encode(env));
+		JsonEnvelope session = new BinaryEnvelopeCodec.Session()
+				.decode(new BinaryEnvelopeCodec.Session().encode(env));
+
+		for (JsonEnvelope decoded : Arrays.asList(stateless, session)) {
+			assertEquals("Steve", decoded.getFields().get("player"));
+			assertFalse(decoded.getFields().containsKey("missing"));
+		}
+	}
+
+	@Test
+	public void sessionData_rejectedWithoutSession() {
+		byte[] bytes = new BinaryEnvelopeCodec.Session().encode(sample());
+		assertThrows(IOException.class, () -> BinaryEnvelopeCodec.decode(bytes));
+	}
+
+	@Test
+	public void largeRepetitiveBody_isDeflated() throws IOException {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 500; i++) {
+			sb.append("Steve,Alex,");
+		}
+		JsonEnvelope env = JsonEnvelope.builder("topvoters").put("list", sb).build();
+		byte[] bytes = BinaryEnvelopeCodec.encode(env);
+		assertTrue(bytes.length < sb.length() / 4);
+		assertSame(env, BinaryEnvelopeCodec.decode(bytes));
+	}
+
+	@Test
+	public void decodeAny_acceptsJson() throws IOException {
+		JsonEnvelope env = sample();
+		byte[] json = JsonEnvelopeCodec.encode(env).getBytes(StandardCharsets.UTF_8);
+		assertFalse(BinaryEnvelopeCodec.isBinary(json));
+		assertSame(env, BinaryEnvelopeCodec.decodeAny(json, null));
+	}
+
+	@Test
+	public void failedSessionDecode_leavesDictionaryUntouched() throws IOException {
+		byte[] bytes = new BinaryEnvelopeCodec.Session(0).encode(sample());
+		BinaryEnvelopeCodec.Session decoder = new BinaryEnvelopeCodec.Session();
+
+		assertThrows(IOException.class, () -> decoder.decode(Arrays.copyOf(bytes, bytes.length - 1)));
+		assertEquals(0, decoder.getDictionarySize());
+
+		assertSame(sample(), decoder.decode(bytes));
+		assertTrue(decoder.getDictionarySize() > 0);
+	}
+}
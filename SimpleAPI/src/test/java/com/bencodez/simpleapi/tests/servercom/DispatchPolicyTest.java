@@ -0,0 +1,161 @@
+package com.bencodez.simpleapi.tests.servercom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import com.bencodez.simpleapi.servercomm.dispatch.DispatchPolicy;
+
+public class DispatchPolicyTest {
+
+	@Test
+	public void keyedSerialKeepsOrderPerSubChannel() throws Exception {
+		DispatchPolicy policy = DispatchPolicy.keyedSerial("DispatchTest-", 4);
+		try {
+			List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+			CountDownLatch done = new CountDownLatch(500);
+			for (int i = 0; i < 500; i++) {
+				int n = i;
+				policy.execute("Reward", () -> {
+					order.add(n);
+					done.countDown();
+				});
+			}
+			assertTrue(done.await(5, TimeUnit.SECONDS));
+			for (int i = 0; i < 500; i++) {
+				assertEquals(i, order.get(i));
+			}
+			// the last task may still be finishing up
+			long deadline = System.currentTimeMillis() + 5000;
+			while (policy.getCompletedCount() < 500 && System.currentTimeMillis() < deadline) {
+				Thread.sleep(1);
+			}
+			assertEquals(500, policy.getCompletedCount());
+		} finally {
+			policy.shutdown();
+		}
+	}
+
+	@Test
+	public void keyedSerialKeepsOrderWhileQueuesDrain() throws Exception {
+		DispatchPolicy policy = DispatchPolicy.keyedSerial("DispatchTest-", 4);
+		try {
+			List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+			CountDownLatch done = new CountDownLatch(200);
+			for (int i = 0; i < 200; i++) {
+				int n = i;
+				policy.execute("Reward", () -> {
+					order.add(n);
+					done.countDown();
+				});
+				// one-off keys come and go alongside
+				policy.execute("once" + i, () -> {
+				});
+				if (i % 10 == 0) {
+					// let the reward queue drain and be dropped now and then
+					Thread.sleep(2);
+				}
+			}
+			assertTrue(done.await(5, TimeUnit.SECONDS));
+			for (int i = 0; i < 200; i++) {
+				assertEquals(i, order.get(i));
+			}
+			long deadline = System.currentTimeMillis() + 5000;
+			while (policy.getCompletedCount() < 400 && System.currentTimeMillis() < deadline) {
+				Thread.sleep(1);
+			}
+			assertEquals(0, policy.getQueueDepth("reward"));
+			assertEquals(0, policy.getQueueDepth("once5"));
+		} finally {
+			policy.shutdown();
+		}
+	}
+
+	@Test
+	public void slowSubChannelDoesNotBlockOthers() throws Exception {
+		DispatchPolicy policy = DispatchPolicy.keyedSerial("DispatchTest-", 2);
+		CountDownLatch release = new CountDownLatch(1);
+		CountDownLatch started = new CountDownLatch(1);
+		try {
+			for (int i = 0; i < 3; i++) {
+				policy.execute("reward", () -> {
+					started.countDown();
+					try {
+						release.await();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				});
+			}
+			assertTrue(started.await(5, TimeUnit.SECONDS));
+			CountDownLatch status = new CountDownLatch(1);
+			policy.execute("status", status::countDown);
+			assertTrue(status.await(5, TimeUnit.SECONDS));
+
+			// one running, two waiting behind it
+			assertEquals(3, policy.getQueueDepth("REWARD"));
+			assertEquals(2, policy.getQueueDepth());
+			// status may still be finishing up
+			long deadline = System.currentTimeMillis() + 5000;
+			while (policy.getActiveCount() > 1 && System.currentTimeMillis() < deadline) {
+				Thread.sleep(1);
+			}
+			assertEquals(1, policy.getActiveCount());
+		} finally {
+			release.countDown();
+			policy.shutdown();
+		}
+	}
+
+	@Test
+	public void executorHandoffReportsQueueDepth() {
+		// stands in for the server main thread
+		List<Runnable> mainThread = new ArrayList<>();
+		DispatchPolicy policy = DispatchPolicy.executor(mainThread::add);
+		List<String> ran = new ArrayList<>();
+
+		policy.execute("a", () -> ran.add("a"));
+		policy.execute("b", () -> {
+			throw new IllegalStateException("expected");
+		});
+		policy.execute("c", () -> ran.add("c"));
+		assertEquals(3, policy.getQueueDepth());
+		assertEquals(3, policy.getMaxQueueDepth());
+
+		mainThread.forEach(Runnable::run);
+		assertEquals(List.of("a", "c"), ran);
+		assertEquals(0, policy.getQueueDepth());
+		assertEquals(3, policy.getCompletedCount());
+	}
+
+	@Test
+	public void shutdownRejects() {
+		DispatchPolicy policy = DispatchPolicy.parallel("DispatchTest-", 2);
+		policy.shutdown();
+		policy.execute("a", () -> {
+		});
+		assertEquals(1, policy.getRejectedCount());
+		assertEquals(0, policy.getQueueDepth());
+	}
+
+	@Test
+	public void virtualRunsEverything() throws Exception {
+		DispatchPolicy policy = DispatchPolicy.virtual("DispatchTest-", 4);
+		try {
+			CountDownLatch done = new CountDownLatch(50);
+			for (int i = 0; i < 50; i++) {
+				policy.execute("vote", done::countDown);
+			}
+			assertTrue(done.await(5, TimeUnit.SECONDS));
+		} finally {
+			policy.shutdown();
+		}
+	}
+}
@@ -0,0 +1,96 @@
+package com.bencodez.simpleapi.tests.servercom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import com.bencodez.simpleapi.servercomm.codec.JsonEnvelope;
+import com.bencodez.simpleapi.servercomm.dispatch.EnvelopeCoalescer;
+
+public class EnvelopeCoalescerTest {
+
+	private static JsonEnvelope refresh(String player, int total) {
+		return JsonEnvelope.builder("Refresh").put("player", player).put("total", total).build();
+	}
+
+	@Test
+	public void keepsLatestPerKeyWithinWindow() throws Exception {
+		List<String> sent = new CopyOnWriteArrayList<>();
+		EnvelopeCoalescer coalescer = new EnvelopeCoalescer("CoalesceTest",
+				(destination, envelope) -> sent.add(destination + ":" + envelope.getFields().get("player") + "="
+						+ envelope.getFields().get("total")));
+		coalescer.coalesce("refresh", 50, EnvelopeCoalescer.fields("player"));
+		try {
+			CompletableFuture<Void> first = coalescer.offer("lobby", refresh("Ben", 1));
+			assertNotNull(first);
+			for (int i = 2; i <= 100; i++) {
+				assertSame(first, coalescer.offer("lobby", refresh("Ben", i)));
+			}
+			coalescer.offer("lobby", refresh("Steve", 7));
+			coalescer.offer("survival", refresh("Ben", 3));
+
+			first.get(5, TimeUnit.SECONDS);
+			long deadline = System.currentTimeMillis() + 5000;
+			while (sent.size() < 3 && System.currentTimeMillis() < deadline) {
+				Thread.sleep(5);
+			}
+
+			assertEquals(3, sent.size());
+			assertTrue(sent.contains("lobby:Ben=100"));
+			assertTrue(sent.contains("lobby:Steve=7"));
+			assertTrue(sent.contains("survival:Ben=3"));
+			assertEquals(99, coalescer.getCoalescedCount());
+		} finally {
+			coalescer.close();
+		}
+	}
+
+	@Test
+	public void otherSubChannelsPassThrough() {
+		EnvelopeCoalescer coalescer = new EnvelopeCoalescer("CoalesceTest", (destination, envelope) -> {
+		});
+		assertNull(coalescer.offer(null, refresh("Ben", 1)));
+
+		coalescer.coalesce("status", 50, EnvelopeCoalescer.latestOnly());
+		assertNull(coalescer.offer(null, refresh("Ben", 1)));
+
+		// a null key opts the envelope out
+		coalescer.coalesce("refresh", 50, envelope -> null);
+		assertNull(coalescer.offer(null, refresh("Ben", 1)));
+		coalescer.close();
+	}
+
+	@Test
+	public void closeFlushesAndFailuresReachTheFuture() {
+		List<JsonEnvelope> sent = new CopyOnWriteArrayList<>();
+		EnvelopeCoalescer coalescer = new EnvelopeCoalescer("CoalesceTest", (destination, envelope) -> {
+			if ("fail".equals(destination)) {
+				throw new IllegalStateException("expected");
+			}
+			sent.add(envelope);
+		});
+		coalescer.coalesce("REFRESH", 60_000, EnvelopeCoalescer.latestOnly());
+
+		CompletableFuture<Void> ok = coalescer.offer(null, refresh("Ben", 1));
+		CompletableFuture<Void> failed = coalescer.offer("fail", refresh("Ben", 1));
+		coalescer.close();
+
+		assertTrue(ok.isDone());
+		assertEquals(1, sent.size());
+		assertThrows(ExecutionException.class, () -> failed.get(1, TimeUnit.SECONDS));
+
+		// closed: the caller sends itself
+		assertNull(coalescer.offer(null, refresh("Ben", 2)));
+	}
+}
@@ -0,0 +1,191 @@
+package com.bencodez.simpleapi.tests.servercom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.jupiter.api.Test;
+
+import com.bencodez.simpleapi.servercomm.codec.JsonEnvelope;
+import com.bencodez.simpleapi.servercomm.global.GlobalMessageHandler;
+import com.bencodez.simpleapi.servercomm.global.GlobalMessageListener;
+import com.bencodez.simpleapi.servercomm.global.GlobalMessageProxyHandler;
+import com.bencodez.simpleapi.servercomm.rpc.EnvelopeRpc;
+import com.bencodez.simpleapi.servercomm.rpc.HashedWheelTimer;
+
+public class EnvelopeRpcTest {
+
+	/**
+	 * Proxy and two backends wired together in memory.
+	 */
+	private static class Network {
+		GlobalMessageProxyHandler proxy;
+		GlobalMessageHandler lobby;
+		GlobalMessageHandler survival;
+
+		Network() {
+			proxy = new GlobalMessageProxyHandler() {
+				@Override
+				public void sendMessage(String server, int delay, JsonEnvelope envelope) {
+					if (server.equals("lobby")) {
+						lobby.onMessage(envelope);
+					} else if (server.equals("survival")) {
+						survival.onMessage(envelope);
+					}
+					// anything else is lost
+				}
+			};
+			lobby = backend("lobby");
+			survival = backend("survival");
+		}
+
+		private GlobalMessageHandler backend(String name) {
+			GlobalMessageHandler handler = new GlobalMessageHandler() {
+				@Override
+				public void sendMessage(JsonEnvelope envelope) {
+					proxy.onMessage(envelope);
+				}
+			};
+			handler.setServerName(name);
+			return handler;
+		}
+	}
+
+	@Test
+	public void proxyRequest_backendResponds() throws Exception {
+		Network net = new Network();
+		net.survival.addResponder("isOnline",
+				req -> JsonEnvelope.builder("isOnline").put("online", req.getFields().get("player").equals("Ben")).build());
+
+		JsonEnvelope response = net.proxy
+				.request("survival", JsonEnvelope.builder("isOnline").put("player", "Ben").build(), 1000)
+				.get(1, TimeUnit.SECONDS);
+
+		assertEquals("true", response.getFields().get("online"));
+		assertFalse(response.getFields().containsKey(EnvelopeRpc.FIELD_ID));
+		assertEquals(0, net.proxy.getRpc().getPendingCount());
+	}
+
+	@Test
+	public void backendRequest_proxyRespondsToSender() throws Exception {
+		Network net = new Network();
+		net.proxy.addResponder("playerCount", req -> JsonEnvelope.builder("playerCount")
+				.put("asked", req.getFields().get(EnvelopeRpc.FIELD_FROM)).put("count", 42).build());
+
+		JsonEnvelope response = net.lobby.request(JsonEnvelope.builder("playerCount").build(), 1000).get(1,
+				TimeUnit.SECONDS);
+
+		assertEquals("lobby", response.getFields().get("asked"));
+		assertEquals("42", response.getFields().get("count"));
+	}
+
+	@Test
+	public void requestAll_collectsAnswers_andSkipsTimeouts() throws Exception {
+		Network net = new Network();
+		net.lobby.addResponder("isOnline", req -> JsonEnvelope.builder("isOnline").put("online", false).build());
+		net.survival.addResponder("isOnline", req -> JsonEnvelope.builder("isOnline").put("online", true).build());
+
+		Map<String, JsonEnvelope> answers = net.proxy
+				.requestAll(Arrays.asList("lobby", "survival", "offline"), JsonEnvelope.builder("isOnline").build(), 200)
+				.get(2, TimeUnit.SECONDS);
+
+		assertEquals(2, answers.size());
+		assertEquals("true", answers.get("survival").getFields().get("online"));
+	}
+
+	@Test
+	public void noResponse_timesOut() {
+		Network net = new Network();
+
+		ExecutionException e = assertThrows(ExecutionException.class,
+				() -> net.proxy.request("offline", JsonEnvelope.builder("ping").build(), 100).get(2, TimeUnit.SECONDS));
+
+		assertInstanceOf(TimeoutException.class, e.getCause());
+		assertEquals(0, net.proxy.getRpc().getPendingCount());
+	}
+
+	@Test
+	public void responderError_failsRequest() {
+		Network net = new Network();
+		net.survival.addResponder("boom", req -> {
+			throw new IllegalStateException("no such player");
+		});
+
+		ExecutionException e = assertThrows(ExecutionException.class,
+				() -> net.proxy.request("survival", JsonEnvelope.builder("boom").build(), 1000).get(1, TimeUnit.SECONDS));
+
+		assertInstanceOf(EnvelopeRpc.RemoteException.class, e.getCause());
+		assertEquals("no such player", e.getCause().getMessage());
+	}
+
+	@Test
+	public void ordinaryMessages_stillReachListeners() {
+		Network net = new Network();
+		List<JsonEnvelope> received = new CopyOnWriteArrayList<>();
+		net.lobby.addListener(new GlobalMessageListener("chat") {
+			@Override
+			public void onReceive(JsonEnvelope messageData) {
+				received.add(messageData);
+			}
+		});
+
+		net.proxy.sendMessage("lobby", 0, JsonEnvelope.builder("chat").put("msg", "hi").build());
+
+		assertEquals(1, received.size());
+	}
+
+	@Test
+	public void wheelTimer_firesAfterDelay_andCancelStopsIt() throws Exception {
+		HashedWheelTimer timer = new HashedWheelTimer("test-wheel", 10, TimeUnit.MILLISECONDS, 8);
+		try {
+			CountDownLatch fired = new CountDownLatch(1);
+			CountDownLatch cancelled = new CountDownLatch(1);
+			long start = System.nanoTime();
+
+			// longer than one turn of the wheel (8 x 10ms)
+			timer.newTimeout(fired::countDown, 150, TimeUnit.MILLISECONDS);
+			HashedWheelTimer.Timeout timeout = timer.newTimeout(cancelled::countDown, 50, TimeUnit.MILLISECONDS);
+			assertTrue(timeout.cancel());
+
+			assertTrue(fired.await(1, TimeUnit.SECONDS));
+			assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 150);
+			assertFalse(cancelled.await(100, TimeUnit.MILLISECONDS));
+			assertEquals(0, timer.getPendingCount());
+		} finally {
+			timer.stop();
+		}
+	}
+
+	@Test
+	public void wheelTimer_taskFailure_goesToErrorHandler() throws Exception {
+		HashedWheelTimer timer = new HashedWheelTimer("test-wheel", 10, TimeUnit.MILLISECONDS, 8);
+		try {
+			List<Throwable> errors = new CopyOnWriteArrayList<>();
+			CountDownLatch handled = new CountDownLatch(1);
+			timer.setErrorHandler(t -> {
+				errors.add(t);
+				handled.countDown();
+			});
+
+			timer.newTimeout(() -> {
+				throw new IllegalStateException("boom");
+			}, 10, TimeUnit.MILLISECONDS);
+
+			assertTrue(handled.await(1, TimeUnit.SECONDS));
+			assertEquals("boom", errors.get(0).getMessage());
+		} finally {
+			timer.stop();
+		}
+	}
+}
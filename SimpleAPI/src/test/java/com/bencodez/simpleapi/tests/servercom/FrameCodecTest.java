@@ -0,0 +1,119 @@
+package com.bencodez.simpleapi.tests.servercom;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import com.bencodez.simpleapi.servercomm.codec.FrameCodec;
+
+public class FrameCodecTest {
+
+	private static byte[] randomBytes(int n) {
+		byte[] b = new byte[n];
+		new Random(42).nextBytes(b);
+		return b;
+	}
+
+	@Test
+	public void smallPayload_singleFrameRoundTrip() throws IOException {
+		byte[] payload = "hello".getBytes();
+		List<byte[]> frames = FrameCodec.encode(payload, 30000);
+		assertEquals(1, frames.size());
+		assertTrue(FrameCodec.isFrame(frames.get(0)));
+		assertArrayEquals(payload, new FrameCodec.Reassembler().accept(frames.get(0)));
+	}
+
+	@Test
+	public void largePayload_chunkedAndReassembledOutOfOrder() throws IOException {
+		byte[] payload = randomBytes(200_000);
+		List<byte[]> frames = FrameCodec.encode(payload, 30000);
+		assertTrue(frames.size() > 6);
+		for (byte[] frame : frames) {
+			assertTrue(frame.length <= 30000);
+		}
+
+		Collections.reverse(frames);
+		FrameCodec.Reassembler reassembler = new FrameCodec.Reassembler();
+		byte[] result = null;
+		for (int i = 0; i < frames.size(); i++) {
+			result = reassembler.accept(frames.get(i));
+			if (i < frames.size() - 1) {
+				assertNull(result);
+			}
+		}
+		assertArrayEquals(payload, result);
+		assertEquals(0, reassembler.getPendingCount());
+	}
+
+	@Test
+	public void varints_roundTrip() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		int[] ints = { 0, 1, 127, 128, 300, 65535, Integer.MAX_VALUE, -1 };
+		for (int v : ints) {
+			FrameCodec.writeVarInt(out, v);
+		}
+		FrameCodec.writeVarLong(out, Long.MAX_VALUE);
+		byte[] data = out.toByteArray();
+		int[] pos = { 0 };
+		for (int v : ints) {
+			assertEquals(v, FrameCodec.readVarInt(data, pos));
+		}
+		assertEquals(Long.MAX_VALUE, FrameCodec.readVarLong(data, pos));
+	}
+
+	@Test
+	public void legacyWriteUtf_isNotAFrame() {
+		// writeUTF of a short string starts with a small length
+		assertFalse(FrameCodec.isFrame(new byte[] { 0, 5, 'h', 'e', 'l', 'l', 'o' }));
+	}
+
+	@Test
+	public void newerVersion_rejected() {
+		byte[] frame = FrameCodec.encode("x".getBytes());
+		frame[1] = (byte) (FrameCodec.VERSION + 1);
+		assertThrows(IOException.class, () -> FrameCodec.decode(frame));
+	}
+
+	private static byte[] chunk(long messageId, int index, int count) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		out.write(FrameCodec.MAGIC);
+		out.write(FrameCodec.VERSION);
+		out.write(1);
+		FrameCodec.writeVarLong(out, messageId);
+		FrameCodec.writeVarInt(out, index);
+		FrameCodec.writeVarInt(out, count);
+		FrameCodec.writeVarInt(out, 1);
+		out.write('x');
+		return out.toByteArray();
+	}
+
+	@Test
+	public void hugeChunkCount_rejectedBeforeAllocating() {
+		FrameCodec.Reassembler reassembler = new FrameCodec.Reassembler();
+		assertThrows(IOException.class, () -> reassembler.accept(chunk(1, 0, Integer.MAX_VALUE)));
+		assertEquals(0, reassembler.getPendingCount());
+	}
+
+	@Test
+	public void openPartials_capped() throws IOException {
+		FrameCodec.Reassembler reassembler = new FrameCodec.Reassembler(30_000L, 1024 * 1024, 2);
+		assertNull(reassembler.accept(chunk(1, 0, 2)));
+		assertNull(reassembler.accept(chunk(2, 0, 2)));
+		assertThrows(IOException.class, () -> reassembler.accept(chunk(3, 0, 2)));
+
+		// pending messages can still finish
+		assertArrayEquals("xx".getBytes(), reassembler.accept(chunk(1, 1, 2)));
+		assertEquals(1, reassembler.getPendingCount());
+	}
+}
@@ -4,8 +4,11 @@ import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
@@ -14,6 +17,7 @@ import org.junit.jupiter.api.Test;
 import com.bencodez.simpleapi.servercomm.codec.JsonEnvelope;
 import com.bencodez.simpleapi.servercomm.codec.JsonEnvelopeCodec;
 import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
 import com.google.gson.JsonParser;
 
 public class JsonEnvelopeCodecTest {
@@ -71,6 +75,18 @@ public class JsonEnvelopeCodecTest {
 		assertEquals(fields, decoded.getFields());
 	}
 
+	@Test
+	public void encode_decode_roundTrip_skipsNullFields() {
+		Map<String, String> fields = new LinkedHashMap<>();
+		fields.put("a", "1");
+		fields.put("missing", null);
+
+		JsonEnvelope decoded = JsonEnvelopeCodec.decode(JsonEnvelopeCodec.encode(new JsonEnvelope("route", 1, fields)));
+
+		assertEquals("1", decoded.getFields().get("a"));
+		assertFalse(decoded.getFields().containsKey("missing"));
+	}
+
 	@Test
 	public void decode_missingSchema_defaultsTo1() {
 		String json = "{\"t\":\"abc\",\"f\":{\"x\":\"y\"}}";
@@ -111,4 +127,55 @@ public class JsonEnvelopeCodecTest {
 		JsonEnvelope decoded = JsonEnvelopeCodec.decode(json);
 		assertEquals("<tag>", decoded.getFields().get("msg"));
 	}
+
+	@Test
+	public void encodeToBytes_matchesStringEncoding() {
+		JsonEnvelope env = JsonEnvelope.builder("vote").put("player", "Bén").put("html", "<b>&</b>").build();
+
+		byte[] bytes = JsonEnvelopeCodec.encodeToBytes(env);
+
+		assertArrayEquals(JsonEnvelopeCodec.encode(env).getBytes(StandardCharsets.UTF_8), bytes);
+	}
+
+	@Test
+	public void decode_bytesAndByteBuffer_matchStringDecode() {
+		JsonEnvelope env = JsonEnvelope.builder("vote").schema(3).put("player", "Bén").put("n", "5").build();
+		byte[] bytes = JsonEnvelopeCodec.encodeToBytes(env);
+
+		assertEquals(env.getFields(), JsonEnvelopeCodec.decode(bytes).getFields());
+
+		byte[] padded = new byte[bytes.length + 4];
+		System.arraycopy(bytes, 0, padded, 2, bytes.length);
+		assertEquals(3, JsonEnvelopeCodec.decode(padded, 2, bytes.length).getSchema());
+
+		ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+		direct.put(bytes).flip();
+		JsonEnvelope fromDirect = JsonEnvelopeCodec.decode(direct);
+		assertEquals("vote", fromDirect.getSubChannel());
+		assertEquals(env.getFields(), fromDirect.getFields());
+		assertFalse(direct.hasRemaining());
+
+		JsonEnvelope fromHeap = JsonEnvelopeCodec.decode(ByteBuffer.wrap(padded, 2, bytes.length));
+		assertEquals(env.getFields(), fromHeap.getFields());
+	}
+
+	@Test
+	public void decode_primitiveFieldValues_andUnknownKeys() {
+		String json = "{\"x\":{\"nested\":[1,2]},\"t\":\"s\",\"f\":{\"n\":42,\"b\":true,\"s\":\"v\"}}";
+
+		JsonEnvelope env = JsonEnvelopeCodec.decode(json);
+
+		assertEquals("s", env.getSubChannel());
+		assertEquals(1, env.getSchema());
+		assertEquals("42", env.getFields().get("n"));
+		assertEquals("true", env.getFields().get("b"));
+		assertEquals("v", env.getFields().get("s"));
+	}
+
+	@Test
+	public void decode_malformed_throwsJsonParseException() {
+		assertThrows(JsonParseException.class, () -> JsonEnvelopeCodec.decode("{\"t\":\"a\",\"f\":{\"k\":"));
+		assertThrows(JsonParseException.class, () -> JsonEnvelopeCodec.decode("{\"f\":{}}"));
+		assertTrue(JsonEnvelopeCodec.decode("{\"t\":\"a\",\"f\":null}").getFields().isEmpty());
+	}
 }
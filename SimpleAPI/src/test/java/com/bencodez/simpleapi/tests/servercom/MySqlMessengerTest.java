@@ -0,0 +1,154 @@
+package com.bencodez.simpleapi.tests.servercom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.Test;
+
+import com.bencodez.simpleapi.servercomm.codec.JsonEnvelope;
+import com.bencodez.simpleapi.servercomm.codec.JsonEnvelopeCodec;
+import com.bencodez.simpleapi.servercomm.mysql.MySqlMessenger;
+
+public class MySqlMessengerTest {
+
+	@Test
+	public void backend_fetchesWithLimit_andDeletesExactlyTheRowsRead() throws Exception {
+		DataSource ds = mock(DataSource.class);
+		Connection conn = mock(Connection.class);
+		when(ds.getConnection()).thenReturn(conn);
+		when(conn.createStatement()).thenReturn(mock(Statement.class));
+
+		PreparedStatement lock = mock(PreparedStatement.class);
+		ResultSet lockRs = mock(ResultSet.class);
+		when(lock.executeQuery()).thenReturn(lockRs);
+		when(lockRs.next()).thenReturn(true);
+		when(lockRs.getInt(1)).thenReturn(1);
+
+		PreparedStatement release = mock(PreparedStatement.class);
+		when(release.executeQuery()).thenReturn(mock(ResultSet.class));
+
+		// two rows on the first fetch, nothing after that
+		AtomicBoolean served = new AtomicBoolean(false);
+		PreparedStatement select = mock(PreparedStatement.class);
+		when(select.executeQuery()).thenAnswer(inv -> {
+			ResultSet rs = mock(ResultSet.class);
+			if (!served.getAndSet(true)) {
+				when(rs.next()).thenReturn(true, true, false);
+				when(rs.getLong("id")).thenReturn(7L, 9L);
+				when(rs.getString("source")).thenReturn("proxy");
+				when(rs.getString("destination")).thenReturn("lobby");
+				when(rs.getString("payload")).thenReturn(
+						JsonEnvelopeCodec.encode(JsonEnvelope.builder("a").build()),
+						JsonEnvelopeCodec.encode(JsonEnvelope.builder("b").build()));
+			}
+			return rs;
+		});
+		PreparedStatement delete = mock(PreparedStatement.class);
+		when(conn.prepareStatement(anyString())).thenAnswer(inv -> {
+			String sql = inv.getArgument(0);
+			if (sql.startsWith("SELECT id")) {
+				return select;
+			}
+			if (sql.startsWith("DELETE")) {
+				return delete;
+			}
+			return mock(PreparedStatement.class);
+		});
+		when(conn.prepareStatement("SELECT GET_LOCK(?, ?)")).thenReturn(lock);
+		when(conn.prepareStatement("SELECT RELEASE_LOCK(?)")).thenReturn(release);
+
+		List<MySqlMessenger.QueueMessage> received = new CopyOnWriteArrayList<>();
+		CountDownLatch latch = new CountDownLatch(2);
+		MySqlMessenger messenger = new MySqlMessenger("test", ds, MySqlMessenger.Mode.BACKEND, "lobby", msg -> {
+			received.add(msg);
+			latch.countDown();
+		});
+		try {
+			assertTrue(latch.await(5, TimeUnit.SECONDS));
+			assertEquals("a", received.get(0).envelope.getSubChannel());
+			assertEquals("b", received.get(1).envelope.getSubChannel());
+
+			verify(conn, atLeastOnce())
+					.prepareStatement("SELECT id, source, destination, payload FROM test_message_queue"
+							+ " WHERE destination = ? ORDER BY id LIMIT ?");
+			verify(select, atLeastOnce()).setInt(2, messenger.getBatchSize());
+			verify(conn, never()).prepareStatement("DELETE FROM test_message_queue WHERE id = ?");
+			verify(conn).prepareStatement("DELETE FROM test_message_queue WHERE id IN (?, ?)");
+			verify(delete).setLong(1, 7L);
+			verify(delete).setLong(2, 9L);
+			// empty polls don't delete
+			verify(delete).executeUpdate();
+			verify(delete, never()).setLong(anyInt(), eq(0L));
+		} finally {
+			messenger.shutdown();
+		}
+	}
+
+	@Test
+	public void asyncBroadcast_isOneMultiRowInsert_withoutReleaseLockWakeups() throws Exception {
+		DataSource ds = mock(DataSource.class);
+		Connection conn = mock(Connection.class);
+		when(ds.getConnection()).thenReturn(conn);
+		when(conn.createStatement()).thenReturn(mock(Statement.class));
+
+		List<String> statements = new CopyOnWriteArrayList<>();
+		List<String> woken = new CopyOnWriteArrayList<>();
+		when(conn.prepareStatement(anyString())).thenAnswer(inv -> {
+			String sql = inv.getArgument(0);
+			statements.add(sql);
+			PreparedStatement ps = mock(PreparedStatement.class);
+			ResultSet rs = mock(ResultSet.class);
+			when(ps.executeQuery()).thenReturn(rs);
+			if (sql.equals("SELECT RELEASE_LOCK(?)")) {
+				doAnswer(set -> woken.add(set.getArgument(1))).when(ps).setString(eq(1), anyString());
+			}
+			return ps;
+		});
+
+		// proxy listener never gets the lock, so only the sender talks to the mock
+		MySqlMessenger messenger = new MySqlMessenger("test", ds, MySqlMessenger.Mode.PROXY, null, msg -> {
+		});
+		try {
+			messenger.setFlushIntervalMs(200);
+			List<CompletableFuture<Void>> futures = new ArrayList<>();
+			for (int i = 0; i < 30; i++) {
+				futures.add(messenger.sendToBackendAsync("server" + i, JsonEnvelope.builder("vote").build()));
+			}
+			futures.add(messenger.sendToBackendAsync("server0", JsonEnvelope.builder("vote").build()));
+			CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).get(5, TimeUnit.SECONDS);
+
+			long inserts = statements.stream().filter(sql -> sql.startsWith("INSERT")).count();
+			assertEquals(1, inserts);
+			String insert = statements.stream().filter(sql -> sql.startsWith("INSERT")).findFirst().get();
+			assertEquals(31, insert.split("\\(\\?, \\?, \\?\\)", -1).length - 1);
+			// RELEASE_LOCK of a lock the sender never took wakes nobody
+			assertEquals(0, woken.stream().filter(c -> c.startsWith("backend-channel-")).count());
+			verify(conn).commit();
+		} finally {
+			messenger.shutdown();
+		}
+	}
+}
@@ -0,0 +1,114 @@
+package com.bencodez.simpleapi.tests.servercom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.bencodez.simpleapi.servercomm.codec.JsonEnvelope;
+import com.bencodez.simpleapi.servercomm.codec.JsonEnvelopeCodec;
+import com.bencodez.simpleapi.servercomm.pluginmessage.PluginMessageQueue;
+
+public class PluginMessageQueueTest {
+
+	@TempDir
+	Path dir;
+
+	private static JsonEnvelope vote(int n) {
+		return JsonEnvelope.builder("Vote").put("player", "Ben \"" + n + "\"").put("n", n).build();
+	}
+
+	@Test
+	public void dropsOldestWhenFull() {
+		PluginMessageQueue queue = new PluginMessageQueue(null, 3, 0);
+		for (int i = 0; i < 5; i++) {
+			queue.add(vote(i));
+		}
+		List<JsonEnvelope> drained = queue.drain();
+		assertEquals(3, drained.size());
+		assertEquals("2", drained.get(0).getFields().get("n"));
+		assertEquals(2, queue.getDroppedCount());
+		assertEquals(0, queue.size());
+	}
+
+	@Test
+	public void expiresAfterTtl() throws Exception {
+		PluginMessageQueue queue = new PluginMessageQueue(null, 10, 20);
+		queue.add(vote(1));
+		Thread.sleep(50);
+		queue.add(vote(2));
+
+		List<JsonEnvelope> drained = queue.drain();
+		assertEquals(1, drained.size());
+		assertEquals("2", drained.get(0).getFields().get("n"));
+		assertEquals(1, queue.getExpiredCount());
+	}
+
+	@Test
+	public void saveAndLoad() throws Exception {
+		File file = dir.resolve("queue.txt").toFile();
+		PluginMessageQueue queue = new PluginMessageQueue(file, 10, 0);
+		queue.add(vote(1));
+		queue.add(vote(2));
+		assertTrue(queue.isDirty());
+		queue.save();
+		assertFalse(queue.isDirty());
+
+		// a corrupt line doesn't lose the rest
+		Files.write(file.toPath(), "garbage\n".getBytes(StandardCharsets.UTF_8),
+				StandardOpenOption.APPEND);
+
+		PluginMessageQueue restored = new PluginMessageQueue(file, 10, 0);
+		assertEquals(2, restored.load());
+		List<JsonEnvelope> drained = restored.drain();
+		assertEquals("Ben \"1\"", drained.get(0).getFields().get("player"));
+		assertEquals("2", drained.get(1).getFields().get("n"));
+
+		// saving an empty queue removes the file
+		restored.save();
+		assertFalse(file.exists());
+	}
+
+	@Test
+	public void batchesStayUnderLimitAndUnpackInOrder() {
+		List<JsonEnvelope> envelopes = new ArrayList<>();
+		for (int i = 0; i < 500; i++) {
+			envelopes.add(vote(i));
+		}
+		StringBuilder big = new StringBuilder();
+		for (int i = 0; i < 5000; i++) {
+			big.append('x');
+		}
+		envelopes.add(JsonEnvelope.builder("Big").put("data", big).build());
+
+		List<JsonEnvelope> batches = PluginMessageQueue.batch(envelopes, 4000);
+		assertTrue(batches.size() > 1);
+		assertTrue(batches.size() < 50);
+
+		List<JsonEnvelope> unpacked = new ArrayList<>();
+		for (JsonEnvelope batch : batches) {
+			if (PluginMessageQueue.isBatch(batch)) {
+				assertTrue(JsonEnvelopeCodec.encode(batch).getBytes(StandardCharsets.UTF_8).length <= 4000);
+				unpacked.addAll(PluginMessageQueue.unbatch(batch));
+			} else {
+				unpacked.add(batch);
+			}
+		}
+		assertEquals(envelopes.size(), unpacked.size());
+		for (int i = 0; i < 500; i++) {
+			assertEquals(Integer.toString(i), unpacked.get(i).getFields().get("n"));
+		}
+		// too big to share, sent on its own
+		assertEquals("Big", batches.get(batches.size() - 1).getSubChannel());
+	}
+}
@@ -0,0 +1,229 @@
+package com.bencodez.simpleapi.tests.servercom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import com.bencodez.simpleapi.encryption.AesGcmEncryptionHandler;
+import com.bencodez.simpleapi.encryption.EncryptionHandler;
+import com.bencodez.simpleapi.servercomm.codec.BinaryEnvelopeCodec;
+import com.bencodez.simpleapi.servercomm.codec.JsonEnvelope;
+import com.bencodez.simpleapi.servercomm.dispatch.EnvelopeCoalescer;
+import com.bencodez.simpleapi.servercomm.sockets.ClientHandler;
+import com.bencodez.simpleapi.servercomm.sockets.PersistentConnection;
+import com.bencodez.simpleapi.servercomm.sockets.SocketFrames;
+import com.bencodez.simpleapi.servercomm.sockets.SocketServer;
+
+public class SocketPersistentConnectionTest {
+
+	private SocketServer server;
+
+	@AfterEach
+	public void tearDown() {
+		PersistentConnection.closeAll();
+		if (server != null) {
+			server.close();
+		}
+	}
+
+	private static int freePort() throws Exception {
+		try (ServerSocket s = new ServerSocket(0)) {
+			return s.getLocalPort();
+		}
+	}
+
+	private SocketServer start(int port, List<JsonEnvelope> received, CountDownLatch latch) {
+		return start(port, null, received, latch);
+	}
+
+	private SocketServer start(int port, EncryptionHandler encryption, List<JsonEnvelope> received,
+			CountDownLatch latch) {
+		return new SocketServer("test-socket", "127.0.0.1", port, encryption, false) {
+			@Override
+			public void logger(String str) {
+			}
+
+			@Override
+			public void onReceive(JsonEnvelope envelope) {
+				received.add(envelope);
+				latch.countDown();
+			}
+		};
+	}
+
+	@Test
+	public void persistentClient_deliversManyEnvelopesOverOneConnection() throws Exception {
+		int port = freePort();
+		List<JsonEnvelope> received = new CopyOnWriteArrayList<>();
+		CountDownLatch latch = new CountDownLatch(200);
+		server = start(port, received, latch);
+
+		ClientHandler client = new ClientHandler("127.0.0.1", port, null, false, true);
+		for (int i = 0; i < 200; i++) {
+			client.sendEnvelope(JsonEnvelope.builder("vote").put("n", i).build());
+		}
+
+		assertTrue(latch.await(10, TimeUnit.SECONDS));
+		assertEquals(200, received.size());
+		// single writer keeps order
+		assertEquals("0", received.get(0).getFields().get("n"));
+		assertEquals("199", received.get(199).getFields().get("n"));
+		assertTrue(PersistentConnection.get("127.0.0.1", port).isConnected());
+	}
+
+	@Test
+	public void legacyClient_stillAccepted() throws Exception {
+		int port = freePort();
+		List<JsonEnvelope> received = new CopyOnWriteArrayList<>();
+		CountDownLatch latch = new CountDownLatch(1);
+		server = start(port, received, latch);
+
+		new ClientHandler("127.0.0.1", port, null).sendEnvelope(JsonEnvelope.builder("legacy").put("a", "b").build());
+
+		assertTrue(latch.await(10, TimeUnit.SECONDS));
+		assertEquals("legacy", received.get(0).getSubChannel());
+	}
+
+	@Test
+	public void stopConnection_flushesCoalescedEnvelopes() throws Exception {
+		int port = freePort();
+		List<JsonEnvelope> received = new CopyOnWriteArrayList<>();
+		CountDownLatch latch = new CountDownLatch(1);
+		server = start(port, received, latch);
+
+		ClientHandler client = new ClientHandler("127.0.0.1", port, null);
+		// window far longer than the test, only stopConnection sends it
+		client.getCoalescer().coalesce("status", 60_000, EnvelopeCoalescer.latestOnly());
+		client.sendEnvelope(JsonEnvelope.builder("status").put("n", 1).build());
+		client.sendEnvelope(JsonEnvelope.builder("status").put("n", 2).build());
+		assertEquals(1, client.getCoalescer().getPendingCount());
+
+		client.stopConnection();
+
+		assertTrue(latch.await(10, TimeUnit.SECONDS));
+		assertEquals("2", received.get(0).getFields().get("n"));
+		assertEquals(0, client.getCoalescer().getPendingCount());
+	}
+
+	@Test
+	public void sendEnvelopeFuture_reportsWritesAndFailures() throws Exception {
+		int port = freePort();
+		JsonEnvelope env = JsonEnvelope.builder("vote").build();
+
+		// nobody listening yet
+		CompletableFuture<Void> failed = new ClientHandler("127.0.0.1", port, null).sendEnvelopeFuture(env);
+		assertTrue(failed.isCompletedExceptionally());
+
+		List<JsonEnvelope> received = new CopyOnWriteArrayList<>();
+		CountDownLatch latch = new CountDownLatch(2);
+		server = start(port, received, latch);
+		new ClientHandler("127.0.0.1", port, null).sendEnvelopeFuture(env).get(10, TimeUnit.SECONDS);
+		new ClientHandler("127.0.0.1", port, null, false, true).sendEnvelopeFuture(env).get(10, TimeUnit.SECONDS);
+		assertTrue(latch.await(10, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void largeEnvelopes_overWriteUtfLimit_delivered() throws Exception {
+		int port = freePort();
+		List<JsonEnvelope> received = new CopyOnWriteArrayList<>();
+		CountDownLatch latch = new CountDownLatch(2);
+		server = start(port, received, latch);
+
+		StringBuilder big = new StringBuilder();
+		for (int i = 0; i < 300_000; i++) {
+			big.append((char) ('a' + i % 26));
+		}
+		JsonEnvelope env = JsonEnvelope.builder("topvoters").put("list", big).build();
+
+		new ClientHandler("127.0.0.1", port, null).sendEnvelope(env);
+		new ClientHandler("127.0.0.1", port, null, false, true).sendEnvelope(env);
+
+		assertTrue(latch.await(10, TimeUnit.SECONDS));
+		assertEquals(300_000, received.get(0).getFields().get("list").length());
+		assertEquals(300_000, received.get(1).getFields().get("list").length());
+	}
+
+	@Test
+	public void binaryCodec_deliveredOverPersistentConnection() throws Exception {
+		int port = freePort();
+		List<JsonEnvelope> received = new CopyOnWriteArrayList<>();
+		CountDownLatch latch = new CountDownLatch(50);
+		server = start(port, received, latch);
+
+		ClientHandler client = new ClientHandler("127.0.0.1", port, null, false, true);
+		client.setBinaryCodec(true);
+		for (int i = 0; i < 50; i++) {
+			client.sendEnvelope(JsonEnvelope.builder("vote").put("n", i).put("player", "Steve").build());
+		}
+
+		assertTrue(latch.await(10, TimeUnit.SECONDS));
+		assertEquals("49", received.get(49).getFields().get("n"));
+		assertEquals("Steve", received.get(49).getFields().get("player"));
+	}
+
+	@Test
+	public void persistentClient_gcmEncryption_sendsRawEncryptedFrames() throws Exception {
+		File keyFile = File.createTempFile("socket-gcm", ".key");
+		keyFile.delete();
+		try {
+			EncryptionHandler encryption = new AesGcmEncryptionHandler("Test", keyFile);
+			int port = freePort();
+			List<JsonEnvelope> received = new CopyOnWriteArrayList<>();
+			CountDownLatch latch = new CountDownLatch(20);
+			server = start(port, encryption, received, latch);
+
+			ClientHandler client = new ClientHandler("127.0.0.1", port, encryption, false, true);
+			for (int i = 0; i < 20; i++) {
+				client.sendEnvelope(JsonEnvelope.builder("secure").put("n", i).build());
+			}
+
+			assertTrue(latch.await(10, TimeUnit.SECONDS));
+			assertEquals("0", received.get(0).getFields().get("n"));
+			assertEquals("19", received.get(19).getFields().get("n"));
+		} finally {
+			keyFile.delete();
+		}
+	}
+
+	@Test
+	public void encryptedServer_rejectsPlainBinaryEnvelope() throws Exception {
+		File keyFile = File.createTempFile("socket-gcm", ".key");
+		keyFile.delete();
+		try {
+			EncryptionHandler encryption = new AesGcmEncryptionHandler("Test", keyFile);
+			int port = freePort();
+			List<JsonEnvelope> received = new CopyOnWriteArrayList<>();
+			CountDownLatch latch = new CountDownLatch(1);
+			server = start(port, encryption, received, latch);
+
+			try (Socket socket = new Socket("127.0.0.1", port)) {
+				socket.setSoTimeout(5000);
+				DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+				SocketFrames.writePreface(out);
+				SocketFrames.writeChunked(out,
+						BinaryEnvelopeCodec.encode(JsonEnvelope.builder("spoof").put("n", 1).build()));
+				out.flush();
+
+				// the server drops the connection instead of delivering the envelope
+				assertEquals(-1, socket.getInputStream().read());
+			}
+			assertFalse(latch.await(200, TimeUnit.MILLISECONDS));
+			assertTrue(received.isEmpty());
+		} finally {
+			keyFile.delete();
+		}
+	}
+}
@@ -0,0 +1,138 @@
+package com.bencodez.simpleapi.tests.servercom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.Test;
+
+import com.bencodez.simpleapi.servercomm.codec.JsonEnvelope;
+import com.bencodez.simpleapi.servercomm.dispatch.SubChannelRegistry;
+
+public class SubChannelRegistryTest {
+
+	private static void deliver(Consumer<JsonEnvelope> listener, JsonEnvelope envelope) {
+		listener.accept(envelope);
+	}
+
+	@Test
+	public void matchesSubChannelIgnoringCase() {
+		SubChannelRegistry<Consumer<JsonEnvelope>> registry = new SubChannelRegistry<>();
+		List<String> received = new ArrayList<>();
+		registry.register("VoteUpdate", env -> received.add("vote"));
+		registry.register("other", env -> received.add("other"));
+
+		assertEquals(1, registry.dispatch(JsonEnvelope.builder("voteupdate").build(), SubChannelRegistryTest::deliver));
+		assertEquals(List.of("vote"), received);
+		assertTrue(registry.hasListeners("VOTEUPDATE"));
+		assertFalse(registry.hasListeners("unknown"));
+	}
+
+	@Test
+	public void wildcardsReceiveEverything() {
+		SubChannelRegistry<Consumer<JsonEnvelope>> registry = new SubChannelRegistry<>();
+		List<String> received = new ArrayList<>();
+		registry.register(null, env -> received.add("null:" + env.getSubChannel()));
+		registry.register("*", env -> received.add("star:" + env.getSubChannel()));
+		registry.register("a", env -> received.add("a"));
+
+		registry.dispatch(JsonEnvelope.builder("a").build(), SubChannelRegistryTest::deliver);
+		registry.dispatch(JsonEnvelope.builder("b").build(), SubChannelRegistryTest::deliver);
+
+		assertEquals(List.of("a", "null:a", "star:a", "null:b", "star:b"), received);
+		assertTrue(registry.hasListeners("anything"));
+	}
+
+	@Test
+	public void runsOnListenerExecutor() {
+		SubChannelRegistry<Consumer<JsonEnvelope>> registry = new SubChannelRegistry<>();
+		List<Runnable> queued = new ArrayList<>();
+		AtomicInteger calls = new AtomicInteger();
+		registry.register("a", env -> calls.incrementAndGet(), queued::add);
+
+		registry.dispatch(JsonEnvelope.builder("a").build(), SubChannelRegistryTest::deliver);
+		assertEquals(0, calls.get());
+		assertEquals(1, queued.size());
+
+		queued.get(0).run();
+		assertEquals(1, calls.get());
+	}
+
+	@Test
+	public void unregisterRemovesAllRegistrations() {
+		SubChannelRegistry<Consumer<JsonEnvelope>> registry = new SubChannelRegistry<>();
+		AtomicInteger calls = new AtomicInteger();
+		Consumer<JsonEnvelope> listener = env -> calls.incrementAndGet();
+		registry.register("a", listener);
+		registry.register("*", listener);
+		assertEquals(2, registry.size());
+
+		assertTrue(registry.unregister(listener));
+		assertFalse(registry.unregister(listener));
+		assertEquals(0, registry.size());
+		assertEquals(0, registry.dispatch(JsonEnvelope.builder("a").build(), SubChannelRegistryTest::deliver));
+		assertFalse(registry.hasListeners("a"));
+	}
+
+	@Test
+	public void registeringDuringDispatchAffectsNextMessageOnly() {
+		SubChannelRegistry<Consumer<JsonEnvelope>> registry = new SubChannelRegistry<>();
+		AtomicInteger late = new AtomicInteger();
+		registry.register("a", env -> registry.register("a", e -> late.incrementAndGet()));
+
+		registry.dispatch(JsonEnvelope.builder("a").build(), SubChannelRegistryTest::deliver);
+		assertEquals(0, late.get());
+
+		registry.dispatch(JsonEnvelope.builder("a").build(), SubChannelRegistryTest::deliver);
+		assertEquals(1, late.get());
+	}
+
+	@Test
+	public void throwingListenerDoesNotStopOthers() {
+		SubChannelRegistry<Consumer<JsonEnvelope>> registry = new SubChannelRegistry<>();
+		AtomicInteger calls = new AtomicInteger();
+		List<String> errors = new ArrayList<>();
+		registry.setErrorHandler((env, e) -> errors.add(env.getSubChannel() + ":" + e.getMessage()));
+		registry.register("a", env -> {
+			throw new IllegalStateException("expected");
+		});
+		registry.register("a", env -> calls.incrementAndGet());
+
+		assertEquals(2, registry.dispatch(JsonEnvelope.builder("a").build(), SubChannelRegistryTest::deliver));
+		assertEquals(1, calls.get());
+		assertEquals(List.of("a:expected"), errors);
+	}
+
+	@Test
+	public void exactOnlyRegistry_treatsWildcardNamesAsSubChannels() {
+		SubChannelRegistry<Consumer<JsonEnvelope>> registry = new SubChannelRegistry<>(subChannel -> false);
+		List<String> received = new ArrayList<>();
+		registry.register("", env -> received.add("empty"));
+		registry.register("*", env -> received.add("star"));
+
+		registry.dispatch(JsonEnvelope.builder("a").build(), SubChannelRegistryTest::deliver);
+		assertTrue(received.isEmpty());
+		assertFalse(registry.hasListeners("a"));
+
+		registry.dispatch(JsonEnvelope.builder("*").build(), SubChannelRegistryTest::deliver);
+		assertEquals(List.of("star"), received);
+	}
+
+	@Test
+	public void getListeners_isUnmodifiable() {
+		SubChannelRegistry<Consumer<JsonEnvelope>> registry = new SubChannelRegistry<>();
+		registry.register("a", env -> {
+		});
+
+		List<Consumer<JsonEnvelope>> listeners = registry.getListeners();
+		assertThrows(UnsupportedOperationException.class, () -> listeners.add(env -> {
+		}));
+		assertThrows(UnsupportedOperationException.class, () -> listeners.remove(0));
+	}
+}
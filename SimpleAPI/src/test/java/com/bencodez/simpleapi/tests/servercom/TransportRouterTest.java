@@ -0,0 +1,182 @@
+package com.bencodez.simpleapi.tests.servercom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.bencodez.simpleapi.servercomm.codec.JsonEnvelope;
+import com.bencodez.simpleapi.servercomm.transport.Transport;
+import com.bencodez.simpleapi.servercomm.transport.TransportMetrics;
+import com.bencodez.simpleapi.servercomm.transport.TransportRouter;
+
+public class TransportRouterTest {
+
+	private static class FakeTransport implements Transport {
+		final String name;
+		final List<String> sent = new ArrayList<>();
+		volatile boolean failing;
+		volatile boolean healthy = true;
+		volatile long delayMs;
+
+		FakeTransport(String name) {
+			this.name = name;
+		}
+
+		@Override
+		public String getName() {
+			return name;
+		}
+
+		@Override
+		public void send(String target, JsonEnvelope envelope) throws Exception {
+			if (delayMs > 0) {
+				Thread.sleep(delayMs);
+			}
+			if (failing) {
+				throw new IllegalStateException(name + " down");
+			}
+			sent.add(target + ":" + envelope.getSubChannel());
+		}
+
+		@Override
+		public boolean isHealthy() {
+			return healthy;
+		}
+	}
+
+	private static JsonEnvelope vote() {
+		return JsonEnvelope.builder("Vote").put("player", "Ben").build();
+	}
+
+	@Test
+	public void usesPrimaryWhileItWorks() {
+		FakeTransport redis = new FakeTransport("redis");
+		FakeTransport mysql = new FakeTransport("mysql");
+		TransportRouter router = new TransportRouter(redis, mysql);
+
+		assertSame(redis, router.send("lobby", vote()));
+		assertEquals(List.of("lobby:Vote"), redis.sent);
+		assertTrue(mysql.sent.isEmpty());
+
+		TransportMetrics metrics = router.getMetrics("redis");
+		assertEquals(1, metrics.getSuccessCount());
+		assertEquals(1, metrics.getLatency().getCount());
+		assertTrue(metrics.getAverageMillis() >= 0);
+	}
+
+	@Test
+	public void failsOverAndMarksUnhealthyAfterThreshold() {
+		FakeTransport redis = new FakeTransport("redis");
+		FakeTransport mysql = new FakeTransport("mysql");
+		TransportRouter router = new TransportRouter(redis, mysql);
+		router.setFailureThreshold(2);
+		redis.failing = true;
+
+		assertSame(mysql, router.send("lobby", vote()));
+		assertTrue(router.getMetrics("redis").isHealthy());
+		assertSame(mysql, router.send("lobby", vote()));
+		assertFalse(router.getMetrics("redis").isHealthy());
+		assertEquals("IllegalStateException: redis down", router.getMetrics("redis").getLastError());
+
+		// skipped now, no more failed attempts
+		assertSame(mysql, router.send("lobby", vote()));
+		assertEquals(2, router.getMetrics("redis").getFailureCount());
+		assertEquals(3, mysql.sent.size());
+
+		// recovers once a health check passes
+		redis.failing = false;
+		router.checkHealth();
+		assertSame(redis, router.send("lobby", vote()));
+		assertEquals(1.0 / 3, router.getMetrics("redis").getSuccessRate(), 0.001);
+	}
+
+	@Test
+	public void unhealthyTransportRetriedWithoutHealthChecks() throws Exception {
+		FakeTransport redis = new FakeTransport("redis");
+		FakeTransport mysql = new FakeTransport("mysql");
+		TransportRouter router = new TransportRouter(redis, mysql);
+		router.setFailureThreshold(1);
+		router.setRetryIntervalMs(50);
+		redis.failing = true;
+
+		assertSame(mysql, router.send("lobby", vote()));
+		assertFalse(router.getMetrics("redis").isHealthy());
+		assertSame(mysql, router.send("lobby", vote()));
+		assertEquals(1, router.getMetrics("redis").getFailureCount());
+
+		// a due retry that fails keeps it unhealthy
+		Thread.sleep(60);
+		assertSame(mysql, router.send("lobby", vote()));
+		assertEquals(2, router.getMetrics("redis").getFailureCount());
+		assertFalse(router.getMetrics("redis").isHealthy());
+
+		redis.failing = false;
+		Thread.sleep(60);
+		assertSame(redis, router.send("lobby", vote()));
+		assertTrue(router.getMetrics("redis").isHealthy());
+		assertSame(redis, router.send("lobby", vote()));
+	}
+
+	@Test
+	public void healthChecksSkipTransports() {
+		FakeTransport redis = new FakeTransport("redis");
+		FakeTransport mysql = new FakeTransport("mysql");
+		TransportRouter router = new TransportRouter(redis, mysql);
+
+		redis.healthy = false;
+		router.checkHealth();
+		assertSame(mysql, router.send(null, vote()));
+		assertTrue(redis.sent.isEmpty());
+		assertEquals(List.of("null:Vote"), mysql.sent);
+
+		// everything unhealthy: still try, in priority order
+		mysql.healthy = false;
+		router.checkHealth();
+		assertSame(redis, router.send(null, vote()));
+	}
+
+	@Test
+	public void returnsNullWhenAllFail() {
+		FakeTransport redis = new FakeTransport("redis");
+		FakeTransport mysql = new FakeTransport("mysql");
+		redis.failing = true;
+		mysql.failing = true;
+		TransportRouter router = new TransportRouter(redis, mysql);
+
+		assertNull(router.send("lobby", vote()));
+		assertEquals(1, router.getMetrics("redis").getFailureCount());
+		assertEquals(1, router.getMetrics("mysql").getFailureCount());
+	}
+
+	@Test
+	public void fastestPicksLowestLatency() {
+		FakeTransport mysql = new FakeTransport("mysql");
+		FakeTransport redis = new FakeTransport("redis");
+		mysql.delayMs = 20;
+		TransportRouter router = new TransportRouter(mysql, redis);
+		router.setSelection(TransportRouter.Selection.FASTEST);
+
+		// both get measured first
+		assertSame(mysql, router.send("lobby", vote()));
+		assertSame(redis, router.send("lobby", vote()));
+
+		for (int i = 0; i < 5; i++) {
+			assertSame(redis, router.send("lobby", vote()));
+		}
+		assertEquals("redis", router.getRoute().get(0).getName());
+	}
+
+	@Test
+	public void rejectsDuplicateNames() {
+		TransportRouter router = new TransportRouter(new FakeTransport("redis"));
+		assertThrows(IllegalArgumentException.class, () -> router.add(new FakeTransport("redis")));
+	}
+}
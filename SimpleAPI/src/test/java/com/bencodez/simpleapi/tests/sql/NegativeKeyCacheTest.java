@@ -0,0 +1,108 @@
+package com.bencodez.simpleapi.tests.sql;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import org.junit.jupiter.api.Test;
+
+import com.bencodez.simpleapi.sql.mysql.AbstractSqlTable;
+import com.bencodez.simpleapi.sql.mysql.ConnectionManager;
+import com.bencodez.simpleapi.sql.mysql.DbType;
+import com.bencodez.simpleapi.sql.mysql.MySQL;
+import com.bencodez.simpleapi.sql.mysql.NegativeKeyCache;
+
+public class NegativeKeyCacheTest {
+
+	@Test
+	public void markMissing_thenKnownMissingUntilInvalidated() {
+		NegativeKeyCache cache = new NegativeKeyCache(10, 60_000);
+		assertFalse(cache.isKnownMissing("a"));
+
+		cache.markMissing("a");
+		assertTrue(cache.isKnownMissing("a"));
+
+		cache.invalidate("a");
+		assertFalse(cache.isKnownMissing("a"));
+	}
+
+	@Test
+	public void entriesExpireAfterTtl() throws InterruptedException {
+		NegativeKeyCache cache = new NegativeKeyCache(10, 5);
+		cache.markMissing("a");
+		Thread.sleep(20);
+		assertFalse(cache.isKnownMissing("a"));
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void boundedToMaxEntries_evictsOldest() {
+		NegativeKeyCache cache = new NegativeKeyCache(2, 60_000);
+		cache.markMissing("a");
+		cache.markMissing("b");
+		cache.markMissing("c");
+
+		assertEquals(2, cache.size());
+		assertFalse(cache.isKnownMissing("a"));
+		assertTrue(cache.isKnownMissing("c"));
+	}
+
+	@Test
+	public void failedLookup_isNotCachedAsMissing() throws SQLException {
+		MySQL mysql = mock(MySQL.class);
+		ConnectionManager manager = mock(ConnectionManager.class);
+		when(mysql.getConnectionManager()).thenReturn(manager);
+		when(manager.getDbType()).thenReturn(DbType.MYSQL);
+
+		Connection conn = mock(Connection.class);
+		PreparedStatement ps = mock(PreparedStatement.class);
+		when(conn.prepareStatement(anyString())).thenReturn(ps);
+		when(ps.executeQuery()).thenReturn(mock(ResultSet.class));
+		// no connection to be had the first time
+		when(manager.getReadConnection()).thenReturn(null, conn);
+
+		AbstractSqlTable table = new AbstractSqlTable("users", mysql, true) {
+			@Override
+			public String getPrimaryKeyColumn() {
+				return "uuid";
+			}
+
+			@Override
+			public String buildCreateTableSql(DbType dbType) {
+				return "";
+			}
+
+			@Override
+			public void logSevere(String msg) {
+			}
+
+			@Override
+			public void logInfo(String msg) {
+			}
+
+			@Override
+			public void debug(Throwable t) {
+			}
+
+			@Override
+			public void debug(String messasge) {
+			}
+		};
+		table.enableNegativeKeyCache(10, 60_000);
+
+		assertFalse(table.containsKey("a"));
+		assertFalse(table.getNegativeKeyCache().isKnownMissing("a"));
+
+		// a lookup that worked and found nothing is remembered
+		assertFalse(table.containsKey("a"));
+		assertTrue(table.getNegativeKeyCache().isKnownMissing("a"));
+	}
+}
@@ -0,0 +1,168 @@
+package com.bencodez.simpleapi.tests.sql;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.bencodez.simpleapi.sql.mysql.ConnectionManager;
+import com.bencodez.simpleapi.sql.mysql.MySQL;
+import com.bencodez.simpleapi.sql.mysql.queries.BatchResult;
+import com.bencodez.simpleapi.sql.mysql.queries.Query;
+import com.bencodez.simpleapi.sql.mysql.queries.SqlSupplier;
+
+public class QueryBatchTest {
+
+	private MySQL mysql;
+	private Connection conn;
+	private PreparedStatement ps;
+
+	@BeforeEach
+	public void setUp() throws SQLException {
+		mysql = mock(MySQL.class);
+		ConnectionManager manager = mock(ConnectionManager.class);
+		conn = mock(Connection.class);
+		ps = mock(PreparedStatement.class);
+
+		when(mysql.getConnectionManager()).thenReturn(manager);
+		when(manager.getConnection()).thenReturn(conn);
+		when(conn.prepareStatement(anyString())).thenReturn(ps);
+		when(conn.getAutoCommit()).thenReturn(true);
+	}
+
+	@Test
+	public void executeBatch_runsAllParameterSetsInOneTransaction() throws SQLException {
+		when(ps.executeBatch()).thenReturn(new int[] { 1, 1, Statement.SUCCESS_NO_INFO });
+
+		Query query = new Query(mysql, "UPDATE t SET a = ? WHERE id = ?");
+		for (int i = 0; i < 3; i++) {
+			query.setParameter(1, "v" + i);
+			query.setParameter(2, i);
+			query.addBatch();
+		}
+		assertEquals(3, query.getBatchSize());
+
+		int[] counts = query.executeBatch();
+
+		assertArrayEquals(new int[] { 1, 1, Statement.SUCCESS_NO_INFO }, counts);
+		verify(ps, times(3)).addBatch();
+		verify(ps).setObject(1, "v2");
+		verify(conn).setAutoCommit(false);
+		verify(conn).commit();
+		verify(conn, never()).rollback();
+		assertEquals(0, query.getBatchSize());
+	}
+
+	@Test
+	public void executeBatchDetailed_reportsFailedRowsAndRollsBack() throws SQLException {
+		when(ps.executeBatch()).thenThrow(
+				new BatchUpdateException("dup", new int[] { 1, Statement.EXECUTE_FAILED, 1 }));
+
+		Query query = new Query(mysql, "INSERT INTO t (id) VALUES (?)");
+		for (int i = 0; i < 3; i++) {
+			query.setParameter(1, i);
+			query.addBatch();
+		}
+
+		BatchResult result = query.executeBatchDetailed();
+
+		assertFalse(result.isCommitted());
+		assertTrue(result.isFailed(1));
+		assertFalse(result.isFailed(0));
+		assertEquals(1, result.getFailures().size());
+		assertTrue(result.getFailures().containsKey(1));
+		verify(conn).rollback();
+		verify(conn, never()).commit();
+	}
+
+	@Test
+	public void executeBatch_throwsInsteadOfSwallowing() throws SQLException {
+		when(ps.executeBatch()).thenThrow(new SQLException("boom"));
+
+		Query query = new Query(mysql, "INSERT INTO t (id) VALUES (?)");
+		query.setParameter(1, 1);
+		query.addBatch();
+
+		assertThrows(SQLException.class, query::executeBatch);
+	}
+
+	@Test
+	public void executeBatch_chunksInsideSameTransaction() throws SQLException {
+		when(ps.executeBatch()).thenReturn(new int[] { 1, 1 }, new int[] { 1 });
+
+		Query query = new Query(mysql, "INSERT INTO t (id) VALUES (?)");
+		query.setBatchChunkSize(2);
+		for (int i = 0; i < 3; i++) {
+			query.setParameter(1, i);
+			query.addBatch();
+		}
+
+		assertArrayEquals(new int[] { 1, 1, 1 }, query.executeBatch());
+		verify(ps, times(2)).executeBatch();
+		verify(conn, times(1)).commit();
+	}
+
+	@Test
+	public void executeUpdateFuture_failsWithSqlException() throws Exception {
+		when(mysql.supplyAsync(any(), any())).thenAnswer(inv -> {
+			SqlSupplier<?> task = inv.getArgument(0);
+			try {
+				return CompletableFuture.completedFuture(task.get());
+			} catch (SQLException e) {
+				return CompletableFuture.failedFuture(e);
+			}
+		});
+		when(ps.executeUpdate()).thenThrow(new SQLException("boom"));
+
+		Query query = new Query(mysql, "UPDATE t SET a = 1");
+		ExecutionException e = assertThrows(ExecutionException.class, () -> query.executeUpdateFuture().get());
+		assertTrue(e.getCause() instanceof SQLException);
+
+		// the blocking call still logs and returns 0
+		assertEquals(0, query.executeUpdate());
+	}
+
+	@Test
+	public void asyncAfterDisconnect_failsInsteadOfStartingAPool() throws Exception {
+		MySQL real = new MySQL(2) {
+			@Override
+			public void debug(SQLException e) {
+			}
+
+			@Override
+			public void debug(String msg) {
+			}
+
+			@Override
+			public void severe(String string) {
+			}
+		};
+		assertEquals(1, real.supplyAsync(() -> 1).get());
+
+		real.disconnect();
+		CompletableFuture<Integer> late = real.supplyAsync(() -> 1);
+		ExecutionException e = assertThrows(ExecutionException.class, late::get);
+		assertTrue(e.getCause() instanceof RejectedExecutionException);
+		assertThrows(RejectedExecutionException.class, real::getThreadPool);
+	}
+}
@@ -0,0 +1,58 @@
+package com.bencodez.simpleapi.tests.sql;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.junit.jupiter.api.Test;
+
+import com.bencodez.simpleapi.sql.mysql.queries.InsertQuery;
+import com.bencodez.simpleapi.sql.mysql.queries.SelectQuery;
+import com.bencodez.simpleapi.sql.mysql.queries.UpdateQuery;
+
+public class QueryTemplateCacheTest {
+
+	private SelectQuery select() {
+		return new SelectQuery("users").column("uuid").column("points").where("uuid = ?").orderBy("points", false)
+				.limit(10);
+	}
+
+	@Test
+	public void sameShape_returnsSameInstance() {
+		String a = select().build();
+		String b = select().build();
+
+		assertEquals("SELECT uuid,points FROM users WHERE uuid = ? ORDER BY points DESC LIMIT 0,10", a);
+		assertSame(a, b);
+	}
+
+	@Test
+	public void mutatingBuilder_invalidatesBuiltSql() {
+		SelectQuery query = select();
+		String before = query.build();
+		query.where("points > ?");
+		String after = query.build();
+
+		assertNotEquals(before, after);
+		assertEquals("SELECT uuid,points FROM users WHERE uuid = ? AND points > ? ORDER BY points DESC LIMIT 0,10",
+				after);
+	}
+
+	@Test
+	public void columnOrder_isPartOfShape() {
+		String ab = new UpdateQuery("t").set("a").set("b").where("id = ?").build();
+		String ba = new UpdateQuery("t").set("b").set("a").where("id = ?").build();
+
+		assertEquals("UPDATE t SET a=?,b=? WHERE id = ?", ab);
+		assertEquals("UPDATE t SET b=?,a=? WHERE id = ?", ba);
+	}
+
+	@Test
+	public void insert_onDuplicateKey_isPartOfShape() {
+		String plain = new InsertQuery("t").value("id").value("a").build();
+		String upsert = new InsertQuery("t").value("id").value("a").onDuplicateKeyUpdate().set("a").build();
+
+		assertEquals("INSERT INTO t (id,a) VALUES (?,?)", plain);
+		assertEquals("INSERT INTO t (id,a) VALUES (?,?) ON DUPLICATE KEY UPDATE a=VALUES(a)", upsert);
+	}
+}
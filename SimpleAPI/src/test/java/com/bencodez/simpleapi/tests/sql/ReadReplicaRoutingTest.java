@@ -0,0 +1,69 @@
+package com.bencodez.simpleapi.tests.sql;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.sql.Connection;
+
+import org.junit.jupiter.api.Test;
+
+import com.bencodez.simpleapi.sql.mysql.ConnectionManager;
+
+public class ReadReplicaRoutingTest {
+
+	private ConnectionManager manager() {
+		return new ConnectionManager("localhost", "3306", "user", "pass", "db");
+	}
+
+	@Test
+	public void noReplica_byDefault() {
+		assertFalse(manager().hasReadReplica());
+	}
+
+	@Test
+	public void markWrite_pinsReadsForWindow() {
+		ConnectionManager manager = manager();
+		manager.setReadReplicaHost("replica");
+		manager.setReadYourWritesMs(60_000);
+		assertTrue(manager.hasReadReplica());
+		assertFalse(manager.isReadPinned());
+
+		manager.markWrite();
+		assertTrue(manager.isReadPinned());
+	}
+
+	@Test
+	public void zeroWindow_neverPins() {
+		ConnectionManager manager = manager();
+		manager.setReadReplicaHost("replica");
+		manager.setReadYourWritesMs(0);
+		manager.markWrite();
+		assertFalse(manager.isReadPinned());
+	}
+
+	@Test
+	public void failedReplica_skippedForRetryWindow() throws Exception {
+		ConnectionManager manager = manager();
+		manager.setReadReplicaHost("replica");
+		manager.setReadReplicaRetryMs(60_000);
+		assertFalse(manager.isReadReplicaDown());
+
+		manager.markReadReplicaDown();
+		assertTrue(manager.isReadReplicaDown());
+
+		manager.setReadReplicaRetryMs(10);
+		manager.markReadReplicaDown();
+		Thread.sleep(30);
+		assertFalse(manager.isReadReplicaDown());
+	}
+
+	@Test
+	public void onlyReplicaConnectionsAreTaggedAsReplica() {
+		ConnectionManager manager = manager();
+		manager.setReadReplicaHost("replica");
+		// primary or foreign connections count against the primary's metrics
+		assertFalse(manager.isReadReplicaConnection(null));
+		assertFalse(manager.isReadReplicaConnection(mock(Connection.class)));
+	}
+}
@@ -0,0 +1,107 @@
+package com.bencodez.simpleapi.tests.sql;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import com.bencodez.simpleapi.sql.mysql.RowCache;
+
+public class RowCacheTest {
+
+	@Test
+	public void set_coalescesWritesToSameRow() {
+		RowCache cache = new RowCache(10);
+		cache.set("uuid1", "points", 1);
+		cache.set("uuid1", "points", 2);
+		cache.set("uuid1", "name", "Ben");
+
+		Map<String, Map<String, Object>> dirty = cache.drainDirty();
+		assertEquals(1, dirty.size());
+		assertEquals(2, dirty.get("uuid1").get("points"));
+		assertEquals("Ben", dirty.get("uuid1").get("name"));
+		assertEquals(0, cache.dirtyCount());
+	}
+
+	@Test
+	public void evict_neverDropsDirtyRows() {
+		RowCache cache = new RowCache(2);
+		cache.putLoaded("a", new LinkedHashMap<>());
+		cache.set("b", "points", 1);
+		cache.set("c", "points", 1);
+
+		assertFalse(cache.contains("a"));
+		assertTrue(cache.contains("b"));
+		assertTrue(cache.contains("c"));
+
+		assertTrue(cache.set("d", "points", 1), "over capacity with only dirty rows");
+		assertEquals(3, cache.size());
+	}
+
+	@Test
+	public void putLoaded_keepsLocalDirtyValues() {
+		RowCache cache = new RowCache(10);
+		cache.set("a", "points", 5);
+
+		Map<String, Object> fromDb = new LinkedHashMap<>();
+		fromDb.put("points", 1);
+		fromDb.put("name", "Ben");
+		cache.putLoaded("a", fromDb);
+
+		assertEquals(5, cache.get("a", "points"));
+		assertEquals("Ben", cache.get("a", "name"));
+		assertTrue(cache.isLoaded("a"));
+	}
+
+	@Test
+	public void restoreDirty_doesNotOverwriteNewerWrites() {
+		RowCache cache = new RowCache(10);
+		cache.set("a", "points", 1);
+		Map<String, Map<String, Object>> drained = cache.drainDirty();
+
+		cache.set("a", "points", 2);
+		cache.restoreDirty(drained);
+
+		assertEquals(2, cache.drainDirty().get("a").get("points"));
+	}
+
+	@Test
+	public void putLoaded_doesNotOverwriteInFlightOrJustFlushedColumns() {
+		RowCache cache = new RowCache(10);
+		cache.putLoaded("a", new LinkedHashMap<>(Map.of("points", 1, "name", "Ben")));
+		cache.set("a", "points", 5);
+
+		// a reader starts, then the flush drains the row
+		long stamp = cache.loadStamp();
+		Map<String, Map<String, Object>> drained = cache.drainDirty();
+
+		// read ran before the UPDATE committed
+		cache.putLoaded("a", new LinkedHashMap<>(Map.of("points", 1, "name", "Ben")), stamp);
+		assertEquals(5, cache.get("a", "points"));
+
+		cache.completeFlush(drained);
+		cache.putLoaded("a", new LinkedHashMap<>(Map.of("points", 1, "name", "Ben")), stamp);
+		assertEquals(5, cache.get("a", "points"));
+		assertEquals(0, cache.dirtyCount());
+
+		// a read started after the commit is trusted again
+		cache.putLoaded("a", new LinkedHashMap<>(Map.of("points", 7)), cache.loadStamp());
+		assertEquals(7, cache.get("a", "points"));
+	}
+
+	@Test
+	public void putLoaded_skipsUncachedRowWhenFlushRanDuringRead() {
+		RowCache cache = new RowCache(10);
+		long stamp = cache.loadStamp();
+		cache.set("b", "points", 1);
+		cache.completeFlush(cache.drainDirty());
+		cache.invalidate("b");
+
+		cache.putLoaded("b", new LinkedHashMap<>(Map.of("points", 0)), stamp);
+		assertFalse(cache.isLoaded("b"));
+	}
+}
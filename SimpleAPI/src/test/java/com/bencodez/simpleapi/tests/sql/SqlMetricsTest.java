@@ -0,0 +1,79 @@
+package com.bencodez.simpleapi.tests.sql;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.bencodez.simpleapi.debug.DebugLevel;
+import com.bencodez.simpleapi.metrics.LatencyHistogram;
+import com.bencodez.simpleapi.sql.mysql.metrics.SqlMetrics;
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+
+public class SqlMetricsTest {
+
+	private static final long MS = 1_000_000L;
+
+	@Test
+	public void recordQuery_groupsByTemplate() {
+		SqlMetrics metrics = new SqlMetrics();
+		metrics.recordQuery("SELECT 1 WHERE a = ?", 1 * MS);
+		metrics.recordQuery("SELECT 1 WHERE a = ?", 3 * MS);
+		metrics.recordQuery("DELETE FROM t", 1 * MS);
+
+		LatencyHistogram select = metrics.getStatementLatency("SELECT 1 WHERE a = ?");
+		assertEquals(2, select.getCount());
+		assertEquals(2.0, select.getMeanMillis(), 0.01);
+		assertEquals(3.0, select.getMaxMillis(), 0.01);
+		assertEquals(2, metrics.getStatementLatencies().size());
+	}
+
+	@Test
+	public void percentile_usesBucketUpperBound() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (int i = 0; i < 99; i++) {
+			histogram.record(MS);
+		}
+		histogram.record(400 * MS);
+		assertEquals(1.0, histogram.getPercentileMillis(50), 0.001);
+		assertEquals(500.0, histogram.getPercentileMillis(100), 0.001);
+	}
+
+	@Test
+	public void slowQuery_loggedAboveThreshold() {
+		SqlMetrics metrics = new SqlMetrics();
+		List<String> slow = new ArrayList<>();
+		List<String> debug = new ArrayList<>();
+		metrics.setSlowQueryThresholdMs(100);
+		metrics.setSlowQueryLogger(slow::add);
+		metrics.setDebugLogger(debug::add);
+
+		metrics.recordQuery("fast", 5 * MS);
+		metrics.recordQuery("slow", 150 * MS);
+		assertEquals(1, slow.size());
+		assertTrue(slow.get(0).contains("slow"));
+		assertTrue(debug.isEmpty(), "debug off by default");
+
+		metrics.setDebugLevel(DebugLevel.INFO);
+		metrics.recordQuery("slow", 150 * MS);
+		assertEquals(1, debug.size());
+		assertEquals(2, metrics.getRecentSlowQueries().size());
+
+		metrics.setDebugLevel(DebugLevel.DEV);
+		metrics.recordQuery("fast", 5 * MS);
+		assertEquals(2, debug.size(), "DEV logs every statement");
+	}
+
+	@Test
+	public void trackerFactory_recordsPoolEvents() {
+		SqlMetrics metrics = new SqlMetrics();
+		IMetricsTracker tracker = metrics.createTrackerFactory().create("pool", null);
+		tracker.recordConnectionAcquiredNanos(2 * MS);
+		tracker.recordConnectionTimeout();
+		assertEquals(1, metrics.getConnectionWait().getCount());
+		assertEquals(1, metrics.getConnectionTimeouts());
+	}
+}